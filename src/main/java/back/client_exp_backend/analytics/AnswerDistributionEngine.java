@@ -0,0 +1,333 @@
+package back.client_exp_backend.analytics;
+
+import back.client_exp_backend.cache.CompiledSurveySchema;
+import back.client_exp_backend.event.AnswerOptionRemovedEvent;
+import back.client_exp_backend.event.QuestionDeletedEvent;
+import back.client_exp_backend.event.SurveyDefinitionChangedEvent;
+import back.client_exp_backend.event.SurveyResponseSubmittedEvent;
+import back.client_exp_backend.models.QuestionAnswerCounters;
+import back.client_exp_backend.repository.QuestionAnswerCountersRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Счетчики распределения ответов по вопросам в памяти. Для вопросов с выбором
+ * счетчики индексируются порядковым номером варианта (биты option_mask), для
+ * RATING — значением оценки. Счетчики увеличиваются после фиксации каждой
+ * отправки, периодически сохраняются в question_answer_counters и
+ * восстанавливаются из client_answers при запуске, до начала приема запросов.
+ * Изменения структуры опроса не требуют пересчета: удаление варианта ответа
+ * сдвигает счетчики так же, как биты масок в client_answers, а удаление
+ * вопроса убирает его счетчики. Каждый экземпляр приложения видит только свои отправки, поэтому при
+ * нескольких экземплярах счетчики сходятся только после перезапуска
+ */
+@Component
+@Slf4j
+public class AnswerDistributionEngine implements SmartInitializingSingleton {
+
+  /**
+   * Наибольшее значение оценки, для которого ведется счетчик
+   */
+  public static final int MAX_RATING_VALUE = 100;
+
+  private static final String TOTALS_SQL = "SELECT survey_id, question_id, COUNT(*) FROM client_answers %s "
+      + "GROUP BY survey_id, question_id";
+
+  private static final String OPTIONS_SQL = "SELECT ca.survey_id, ca.question_id, b.ordinal, COUNT(*) "
+      + "FROM client_answers ca JOIN generate_series(0, " + (CompiledSurveySchema.MAX_MASK_OPTIONS - 1)
+      + ") AS b(ordinal) ON (ca.option_mask >> b.ordinal) & 1 = 1 "
+      + "WHERE ca.option_mask IS NOT NULL %s GROUP BY ca.survey_id, ca.question_id, b.ordinal";
+
+  private static final String RATINGS_SQL = "SELECT survey_id, question_id, numeric_answer, COUNT(*) "
+      + "FROM client_answers WHERE numeric_answer BETWEEN 0 AND " + MAX_RATING_VALUE + " %s "
+      + "GROUP BY survey_id, question_id, numeric_answer";
+
+  private static final String SNAPSHOT_SQL = "INSERT INTO question_answer_counters "
+      + "(question_id, survey_id, total_count, value_counts, snapshot_at) VALUES (?, ?, ?, ?, ?) "
+      + "ON CONFLICT (question_id) DO UPDATE SET survey_id = EXCLUDED.survey_id, "
+      + "total_count = EXCLUDED.total_count, value_counts = EXCLUDED.value_counts, "
+      + "snapshot_at = EXCLUDED.snapshot_at";
+
+  private final JdbcTemplate jdbcTemplate;
+  private final QuestionAnswerCountersRepository countersRepository;
+  private final boolean rebuildOnStartup;
+
+  private final Map<Long, Map<Long, QuestionCounters>> surveys = new ConcurrentHashMap<>();
+
+  public AnswerDistributionEngine(JdbcTemplate jdbcTemplate,
+      QuestionAnswerCountersRepository countersRepository,
+      @Value("${analytics.rebuild-on-startup:true}") boolean rebuildOnStartup) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.countersRepository = countersRepository;
+    this.rebuildOnStartup = rebuildOnStartup;
+  }
+
+  /**
+   * Вызывается после создания всех бинов, но до запуска веб-сервера, поэтому
+   * восстановление не пересекается с новыми отправками
+   */
+  @Override
+  public void afterSingletonsInstantiated() {
+    long started = System.currentTimeMillis();
+    try {
+      if (rebuildOnStartup) {
+        surveys.putAll(rebuild(null));
+        surveys.values().forEach(questions -> questions.values().forEach(QuestionCounters::markDirty));
+      } else {
+        loadSnapshot();
+      }
+      log.info("Счетчики распределения ответов загружены за {} мс: опросов {}",
+          System.currentTimeMillis() - started, surveys.size());
+    } catch (Exception e) {
+      // Без счетчиков приложение работает, аналитика будет неполной до перезапуска
+      log.error("Не удалось загрузить счетчики распределения ответов", e);
+    }
+  }
+
+  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+  public void onSurveyResponseSubmitted(SurveyResponseSubmittedEvent event) {
+    Map<Long, QuestionCounters> questions = surveys.computeIfAbsent(event.getSurveyId(),
+        id -> new ConcurrentHashMap<>());
+
+    for (SurveyResponseSubmittedEvent.AnswerFact answer : event.getAnswers()) {
+      questions.computeIfAbsent(answer.getQuestionId(), id -> new QuestionCounters())
+          .record(answer.getOptionMask(), answer.getNumericAnswer());
+    }
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onSurveyDefinitionChanged(SurveyDefinitionChangedEvent event) {
+    if (event.isDeleted()) {
+      surveys.remove(event.getSurveyId());
+      countersRepository.deleteBySurveyId(event.getSurveyId());
+    }
+  }
+
+  /**
+   * Сдвигает счетчики вариантов так же, как removeOptionFromMasks сдвигает
+   * биты масок. Пересчет по client_answers здесь не нужен и терял бы отправки,
+   * зафиксированные между пересчетом и подменой счетчиков
+   */
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onAnswerOptionRemoved(AnswerOptionRemovedEvent event) {
+    Map<Long, QuestionCounters> questions = surveys.get(event.getSurveyId());
+    QuestionCounters counters = questions != null ? questions.get(event.getQuestionId()) : null;
+    if (counters != null) {
+      counters.removeOrdinal(event.getOrdinal());
+    }
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onQuestionDeleted(QuestionDeletedEvent event) {
+    Map<Long, QuestionCounters> questions = surveys.get(event.getSurveyId());
+    if (questions != null && questions.remove(event.getQuestionId()) != null) {
+      countersRepository.deleteByQuestionId(event.getQuestionId());
+    }
+  }
+
+  /**
+   * Возвращает копии счетчиков вопросов опроса; пустая карта, если ответов нет
+   */
+  public Map<Long, CounterSnapshot> getSurvey(Long surveyId) {
+    Map<Long, QuestionCounters> questions = surveys.get(surveyId);
+    if (questions == null) {
+      return Map.of();
+    }
+
+    Map<Long, CounterSnapshot> result = new HashMap<>(questions.size() * 2);
+    questions.forEach((questionId, counters) -> result.put(questionId, counters.copy()));
+    return result;
+  }
+
+  public CounterSnapshot getQuestion(Long surveyId, Long questionId) {
+    Map<Long, QuestionCounters> questions = surveys.get(surveyId);
+    QuestionCounters counters = questions != null ? questions.get(questionId) : null;
+    return counters != null ? counters.copy() : CounterSnapshot.EMPTY;
+  }
+
+  /**
+   * Сохраняет измененные с прошлого снимка счетчики одной пачкой
+   */
+  @Scheduled(fixedDelayString = "${analytics.snapshot-interval-ms:60000}")
+  public void snapshot() {
+    List<Object[]> rows = new ArrayList<>();
+    surveys.forEach((surveyId, questions) -> questions.forEach((questionId, counters) -> {
+      CounterSnapshot copy = counters.takeIfDirty();
+      if (copy != null) {
+        rows.add(new Object[] { questionId, surveyId, copy });
+      }
+    }));
+
+    if (rows.isEmpty()) {
+      return;
+    }
+
+    Timestamp snapshotAt = Timestamp.valueOf(LocalDateTime.now());
+    try {
+      jdbcTemplate.batchUpdate(SNAPSHOT_SQL, new BatchPreparedStatementSetter() {
+        @Override
+        public void setValues(PreparedStatement ps, int i) throws SQLException {
+          Object[] row = rows.get(i);
+          CounterSnapshot copy = (CounterSnapshot) row[2];
+          ps.setLong(1, (Long) row[0]);
+          ps.setLong(2, (Long) row[1]);
+          ps.setLong(3, copy.total());
+          ps.setArray(4, ps.getConnection().createArrayOf("bigint",
+              Arrays.stream(copy.counts()).boxed().toArray(Long[]::new)));
+          ps.setTimestamp(5, snapshotAt);
+        }
+
+        @Override
+        public int getBatchSize() {
+          return rows.size();
+        }
+      });
+    } catch (Exception e) {
+      // Повторим при следующем снимке
+      rows.forEach(row -> markDirty((Long) row[1], (Long) row[0]));
+      log.error("Не удалось сохранить снимок счетчиков распределения ответов", e);
+      return;
+    }
+    log.debug("Сохранен снимок счетчиков {} вопросов", rows.size());
+  }
+
+  private void markDirty(Long surveyId, Long questionId) {
+    Map<Long, QuestionCounters> questions = surveys.get(surveyId);
+    QuestionCounters counters = questions != null ? questions.get(questionId) : null;
+    if (counters != null) {
+      counters.markDirty();
+    }
+  }
+
+  private void loadSnapshot() {
+    for (QuestionAnswerCounters row : countersRepository.findAll()) {
+      surveys.computeIfAbsent(row.getSurveyId(), id -> new ConcurrentHashMap<>())
+          .put(row.getQuestionId(), new QuestionCounters(row.getTotalCount(), row.getValueCounts()));
+    }
+  }
+
+  /**
+   * Пересчитывает счетчики по client_answers для одного опроса или для всех
+   */
+  private Map<Long, Map<Long, QuestionCounters>> rebuild(Long surveyId) {
+    String filter = surveyId != null ? "AND survey_id = ?" : "";
+    Object[] args = surveyId != null ? new Object[] { surveyId } : new Object[0];
+    Map<Long, Map<Long, QuestionCounters>> result = new HashMap<>();
+
+    jdbcTemplate.query(String.format(TOTALS_SQL, surveyId != null ? "WHERE survey_id = ?" : ""), rs -> {
+      counters(result, rs.getLong(1), rs.getLong(2)).total = rs.getLong(3);
+    }, args);
+    jdbcTemplate.query(String.format(OPTIONS_SQL, surveyId != null ? "AND ca.survey_id = ?" : ""), rs -> {
+      counters(result, rs.getLong(1), rs.getLong(2)).set(rs.getInt(3), rs.getLong(4));
+    }, args);
+    jdbcTemplate.query(String.format(RATINGS_SQL, filter), rs -> {
+      counters(result, rs.getLong(1), rs.getLong(2)).set(rs.getInt(3), rs.getLong(4));
+    }, args);
+
+    return result;
+  }
+
+  private QuestionCounters counters(Map<Long, Map<Long, QuestionCounters>> result, long surveyId, long questionId) {
+    return result.computeIfAbsent(surveyId, id -> new ConcurrentHashMap<>())
+        .computeIfAbsent(questionId, id -> new QuestionCounters());
+  }
+
+  /**
+   * Неизменяемая копия счетчиков вопроса
+   */
+  public record CounterSnapshot(long total, long[] counts) {
+    public static final CounterSnapshot EMPTY = new CounterSnapshot(0, new long[0]);
+
+    public long count(int index) {
+      return index < counts.length ? counts[index] : 0;
+    }
+  }
+
+  private static final class QuestionCounters {
+    private long total;
+    private long[] counts;
+    private boolean dirty;
+
+    private QuestionCounters() {
+      this(0, new long[0]);
+    }
+
+    private QuestionCounters(long total, long[] counts) {
+      this.total = total;
+      this.counts = counts;
+    }
+
+    private synchronized void record(Long optionMask, Integer numericAnswer) {
+      total++;
+      if (optionMask != null) {
+        long mask = optionMask;
+        while (mask != 0) {
+          int ordinal = Long.numberOfTrailingZeros(mask);
+          increment(ordinal);
+          mask &= mask - 1;
+        }
+      } else if (numericAnswer != null && numericAnswer >= 0 && numericAnswer <= MAX_RATING_VALUE) {
+        increment(numericAnswer);
+      }
+      dirty = true;
+    }
+
+    private synchronized void set(int index, long value) {
+      ensureCapacity(index);
+      counts[index] = value;
+    }
+
+    private synchronized void removeOrdinal(int ordinal) {
+      if (ordinal < counts.length) {
+        System.arraycopy(counts, ordinal + 1, counts, ordinal, counts.length - ordinal - 1);
+        counts = Arrays.copyOf(counts, counts.length - 1);
+      }
+      dirty = true;
+    }
+
+    private synchronized void markDirty() {
+      dirty = true;
+    }
+
+    private synchronized CounterSnapshot copy() {
+      return new CounterSnapshot(total, counts.clone());
+    }
+
+    private synchronized CounterSnapshot takeIfDirty() {
+      if (!dirty) {
+        return null;
+      }
+      dirty = false;
+      return copy();
+    }
+
+    private void increment(int index) {
+      ensureCapacity(index);
+      counts[index]++;
+    }
+
+    private void ensureCapacity(int index) {
+      if (index >= counts.length) {
+        counts = Arrays.copyOf(counts, index + 1);
+      }
+    }
+  }
+}
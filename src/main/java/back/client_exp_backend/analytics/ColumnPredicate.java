@@ -0,0 +1,10 @@
+package back.client_exp_backend.analytics;
+
+/**
+ * Условие на ответ респондента для {@link SurveyColumns#select}. Строка
+ * подходит, если на вопрос есть ответ и: для вопросов с выбором выбран хотя бы
+ * один вариант из options (0 — любой), для RATING оценка в [minValue, maxValue]
+ * (null — без границы), для TEXT ответ совпадает с text (null — любой)
+ */
+public record ColumnPredicate(int questionIndex, long options, Integer minValue, Integer maxValue, String text) {
+}
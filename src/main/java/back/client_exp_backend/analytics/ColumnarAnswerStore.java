@@ -0,0 +1,193 @@
+package back.client_exp_backend.analytics;
+
+import back.client_exp_backend.cache.CompiledSurveySchema;
+import back.client_exp_backend.cache.SurveySchemaCache;
+import back.client_exp_backend.event.SurveyDefinitionChangedEvent;
+import back.client_exp_backend.event.SurveyResponseSubmittedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Столбцовые копии ответов на опросы ({@link SurveyColumns}) для произвольной
+ * аналитики. Опрос загружается из client_answers при первом запросе, затем
+ * дополняется новыми отправками. Давно не запрашивавшиеся опросы вытесняются,
+ * когда общий объем превышает analytics.columnar.memory-budget-mb
+ */
+@Component
+@Slf4j
+public class ColumnarAnswerStore {
+
+  private static final String LOAD_SQL = "SELECT client_id, question_id, option_mask, numeric_answer, text_answer "
+      + "FROM client_answers WHERE survey_id = ? ORDER BY client_id";
+
+  private final JdbcTemplate jdbcTemplate;
+  private final SurveySchemaCache surveySchemaCache;
+  private final long memoryBudgetBytes;
+  private final int parallelThreshold;
+
+  // Первым идет дольше всех не запрашивавшийся опрос: запрос переносит опрос в конец
+  private final LinkedHashMap<Long, Slot> slots = new LinkedHashMap<>();
+
+  public ColumnarAnswerStore(JdbcTemplate jdbcTemplate,
+      SurveySchemaCache surveySchemaCache,
+      @Value("${analytics.columnar.memory-budget-mb:256}") long memoryBudgetMb,
+      @Value("${analytics.columnar.parallel-threshold:65536}") int parallelThreshold) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.surveySchemaCache = surveySchemaCache;
+    this.memoryBudgetBytes = memoryBudgetMb * 1024 * 1024;
+    this.parallelThreshold = parallelThreshold;
+  }
+
+  /**
+   * Выполняет чтение по столбцам опроса, при необходимости загрузив их.
+   * Параллельные запросы к незагруженному опросу ждут одну загрузку
+   */
+  public <R> R read(Long surveyId, Function<SurveyColumns, R> query) {
+    Slot slot;
+    boolean owner = false;
+    synchronized (slots) {
+      slot = slots.remove(surveyId);
+      if (slot == null) {
+        slot = new Slot();
+        owner = true;
+      }
+      slots.put(surveyId, slot);
+    }
+
+    if (owner) {
+      load(surveyId, slot);
+    }
+
+    SurveyColumns columns;
+    try {
+      columns = slot.future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw e;
+    }
+
+    enforceBudget(surveyId);
+    return columns.read(query);
+  }
+
+  /**
+   * Дописывает отправку в загруженный опрос. Если опрос еще загружается,
+   * отправка применяется после загрузки: запись по респонденту идемпотентна,
+   * поэтому отправка, уже попавшая в выборку из базы, не задвоится
+   */
+  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+  public void onSurveyResponseSubmitted(SurveyResponseSubmittedEvent event) {
+    Slot slot;
+    synchronized (slots) {
+      slot = slots.get(event.getSurveyId());
+    }
+    if (slot == null) {
+      return;
+    }
+
+    synchronized (slot) {
+      if (!slot.future.isDone()) {
+        slot.pending.add(event);
+        return;
+      }
+    }
+    if (!slot.future.isCompletedExceptionally()) {
+      slot.future.join().append(event);
+    }
+  }
+
+  /**
+   * Столбцы строятся по структуре опроса, поэтому после ее изменения опрос
+   * будет загружен заново
+   */
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onSurveyDefinitionChanged(SurveyDefinitionChangedEvent event) {
+    synchronized (slots) {
+      slots.remove(event.getSurveyId());
+    }
+  }
+
+  private void load(Long surveyId, Slot slot) {
+    long started = System.currentTimeMillis();
+    try {
+      CompiledSurveySchema schema = surveySchemaCache.get(surveyId);
+      SurveyColumns columns = new SurveyColumns(schema, parallelThreshold);
+      jdbcTemplate.query(LOAD_SQL, rs -> {
+        long optionMask = rs.getLong(3);
+        Long mask = rs.wasNull() ? null : optionMask;
+        int numericAnswer = rs.getInt(4);
+        Integer numeric = rs.wasNull() ? null : numericAnswer;
+        columns.put(rs.getLong(1), rs.getLong(2), mask, numeric, rs.getString(5));
+      }, surveyId);
+
+      synchronized (slot) {
+        slot.pending.forEach(columns::append);
+        slot.pending.clear();
+        slot.future.complete(columns);
+      }
+      log.info("Ответы на опрос {} загружены по столбцам за {} мс: респондентов {}, ~{} КБ",
+          surveyId, System.currentTimeMillis() - started, columns.rowCount(), columns.estimatedBytes() / 1024);
+    } catch (RuntimeException e) {
+      synchronized (slots) {
+        slots.remove(surveyId, slot);
+      }
+      slot.future.completeExceptionally(e);
+      throw e;
+    }
+  }
+
+  /**
+   * Вытесняет давно не запрашивавшиеся опросы, пока общий объем больше
+   * бюджета. Только что загруженный опрос остается, даже если сам не помещается
+   */
+  private void enforceBudget(Long keepSurveyId) {
+    List<Long> evicted = new ArrayList<>();
+    synchronized (slots) {
+      long total = 0;
+      for (Slot slot : slots.values()) {
+        total += slot.estimatedBytes();
+      }
+
+      Iterator<Map.Entry<Long, Slot>> iterator = slots.entrySet().iterator();
+      while (total > memoryBudgetBytes && iterator.hasNext()) {
+        Map.Entry<Long, Slot> entry = iterator.next();
+        if (entry.getKey().equals(keepSurveyId) || !entry.getValue().future.isDone()) {
+          continue;
+        }
+        total -= entry.getValue().estimatedBytes();
+        iterator.remove();
+        evicted.add(entry.getKey());
+      }
+    }
+    if (!evicted.isEmpty()) {
+      log.info("Из столбцового хранилища вытеснены опросы {}", evicted);
+    }
+  }
+
+  /**
+   * Загруженный или загружающийся опрос и отправки, пришедшие во время загрузки
+   */
+  private static final class Slot {
+    private final CompletableFuture<SurveyColumns> future = new CompletableFuture<>();
+    private final List<SurveyResponseSubmittedEvent> pending = new ArrayList<>();
+
+    private long estimatedBytes() {
+      return future.isDone() && !future.isCompletedExceptionally() ? future.join().read(SurveyColumns::estimatedBytes) : 0;
+    }
+  }
+}
@@ -0,0 +1,235 @@
+package back.client_exp_backend.analytics;
+
+import back.client_exp_backend.cache.CompiledSurveySchema;
+import back.client_exp_backend.cache.SurveySchemaCache;
+import back.client_exp_backend.event.SurveyDefinitionChangedEvent;
+import back.client_exp_backend.event.SurveyResponseSubmittedEvent;
+import back.client_exp_backend.models.enums.MetricType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Накопительные показатели NPS, CSAT и CES по вопросам RATING с заданным
+ * metricType. Для каждого вопроса хранится итог за все время и кольцевой буфер
+ * дневных корзин за последние {@link #WINDOW_DAYS} дней, из которого считаются
+ * скользящие окна 7/30/90 дней. Обновляется после фиксации отправок и
+ * восстанавливается из client_answers при запуске
+ */
+@Component
+@Slf4j
+public class MetricEngine implements SmartInitializingSingleton {
+
+  public static final int WINDOW_DAYS = 90;
+
+  // NPS: шкала 0-10, промоутеры 9-10, критики 0-6
+  private static final int NPS_PROMOTER_MIN = 9;
+  private static final int NPS_DETRACTOR_MAX = 6;
+  // CSAT: шкала 1-5, удовлетворенные 4-5
+  private static final int CSAT_TOP_BOX_MIN = 4;
+  // CES: шкала 1-7, «легко» 5-7
+  private static final int CES_TOP_BOX_MIN = 5;
+
+  private static final String REBUILD_SQL = "SELECT ca.survey_id, ca.question_id, q.metric_type, "
+      + "CAST(ca.created_at AS date), ca.numeric_answer, COUNT(*) "
+      + "FROM client_answers ca JOIN questions q ON q.id = ca.question_id "
+      + "WHERE q.type = 'RATING' AND q.metric_type IN ('NPS', 'CSAT', 'CES') AND ca.numeric_answer IS NOT NULL %s "
+      + "GROUP BY ca.survey_id, ca.question_id, q.metric_type, CAST(ca.created_at AS date), ca.numeric_answer";
+
+  private final JdbcTemplate jdbcTemplate;
+  private final SurveySchemaCache surveySchemaCache;
+
+  // surveyId -> questionId -> показатели
+  private final Map<Long, Map<Long, MetricAggregate>> surveys = new ConcurrentHashMap<>();
+
+  public MetricEngine(JdbcTemplate jdbcTemplate, SurveySchemaCache surveySchemaCache) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.surveySchemaCache = surveySchemaCache;
+  }
+
+  @Override
+  public void afterSingletonsInstantiated() {
+    long started = System.currentTimeMillis();
+    try {
+      surveys.putAll(rebuild(null));
+      log.info("Показатели NPS/CSAT/CES восстановлены за {} мс: опросов {}",
+          System.currentTimeMillis() - started, surveys.size());
+    } catch (Exception e) {
+      log.error("Не удалось восстановить показатели NPS/CSAT/CES", e);
+    }
+  }
+
+  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+  public void onSurveyResponseSubmitted(SurveyResponseSubmittedEvent event) {
+    CompiledSurveySchema schema = null;
+    LocalDate day = event.getSubmittedAt().toLocalDate();
+
+    for (SurveyResponseSubmittedEvent.AnswerFact answer : event.getAnswers()) {
+      if (answer.getNumericAnswer() == null) {
+        continue;
+      }
+
+      schema = schema != null ? schema : surveySchemaCache.get(event.getSurveyId());
+      int questionIndex = schema.indexOf(answer.getQuestionId());
+      MetricType metricType = questionIndex >= 0 ? schema.metricType(questionIndex) : null;
+      if (!isTracked(metricType)) {
+        continue;
+      }
+
+      surveys.computeIfAbsent(event.getSurveyId(), id -> new ConcurrentHashMap<>())
+          .computeIfAbsent(answer.getQuestionId(), id -> new MetricAggregate(metricType))
+          .record(day.toEpochDay(), answer.getNumericAnswer(), 1);
+    }
+  }
+
+  /**
+   * У вопросов мог измениться metricType, поэтому показатели опроса
+   * пересчитываются заново
+   */
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onSurveyDefinitionChanged(SurveyDefinitionChangedEvent event) {
+    Long surveyId = event.getSurveyId();
+    if (event.isDeleted()) {
+      surveys.remove(surveyId);
+      return;
+    }
+
+    Map<Long, MetricAggregate> rebuilt = rebuild(surveyId).get(surveyId);
+    surveys.put(surveyId, rebuilt != null ? rebuilt : new ConcurrentHashMap<>());
+  }
+
+  /**
+   * Возвращает показатели вопроса за последние days дней (включая сегодня) или
+   * за все время, если days == null
+   */
+  public MetricWindow getWindow(Long surveyId, Long questionId, Integer days) {
+    Map<Long, MetricAggregate> questions = surveys.get(surveyId);
+    MetricAggregate aggregate = questions != null ? questions.get(questionId) : null;
+    if (aggregate == null) {
+      return MetricWindow.EMPTY;
+    }
+    return days == null ? aggregate.total() : aggregate.window(LocalDate.now().toEpochDay(), days);
+  }
+
+  private static boolean isTracked(MetricType metricType) {
+    return metricType == MetricType.NPS || metricType == MetricType.CSAT || metricType == MetricType.CES;
+  }
+
+  private Map<Long, Map<Long, MetricAggregate>> rebuild(Long surveyId) {
+    Map<Long, Map<Long, MetricAggregate>> result = new HashMap<>();
+    String sql = String.format(REBUILD_SQL, surveyId != null ? "AND ca.survey_id = ?" : "");
+    Object[] args = surveyId != null ? new Object[] { surveyId } : new Object[0];
+
+    jdbcTemplate.query(sql, rs -> {
+      MetricType metricType = MetricType.valueOf(rs.getString(3));
+      result.computeIfAbsent(rs.getLong(1), id -> new ConcurrentHashMap<>())
+          .computeIfAbsent(rs.getLong(2), id -> new MetricAggregate(metricType))
+          .record(rs.getDate(4).toLocalDate().toEpochDay(), rs.getInt(5), rs.getLong(6));
+    }, args);
+
+    return result;
+  }
+
+  /**
+   * Сумма показателей за период
+   */
+  public record MetricWindow(long count, long sum, long topBox, long promoters, long detractors) {
+    public static final MetricWindow EMPTY = new MetricWindow(0, 0, 0, 0, 0);
+
+    public long passives() {
+      return count - promoters - detractors;
+    }
+  }
+
+  /**
+   * Итог за все время и кольцевой буфер дневных корзин одного вопроса.
+   * Корзина с индексом epochDay % WINDOW_DAYS переиспользуется, когда в нее
+   * попадает более новый день
+   */
+  static final class MetricAggregate {
+    private final MetricType metricType;
+
+    private final long[] bucketDays = new long[WINDOW_DAYS];
+    private final long[] counts = new long[WINDOW_DAYS];
+    private final long[] sums = new long[WINDOW_DAYS];
+    private final long[] topBoxes = new long[WINDOW_DAYS];
+    private final long[] promoters = new long[WINDOW_DAYS];
+    private final long[] detractors = new long[WINDOW_DAYS];
+
+    private long totalCount;
+    private long totalSum;
+    private long totalTopBox;
+    private long totalPromoters;
+    private long totalDetractors;
+
+    MetricAggregate(MetricType metricType) {
+      this.metricType = metricType;
+      Arrays.fill(bucketDays, Long.MIN_VALUE);
+    }
+
+    synchronized void record(long epochDay, int score, long times) {
+      boolean topBox = switch (metricType) {
+        case NPS -> score >= NPS_PROMOTER_MIN;
+        case CSAT -> score >= CSAT_TOP_BOX_MIN;
+        case CES -> score >= CES_TOP_BOX_MIN;
+        default -> false;
+      };
+      boolean promoter = metricType == MetricType.NPS && score >= NPS_PROMOTER_MIN;
+      boolean detractor = metricType == MetricType.NPS && score <= NPS_DETRACTOR_MAX;
+
+      totalCount += times;
+      totalSum += score * times;
+      totalTopBox += topBox ? times : 0;
+      totalPromoters += promoter ? times : 0;
+      totalDetractors += detractor ? times : 0;
+
+      int slot = (int) Math.floorMod(epochDay, (long) WINDOW_DAYS);
+      if (bucketDays[slot] > epochDay) {
+        // Корзина уже занята более поздним днем, старый ответ учтен только в итоге
+        return;
+      }
+      if (bucketDays[slot] != epochDay) {
+        bucketDays[slot] = epochDay;
+        counts[slot] = 0;
+        sums[slot] = 0;
+        topBoxes[slot] = 0;
+        promoters[slot] = 0;
+        detractors[slot] = 0;
+      }
+
+      counts[slot] += times;
+      sums[slot] += score * times;
+      topBoxes[slot] += topBox ? times : 0;
+      promoters[slot] += promoter ? times : 0;
+      detractors[slot] += detractor ? times : 0;
+    }
+
+    synchronized MetricWindow window(long today, int days) {
+      long from = today - Math.min(days, WINDOW_DAYS) + 1;
+      long count = 0, sum = 0, topBox = 0, promoterCount = 0, detractorCount = 0;
+      for (int slot = 0; slot < WINDOW_DAYS; slot++) {
+        if (bucketDays[slot] >= from && bucketDays[slot] <= today) {
+          count += counts[slot];
+          sum += sums[slot];
+          topBox += topBoxes[slot];
+          promoterCount += promoters[slot];
+          detractorCount += detractors[slot];
+        }
+      }
+      return new MetricWindow(count, sum, topBox, promoterCount, detractorCount);
+    }
+
+    synchronized MetricWindow total() {
+      return new MetricWindow(totalCount, totalSum, totalTopBox, totalPromoters, totalDetractors);
+    }
+  }
+}
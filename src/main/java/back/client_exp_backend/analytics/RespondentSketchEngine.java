@@ -0,0 +1,448 @@
+package back.client_exp_backend.analytics;
+
+import back.client_exp_backend.event.SurveyDefinitionChangedEvent;
+import back.client_exp_backend.event.SurveyResponseSubmittedEvent;
+import back.client_exp_backend.models.enums.RespondentDimension;
+import back.client_exp_backend.repository.RespondentSketchRepository;
+import back.client_exp_backend.segment.ClientAttributeIndex;
+import back.client_exp_backend.segment.CriteriaField;
+import back.client_exp_backend.segment.SegmentMembership;
+import back.client_exp_backend.util.Hashing;
+import back.client_exp_backend.util.HyperLogLog;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * HyperLogLog уникальных респондентов по дням в разрезах ALL, SURVEY, REGION
+ * и SEGMENT. Sketch текущих дней держатся в памяти и обновляются после
+ * фиксации отправок, изменения периодически сохраняются в respondent_sketches.
+ * Регион и сегменты клиента берутся из {@link ClientAttributeIndex} и
+ * {@link SegmentMembership}, поэтому отправка не читает БД. Запрос за период
+ * объединяет дневные sketch из таблицы и из памяти, не обращаясь к
+ * client_answers
+ */
+@Component
+@Slf4j
+public class RespondentSketchEngine implements SmartInitializingSingleton {
+
+  private static final String ALL_KEY = "";
+  // После сохранения в памяти остаются только sketch последних дней
+  private static final int HOT_DAYS = 2;
+
+  private static final String STORED_SQL = "SELECT dimension, dimension_key, day, registers FROM respondent_sketches "
+      + "WHERE day = ANY (?) AND dimension_key = ANY (?)";
+
+  private static final String RANGE_SQL = "SELECT dimension_key, registers FROM respondent_sketches "
+      + "WHERE dimension = ? AND day BETWEEN ? AND ? %s";
+
+  private static final String SNAPSHOT_SQL = "INSERT INTO respondent_sketches "
+      + "(dimension, dimension_key, day, registers, updated_at) VALUES (?, ?, ?, ?, ?) "
+      + "ON CONFLICT (dimension, dimension_key, day) DO UPDATE SET "
+      + "registers = EXCLUDED.registers, updated_at = EXCLUDED.updated_at";
+
+  private static final String BACKFILL_SQL = "SELECT CAST(ca.created_at AS date), ca.survey_id, ca.client_id, c.region "
+      + "FROM client_answers ca JOIN clients c ON c.id = ca.client_id "
+      + "WHERE ca.created_at >= ? AND ca.created_at < ? "
+      + "GROUP BY CAST(ca.created_at AS date), ca.survey_id, ca.client_id, c.region";
+
+  private final JdbcTemplate jdbcTemplate;
+  private final RespondentSketchRepository sketchRepository;
+  private final ClientAttributeIndex clientAttributeIndex;
+  private final SegmentMembership segmentMembership;
+  private final TaskExecutor taskExecutor;
+  private final int precision;
+  private final int backfillBatchDays;
+
+  private final Map<SketchKey, DaySketch> hot = new ConcurrentHashMap<>();
+
+  public RespondentSketchEngine(JdbcTemplate jdbcTemplate,
+      RespondentSketchRepository sketchRepository,
+      ClientAttributeIndex clientAttributeIndex,
+      SegmentMembership segmentMembership,
+      @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME) TaskExecutor taskExecutor,
+      @Value("${analytics.respondents.precision:14}") int precision,
+      @Value("${analytics.respondents.backfill-batch-days:7}") int backfillBatchDays) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.sketchRepository = sketchRepository;
+    this.clientAttributeIndex = clientAttributeIndex;
+    this.segmentMembership = segmentMembership;
+    this.taskExecutor = taskExecutor;
+    this.precision = precision;
+    this.backfillBatchDays = backfillBatchDays;
+  }
+
+  /**
+   * Если sketch еще не сохранялись, строит их по уже сохраненным ответам в
+   * фоне, не задерживая запуск
+   */
+  @Override
+  public void afterSingletonsInstantiated() {
+    try {
+      // Проверяем до первых отправок, иначе их снимок отменил бы заполнение
+      if (sketchRepository.count() > 0) {
+        return;
+      }
+    } catch (Exception e) {
+      log.error("Не удалось проверить сохраненные sketch уникальных респондентов", e);
+      return;
+    }
+
+    LocalDateTime startedAt = LocalDateTime.now();
+    taskExecutor.execute(() -> {
+      try {
+        backfill(startedAt);
+      } catch (Exception e) {
+        // Без начального заполнения sketch наполняются новыми отправками
+        log.error("Не удалось построить sketch уникальных респондентов", e);
+      }
+    });
+  }
+
+  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+  public void onSurveyResponseSubmitted(SurveyResponseSubmittedEvent event) {
+    ClientDimensions dimensions = clientDimensions(event.getClientId());
+    long hash = Hashing.mix64(event.getClientId());
+    forEachKey(event.getSurveyId(), event.getSubmittedAt().toLocalDate(), dimensions,
+        key -> hotSketch(key).add(hash));
+  }
+
+  /**
+   * Sketch удаленного опроса удаляются. Из разрезов ALL, REGION и SEGMENT его
+   * респондентов убрать нельзя: HyperLogLog не поддерживает удаление
+   */
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onSurveyDefinitionChanged(SurveyDefinitionChangedEvent event) {
+    if (!event.isDeleted()) {
+      return;
+    }
+    String surveyKey = event.getSurveyId().toString();
+    hot.keySet().removeIf(key -> key.dimension() == RespondentDimension.SURVEY && key.dimensionKey().equals(surveyKey));
+    sketchRepository.deleteByDimensionKey(RespondentDimension.SURVEY, surveyKey);
+  }
+
+  /**
+   * Объединенные за период sketch по значениям разреза. Для пустого keys
+   * возвращаются все значения, встречавшиеся в периоде
+   */
+  public Map<String, HyperLogLog> merge(RespondentDimension dimension, Collection<String> keys,
+      LocalDate from, LocalDate to) {
+    Collection<String> filter = dimension == RespondentDimension.ALL ? List.of(ALL_KEY) : keys;
+    Map<String, HyperLogLog> result = new HashMap<>();
+
+    String sql = String.format(RANGE_SQL, filter.isEmpty() ? "" : "AND dimension_key = ANY (?)");
+    jdbcTemplate.query(connection -> {
+      PreparedStatement ps = connection.prepareStatement(sql);
+      ps.setString(1, dimension.name());
+      ps.setDate(2, Date.valueOf(from));
+      ps.setDate(3, Date.valueOf(to));
+      if (!filter.isEmpty()) {
+        ps.setArray(4, connection.createArrayOf("varchar", filter.toArray()));
+      }
+      return ps;
+    }, rs -> {
+      mergeInto(result, rs.getString(1), decompress(rs.getBytes(2)));
+    });
+
+    // Sketch в памяти включают сохраненное состояние, повторное объединение ничего не портит
+    hot.forEach((key, sketch) -> {
+      if (key.dimension() == dimension && !key.day().isBefore(from) && !key.day().isAfter(to)
+          && (filter.isEmpty() || filter.contains(key.dimensionKey()))) {
+        mergeInto(result, key.dimensionKey(), sketch.copy());
+      }
+    });
+
+    return result;
+  }
+
+  public HyperLogLog empty() {
+    return new HyperLogLog(precision);
+  }
+
+  /**
+   * Сохраняет измененные с прошлого снимка sketch одной пачкой и выгружает
+   * из памяти прошедшие дни
+   */
+  @Scheduled(fixedDelayString = "${analytics.respondents.snapshot-interval-ms:60000}")
+  public void snapshot() {
+    Map<SketchKey, DaySketch> dirty = new HashMap<>();
+    hot.forEach((key, sketch) -> {
+      if (sketch.takeDirty()) {
+        dirty.put(key, sketch);
+      }
+    });
+
+    try {
+      mergeStored(dirty);
+      write(dirty);
+    } catch (Exception e) {
+      // Повторим при следующем снимке
+      dirty.values().forEach(DaySketch::markDirty);
+      log.error("Не удалось сохранить sketch уникальных респондентов", e);
+      return;
+    }
+
+    LocalDate oldestHotDay = LocalDate.now().minusDays(HOT_DAYS - 1);
+    hot.entrySet().removeIf(entry -> entry.getKey().day().isBefore(oldestHotDay) && !entry.getValue().isDirty());
+  }
+
+  @PreDestroy
+  public void snapshotOnShutdown() {
+    snapshot();
+  }
+
+  /**
+   * Sketch в памяти; новый создается пустым, а сохраненное состояние
+   * подмешивается при следующем снимке ({@link #mergeStored})
+   */
+  private DaySketch hotSketch(SketchKey key) {
+    return hot.computeIfAbsent(key, k -> new DaySketch(new HyperLogLog(precision), false));
+  }
+
+  private ClientDimensions clientDimensions(long clientId) {
+    return new ClientDimensions(clientAttributeIndex.valueOf(clientId, CriteriaField.REGION),
+        segmentMembership.segmentsOf(clientId));
+  }
+
+  /**
+   * Объединяет sketch, созданные в памяти без сохраненного состояния, с их
+   * строками в respondent_sketches одним запросом, чтобы запись снимка не
+   * затерла сохраненных ранее респондентов
+   */
+  private void mergeStored(Map<SketchKey, DaySketch> sketches) {
+    Map<SketchKey, DaySketch> pending = new HashMap<>();
+    sketches.forEach((key, sketch) -> {
+      if (!sketch.isStored()) {
+        pending.put(key, sketch);
+      }
+    });
+    if (pending.isEmpty()) {
+      return;
+    }
+
+    Date[] days = pending.keySet().stream().map(key -> Date.valueOf(key.day())).distinct().toArray(Date[]::new);
+    String[] keys = pending.keySet().stream().map(SketchKey::dimensionKey).distinct().toArray(String[]::new);
+    jdbcTemplate.query(connection -> {
+      PreparedStatement ps = connection.prepareStatement(STORED_SQL);
+      ps.setArray(1, connection.createArrayOf("date", days));
+      ps.setArray(2, connection.createArrayOf("varchar", keys));
+      return ps;
+    }, rs -> {
+      SketchKey key = new SketchKey(RespondentDimension.valueOf(rs.getString(1)), rs.getString(2),
+          rs.getDate(3).toLocalDate());
+      DaySketch sketch = pending.get(key);
+      if (sketch != null) {
+        sketch.merge(decompress(rs.getBytes(4)));
+      }
+    });
+    pending.values().forEach(DaySketch::markStored);
+  }
+
+  /**
+   * Проходит сохраненные до запуска ответы окнами по
+   * analytics.respondents.backfill-batch-days дней: в памяти держатся sketch
+   * только одного окна. Дни до запуска записываются сразу, день запуска
+   * объединяется с sketch в памяти — повторный учет клиента HyperLogLog не
+   * меняет, поэтому пересечение с новыми отправками безопасно
+   */
+  private void backfill(LocalDateTime startedAt) {
+    LocalDate firstDay = jdbcTemplate.queryForObject("SELECT CAST(MIN(created_at) AS date) FROM client_answers",
+        LocalDate.class);
+    if (firstDay == null) {
+      return;
+    }
+    if (!segmentMembership.isReady()) {
+      segmentMembership.refresh();
+    }
+
+    long started = System.currentTimeMillis();
+    LocalDate startDay = startedAt.toLocalDate();
+    long rows = 0;
+    for (LocalDate from = firstDay; !from.isAfter(startDay); from = from.plusDays(backfillBatchDays)) {
+      LocalDateTime windowEnd = from.plusDays(backfillBatchDays).atStartOfDay();
+      Timestamp until = Timestamp.valueOf(windowEnd.isBefore(startedAt) ? windowEnd : startedAt);
+
+      Map<SketchKey, DaySketch> window = new HashMap<>();
+      long[] count = new long[1];
+      jdbcTemplate.query(BACKFILL_SQL, rs -> {
+        LocalDate date = rs.getDate(1).toLocalDate();
+        long clientId = rs.getLong(3);
+        ClientDimensions dimensions = new ClientDimensions(rs.getString(4), segmentMembership.segmentsOf(clientId));
+        forEachKey(rs.getLong(2), date, dimensions, key -> window
+            .computeIfAbsent(key, k -> new DaySketch(new HyperLogLog(precision), true))
+            .add(Hashing.mix64(clientId)));
+        count[0]++;
+      }, Timestamp.valueOf(from.atStartOfDay()), until);
+
+      Map<SketchKey, DaySketch> past = new HashMap<>();
+      window.forEach((key, sketch) -> {
+        if (key.day().isBefore(startDay)) {
+          past.put(key, sketch);
+        } else {
+          hotSketch(key).merge(sketch.copy());
+        }
+      });
+      write(past);
+      rows += count[0];
+    }
+
+    log.info("Sketch уникальных респондентов построены за {} мс: дней с {}, строк {}",
+        System.currentTimeMillis() - started, firstDay, rows);
+  }
+
+  private static void forEachKey(long surveyId, LocalDate day, ClientDimensions dimensions,
+      Consumer<SketchKey> action) {
+    action.accept(new SketchKey(RespondentDimension.ALL, ALL_KEY, day));
+    action.accept(new SketchKey(RespondentDimension.SURVEY, Long.toString(surveyId), day));
+    if (dimensions.region() != null && !dimensions.region().isBlank()) {
+      action.accept(new SketchKey(RespondentDimension.REGION, dimensions.region(), day));
+    }
+    for (Long segmentId : dimensions.segmentIds()) {
+      action.accept(new SketchKey(RespondentDimension.SEGMENT, segmentId.toString(), day));
+    }
+  }
+
+  private static void mergeInto(Map<String, HyperLogLog> result, String key, HyperLogLog sketch) {
+    HyperLogLog merged = result.get(key);
+    if (merged == null) {
+      result.put(key, sketch);
+    } else {
+      merged.merge(sketch);
+    }
+  }
+
+  private void write(Map<SketchKey, DaySketch> sketches) {
+    if (sketches.isEmpty()) {
+      return;
+    }
+
+    List<Map.Entry<SketchKey, byte[]>> rows = new ArrayList<>(sketches.size());
+    sketches.forEach((key, sketch) -> rows.add(Map.entry(key, compress(sketch.copy()))));
+    Timestamp updatedAt = Timestamp.valueOf(LocalDateTime.now());
+
+    jdbcTemplate.batchUpdate(SNAPSHOT_SQL, new BatchPreparedStatementSetter() {
+      @Override
+      public void setValues(PreparedStatement ps, int i) throws SQLException {
+        SketchKey key = rows.get(i).getKey();
+        ps.setString(1, key.dimension().name());
+        ps.setString(2, key.dimensionKey());
+        ps.setDate(3, Date.valueOf(key.day()));
+        ps.setBytes(4, rows.get(i).getValue());
+        ps.setTimestamp(5, updatedAt);
+      }
+
+      @Override
+      public int getBatchSize() {
+        return rows.size();
+      }
+    });
+  }
+
+  private static byte[] compress(HyperLogLog sketch) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (OutputStream out = new GZIPOutputStream(bytes)) {
+      out.write(sketch.toBytes());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static HyperLogLog decompress(byte[] bytes) {
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+      return HyperLogLog.fromBytes(in.readAllBytes());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private record SketchKey(RespondentDimension dimension, String dimensionKey, LocalDate day) {
+  }
+
+  private record ClientDimensions(String region, List<Long> segmentIds) {
+  }
+
+  /**
+   * Sketch одного дня с признаком несохраненных изменений
+   */
+  private static final class DaySketch {
+    private final HyperLogLog sketch;
+    private boolean dirty;
+    // Содержит ли sketch сохраненное в таблице состояние дня
+    private boolean stored;
+
+    private DaySketch(HyperLogLog sketch, boolean stored) {
+      this.sketch = sketch;
+      this.stored = stored;
+    }
+
+    private synchronized void add(long hash) {
+      if (sketch.add(hash)) {
+        dirty = true;
+      }
+    }
+
+    private synchronized void merge(HyperLogLog other) {
+      sketch.merge(other);
+      dirty = true;
+    }
+
+    private synchronized boolean isStored() {
+      return stored;
+    }
+
+    private synchronized void markStored() {
+      stored = true;
+    }
+
+    private synchronized HyperLogLog copy() {
+      return sketch.copy();
+    }
+
+    private synchronized boolean takeDirty() {
+      boolean wasDirty = dirty;
+      dirty = false;
+      return wasDirty;
+    }
+
+    private synchronized void markDirty() {
+      dirty = true;
+    }
+
+    private synchronized boolean isDirty() {
+      return dirty;
+    }
+  }
+}
@@ -0,0 +1,631 @@
+package back.client_exp_backend.analytics;
+
+import back.client_exp_backend.cache.CompiledSurveySchema;
+import back.client_exp_backend.event.SurveyResponseSubmittedEvent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Ответы на один опрос по столбцам: строка — респондент (плотный индекс),
+ * столбец — вопрос. Для SINGLE_CHOICE хранится ordinal варианта, для
+ * MULTIPLE_CHOICE — маска вариантов, для RATING — оценка, для TEXT — код
+ * значения в словаре вопроса. Фильтры и подсчеты идут простыми циклами по
+ * массивам, для больших опросов — параллельно по диапазонам строк
+ */
+public final class SurveyColumns {
+
+  public static final int NO_ORDINAL = -1;
+  public static final short NO_RATING = Short.MIN_VALUE;
+  public static final int NO_TEXT = -1;
+
+  private static final int INITIAL_CAPACITY = 64;
+  // Диапазон строк одной параллельной задачи, кратен 64 (слову выборки)
+  private static final int CHUNK_ROWS = 16_384;
+
+  private final CompiledSurveySchema schema;
+  private final int parallelThreshold;
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+  private int rows;
+  private long[] clientIds = new long[INITIAL_CAPACITY];
+  private final Map<Long, Integer> rowByClient = new HashMap<>();
+
+  private final int[][] ordinals;
+  private final long[][] masks;
+  private final short[][] ratings;
+  private final int[][] textCodes;
+  private final TextDictionary[] dictionaries;
+  private long dictionaryBytes;
+
+  public SurveyColumns(CompiledSurveySchema schema, int parallelThreshold) {
+    this.schema = schema;
+    this.parallelThreshold = parallelThreshold;
+
+    int questions = schema.questionCount();
+    ordinals = new int[questions][];
+    masks = new long[questions][];
+    ratings = new short[questions][];
+    textCodes = new int[questions][];
+    dictionaries = new TextDictionary[questions];
+
+    for (int i = 0; i < questions; i++) {
+      switch (schema.questionType(i)) {
+        case SINGLE_CHOICE -> ordinals[i] = filled(new int[INITIAL_CAPACITY], NO_ORDINAL);
+        case MULTIPLE_CHOICE -> masks[i] = new long[INITIAL_CAPACITY];
+        case RATING -> ratings[i] = filled(new short[INITIAL_CAPACITY]);
+        case TEXT -> {
+          textCodes[i] = filled(new int[INITIAL_CAPACITY], NO_TEXT);
+          dictionaries[i] = new TextDictionary();
+        }
+        default -> {
+        }
+      }
+    }
+  }
+
+  public CompiledSurveySchema getSchema() {
+    return schema;
+  }
+
+  /**
+   * Записывает ответ респондента на вопрос; повторный ответ заменяет прежний
+   */
+  public void put(long clientId, Long questionId, Long optionMask, Integer numericAnswer, String textAnswer) {
+    lock.writeLock().lock();
+    try {
+      write(clientId, questionId, optionMask, numericAnswer, textAnswer);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void append(SurveyResponseSubmittedEvent event) {
+    lock.writeLock().lock();
+    try {
+      for (SurveyResponseSubmittedEvent.AnswerFact answer : event.getAnswers()) {
+        write(event.getClientId(), answer.getQuestionId(), answer.getOptionMask(), answer.getNumericAnswer(),
+            answer.getTextAnswer());
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Выполняет чтение под блокировкой чтения: добавление ответов ждет его
+   * окончания
+   */
+  public <R> R read(Function<SurveyColumns, R> query) {
+    lock.readLock().lock();
+    try {
+      return query.apply(this);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public int rowCount() {
+    return rows;
+  }
+
+  public long clientId(int row) {
+    return clientIds[row];
+  }
+
+  public String text(int questionIndex, int code) {
+    return dictionaries[questionIndex].texts.get(code);
+  }
+
+  public int dictionarySize(int questionIndex) {
+    return dictionaries[questionIndex] != null ? dictionaries[questionIndex].texts.size() : 0;
+  }
+
+  /**
+   * Приблизительный объем памяти столбцов в байтах
+   */
+  public long estimatedBytes() {
+    long perRow = Long.BYTES * 2L;
+    for (int i = 0; i < schema.questionCount(); i++) {
+      if (ordinals[i] != null || textCodes[i] != null) {
+        perRow += Integer.BYTES;
+      } else if (masks[i] != null) {
+        perRow += Long.BYTES;
+      } else if (ratings[i] != null) {
+        perRow += Short.BYTES;
+      }
+    }
+    // На строку также приходится запись в rowByClient
+    return (long) clientIds.length * perRow + rows * 48L + dictionaryBytes;
+  }
+
+  /**
+   * Строки, удовлетворяющие всем условиям, битовой картой по словам: бит
+   * row % 64 слова row / 64. Без условий выбираются все строки
+   */
+  public long[] select(List<ColumnPredicate> predicates) {
+    long[] words = new long[(rows + 63) >>> 6];
+    CompiledPredicate[] compiled = predicates.stream().map(this::compile).toArray(CompiledPredicate[]::new);
+
+    if (rows >= parallelThreshold) {
+      ForkJoinPool.commonPool().invoke(new SelectTask(compiled, words, 0, rows));
+    } else {
+      selectRange(compiled, words, 0, rows);
+    }
+    return words;
+  }
+
+  /**
+   * Количество выбранных строк по значениям столбца: индекс — ordinal
+   * варианта, оценка или код текста. Последний элемент — число выбранных
+   * строк, ответивших на вопрос
+   */
+  public long[] count(int questionIndex, long[] selection) {
+    int size = switch (schema.questionType(questionIndex)) {
+      case SINGLE_CHOICE, MULTIPLE_CHOICE -> Math.min(schema.optionCount(questionIndex), CompiledSurveySchema.MAX_MASK_OPTIONS);
+      case RATING -> maxRating(questionIndex) + 1;
+      case TEXT -> dictionarySize(questionIndex);
+      default -> 0;
+    };
+
+    if (rows >= parallelThreshold) {
+      return ForkJoinPool.commonPool().invoke(new CountTask(questionIndex, selection, size, 0, rows));
+    }
+    long[] counts = new long[size + 1];
+    countRange(questionIndex, selection, counts, 0, rows);
+    return counts;
+  }
+
+  /**
+   * Значения признака по строкам для таблицы сопряженности: номер категории
+   * (-1 — нет ответа) либо маска категорий для множественного выбора
+   */
+  public Axis axis(int questionIndex) {
+    int optionCount = Math.min(schema.optionCount(questionIndex), CompiledSurveySchema.MAX_MASK_OPTIONS);
+    return switch (schema.questionType(questionIndex)) {
+      case SINGLE_CHOICE -> new Axis(ordinals[questionIndex], null, optionCount);
+      case MULTIPLE_CHOICE -> new Axis(null, masks[questionIndex], optionCount);
+      case RATING -> {
+        short[] column = ratings[questionIndex];
+        int[] codes = new int[rows];
+        for (int row = 0; row < rows; row++) {
+          codes[row] = column[row] >= 0 ? column[row] : -1;
+        }
+        yield new Axis(codes, null, maxRating(questionIndex) + 1);
+      }
+      case TEXT -> new Axis(textCodes[questionIndex], null, dictionarySize(questionIndex));
+      default -> throw new IllegalArgumentException("Вопрос типа " + schema.questionType(questionIndex)
+          + " нельзя использовать в таблице сопряженности");
+    };
+  }
+
+  /**
+   * Таблица сопряженности двух признаков: ячейка [i * columnAxis.categories + j]
+   * — число респондентов с категорией i по строкам и j по столбцам. При
+   * множественном выборе респондент попадает во все выбранные категории
+   */
+  public long[] crossTabulate(Axis rowAxis, Axis columnAxis) {
+    int size = rowAxis.categories() * columnAxis.categories();
+    if (rows >= parallelThreshold) {
+      return ForkJoinPool.commonPool().invoke(new CrossTabTask(rowAxis, columnAxis, size, 0, rows));
+    }
+    long[] counts = new long[size];
+    crossTabulateRange(rowAxis, columnAxis, counts, 0, rows);
+    return counts;
+  }
+
+  private static void crossTabulateRange(Axis rowAxis, Axis columnAxis, long[] counts, int from, int to) {
+    int width = columnAxis.categories();
+    for (int row = from; row < to; row++) {
+      if (rowAxis.masks() == null) {
+        int category = rowAxis.codes()[row];
+        if (category >= 0 && category < rowAxis.categories()) {
+          addColumns(columnAxis, row, counts, category * width);
+        }
+      } else {
+        for (long rest = rowAxis.masks()[row]; rest != 0; rest &= rest - 1) {
+          int category = Long.numberOfTrailingZeros(rest);
+          if (category < rowAxis.categories()) {
+            addColumns(columnAxis, row, counts, category * width);
+          }
+        }
+      }
+    }
+  }
+
+  private static void addColumns(Axis columnAxis, int row, long[] counts, int offset) {
+    if (columnAxis.masks() == null) {
+      int category = columnAxis.codes()[row];
+      if (category >= 0 && category < columnAxis.categories()) {
+        counts[offset + category]++;
+      }
+    } else {
+      for (long rest = columnAxis.masks()[row]; rest != 0; rest &= rest - 1) {
+        int category = Long.numberOfTrailingZeros(rest);
+        if (category < columnAxis.categories()) {
+          counts[offset + category]++;
+        }
+      }
+    }
+  }
+
+  /**
+   * Разбивает строки на диапазоны, кратные 64, чтобы параллельные задачи
+   * писали в разные слова выборки
+   */
+  private static int split(int from, int to) {
+    return from + (((to - from) >>> 1) & ~63);
+  }
+
+  private void selectRange(CompiledPredicate[] predicates, long[] words, int from, int to) {
+    for (int word = from >>> 6; word << 6 < to; word++) {
+      int start = word << 6;
+      int end = Math.min(start + 64, to);
+      long bits = end - start == 64 ? -1L : (1L << (end - start)) - 1;
+      for (int p = 0; p < predicates.length && bits != 0; p++) {
+        bits &= predicates[p].match(start, end);
+      }
+      words[word] = bits;
+    }
+  }
+
+  private void countRange(int questionIndex, long[] selection, long[] counts, int from, int to) {
+    int answeredIndex = counts.length - 1;
+    long answered = 0;
+    switch (schema.questionType(questionIndex)) {
+      case SINGLE_CHOICE -> {
+        int[] column = ordinals[questionIndex];
+        for (int row = from; row < to; row++) {
+          int ordinal = column[row];
+          if (ordinal != NO_ORDINAL && (selection[row >>> 6] & (1L << row)) != 0) {
+            if (ordinal < answeredIndex) {
+              counts[ordinal]++;
+            }
+            answered++;
+          }
+        }
+      }
+      case MULTIPLE_CHOICE -> {
+        long[] column = masks[questionIndex];
+        for (int row = from; row < to; row++) {
+          long mask = column[row];
+          if (mask != 0 && (selection[row >>> 6] & (1L << row)) != 0) {
+            for (long rest = mask; rest != 0; rest &= rest - 1) {
+              int ordinal = Long.numberOfTrailingZeros(rest);
+              if (ordinal < answeredIndex) {
+                counts[ordinal]++;
+              }
+            }
+            answered++;
+          }
+        }
+      }
+      case RATING -> {
+        short[] column = ratings[questionIndex];
+        for (int row = from; row < to; row++) {
+          short rating = column[row];
+          if (rating != NO_RATING && (selection[row >>> 6] & (1L << row)) != 0) {
+            if (rating >= 0 && rating < answeredIndex) {
+              counts[rating]++;
+            }
+            answered++;
+          }
+        }
+      }
+      case TEXT -> {
+        int[] column = textCodes[questionIndex];
+        for (int row = from; row < to; row++) {
+          int code = column[row];
+          if (code != NO_TEXT && (selection[row >>> 6] & (1L << row)) != 0) {
+            if (code < answeredIndex) {
+              counts[code]++;
+            }
+            answered++;
+          }
+        }
+      }
+      default -> {
+      }
+    }
+    counts[answeredIndex] += answered;
+  }
+
+  private int maxRating(int questionIndex) {
+    short max = 0;
+    short[] column = ratings[questionIndex];
+    for (int row = 0; row < rows; row++) {
+      max = (short) Math.max(max, column[row]);
+    }
+    return max;
+  }
+
+  private CompiledPredicate compile(ColumnPredicate predicate) {
+    int q = predicate.questionIndex();
+    return switch (schema.questionType(q)) {
+      case SINGLE_CHOICE -> {
+        long options = predicate.options();
+        int[] column = ordinals[q];
+        yield (start, end) -> {
+          long bits = 0;
+          for (int row = start; row < end; row++) {
+            int ordinal = column[row];
+            if (ordinal != NO_ORDINAL && (options == 0 || (options & (1L << ordinal)) != 0)) {
+              bits |= 1L << (row - start);
+            }
+          }
+          return bits;
+        };
+      }
+      case MULTIPLE_CHOICE -> {
+        long options = predicate.options();
+        long[] column = masks[q];
+        yield (start, end) -> {
+          long bits = 0;
+          for (int row = start; row < end; row++) {
+            long mask = column[row];
+            if (mask != 0 && (options == 0 || (mask & options) != 0)) {
+              bits |= 1L << (row - start);
+            }
+          }
+          return bits;
+        };
+      }
+      case RATING -> {
+        int min = predicate.minValue() != null ? predicate.minValue() : Integer.MIN_VALUE;
+        int max = predicate.maxValue() != null ? predicate.maxValue() : Integer.MAX_VALUE;
+        short[] column = ratings[q];
+        yield (start, end) -> {
+          long bits = 0;
+          for (int row = start; row < end; row++) {
+            short rating = column[row];
+            if (rating != NO_RATING && rating >= min && rating <= max) {
+              bits |= 1L << (row - start);
+            }
+          }
+          return bits;
+        };
+      }
+      case TEXT -> {
+        Integer wanted = predicate.text() != null ? dictionaries[q].codes.get(predicate.text()) : null;
+        if (predicate.text() != null && wanted == null) {
+          yield (start, end) -> 0L;
+        }
+        int[] column = textCodes[q];
+        yield (start, end) -> {
+          long bits = 0;
+          for (int row = start; row < end; row++) {
+            int code = column[row];
+            if (code != NO_TEXT && (wanted == null || code == wanted)) {
+              bits |= 1L << (row - start);
+            }
+          }
+          return bits;
+        };
+      }
+      default -> (start, end) -> 0L;
+    };
+  }
+
+  private void write(long clientId, Long questionId, Long optionMask, Integer numericAnswer, String textAnswer) {
+    int questionIndex = schema.indexOf(questionId);
+    if (questionIndex < 0) {
+      return;
+    }
+
+    int row = row(clientId);
+    switch (schema.questionType(questionIndex)) {
+      case SINGLE_CHOICE -> {
+        if (optionMask != null && optionMask != 0) {
+          ordinals[questionIndex][row] = Long.numberOfTrailingZeros(optionMask);
+        }
+      }
+      case MULTIPLE_CHOICE -> {
+        if (optionMask != null) {
+          masks[questionIndex][row] = optionMask;
+        }
+      }
+      case RATING -> {
+        if (numericAnswer != null && numericAnswer > NO_RATING && numericAnswer <= Short.MAX_VALUE) {
+          ratings[questionIndex][row] = numericAnswer.shortValue();
+        }
+      }
+      case TEXT -> {
+        if (textAnswer != null) {
+          textCodes[questionIndex][row] = code(questionIndex, textAnswer);
+        }
+      }
+      default -> {
+      }
+    }
+  }
+
+  private int row(long clientId) {
+    Integer existing = rowByClient.get(clientId);
+    if (existing != null) {
+      return existing;
+    }
+
+    if (rows == clientIds.length) {
+      grow(clientIds.length * 2);
+    }
+    int row = rows++;
+    clientIds[row] = clientId;
+    rowByClient.put(clientId, row);
+    return row;
+  }
+
+  private void grow(int capacity) {
+    clientIds = Arrays.copyOf(clientIds, capacity);
+    for (int i = 0; i < schema.questionCount(); i++) {
+      if (ordinals[i] != null) {
+        int oldLength = ordinals[i].length;
+        ordinals[i] = Arrays.copyOf(ordinals[i], capacity);
+        Arrays.fill(ordinals[i], oldLength, capacity, NO_ORDINAL);
+      } else if (masks[i] != null) {
+        masks[i] = Arrays.copyOf(masks[i], capacity);
+      } else if (ratings[i] != null) {
+        int oldLength = ratings[i].length;
+        ratings[i] = Arrays.copyOf(ratings[i], capacity);
+        Arrays.fill(ratings[i], oldLength, capacity, NO_RATING);
+      } else if (textCodes[i] != null) {
+        int oldLength = textCodes[i].length;
+        textCodes[i] = Arrays.copyOf(textCodes[i], capacity);
+        Arrays.fill(textCodes[i], oldLength, capacity, NO_TEXT);
+      }
+    }
+  }
+
+  private int code(int questionIndex, String text) {
+    TextDictionary dictionary = dictionaries[questionIndex];
+    Integer code = dictionary.codes.get(text);
+    if (code == null) {
+      code = dictionary.texts.size();
+      dictionary.texts.add(text);
+      dictionary.codes.put(text, code);
+      dictionaryBytes += 2L * text.length() + 96;
+    }
+    return code;
+  }
+
+  private static int[] filled(int[] array, int value) {
+    Arrays.fill(array, value);
+    return array;
+  }
+
+  private static short[] filled(short[] array) {
+    Arrays.fill(array, NO_RATING);
+    return array;
+  }
+
+  /**
+   * Условие, проверяющее строки [start, end) одного слова выборки
+   */
+  @FunctionalInterface
+  private interface CompiledPredicate {
+    long match(int start, int end);
+  }
+
+  /**
+   * Признак для {@link #crossTabulate}: codes — категория каждой строки (-1 —
+   * нет значения) либо masks — наборы категорий
+   */
+  public record Axis(int[] codes, long[] masks, int categories) {
+    public static Axis of(int[] codes, int categories) {
+      return new Axis(codes, null, categories);
+    }
+
+    public boolean isMultiple() {
+      return masks != null;
+    }
+  }
+
+  private final class SelectTask extends RecursiveAction {
+    private final CompiledPredicate[] predicates;
+    private final long[] words;
+    private final int from;
+    private final int to;
+
+    private SelectTask(CompiledPredicate[] predicates, long[] words, int from, int to) {
+      this.predicates = predicates;
+      this.words = words;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= CHUNK_ROWS) {
+        selectRange(predicates, words, from, to);
+        return;
+      }
+      int middle = split(from, to);
+      invokeAll(new SelectTask(predicates, words, from, middle), new SelectTask(predicates, words, middle, to));
+    }
+  }
+
+  private final class CountTask extends RecursiveTask<long[]> {
+    private final int questionIndex;
+    private final long[] selection;
+    private final int size;
+    private final int from;
+    private final int to;
+
+    private CountTask(int questionIndex, long[] selection, int size, int from, int to) {
+      this.questionIndex = questionIndex;
+      this.selection = selection;
+      this.size = size;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected long[] compute() {
+      if (to - from <= CHUNK_ROWS) {
+        long[] counts = new long[size + 1];
+        countRange(questionIndex, selection, counts, from, to);
+        return counts;
+      }
+
+      int middle = split(from, to);
+      CountTask right = new CountTask(questionIndex, selection, size, middle, to);
+      right.fork();
+      long[] counts = new CountTask(questionIndex, selection, size, from, middle).compute();
+      long[] rightCounts = right.join();
+      for (int i = 0; i < counts.length; i++) {
+        counts[i] += rightCounts[i];
+      }
+      return counts;
+    }
+  }
+
+  private final class CrossTabTask extends RecursiveTask<long[]> {
+    private final Axis rowAxis;
+    private final Axis columnAxis;
+    private final int size;
+    private final int from;
+    private final int to;
+
+    private CrossTabTask(Axis rowAxis, Axis columnAxis, int size, int from, int to) {
+      this.rowAxis = rowAxis;
+      this.columnAxis = columnAxis;
+      this.size = size;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected long[] compute() {
+      if (to - from <= CHUNK_ROWS) {
+        long[] counts = new long[size];
+        crossTabulateRange(rowAxis, columnAxis, counts, from, to);
+        return counts;
+      }
+
+      int middle = split(from, to);
+      CrossTabTask right = new CrossTabTask(rowAxis, columnAxis, size, middle, to);
+      right.fork();
+      long[] counts = new CrossTabTask(rowAxis, columnAxis, size, from, middle).compute();
+      long[] rightCounts = right.join();
+      for (int i = 0; i < counts.length; i++) {
+        counts[i] += rightCounts[i];
+      }
+      return counts;
+    }
+  }
+
+  /**
+   * Словарь текстовых ответов вопроса: код — позиция текста в texts
+   */
+  private static final class TextDictionary {
+    private final List<String> texts = new ArrayList<>();
+    private final Map<String, Integer> codes = new HashMap<>();
+  }
+}
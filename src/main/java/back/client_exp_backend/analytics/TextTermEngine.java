@@ -0,0 +1,400 @@
+package back.client_exp_backend.analytics;
+
+import back.client_exp_backend.cache.CompiledSurveySchema;
+import back.client_exp_backend.cache.SurveySchemaCache;
+import back.client_exp_backend.event.SurveyDefinitionChangedEvent;
+import back.client_exp_backend.event.SurveyResponseSubmittedEvent;
+import back.client_exp_backend.models.TextTermSketch;
+import back.client_exp_backend.models.enums.QuestionType;
+import back.client_exp_backend.repository.TextTermSketchRepository;
+import back.client_exp_backend.util.CountMinSketch;
+import back.client_exp_backend.util.Hashing;
+import back.client_exp_backend.util.TopK;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Частые слова и пары слов в ответах на вопросы TEXT. Для каждого вопроса
+ * ведутся Count-Min Sketch и топ-K отдельно для слов и для пар слов. Веса
+ * затухают экспоненциально с периодом полураспада analytics.text.half-life-hours:
+ * новый ответ добавляется с весом exp(λ(t - landmark)), а при чтении веса
+ * приводятся к текущему моменту. Состояние периодически сохраняется в
+ * text_term_sketches и загружается при запуске для вопросов, которые еще
+ * существуют
+ */
+@Component
+@Slf4j
+public class TextTermEngine implements SmartInitializingSingleton {
+
+  // Когда вес новых ответов относительно landmark превышает порог, все веса пересчитываются
+  private static final double RESCALE_THRESHOLD = 1e6;
+  // Без снимков восстанавливаем ответы за столько периодов полураспада (вклад старших < 1/16)
+  private static final int REBUILD_HALF_LIVES = 4;
+  private static final int STATE_VERSION = 1;
+
+  private static final String REBUILD_SQL = "SELECT ca.survey_id, ca.question_id, ca.text_answer, ca.created_at "
+      + "FROM client_answers ca JOIN questions q ON q.id = ca.question_id "
+      + "WHERE q.type = 'TEXT' AND ca.text_answer IS NOT NULL AND ca.created_at >= ? "
+      + "ORDER BY ca.created_at";
+
+  // Текстовые вопросы существующих опросов: снимки остальных при загрузке отбрасываются
+  private static final String TEXT_QUESTIONS_SQL = "SELECT q.id, q.survey_id FROM questions q "
+      + "JOIN surveys s ON s.id = q.survey_id WHERE q.type = 'TEXT'";
+
+  private static final String SNAPSHOT_SQL = "INSERT INTO text_term_sketches "
+      + "(question_id, survey_id, state, snapshot_at) VALUES (?, ?, ?, ?) "
+      + "ON CONFLICT (question_id) DO UPDATE SET survey_id = EXCLUDED.survey_id, "
+      + "state = EXCLUDED.state, snapshot_at = EXCLUDED.snapshot_at";
+
+  private final JdbcTemplate jdbcTemplate;
+  private final SurveySchemaCache surveySchemaCache;
+  private final TextTermSketchRepository sketchRepository;
+  private final double lambda;
+  private final long halfLifeSeconds;
+  private final int sketchWidth;
+  private final int sketchDepth;
+  private final int topK;
+
+  // surveyId -> questionId -> частоты слов
+  private final Map<Long, Map<Long, QuestionTerms>> surveys = new ConcurrentHashMap<>();
+
+  public TextTermEngine(JdbcTemplate jdbcTemplate,
+      SurveySchemaCache surveySchemaCache,
+      TextTermSketchRepository sketchRepository,
+      @Value("${analytics.text.half-life-hours:168}") long halfLifeHours,
+      @Value("${analytics.text.sketch-width:2048}") int sketchWidth,
+      @Value("${analytics.text.sketch-depth:4}") int sketchDepth,
+      @Value("${analytics.text.top-k:200}") int topK) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.surveySchemaCache = surveySchemaCache;
+    this.sketchRepository = sketchRepository;
+    this.halfLifeSeconds = halfLifeHours * 3600;
+    this.lambda = Math.log(2) / halfLifeSeconds;
+    this.sketchWidth = sketchWidth;
+    this.sketchDepth = sketchDepth;
+    this.topK = topK;
+  }
+
+  @Override
+  public void afterSingletonsInstantiated() {
+    long started = System.currentTimeMillis();
+    try {
+      List<TextTermSketch> snapshots = sketchRepository.findAll();
+      if (snapshots.isEmpty()) {
+        rebuild();
+      } else {
+        restore(snapshots);
+      }
+      log.info("Частоты слов в текстовых ответах загружены за {} мс: опросов {}",
+          System.currentTimeMillis() - started, surveys.size());
+    } catch (Exception e) {
+      // Без частот слов приложение работает, топ будет наполняться новыми ответами
+      log.error("Не удалось загрузить частоты слов в текстовых ответах", e);
+    }
+  }
+
+  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+  public void onSurveyResponseSubmitted(SurveyResponseSubmittedEvent event) {
+    CompiledSurveySchema schema = null;
+    long now = toEpochSecond(event.getSubmittedAt());
+
+    for (SurveyResponseSubmittedEvent.AnswerFact answer : event.getAnswers()) {
+      if (answer.getTextAnswer() == null || answer.getTextAnswer().isBlank()) {
+        continue;
+      }
+
+      schema = schema != null ? schema : surveySchemaCache.get(event.getSurveyId());
+      int questionIndex = schema.indexOf(answer.getQuestionId());
+      if (questionIndex < 0 || schema.questionType(questionIndex) != QuestionType.TEXT) {
+        continue;
+      }
+
+      terms(event.getSurveyId(), answer.getQuestionId(), now).record(answer.getTextAnswer(), now);
+    }
+  }
+
+  /**
+   * Удаляет частоты удаленного опроса, а также вопросов, которых больше нет в
+   * опросе или которые перестали быть текстовыми
+   */
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onSurveyDefinitionChanged(SurveyDefinitionChangedEvent event) {
+    Long surveyId = event.getSurveyId();
+    if (event.isDeleted()) {
+      surveys.remove(surveyId);
+      sketchRepository.deleteBySurveyId(surveyId);
+      return;
+    }
+
+    Map<Long, QuestionTerms> questions = surveys.get(surveyId);
+    if (questions == null) {
+      return;
+    }
+
+    CompiledSurveySchema schema = surveySchemaCache.get(surveyId);
+    List<Long> removed = new ArrayList<>();
+    for (Long questionId : questions.keySet()) {
+      int questionIndex = schema.indexOf(questionId);
+      if (questionIndex < 0 || schema.questionType(questionIndex) != QuestionType.TEXT) {
+        removed.add(questionId);
+      }
+    }
+    if (!removed.isEmpty()) {
+      removed.forEach(questions::remove);
+      sketchRepository.deleteByQuestionIds(removed);
+    }
+  }
+
+  /**
+   * До limit самых частых слов или пар слов с весами, приведенными к текущему
+   * моменту; пустой список, если ответов на вопрос еще нет
+   */
+  public List<TopK.Entry> getTop(Long surveyId, Long questionId, boolean bigrams, int limit) {
+    Map<Long, QuestionTerms> questions = surveys.get(surveyId);
+    QuestionTerms terms = questions != null ? questions.get(questionId) : null;
+    if (terms == null) {
+      return List.of();
+    }
+    return terms.top(bigrams, limit, System.currentTimeMillis() / 1000);
+  }
+
+  public long getHalfLifeHours() {
+    return halfLifeSeconds / 3600;
+  }
+
+  /**
+   * Сохраняет измененные с прошлого снимка частоты одной пачкой
+   */
+  @Scheduled(fixedDelayString = "${analytics.text.snapshot-interval-ms:300000}")
+  public void snapshot() {
+    List<Object[]> rows = new ArrayList<>();
+    surveys.forEach((surveyId, questions) -> questions.forEach((questionId, terms) -> {
+      byte[] state = terms.serializeIfDirty();
+      if (state != null) {
+        rows.add(new Object[] { questionId, surveyId, state });
+      }
+    }));
+
+    if (rows.isEmpty()) {
+      return;
+    }
+
+    Timestamp snapshotAt = Timestamp.valueOf(LocalDateTime.now());
+    try {
+      jdbcTemplate.batchUpdate(SNAPSHOT_SQL, new BatchPreparedStatementSetter() {
+        @Override
+        public void setValues(PreparedStatement ps, int i) throws SQLException {
+          Object[] row = rows.get(i);
+          ps.setLong(1, (Long) row[0]);
+          ps.setLong(2, (Long) row[1]);
+          ps.setBytes(3, (byte[]) row[2]);
+          ps.setTimestamp(4, snapshotAt);
+        }
+
+        @Override
+        public int getBatchSize() {
+          return rows.size();
+        }
+      });
+    } catch (Exception e) {
+      // Повторим при следующем снимке
+      rows.forEach(row -> markDirty((Long) row[1], (Long) row[0]));
+      log.error("Не удалось сохранить снимок частот слов в текстовых ответах", e);
+      return;
+    }
+    log.debug("Сохранен снимок частот слов {} вопросов", rows.size());
+  }
+
+  @PreDestroy
+  public void snapshotOnShutdown() {
+    snapshot();
+  }
+
+  /**
+   * Загружает снимки вопросов, которые по-прежнему текстовые и принадлежат
+   * существующему опросу. Снимки удаленных, пока приложение не работало,
+   * опросов и вопросов удаляются из text_term_sketches
+   */
+  private void restore(List<TextTermSketch> snapshots) throws IOException {
+    Map<Long, Long> textQuestions = new HashMap<>();
+    jdbcTemplate.query(TEXT_QUESTIONS_SQL, rs -> {
+      textQuestions.put(rs.getLong(1), rs.getLong(2));
+    });
+
+    List<Long> stale = new ArrayList<>();
+    for (TextTermSketch snapshot : snapshots) {
+      if (!snapshot.getSurveyId().equals(textQuestions.get(snapshot.getQuestionId()))) {
+        stale.add(snapshot.getQuestionId());
+        continue;
+      }
+      surveys.computeIfAbsent(snapshot.getSurveyId(), id -> new ConcurrentHashMap<>())
+          .put(snapshot.getQuestionId(), QuestionTerms.deserialize(snapshot.getState()));
+    }
+    if (!stale.isEmpty()) {
+      sketchRepository.deleteByQuestionIds(stale);
+      log.info("Удалены снимки частот слов вопросов, которых больше нет: {}", stale.size());
+    }
+  }
+
+  private QuestionTerms terms(Long surveyId, Long questionId, long now) {
+    return surveys.computeIfAbsent(surveyId, id -> new ConcurrentHashMap<>())
+        .computeIfAbsent(questionId, id -> new QuestionTerms(now, sketchWidth, sketchDepth, topK, lambda));
+  }
+
+  private void markDirty(Long surveyId, Long questionId) {
+    Map<Long, QuestionTerms> questions = surveys.get(surveyId);
+    QuestionTerms terms = questions != null ? questions.get(questionId) : null;
+    if (terms != null) {
+      terms.markDirty();
+    }
+  }
+
+  /**
+   * Заново проходит текстовые ответы за последние несколько периодов
+   * полураспада. Строки читаются по одной, в памяти держатся только sketch
+   */
+  private void rebuild() {
+    LocalDateTime since = LocalDateTime.now().minusSeconds(halfLifeSeconds * REBUILD_HALF_LIVES);
+    jdbcTemplate.query(REBUILD_SQL, rs -> {
+      long submittedAt = toEpochSecond(rs.getTimestamp(4).toLocalDateTime());
+      terms(rs.getLong(1), rs.getLong(2), submittedAt).record(rs.getString(3), submittedAt);
+    }, Timestamp.valueOf(since));
+  }
+
+  private static long toEpochSecond(LocalDateTime dateTime) {
+    return dateTime.atZone(ZoneId.systemDefault()).toEpochSecond();
+  }
+
+  private static long hash(String term) {
+    return Hashing.hash64(term.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Sketch и топ-K слов и пар слов одного вопроса. Веса хранятся относительно
+   * момента landmark (секунды эпохи)
+   */
+  private static final class QuestionTerms {
+    // Сохраняется в снимке вместе с весами, которые от нее зависят
+    private final double lambda;
+    private long landmark;
+    private final CountMinSketch unigramSketch;
+    private final TopK unigramTop;
+    private final CountMinSketch bigramSketch;
+    private final TopK bigramTop;
+    private boolean dirty;
+
+    private QuestionTerms(long landmark, int width, int depth, int topK, double lambda) {
+      this(landmark, new CountMinSketch(width, depth), new TopK(topK),
+          new CountMinSketch(width, depth), new TopK(topK), lambda);
+    }
+
+    private QuestionTerms(long landmark, CountMinSketch unigramSketch, TopK unigramTop,
+        CountMinSketch bigramSketch, TopK bigramTop, double lambda) {
+      this.landmark = landmark;
+      this.unigramSketch = unigramSketch;
+      this.unigramTop = unigramTop;
+      this.bigramSketch = bigramSketch;
+      this.bigramTop = bigramTop;
+      this.lambda = lambda;
+    }
+
+    private synchronized void record(String text, long now) {
+      double weight = Math.exp(lambda * (now - landmark));
+      if (weight > RESCALE_THRESHOLD) {
+        rescale(now);
+        weight = 1;
+      }
+
+      double termWeight = weight;
+      TextTokenizer.tokenize(text,
+          term -> unigramTop.offer(term, unigramSketch.add(hash(term), termWeight)),
+          pair -> bigramTop.offer(pair, bigramSketch.add(hash(pair), termWeight)));
+      dirty = true;
+    }
+
+    /**
+     * Переносит landmark на now, чтобы веса не переполнились
+     */
+    private void rescale(long now) {
+      double factor = Math.exp(-lambda * (now - landmark));
+      unigramSketch.scale(factor);
+      unigramTop.scale(factor);
+      bigramSketch.scale(factor);
+      bigramTop.scale(factor);
+      landmark = now;
+    }
+
+    private synchronized List<TopK.Entry> top(boolean bigrams, int limit, long now) {
+      double decay = Math.exp(-lambda * (now - landmark));
+      return (bigrams ? bigramTop : unigramTop).top(limit).stream()
+          .map(entry -> new TopK.Entry(entry.key(), entry.weight() * decay))
+          .toList();
+    }
+
+    private synchronized void markDirty() {
+      dirty = true;
+    }
+
+    private synchronized byte[] serializeIfDirty() {
+      if (!dirty) {
+        return null;
+      }
+
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes))) {
+        out.writeInt(STATE_VERSION);
+        out.writeDouble(lambda);
+        out.writeLong(landmark);
+        unigramSketch.write(out);
+        unigramTop.write(out);
+        bigramSketch.write(out);
+        bigramTop.write(out);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      dirty = false;
+      return bytes.toByteArray();
+    }
+
+    private static QuestionTerms deserialize(byte[] state) throws IOException {
+      try (DataInputStream in = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(state)))) {
+        int version = in.readInt();
+        if (version != STATE_VERSION) {
+          throw new IOException("Неизвестная версия снимка частот слов: " + version);
+        }
+        double lambda = in.readDouble();
+        long landmark = in.readLong();
+        return new QuestionTerms(landmark, CountMinSketch.read(in), TopK.read(in),
+            CountMinSketch.read(in), TopK.read(in), lambda);
+      }
+    }
+  }
+}
@@ -0,0 +1,75 @@
+package back.client_exp_backend.analytics;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Разбивает свободный текст на слова и пары соседних слов. Текст приводится к
+ * нижнему регистру, ё заменяется на е, числа и короткие слова отбрасываются.
+ * Стоп-слова не попадают в результат и разрывают пары, чтобы «доставка и
+ * оплата» не давала пару «доставка оплата». Частица «не» отдельным словом не
+ * выдается, а только началом пары со следующим словом: «не работает» —
+ * важная для отзывов фраза, а «приложение не» смысла не несет
+ */
+public final class TextTokenizer {
+
+  private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+  private static final Locale RUSSIAN = Locale.forLanguageTag("ru");
+  private static final int MIN_LENGTH = 2;
+  private static final String NEGATION = "не";
+
+  private static final Set<String> STOP_WORDS = Set.of(
+      "и", "в", "во", "на", "с", "со", "по", "к", "ко", "у", "о", "об", "от", "до", "из", "за", "для", "при",
+      "без", "над", "под", "про", "через", "а", "но", "да", "или", "либо", "что", "чтобы", "как", "так", "также",
+      "тоже", "же", "ли", "бы", "то", "это", "этот", "эта", "эти", "этого", "этой", "том", "тот", "та", "те",
+      "я", "мы", "ты", "вы", "он", "она", "оно", "они", "мне", "меня", "нам", "нас", "вам", "вас", "ему", "его",
+      "ей", "ее", "им", "их", "мой", "моя", "мое", "мои", "наш", "ваш", "свой", "был", "была", "было",
+      "были", "быть", "есть", "будет", "уже", "еще", "вот", "там", "тут", "здесь", "где", "когда",
+      "если", "только", "очень", "все", "всех", "весь", "вся", "который", "которая", "которые", "чем",
+      "ну", "раз", "ни", "даже", "можно", "нужно", "просто", "the", "and", "or", "of", "to", "is");
+
+  private TextTokenizer() {
+  }
+
+  public static void tokenize(String text, Consumer<String> unigrams, Consumer<String> bigrams) {
+    if (text == null || text.isBlank()) {
+      return;
+    }
+
+    String previous = null;
+    for (String raw : SEPARATORS.split(text.toLowerCase(RUSSIAN).replace('ё', 'е'))) {
+      if (raw.isEmpty()) {
+        continue;
+      }
+      if (raw.equals(NEGATION)) {
+        previous = NEGATION;
+        continue;
+      }
+      if (STOP_WORDS.contains(raw) || isNumber(raw)) {
+        previous = null;
+        continue;
+      }
+      if (raw.length() < MIN_LENGTH) {
+        // Одиночные буквы не несут смысла, но и пару не разрывают
+        continue;
+      }
+
+      unigrams.accept(raw);
+      if (previous != null) {
+        bigrams.accept(previous + " " + raw);
+      }
+      previous = raw;
+    }
+  }
+
+  private static boolean isNumber(String token) {
+    for (int i = 0; i < token.length(); i++) {
+      if (!Character.isDigit(token.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,225 @@
+package back.client_exp_backend.audit;
+
+import back.client_exp_backend.config.PayloadAuditProperties;
+import back.client_exp_backend.dto.PayloadAuditStatsDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Журнал тел запросов и ответов. Тело записывается с заданной долей, не
+ * больше maxBytes байт компактного JSON, общим преднастроенным ObjectWriter.
+ * Запись в лог выполняет фоновый поток из ограниченной очереди, поэтому поток
+ * запроса не ждет логгер; при переполнении очереди тело отбрасывается
+ */
+@Component
+@Slf4j
+public class PayloadAuditLogger {
+
+  // Отдельный логгер, чтобы тела можно было направить в свой файл или отключить
+  private static final Logger AUDIT = LoggerFactory.getLogger("payload-audit");
+
+  private final PayloadAuditProperties properties;
+  private final ObjectWriter writer;
+
+  private BlockingQueue<Entry> queue;
+  private Thread worker;
+  private volatile boolean running;
+
+  private final Map<String, EndpointCounters> counters = new ConcurrentHashMap<>();
+  private final AtomicLong failedTotal = new AtomicLong();
+
+  public PayloadAuditLogger(PayloadAuditProperties properties, ObjectMapper objectMapper) {
+    this.properties = properties;
+    this.writer = objectMapper.writer();
+  }
+
+  @PostConstruct
+  public void start() {
+    if (!properties.isEnabled()) {
+      return;
+    }
+
+    queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+    running = true;
+    worker = new Thread(this::drainLoop, "payload-audit");
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    if (worker == null) {
+      return;
+    }
+
+    running = false;
+    try {
+      worker.join(TimeUnit.SECONDS.toMillis(5));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Ставит тело в очередь на запись в лог с учетом доли и размера, заданных
+   * для точки входа endpoint
+   */
+  public void audit(String endpoint, String message, Object payload) {
+    if (!running || !AUDIT.isInfoEnabled()) {
+      return;
+    }
+
+    EndpointCounters endpointCounters = counters.computeIfAbsent(endpoint, key -> new EndpointCounters());
+    double sampleRate = properties.sampleRate(endpoint);
+    if (sampleRate <= 0 || (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+      endpointCounters.sampledOut.incrementAndGet();
+      return;
+    }
+
+    // Сериализуем сразу: объект запроса может измениться после возврата
+    CappedOutputStream out = new CappedOutputStream(properties.maxBytes(endpoint));
+    try {
+      writer.writeValue(out, payload);
+    } catch (IOException | RuntimeException e) {
+      // При переполнении буфера Jackson может обернуть исключение, поэтому
+      // признак обрезки берется из самого буфера
+      if (!out.isTruncated()) {
+        failedTotal.incrementAndGet();
+        log.debug("Не удалось сериализовать тело для журнала {}: {}", endpoint, e.getMessage());
+        return;
+      }
+    }
+    if (out.isTruncated()) {
+      endpointCounters.truncated.incrementAndGet();
+    }
+
+    if (!queue.offer(new Entry(endpoint, message, out.toByteArray(), out.isTruncated()))) {
+      endpointCounters.dropped.incrementAndGet();
+    }
+  }
+
+  public PayloadAuditStatsDto getStats() {
+    Map<String, PayloadAuditStatsDto.EndpointStats> endpoints = new TreeMap<>();
+    long logged = 0, sampledOut = 0, dropped = 0, truncated = 0;
+    for (Map.Entry<String, EndpointCounters> entry : counters.entrySet()) {
+      EndpointCounters endpointCounters = entry.getValue();
+      PayloadAuditStatsDto.EndpointStats stats = PayloadAuditStatsDto.EndpointStats.builder()
+          .sampleRate(properties.sampleRate(entry.getKey()))
+          .maxBytes(properties.maxBytes(entry.getKey()))
+          .logged(endpointCounters.logged.get())
+          .sampledOut(endpointCounters.sampledOut.get())
+          .dropped(endpointCounters.dropped.get())
+          .truncated(endpointCounters.truncated.get())
+          .build();
+      endpoints.put(entry.getKey(), stats);
+      logged += stats.getLogged();
+      sampledOut += stats.getSampledOut();
+      dropped += stats.getDropped();
+      truncated += stats.getTruncated();
+    }
+
+    return PayloadAuditStatsDto.builder()
+        .enabled(properties.isEnabled())
+        .queueDepth(queue != null ? queue.size() : 0)
+        .queueCapacity(properties.getQueueCapacity())
+        .loggedTotal(logged)
+        .sampledOutTotal(sampledOut)
+        .droppedTotal(dropped)
+        .truncatedTotal(truncated)
+        .failedTotal(failedTotal.get())
+        .endpoints(endpoints)
+        .build();
+  }
+
+  private void drainLoop() {
+    while (running || !queue.isEmpty()) {
+      try {
+        Entry entry = queue.poll(500, TimeUnit.MILLISECONDS);
+        if (entry == null) {
+          continue;
+        }
+
+        String body = new String(entry.body, StandardCharsets.UTF_8);
+        if (entry.truncated) {
+          AUDIT.info("[{}] {}: {}... (обрезано до {} байт)", entry.endpoint, entry.message, body, entry.body.length);
+        } else {
+          AUDIT.info("[{}] {}: {}", entry.endpoint, entry.message, body);
+        }
+        counters.computeIfAbsent(entry.endpoint, key -> new EndpointCounters()).logged.incrementAndGet();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (Exception e) {
+        failedTotal.incrementAndGet();
+      }
+    }
+  }
+
+  private record Entry(String endpoint, String message, byte[] body, boolean truncated) {
+  }
+
+  private static final class EndpointCounters {
+    private final AtomicLong logged = new AtomicLong();
+    private final AtomicLong sampledOut = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong truncated = new AtomicLong();
+  }
+
+  /**
+   * Буфер, принимающий не больше limit байт. После заполнения прерывает
+   * сериализацию исключением, чтобы большое тело не сериализовалось целиком
+   */
+  private static final class CappedOutputStream extends ByteArrayOutputStream {
+    private final int limit;
+    private boolean truncated;
+
+    private CappedOutputStream(int limit) {
+      super(Math.min(limit, 1024));
+      this.limit = limit;
+    }
+
+    @Override
+    public synchronized void write(int b) {
+      write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) {
+      int room = limit - count;
+      if (len > room) {
+        super.write(b, off, Math.max(room, 0));
+        truncated = true;
+        throw new PayloadTooLargeException();
+      }
+      super.write(b, off, len);
+    }
+
+    private boolean isTruncated() {
+      return truncated;
+    }
+  }
+
+  private static final class PayloadTooLargeException extends RuntimeException {
+    private PayloadTooLargeException() {
+      super(null, null, false, false);
+    }
+  }
+}
@@ -0,0 +1,46 @@
+package back.client_exp_backend.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Кэш соответствия email респондента и ID клиента, чтобы повторные
+ * респонденты не требовали обращения к таблице clients
+ */
+@Component
+public class ClientIdCache {
+
+  private final LruCache<String, CachedClient> clients;
+
+  public ClientIdCache(@Value("${survey.client-cache.capacity:100000}") int capacity) {
+    this.clients = new LruCache<>(capacity);
+  }
+
+  public CachedClient get(String email) {
+    return clients.get(email);
+  }
+
+  /**
+   * Запоминает клиента после фиксации текущей транзакции, чтобы в кэш не
+   * попал ID клиента, вставка которого была откачена
+   */
+  public void putAfterCommit(String email, Long clientId, String name) {
+    CachedClient client = new CachedClient(clientId, name);
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      clients.put(email, client);
+      return;
+    }
+
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        clients.put(email, client);
+      }
+    });
+  }
+
+  public record CachedClient(Long id, String name) {
+  }
+}
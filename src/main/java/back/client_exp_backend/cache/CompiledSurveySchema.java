@@ -0,0 +1,216 @@
+package back.client_exp_backend.cache;
+
+import back.client_exp_backend.models.AnswerOption;
+import back.client_exp_backend.models.Question;
+import back.client_exp_backend.models.enums.MetricType;
+import back.client_exp_backend.models.enums.QuestionType;
+import back.client_exp_backend.models.enums.SurveyStatus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Неизменяемая «скомпилированная» структура опроса для обработки ответов.
+ * Вопросы хранятся в плотных массивах в порядке orderNumber, варианты ответов
+ * каждого вопроса — по порядковому номеру (ordinal) в порядке создания (id).
+ * Порядковый номер не меняется при переупорядочивании и правке текста
+ * вариантов, поэтому используется как номер бита в client_answers.option_mask
+ */
+public final class CompiledSurveySchema {
+
+  /**
+   * Сколько вариантов ответа помещается в option_mask. Знаковый бит не
+   * используется, чтобы сдвиги в SQL оставались логическими
+   */
+  public static final int MAX_MASK_OPTIONS = 63;
+
+  private final Long surveyId;
+  private final String surveyTitle;
+  private final SurveyStatus status;
+
+  private final long[] questionIds;
+  private final QuestionType[] questionTypes;
+  private final boolean[] required;
+  private final MetricType[] metricTypes;
+  private final String[] questionTexts;
+
+  private final long[][] optionIds;
+  private final String[][] optionTexts;
+  private final List<Map<String, Integer>> optionOrdinals;
+
+  // Отсортированные ID вопросов и их позиции для поиска без HashMap
+  private final long[] sortedQuestionIds;
+  private final int[] sortedPositions;
+
+  private CompiledSurveySchema(Long surveyId, String surveyTitle, SurveyStatus status, List<Question> questions) {
+    this.surveyId = surveyId;
+    this.surveyTitle = surveyTitle;
+    this.status = status;
+
+    int count = questions.size();
+    questionIds = new long[count];
+    questionTypes = new QuestionType[count];
+    required = new boolean[count];
+    metricTypes = new MetricType[count];
+    questionTexts = new String[count];
+    optionIds = new long[count][];
+    optionTexts = new String[count][];
+    optionOrdinals = new ArrayList<>(count);
+
+    for (int i = 0; i < count; i++) {
+      Question question = questions.get(i);
+      questionIds[i] = question.getId();
+      questionTypes[i] = question.getType();
+      required[i] = question.isRequired();
+      metricTypes[i] = question.getMetricType();
+      questionTexts[i] = question.getText();
+
+      List<AnswerOption> options = question.getAnswerOptions() == null ? List.of()
+          : question.getAnswerOptions().stream()
+              .sorted(Comparator.comparing(AnswerOption::getId))
+              .toList();
+
+      optionIds[i] = new long[options.size()];
+      optionTexts[i] = new String[options.size()];
+      Map<String, Integer> ordinals = new HashMap<>(options.size() * 2);
+      for (int ordinal = 0; ordinal < options.size(); ordinal++) {
+        AnswerOption option = options.get(ordinal);
+        optionIds[i][ordinal] = option.getId();
+        optionTexts[i][ordinal] = option.getText();
+        ordinals.putIfAbsent(option.getText(), ordinal);
+      }
+      optionOrdinals.add(Map.copyOf(ordinals));
+    }
+
+    Integer[] order = new Integer[count];
+    for (int i = 0; i < count; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, Comparator.comparingLong(i -> questionIds[i]));
+    sortedQuestionIds = new long[count];
+    sortedPositions = new int[count];
+    for (int i = 0; i < count; i++) {
+      sortedQuestionIds[i] = questionIds[order[i]];
+      sortedPositions[i] = order[i];
+    }
+  }
+
+  /**
+   * Строит схему по вопросам опроса, уже отсортированным по orderNumber, с
+   * загруженными вариантами ответов
+   */
+  public static CompiledSurveySchema compile(Long surveyId, String surveyTitle, SurveyStatus status,
+      List<Question> questions) {
+    return new CompiledSurveySchema(surveyId, surveyTitle, status, questions);
+  }
+
+  public Long getSurveyId() {
+    return surveyId;
+  }
+
+  public String getSurveyTitle() {
+    return surveyTitle;
+  }
+
+  /**
+   * Статус на момент компиляции; смена статуса сбрасывает схему из кэша
+   */
+  public SurveyStatus getStatus() {
+    return status;
+  }
+
+  public int questionCount() {
+    return questionIds.length;
+  }
+
+  /**
+   * Возвращает позицию вопроса в схеме или -1, если вопрос не принадлежит опросу
+   */
+  public int indexOf(Long questionId) {
+    if (questionId == null) {
+      return -1;
+    }
+    int found = Arrays.binarySearch(sortedQuestionIds, questionId);
+    return found >= 0 ? sortedPositions[found] : -1;
+  }
+
+  public long questionId(int index) {
+    return questionIds[index];
+  }
+
+  public QuestionType questionType(int index) {
+    return questionTypes[index];
+  }
+
+  public boolean isRequired(int index) {
+    return required[index];
+  }
+
+  public MetricType metricType(int index) {
+    return metricTypes[index];
+  }
+
+  public String questionText(int index) {
+    return questionTexts[index];
+  }
+
+  public int optionCount(int index) {
+    return optionIds[index].length;
+  }
+
+  /**
+   * Возвращает порядковый номер варианта ответа по его тексту или -1
+   */
+  public int optionOrdinal(int index, String text) {
+    if (text == null) {
+      return -1;
+    }
+    Integer ordinal = optionOrdinals.get(index).get(text);
+    return ordinal != null ? ordinal : -1;
+  }
+
+  public long optionId(int index, int ordinal) {
+    return optionIds[index][ordinal];
+  }
+
+  public String optionText(int index, int ordinal) {
+    return optionTexts[index][ordinal];
+  }
+
+  /**
+   * Возвращает битовую маску выбранных вариантов ответа или null, если ни один
+   * вариант не найден либо вопрос не помещается в маску
+   */
+  public Long optionMask(int index, Collection<String> texts) {
+    if (optionCount(index) > MAX_MASK_OPTIONS) {
+      return null;
+    }
+
+    long mask = 0;
+    for (String text : texts) {
+      int ordinal = optionOrdinal(index, text);
+      if (ordinal >= 0) {
+        mask |= 1L << ordinal;
+      }
+    }
+    return mask != 0 ? mask : null;
+  }
+
+  /**
+   * Возвращает тексты вариантов ответа, отмеченных в маске, в порядке ordinal
+   */
+  public List<String> optionTexts(int index, long mask) {
+    List<String> texts = new ArrayList<>(Long.bitCount(mask));
+    for (int ordinal = 0; ordinal < optionCount(index); ordinal++) {
+      if ((mask & (1L << ordinal)) != 0) {
+        texts.add(optionTexts[index][ordinal]);
+      }
+    }
+    return texts;
+  }
+}
@@ -0,0 +1,48 @@
+package back.client_exp_backend.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Потокобезопасный кэш ограниченного размера, вытесняющий давно не
+ * использованные записи
+ */
+public class LruCache<K, V> {
+
+  private final int capacity;
+  private final LinkedHashMap<K, V> entries;
+
+  public LruCache(int capacity) {
+    this.capacity = capacity;
+    this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+        return size() > LruCache.this.capacity;
+      }
+    };
+  }
+
+  public synchronized V get(K key) {
+    return entries.get(key);
+  }
+
+  public synchronized void put(K key, V value) {
+    entries.put(key, value);
+  }
+
+  public synchronized V remove(K key) {
+    return entries.remove(key);
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+  }
+
+  public int capacity() {
+    return capacity;
+  }
+}
@@ -0,0 +1,164 @@
+package back.client_exp_backend.cache;
+
+import back.client_exp_backend.event.SurveyDefinitionChangedEvent;
+import back.client_exp_backend.service.SurveyService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Кэш готового JSON публичных опросов: сериализованные байты, их gzip и
+ * ETag по содержимому. Открытие ссылки на опрос не обращается к БД и не
+ * сериализует опрос заново, пока опрос не изменится
+ */
+@Component
+@Slf4j
+public class PublicSurveyCache {
+
+  private final SurveyService surveyService;
+  private final ObjectMapper objectMapper;
+  private final LruCache<Long, CachedSurvey> surveys;
+
+  // Загрузки в процессе: при рассылке ссылки тысячи первых запросов ждут одну
+  // загрузку вместо того, чтобы читать опрос из БД одновременно
+  private final Map<Long, CompletableFuture<CachedSurvey>> loading = new ConcurrentHashMap<>();
+
+  // Увеличивается при каждой инвалидации, чтобы версия, прочитанная до
+  // изменения опроса, не попала в кэш после него
+  private final AtomicLong generation = new AtomicLong();
+
+  public PublicSurveyCache(SurveyService surveyService, ObjectMapper objectMapper,
+      @Value("${survey.public-cache.capacity:1000}") int capacity) {
+    this.surveyService = surveyService;
+    this.objectMapper = objectMapper;
+    this.surveys = new LruCache<>(capacity);
+  }
+
+  public CachedSurvey get(Long surveyId) {
+    CachedSurvey cached = surveys.get(surveyId);
+    if (cached != null) {
+      return cached;
+    }
+
+    CompletableFuture<CachedSurvey> pending = new CompletableFuture<>();
+    CompletableFuture<CachedSurvey> existing = loading.putIfAbsent(surveyId, pending);
+    if (existing != null) {
+      try {
+        return existing.join();
+      } catch (CompletionException e) {
+        throw e.getCause() instanceof RuntimeException cause ? cause : e;
+      }
+    }
+
+    try {
+      long loadedGeneration = generation.get();
+      cached = load(surveyId);
+      if (generation.get() == loadedGeneration) {
+        surveys.put(surveyId, cached);
+      }
+      pending.complete(cached);
+      return cached;
+    } catch (RuntimeException e) {
+      pending.completeExceptionally(e);
+      throw e;
+    } finally {
+      loading.remove(surveyId, pending);
+    }
+  }
+
+  public void invalidate(Long surveyId) {
+    generation.incrementAndGet();
+    if (surveys.remove(surveyId) != null) {
+      log.debug("Публичный опрос {} удален из кэша", surveyId);
+    }
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onSurveyDefinitionChanged(SurveyDefinitionChangedEvent event) {
+    invalidate(event.getSurveyId());
+  }
+
+  private CachedSurvey load(Long surveyId) {
+    try {
+      byte[] json = objectMapper.writeValueAsBytes(surveyService.getSurveyById(surveyId));
+      CachedSurvey cached = new CachedSurvey(json, gzip(json), etag(json));
+      log.debug("Публичный опрос {} сериализован: {} байт, gzip {} байт", surveyId, json.length, cached.gzip().length);
+      return cached;
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Не удалось сериализовать опрос " + surveyId, e);
+    }
+  }
+
+  private static byte[] gzip(byte[] bytes) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+    try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+      gzip.write(bytes);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Сильный ETag по SHA-256 содержимого (первые 128 бит)
+   */
+  private static String etag(byte[] bytes) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+      return "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 недоступен", e);
+    }
+  }
+
+  /**
+   * Версия опроса: JSON, он же в gzip и ETag в кавычках
+   */
+  public record CachedSurvey(byte[] json, byte[] gzip, String etag) {
+
+    /**
+     * ETag представления: у сжатого свой (с суффиксом -gz), чтобы кэши не
+     * путали байты в gzip и без него
+     */
+    public String etag(boolean gzipped) {
+      return gzipped ? etag.substring(0, etag.length() - 1) + "-gz\"" : etag;
+    }
+
+    /**
+     * Проверяет заголовок If-None-Match (список ETag, слабые W/ или *) для
+     * выбранного представления
+     */
+    public boolean matches(String ifNoneMatch, boolean gzipped) {
+      if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+        return false;
+      }
+      String current = etag(gzipped);
+      for (String candidate : ifNoneMatch.split(",")) {
+        String tag = candidate.trim();
+        if (tag.startsWith("W/")) {
+          tag = tag.substring(2);
+        }
+        if (tag.equals("*") || tag.equals(current)) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+}
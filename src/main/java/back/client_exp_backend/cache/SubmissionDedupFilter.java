@@ -0,0 +1,150 @@
+package back.client_exp_backend.cache;
+
+import back.client_exp_backend.event.SurveyDefinitionChangedEvent;
+import back.client_exp_backend.repository.SurveySubmissionRepository;
+import back.client_exp_backend.util.BloomFilter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Фильтры Блума по ключам идемпотентности активных опросов. Для новой отправки
+ * (обычный случай) фильтр отвечает «точно не было» без запроса к БД; поиск
+ * исходной отправки выполняется только при возможном повторе. Фильтр
+ * опроса, которого нет в кэше, строится в фоне; до этого проверка
+ * пропускается и повтор отсекает уникальный индекс survey_submissions,
+ * который в любом случае остается окончательной проверкой
+ */
+@Component
+@Slf4j
+public class SubmissionDedupFilter {
+
+  private static final double FALSE_POSITIVE_RATE = 0.01;
+
+  private final SurveySubmissionRepository surveySubmissionRepository;
+  private final TaskExecutor taskExecutor;
+  private final LruCache<Long, SurveyFilter> filters;
+  private final long minExpectedInsertions;
+
+  // Опросы, фильтры которых строятся сейчас, и ключи, добавленные за время сборки
+  private final Map<Long, List<String>> building = new ConcurrentHashMap<>();
+
+  public SubmissionDedupFilter(SurveySubmissionRepository surveySubmissionRepository,
+      @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME) TaskExecutor taskExecutor,
+      @Value("${survey.dedup.max-surveys:1000}") int maxSurveys,
+      @Value("${survey.dedup.min-expected-submissions:1024}") long minExpectedInsertions) {
+    this.surveySubmissionRepository = surveySubmissionRepository;
+    this.taskExecutor = taskExecutor;
+    this.filters = new LruCache<>(maxSurveys);
+    this.minExpectedInsertions = minExpectedInsertions;
+  }
+
+  /**
+   * false, если ключа точно нет или фильтр опроса еще не построен
+   */
+  public boolean mightContain(Long surveyId, String key) {
+    SurveyFilter filter = filters.get(surveyId);
+    if (filter == null) {
+      buildAsync(surveyId);
+      return false;
+    }
+    return filter.bloom.mightContain(key);
+  }
+
+  /**
+   * Добавляет ключ в фильтр после фиксации транзакции с новой отправкой
+   */
+  public void putAfterCommit(Long surveyId, String key) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      put(surveyId, key);
+      return;
+    }
+
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        put(surveyId, key);
+      }
+    });
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onSurveyDefinitionChanged(SurveyDefinitionChangedEvent event) {
+    if (event.isDeleted()) {
+      filters.remove(event.getSurveyId());
+    }
+  }
+
+  private void put(Long surveyId, String key) {
+    SurveyFilter filter = filters.get(surveyId);
+    if (filter == null) {
+      // Если фильтр строится, ключ добавится после сборки; иначе фильтр
+      // будет построен из БД при следующей проверке и уже учтет этот ключ
+      building.computeIfPresent(surveyId, (id, pending) -> {
+        pending.add(key);
+        return pending;
+      });
+      return;
+    }
+
+    filter.bloom.put(key);
+    if (filter.size.incrementAndGet() > filter.bloom.expectedInsertions()) {
+      // Фильтр переполнен и теряет точность: перестраиваем с большим запасом
+      filters.remove(surveyId);
+    }
+  }
+
+  private void buildAsync(Long surveyId) {
+    if (building.putIfAbsent(surveyId, new ArrayList<>()) != null) {
+      return;
+    }
+
+    try {
+      taskExecutor.execute(() -> build(surveyId));
+    } catch (RuntimeException e) {
+      building.remove(surveyId);
+      log.warn("Не удалось запустить построение фильтра отправок опроса {}: {}", surveyId, e.getMessage());
+    }
+  }
+
+  private void build(Long surveyId) {
+    try {
+      // Размер по фактическому числу ключей с двукратным запасом: при
+      // переполнении фильтр перестраивается (см. put)
+      List<String> keys = surveySubmissionRepository.findKeysBySurveyId(surveyId);
+      BloomFilter bloom = new BloomFilter(Math.max(minExpectedInsertions, keys.size() * 2L), FALSE_POSITIVE_RATE);
+      keys.forEach(bloom::put);
+
+      // Ключи, зафиксированные во время загрузки, добавляются атомарно с
+      // публикацией фильтра, чтобы ни один не потерялся между ними
+      building.compute(surveyId, (id, pending) -> {
+        long size = keys.size();
+        if (pending != null) {
+          pending.forEach(bloom::put);
+          size += pending.size();
+        }
+        filters.put(surveyId, new SurveyFilter(bloom, new AtomicLong(size)));
+        return null;
+      });
+      log.debug("Построен фильтр отправок опроса {} по {} ключам", surveyId, keys.size());
+    } catch (RuntimeException e) {
+      building.remove(surveyId);
+      log.error("Не удалось построить фильтр отправок опроса {}", surveyId, e);
+    }
+  }
+
+  private record SurveyFilter(BloomFilter bloom, AtomicLong size) {
+  }
+}
@@ -0,0 +1,68 @@
+package back.client_exp_backend.cache;
+
+import back.client_exp_backend.dto.SurveyHeaderRow;
+import back.client_exp_backend.event.SurveyDefinitionChangedEvent;
+import back.client_exp_backend.exception.ResourceNotFoundException;
+import back.client_exp_backend.repository.QuestionRepository;
+import back.client_exp_backend.repository.SurveyRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Кэш скомпилированных схем опросов. После первой загрузки обработка ответов
+ * не читает из БД ни опрос, ни его вопросы, ни варианты ответов
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SurveySchemaCache {
+
+  private final SurveyRepository surveyRepository;
+  private final QuestionRepository questionRepository;
+
+  private final Map<Long, CompiledSurveySchema> schemas = new ConcurrentHashMap<>();
+
+  // Увеличивается при каждой инвалидации, чтобы схема, прочитанная до
+  // изменения опроса, не попала в кэш после него
+  private final AtomicLong generation = new AtomicLong();
+
+  public CompiledSurveySchema get(Long surveyId) {
+    CompiledSurveySchema schema = schemas.get(surveyId);
+    if (schema != null) {
+      return schema;
+    }
+
+    long loadedGeneration = generation.get();
+    schema = load(surveyId);
+    if (generation.get() == loadedGeneration) {
+      schemas.putIfAbsent(surveyId, schema);
+    }
+    return schema;
+  }
+
+  public void invalidate(Long surveyId) {
+    generation.incrementAndGet();
+    if (schemas.remove(surveyId) != null) {
+      log.debug("Схема опроса {} удалена из кэша", surveyId);
+    }
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onSurveyDefinitionChanged(SurveyDefinitionChangedEvent event) {
+    invalidate(event.getSurveyId());
+  }
+
+  private CompiledSurveySchema load(Long surveyId) {
+    SurveyHeaderRow header = surveyRepository.findHeaderById(surveyId)
+        .orElseThrow(() -> new ResourceNotFoundException("Опрос с ID " + surveyId + " не найден"));
+    log.debug("Компиляция схемы опроса {}", surveyId);
+    return CompiledSurveySchema.compile(surveyId, header.getTitle(), header.getStatus(),
+        questionRepository.findWithOptionsBySurveyId(surveyId));
+  }
+}
@@ -0,0 +1,48 @@
+package back.client_exp_backend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Настройки журналирования тел запросов и ответов (payload-audit). Доля
+ * записываемых запросов и предельный размер задаются по умолчанию и могут
+ * быть переопределены для отдельных точек входа
+ */
+@Component
+@ConfigurationProperties(prefix = "payload-audit")
+@Data
+public class PayloadAuditProperties {
+
+  private boolean enabled = true;
+
+  // Емкость очереди на запись; при переполнении тела отбрасываются
+  private int queueCapacity = 1000;
+
+  // Доля записываемых тел от 0.0 до 1.0
+  private double defaultSampleRate = 1.0;
+
+  // Тело обрезается после этого количества байт JSON
+  private int defaultMaxBytes = 4096;
+
+  private Map<String, Endpoint> endpoints = new HashMap<>();
+
+  public double sampleRate(String endpoint) {
+    Endpoint settings = endpoints.get(endpoint);
+    return settings != null && settings.getSampleRate() != null ? settings.getSampleRate() : defaultSampleRate;
+  }
+
+  public int maxBytes(String endpoint) {
+    Endpoint settings = endpoints.get(endpoint);
+    return settings != null && settings.getMaxBytes() != null ? settings.getMaxBytes() : defaultMaxBytes;
+  }
+
+  @Data
+  public static class Endpoint {
+    private Double sampleRate;
+    private Integer maxBytes;
+  }
+}
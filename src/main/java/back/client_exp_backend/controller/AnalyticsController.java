@@ -0,0 +1,222 @@
+package back.client_exp_backend.controller;
+
+import back.client_exp_backend.dto.AnswerQueryRequest;
+import back.client_exp_backend.exception.ApiError;
+import back.client_exp_backend.exception.ResourceNotFoundException;
+import back.client_exp_backend.models.enums.ClientDemographicField;
+import back.client_exp_backend.models.enums.RespondentDimension;
+import back.client_exp_backend.models.enums.RollupBucket;
+import back.client_exp_backend.service.AnalyticsService;
+import back.client_exp_backend.service.CrosstabService;
+import back.client_exp_backend.service.ResponseRollupService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Аналитика ответов на опросы по счетчикам в памяти и агрегатам по времени
+ */
+@RestController
+@RequestMapping("/api/analytics")
+@RequiredArgsConstructor
+@Slf4j
+public class AnalyticsController {
+
+  private static final int MAX_TERMS_LIMIT = 200;
+
+  private final AnalyticsService analyticsService;
+  private final ResponseRollupService responseRollupService;
+  private final CrosstabService crosstabService;
+
+  @GetMapping("/surveys/{surveyId}/distribution")
+  @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
+  public ResponseEntity<Object> getSurveyDistribution(@PathVariable Long surveyId) {
+    try {
+      return ResponseEntity.ok(analyticsService.getSurveyDistribution(surveyId));
+    } catch (ResourceNotFoundException e) {
+      return ResponseEntity.status(HttpStatus.NOT_FOUND).body(
+          new ApiError(HttpStatus.NOT_FOUND, "Опрос не найден", e.getMessage()));
+    } catch (Exception e) {
+      log.error("Ошибка при получении распределения ответов на опрос {}", surveyId, e);
+      return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
+          new ApiError(HttpStatus.INTERNAL_SERVER_ERROR, "Внутренняя ошибка сервера", e.getMessage()));
+    }
+  }
+
+  @GetMapping("/surveys/{surveyId}/questions/{questionId}/distribution")
+  @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
+  public ResponseEntity<Object> getQuestionDistribution(@PathVariable Long surveyId, @PathVariable Long questionId) {
+    try {
+      return ResponseEntity.ok(analyticsService.getQuestionDistribution(surveyId, questionId));
+    } catch (ResourceNotFoundException e) {
+      return ResponseEntity.status(HttpStatus.NOT_FOUND).body(
+          new ApiError(HttpStatus.NOT_FOUND, "Вопрос не найден", e.getMessage()));
+    } catch (Exception e) {
+      log.error("Ошибка при получении распределения ответов на вопрос {} опроса {}", questionId, surveyId, e);
+      return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
+          new ApiError(HttpStatus.INTERNAL_SERVER_ERROR, "Внутренняя ошибка сервера", e.getMessage()));
+    }
+  }
+
+  @GetMapping("/surveys/{surveyId}/scorecard")
+  @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
+  public ResponseEntity<Object> getScorecard(@PathVariable Long surveyId) {
+    try {
+      return ResponseEntity.ok(analyticsService.getScorecard(surveyId));
+    } catch (ResourceNotFoundException e) {
+      return ResponseEntity.status(HttpStatus.NOT_FOUND).body(
+          new ApiError(HttpStatus.NOT_FOUND, "Опрос не найден", e.getMessage()));
+    } catch (Exception e) {
+      log.error("Ошибка при получении показателей опроса {}", surveyId, e);
+      return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
+          new ApiError(HttpStatus.INTERNAL_SERVER_ERROR, "Внутренняя ошибка сервера", e.getMessage()));
+    }
+  }
+
+  /**
+   * Распределение ответов среди респондентов, подходящих под условия
+   * (например, «что ответили на вопрос 2 те, кто поставил 9-10 в вопросе 1»)
+   */
+  @PostMapping("/surveys/{surveyId}/query")
+  @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
+  public ResponseEntity<Object> queryAnswers(@PathVariable Long surveyId,
+      @Valid @RequestBody AnswerQueryRequest request) {
+    try {
+      return ResponseEntity.ok(analyticsService.queryAnswers(surveyId, request));
+    } catch (ResourceNotFoundException e) {
+      return ResponseEntity.status(HttpStatus.NOT_FOUND).body(
+          new ApiError(HttpStatus.NOT_FOUND, "Опрос или вопрос не найден", e.getMessage()));
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.badRequest().body(
+          new ApiError(HttpStatus.BAD_REQUEST, "Некорректный запрос", e.getMessage()));
+    } catch (Exception e) {
+      log.error("Ошибка при выполнении запроса к ответам на опрос {}", surveyId, e);
+      return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
+          new ApiError(HttpStatus.INTERNAL_SERVER_ERROR, "Внутренняя ошибка сервера", e.getMessage()));
+    }
+  }
+
+  /**
+   * Таблица сопряженности ответов на вопрос rowQuestionId с ответами на вопрос
+   * columnQuestionId или с полем клиента columnField, с критерием хи-квадрат
+   */
+  @GetMapping("/surveys/{surveyId}/crosstab")
+  @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
+  public ResponseEntity<Object> getCrosstab(
+      @PathVariable Long surveyId,
+      @RequestParam Long rowQuestionId,
+      @RequestParam(required = false) Long columnQuestionId,
+      @RequestParam(required = false) ClientDemographicField columnField) {
+    try {
+      return ResponseEntity.ok(crosstabService.crossTabulate(surveyId, rowQuestionId, columnQuestionId, columnField));
+    } catch (ResourceNotFoundException e) {
+      return ResponseEntity.status(HttpStatus.NOT_FOUND).body(
+          new ApiError(HttpStatus.NOT_FOUND, "Опрос или вопрос не найден", e.getMessage()));
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.badRequest().body(
+          new ApiError(HttpStatus.BAD_REQUEST, "Некорректный запрос", e.getMessage()));
+    } catch (Exception e) {
+      log.error("Ошибка при построении таблицы сопряженности для опроса {}", surveyId, e);
+      return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
+          new ApiError(HttpStatus.INTERNAL_SERVER_ERROR, "Внутренняя ошибка сервера", e.getMessage()));
+    }
+  }
+
+  /**
+   * Самые частые слова и пары слов в ответах на текстовый вопрос, недавние
+   * ответы весят больше
+   */
+  @GetMapping("/surveys/{surveyId}/questions/{questionId}/terms")
+  @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
+  public ResponseEntity<Object> getTopTerms(@PathVariable Long surveyId, @PathVariable Long questionId,
+      @RequestParam(defaultValue = "50") int limit) {
+    try {
+      if (limit < 1 || limit > MAX_TERMS_LIMIT) {
+        throw new IllegalArgumentException("limit должен быть от 1 до " + MAX_TERMS_LIMIT);
+      }
+      return ResponseEntity.ok(analyticsService.getTopTerms(surveyId, questionId, limit));
+    } catch (ResourceNotFoundException e) {
+      return ResponseEntity.status(HttpStatus.NOT_FOUND).body(
+          new ApiError(HttpStatus.NOT_FOUND, "Вопрос не найден", e.getMessage()));
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.badRequest().body(
+          new ApiError(HttpStatus.BAD_REQUEST, "Некорректный запрос", e.getMessage()));
+    } catch (Exception e) {
+      log.error("Ошибка при получении частых слов в ответах на вопрос {} опроса {}", questionId, surveyId, e);
+      return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
+          new ApiError(HttpStatus.INTERNAL_SERVER_ERROR, "Внутренняя ошибка сервера", e.getMessage()));
+    }
+  }
+
+  /**
+   * Количество ответов по интервалам. Без questionId считаются отправки опроса;
+   * по умолчанию — последние 30 дней по дням
+   */
+  @GetMapping("/surveys/{surveyId}/timeseries")
+  @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
+  public ResponseEntity<Object> getTimeSeries(
+      @PathVariable Long surveyId,
+      @RequestParam(required = false) Long questionId,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+      @RequestParam(defaultValue = "DAY") RollupBucket bucket) {
+    try {
+      LocalDateTime periodEnd = to != null ? to : LocalDateTime.now();
+      LocalDateTime periodStart = from != null ? from : periodEnd.minusDays(30);
+      return ResponseEntity.ok(responseRollupService.getSeries(surveyId, questionId, periodStart, periodEnd, bucket));
+    } catch (ResourceNotFoundException e) {
+      return ResponseEntity.status(HttpStatus.NOT_FOUND).body(
+          new ApiError(HttpStatus.NOT_FOUND, "Опрос не найден", e.getMessage()));
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.badRequest().body(
+          new ApiError(HttpStatus.BAD_REQUEST, "Некорректный запрос", e.getMessage()));
+    } catch (Exception e) {
+      log.error("Ошибка при получении временного ряда ответов на опрос {}", surveyId, e);
+      return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
+          new ApiError(HttpStatus.INTERNAL_SERVER_ERROR, "Внутренняя ошибка сервера", e.getMessage()));
+    }
+  }
+
+  /**
+   * Приблизительное число уникальных респондентов за период в разрезе всех
+   * опросов, опроса, региона или сегмента. keys — значения разреза (ID опросов,
+   * регионы, ID сегментов); без них — все значения. По умолчанию — последние
+   * 30 дней
+   */
+  @GetMapping("/unique-respondents")
+  @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
+  public ResponseEntity<Object> getUniqueRespondents(
+      @RequestParam(defaultValue = "ALL") RespondentDimension dimension,
+      @RequestParam(required = false) List<String> keys,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+    try {
+      LocalDate periodEnd = to != null ? to : LocalDate.now();
+      LocalDate periodStart = from != null ? from : periodEnd.minusDays(29);
+      return ResponseEntity.ok(analyticsService.getUniqueRespondents(dimension,
+          keys != null ? keys : List.of(), periodStart, periodEnd));
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.badRequest().body(
+          new ApiError(HttpStatus.BAD_REQUEST, "Некорректный запрос", e.getMessage()));
+    } catch (Exception e) {
+      log.error("Ошибка при оценке числа уникальных респондентов в разрезе {}", dimension, e);
+      return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
+          new ApiError(HttpStatus.INTERNAL_SERVER_ERROR, "Внутренняя ошибка сервера", e.getMessage()));
+    }
+  }
+}
@@ -1,15 +1,23 @@
 package back.client_exp_backend.controller;
 
 import back.client_exp_backend.dto.ClientWithAnswersDto;
+import back.client_exp_backend.exception.ApiError;
 import back.client_exp_backend.service.ClientService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @RestController
@@ -18,6 +26,8 @@ import java.util.List;
 @Slf4j
 public class ClientController {
 
+  private static final int MAX_PAGE_SIZE = 500;
+
   private final ClientService clientService;
 
   @GetMapping("/with-answers")
@@ -27,4 +37,45 @@ public class ClientController {
     List<ClientWithAnswersDto> clients = clientService.getAllClientsWithAnswers();
     return ResponseEntity.ok(clients);
   }
-}
\ No newline at end of file
+
+  /**
+   * Страница клиентов с ответами по курсору (ID последнего клиента предыдущей
+   * страницы). Можно ограничить опросом и периодом ответов [from, to)
+   */
+  @GetMapping("/with-answers/page")
+  @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
+  public ResponseEntity<Object> getClientsWithAnswersPage(
+      @RequestParam(required = false) Long surveyId,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+      @RequestParam(required = false) String cursor,
+      @RequestParam(defaultValue = "50") int size) {
+    try {
+      int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+      return ResponseEntity.ok(clientService.getClientsWithAnswersPage(surveyId, from, to, cursor, pageSize));
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.badRequest().body(
+          new ApiError(HttpStatus.BAD_REQUEST, "Некорректный запрос", e.getMessage()));
+    } catch (Exception e) {
+      log.error("Ошибка при получении страницы клиентов с ответами", e);
+      return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
+          new ApiError(HttpStatus.INTERNAL_SERVER_ERROR, "Внутренняя ошибка сервера", e.getMessage()));
+    }
+  }
+
+  /**
+   * Потоковая выгрузка клиентов с ответами JSON-массивом
+   */
+  @GetMapping("/with-answers/export")
+  @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
+  public ResponseEntity<StreamingResponseBody> exportClientsWithAnswers(
+      @RequestParam(required = false) Long surveyId,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+    StreamingResponseBody body = output -> clientService.exportClientsWithAnswers(surveyId, from, to, output);
+    return ResponseEntity.ok()
+        .contentType(MediaType.APPLICATION_JSON)
+        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"clients-with-answers.json\"")
+        .body(body);
+  }
+}
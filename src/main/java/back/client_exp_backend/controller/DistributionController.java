@@ -2,10 +2,11 @@ package back.client_exp_backend.controller;
 
 import back.client_exp_backend.dto.DistributionResponse;
 import back.client_exp_backend.dto.MessageDistributionRequest;
+import back.client_exp_backend.dto.RecipientFilter;
 import back.client_exp_backend.dto.SurveyDistributionRequest;
-import back.client_exp_backend.repository.ClientRepository;
 import back.client_exp_backend.repository.SurveyRepository;
 import back.client_exp_backend.service.EmailService;
+import back.client_exp_backend.service.RecipientService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
@@ -15,6 +16,9 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Slf4j
 @RestController
 @RequestMapping("/api/distribution")
@@ -22,7 +26,7 @@ import org.springframework.web.bind.annotation.RestController;
 public class DistributionController {
 
   private final EmailService emailService;
-  private final ClientRepository clientRepository;
+  private final RecipientService recipientService;
   private final SurveyRepository surveyRepository;
 
   @PostMapping("/survey")
@@ -40,12 +44,36 @@ public class DistributionController {
               .build());
     }
 
-    int totalClients = (int) clientRepository.count();
+    List<Long> segmentIds = new ArrayList<>();
+    if (request.getSegmentIds() != null) {
+      segmentIds.addAll(request.getSegmentIds());
+    }
+    if (request.isUseSurveySegments()) {
+      List<Long> surveySegmentIds = recipientService.getSurveySegmentIds(request.getSurveyId());
+      if (surveySegmentIds.isEmpty()) {
+        return badRequest("К опроснику не привязаны сегменты");
+      }
+      segmentIds.addAll(surveySegmentIds);
+    }
+
+    RecipientFilter recipients = RecipientFilter.builder()
+        .segmentIds(segmentIds)
+        .clientIds(request.getClientIds())
+        .notRespondedSurveyId(request.isExcludeResponded() ? request.getSurveyId() : null)
+        .build();
+
+    long totalRecipients;
+    try {
+      recipientService.prepareSegments(recipients.getSegmentIds());
+      totalRecipients = recipientService.countRecipients(recipients);
+    } catch (IllegalArgumentException e) {
+      return badRequest(e.getMessage());
+    }
 
-    if (totalClients == 0) {
+    if (totalRecipients == 0) {
       return ResponseEntity.ok(
           DistributionResponse.builder()
-              .message("В системе нет клиентов для рассылки")
+              .message("Нет клиентов, подходящих под условия рассылки")
               .success(false)
               .totalRecipients(0)
               .build());
@@ -54,17 +82,17 @@ public class DistributionController {
     // Базовый URL для формирования ссылки на опросник
     String baseUrl = "http://localhost:3000";
 
-    // Отправка опросника всем клиентам
-    emailService.sendSurveyToAllClients(
+    int sent = emailService.sendSurvey(
         request.getSurveyId(),
         request.getSubject() != null ? request.getSubject() : "Приглашение пройти опрос",
-        baseUrl);
+        baseUrl,
+        recipients);
 
     return ResponseEntity.ok(
         DistributionResponse.builder()
-            .message("Опросник успешно отправлен всем клиентам")
+            .message("Опросник отправлен клиентам: " + sent + " из " + totalRecipients)
             .success(true)
-            .totalRecipients(totalClients)
+            .totalRecipients(sent)
             .build());
   }
 
@@ -82,27 +110,48 @@ public class DistributionController {
               .build());
     }
 
-    int totalClients = (int) clientRepository.count();
+    RecipientFilter recipients = RecipientFilter.builder()
+        .segmentIds(request.getSegmentIds())
+        .clientIds(request.getClientIds())
+        .notRespondedSurveyId(request.getNotRespondedSurveyId())
+        .build();
+
+    long totalRecipients;
+    try {
+      recipientService.prepareSegments(recipients.getSegmentIds());
+      totalRecipients = recipientService.countRecipients(recipients);
+    } catch (IllegalArgumentException e) {
+      return badRequest(e.getMessage());
+    }
 
-    if (totalClients == 0) {
+    if (totalRecipients == 0) {
       return ResponseEntity.ok(
           DistributionResponse.builder()
-              .message("В системе нет клиентов для рассылки")
+              .message("Нет клиентов, подходящих под условия рассылки")
               .success(false)
               .totalRecipients(0)
               .build());
     }
 
-    // Отправка сообщения всем клиентам
-    emailService.sendCustomMessageToAllClients(
+    int sent = emailService.sendCustomMessage(
         request.getSubject() != null ? request.getSubject() : "Информация от ClientExp",
-        request.getMessage());
+        request.getMessage(),
+        recipients);
 
     return ResponseEntity.ok(
         DistributionResponse.builder()
-            .message("Тематическое письмо успешно отправлено всем клиентам")
+            .message("Тематическое письмо отправлено клиентам: " + sent + " из " + totalRecipients)
             .success(true)
-            .totalRecipients(totalClients)
+            .totalRecipients(sent)
+            .build());
+  }
+
+  private ResponseEntity<DistributionResponse> badRequest(String message) {
+    return ResponseEntity.badRequest().body(
+        DistributionResponse.builder()
+            .message(message)
+            .success(false)
+            .totalRecipients(0)
             .build());
   }
 }
\ No newline at end of file
@@ -0,0 +1,40 @@
+package back.client_exp_backend.controller;
+
+import back.client_exp_backend.audit.PayloadAuditLogger;
+import back.client_exp_backend.dto.IngestionStatsDto;
+import back.client_exp_backend.dto.PayloadAuditStatsDto;
+import back.client_exp_backend.service.SurveyIngestionService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Служебные показатели работы приложения
+ */
+@RestController
+@RequestMapping("/api/monitoring")
+@RequiredArgsConstructor
+public class MonitoringController {
+
+  private final SurveyIngestionService surveyIngestionService;
+  private final PayloadAuditLogger payloadAuditLogger;
+
+  @GetMapping("/ingestion")
+  @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
+  public ResponseEntity<IngestionStatsDto> getIngestionStats() {
+    return ResponseEntity.ok(surveyIngestionService.getStats());
+  }
+
+  /**
+   * Сколько тел записано в журнал, пропущено по доле и отброшено из-за
+   * переполнения очереди
+   */
+  @GetMapping("/payload-audit")
+  @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
+  public ResponseEntity<PayloadAuditStatsDto> getPayloadAuditStats() {
+    return ResponseEntity.ok(payloadAuditLogger.getStats());
+  }
+}
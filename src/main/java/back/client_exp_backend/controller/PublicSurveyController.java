@@ -1,26 +1,29 @@
 package back.client_exp_backend.controller;
 
+import back.client_exp_backend.audit.PayloadAuditLogger;
+import back.client_exp_backend.cache.PublicSurveyCache;
 import back.client_exp_backend.dto.PagedResponseDto;
-import back.client_exp_backend.dto.QuestionDto;
 import back.client_exp_backend.dto.SurveyDto;
+import back.client_exp_backend.exception.ResourceNotFoundException;
 import back.client_exp_backend.models.enums.SurveyStatus;
 import back.client_exp_backend.service.SurveyService;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
-import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
-import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.Duration;
+
 /**
  * Публичный контроллер для доступа к опросникам без необходимости авторизации
  */
@@ -30,7 +33,14 @@ import org.springframework.web.bind.annotation.RestController;
 @Slf4j
 public class PublicSurveyController {
 
+  private static final int MAX_CURSOR_PAGE_SIZE = 100;
+
   private final SurveyService surveyService;
+  private final PublicSurveyCache publicSurveyCache;
+  private final PayloadAuditLogger payloadAuditLogger;
+
+  @Value("${survey.public-cache.max-age-seconds:60}")
+  private long maxAgeSeconds;
 
   /**
    * Получение информации об опроснике по ID без авторизации
@@ -41,7 +51,10 @@ public class PublicSurveyController {
   public ResponseEntity<PagedResponseDto<SurveyDto>> getAllSurveys(
       @RequestParam(defaultValue = "0") int page,
       @RequestParam(defaultValue = "10") int size,
-      @RequestParam(required = false) String status) {
+      @RequestParam(required = false) String status,
+      @RequestParam(required = false) String cursor,
+      @RequestParam(required = false) Long createdBy,
+      @RequestParam(defaultValue = "false") boolean withTotal) {
     log.info("Запрос на получение списка опросников. Страница: {}, размер: {}, статус: {}", page, size, status);
     SurveyStatus surveyStatus = null;
     if (status != null) {
@@ -51,37 +64,89 @@ public class PublicSurveyController {
         log.warn("Неизвестный статус опросника: {}, будут возвращены все опросники", status);
       }
     }
-    PagedResponseDto<SurveyDto> response = surveyService.getAllSurveys(page, size, surveyStatus);
-    try {
-      ObjectMapper objectMapper = new ObjectMapper();
-      objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
-      objectMapper.registerModule(new JavaTimeModule());
-      log.info("Запрос на получение списка опросников: \n{}", objectMapper.writeValueAsString(response));
-    } catch (Exception e) {
-      log.error("Ошибка при логировании запроса: {}", e.getMessage());
-    }
+    // Режим курсора включается параметром cursor (пустой — первая страница)
+    PagedResponseDto<SurveyDto> response = cursor != null
+        ? surveyService.getSurveysByCursor(cursor, Math.max(1, Math.min(size, MAX_CURSOR_PAGE_SIZE)), surveyStatus,
+            createdBy, withTotal)
+        : surveyService.getAllSurveys(page, size, surveyStatus);
+    payloadAuditLogger.audit("public-survey.list", "Запрос на получение списка опросников", response);
     return ResponseEntity.ok(response);
   }
 
+  /**
+   * Опрос для респондента. Отдается готовый JSON из кэша (в gzip, если клиент
+   * его принимает) с ETag; при совпадении If-None-Match возвращается 304
+   */
   @GetMapping("/{id}")
-  public ResponseEntity<SurveyDto> getSurveyById(@PathVariable Long id) {
-    log.info("Запрос на получение опросника с id: {}", id);
+  public ResponseEntity<byte[]> getSurveyById(
+      @PathVariable Long id,
+      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+      @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+    log.debug("Запрос на получение опросника с id: {}", id);
     try {
-      SurveyDto surveyDto = surveyService.getSurveyById(id);
+      PublicSurveyCache.CachedSurvey survey = publicSurveyCache.get(id);
+      CacheControl cacheControl = CacheControl.maxAge(Duration.ofSeconds(maxAgeSeconds)).cachePublic();
+      boolean gzipped = acceptsGzip(acceptEncoding);
 
-      try {
-        ObjectMapper objectMapper = new ObjectMapper();
-        objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
-        objectMapper.registerModule(new JavaTimeModule());
-        log.info("Данные опросника: \n{}", objectMapper.writeValueAsString(surveyDto));
-      } catch (Exception e) {
-        log.error("Ошибка при логировании ответа: {}", e.getMessage());
+      if (survey.matches(ifNoneMatch, gzipped)) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+            .eTag(survey.etag(gzipped))
+            .cacheControl(cacheControl)
+            .varyBy(HttpHeaders.ACCEPT_ENCODING)
+            .build();
       }
 
-      return ResponseEntity.ok(surveyDto);
+      ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+          .contentType(MediaType.APPLICATION_JSON)
+          .eTag(survey.etag(gzipped))
+          .cacheControl(cacheControl)
+          .varyBy(HttpHeaders.ACCEPT_ENCODING);
+      if (gzipped) {
+        return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(survey.gzip());
+      }
+      return response.body(survey.json());
+    } catch (ResourceNotFoundException e) {
+      log.warn("Опросник с id {} не найден", id);
+      return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
     } catch (Exception e) {
       log.error("Ошибка при получении опросника: {}", e.getMessage());
       return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
     }
   }
-}
\ No newline at end of file
+
+  /**
+   * Разбирает Accept-Encoding с весами: gzip (x-gzip) или * с q больше нуля.
+   * Явный gzip;q=0 запрещает сжатие, даже если разрешено *
+   */
+  static boolean acceptsGzip(String acceptEncoding) {
+    if (acceptEncoding == null || acceptEncoding.isBlank()) {
+      return false;
+    }
+    Double gzip = null;
+    Double any = null;
+    for (String entry : acceptEncoding.split(",")) {
+      String[] parts = entry.split(";");
+      String coding = parts[0].trim().toLowerCase();
+      double quality = 1.0;
+      for (int i = 1; i < parts.length; i++) {
+        String parameter = parts[i].trim().toLowerCase();
+        if (parameter.startsWith("q=")) {
+          try {
+            quality = Double.parseDouble(parameter.substring(2).trim());
+          } catch (NumberFormatException e) {
+            quality = 0;
+          }
+        }
+      }
+      if (coding.equals("gzip") || coding.equals("x-gzip")) {
+        gzip = gzip == null ? quality : Math.max(gzip, quality);
+      } else if (coding.equals("*")) {
+        any = quality;
+      }
+    }
+    if (gzip != null) {
+      return gzip > 0;
+    }
+    return any != null && any > 0;
+  }
+}
@@ -0,0 +1,81 @@
+package back.client_exp_backend.controller;
+
+import back.client_exp_backend.dto.AudienceSizeDto;
+import back.client_exp_backend.dto.AudienceSizingRequest;
+import back.client_exp_backend.dto.SegmentAudienceDto;
+import back.client_exp_backend.dto.SegmentCriteriaRequest;
+import back.client_exp_backend.dto.SegmentDto;
+import back.client_exp_backend.dto.SegmentMaterializationDto;
+import back.client_exp_backend.service.SegmentService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Сегменты клиентов с условиями по атрибутам клиента, например
+ * {@code gender = FEMALE AND ageGroup IN (FROM_26_TO_35) AND NOT region = 'Москва'}
+ */
+@RestController
+@RequestMapping("/api/segments")
+@RequiredArgsConstructor
+public class SegmentController {
+
+  private final SegmentService segmentService;
+
+  @GetMapping
+  @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
+  public ResponseEntity<List<SegmentDto>> getAllSegments() {
+    return ResponseEntity.ok(segmentService.getAllSegments());
+  }
+
+  @GetMapping("/{id}")
+  @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
+  public ResponseEntity<SegmentDto> getSegmentById(@PathVariable Long id) {
+    return ResponseEntity.ok(segmentService.getSegmentById(id));
+  }
+
+  @PostMapping
+  @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
+  public ResponseEntity<SegmentDto> createSegment(@Valid @RequestBody SegmentDto segmentDto) {
+    return new ResponseEntity<>(segmentService.createSegment(segmentDto), HttpStatus.CREATED);
+  }
+
+  @PutMapping("/{id}")
+  @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
+  public ResponseEntity<SegmentDto> updateSegment(@PathVariable Long id, @Valid @RequestBody SegmentDto segmentDto) {
+    return ResponseEntity.ok(segmentService.updateSegment(id, segmentDto));
+  }
+
+  /**
+   * Размер аудитории условия без сохранения сегмента
+   */
+  @PostMapping("/preview")
+  @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
+  public ResponseEntity<SegmentAudienceDto> previewAudience(@Valid @RequestBody SegmentCriteriaRequest request) {
+    return ResponseEntity.ok(segmentService.previewAudience(request.getCriteria()));
+  }
+
+  /**
+   * Размер аудитории по фильтрам с распределением по остальным полям клиента,
+   * например {@code {"include": {"gender": ["FEMALE"], "ageGroup": ["FROM_26_TO_35"]}}}
+   */
+  @PostMapping("/audience-size")
+  @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
+  public ResponseEntity<AudienceSizeDto> sizeAudience(@RequestBody AudienceSizingRequest request) {
+    return ResponseEntity.ok(segmentService.sizeAudience(request));
+  }
+
+  /**
+   * Записывает текущий состав сегмента по условию в client_segments
+   */
+  @PostMapping("/{id}/materialize")
+  @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
+  public ResponseEntity<SegmentMaterializationDto> materialize(@PathVariable Long id) {
+    return ResponseEntity.ok(segmentService.materialize(id));
+  }
+}
@@ -1,9 +1,11 @@
 package back.client_exp_backend.controller;
 
+import back.client_exp_backend.audit.PayloadAuditLogger;
 import back.client_exp_backend.dto.PagedResponseDto;
 import back.client_exp_backend.dto.QuestionDto;
 import back.client_exp_backend.dto.SurveyDto;
 import back.client_exp_backend.dto.SurveyStatusUpdateRequest;
+import back.client_exp_backend.dto.SurveySummaryDto;
 import back.client_exp_backend.models.enums.SurveyStatus;
 import back.client_exp_backend.service.SurveyService;
 import jakarta.validation.Valid;
@@ -14,9 +16,6 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
 @RestController
 @RequestMapping("/api/surveys")
@@ -24,20 +23,16 @@ import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 @Slf4j
 public class SurveyController {
 
+  private static final int MAX_CURSOR_PAGE_SIZE = 100;
+
   private final SurveyService surveyService;
+  private final PayloadAuditLogger payloadAuditLogger;
 
   @PostMapping
   public ResponseEntity<SurveyDto> createSurvey(
       @Valid @RequestBody SurveyDto surveyDto,
       @AuthenticationPrincipal UserDetails userDetails) {
-    try {
-      ObjectMapper objectMapper = new ObjectMapper();
-      objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
-      objectMapper.registerModule(new JavaTimeModule());
-      log.info("Запрос на создание опросника: \n{}", objectMapper.writeValueAsString(surveyDto));
-    } catch (Exception e) {
-      log.error("Ошибка при логировании запроса: {}", e.getMessage());
-    }
+    payloadAuditLogger.audit("survey.create", "Запрос на создание опросника", surveyDto);
 
     try {
       // Преобразование типов вопросов
@@ -67,7 +62,10 @@ public class SurveyController {
   public ResponseEntity<PagedResponseDto<SurveyDto>> getAllSurveys(
       @RequestParam(defaultValue = "0") int page,
       @RequestParam(defaultValue = "10") int size,
-      @RequestParam(required = false) String status) {
+      @RequestParam(required = false) String status,
+      @RequestParam(required = false) String cursor,
+      @RequestParam(required = false) Long createdBy,
+      @RequestParam(defaultValue = "false") boolean withTotal) {
     log.info("Запрос на получение списка опросников. Страница: {}, размер: {}, статус: {}", page, size, status);
     SurveyStatus surveyStatus = null;
     if (status != null) {
@@ -77,24 +75,41 @@ public class SurveyController {
         log.warn("Неизвестный статус опросника: {}, будут возвращены все опросники", status);
       }
     }
-    PagedResponseDto<SurveyDto> response = surveyService.getAllSurveys(page, size, surveyStatus);
+    // Режим курсора включается параметром cursor (пустой — первая страница)
+    PagedResponseDto<SurveyDto> response = cursor != null
+        ? surveyService.getSurveysByCursor(cursor, Math.max(1, Math.min(size, MAX_CURSOR_PAGE_SIZE)), surveyStatus,
+            createdBy, withTotal)
+        : surveyService.getAllSurveys(page, size, surveyStatus);
     return ResponseEntity.ok(response);
   }
 
+  /**
+   * Облегченный список опросов: без вопросов, с количеством вопросов и
+   * респондентов
+   */
+  @GetMapping("/summaries")
+  public ResponseEntity<PagedResponseDto<SurveySummaryDto>> getSurveySummaries(
+      @RequestParam(defaultValue = "0") int page,
+      @RequestParam(defaultValue = "10") int size,
+      @RequestParam(required = false) String status) {
+    SurveyStatus surveyStatus = null;
+    if (status != null) {
+      try {
+        surveyStatus = SurveyStatus.valueOf(status.toUpperCase());
+      } catch (IllegalArgumentException e) {
+        log.warn("Неизвестный статус опросника: {}, будут возвращены все опросники", status);
+      }
+    }
+    return ResponseEntity.ok(surveyService.getSurveySummaries(page, size, surveyStatus));
+  }
+
   @GetMapping("/{id}")
   public ResponseEntity<SurveyDto> getSurveyById(@PathVariable Long id) {
     log.info("Запрос на получение опросника с id: {}", id);
     try {
       SurveyDto surveyDto = surveyService.getSurveyById(id);
 
-      try {
-        ObjectMapper objectMapper = new ObjectMapper();
-        objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
-        objectMapper.registerModule(new JavaTimeModule());
-        log.info("Данные опросника: \n{}", objectMapper.writeValueAsString(surveyDto));
-      } catch (Exception e) {
-        log.error("Ошибка при логировании ответа: {}", e.getMessage());
-      }
+      payloadAuditLogger.audit("survey.get", "Данные опросника", surveyDto);
 
       return ResponseEntity.ok(surveyDto);
     } catch (Exception e) {
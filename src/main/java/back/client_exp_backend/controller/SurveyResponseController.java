@@ -1,26 +1,36 @@
 package back.client_exp_backend.controller;
 
+import back.client_exp_backend.audit.PayloadAuditLogger;
+import back.client_exp_backend.dto.IngestionReceiptDto;
 import back.client_exp_backend.dto.SurveyResponseDto;
 import back.client_exp_backend.dto.SurveyResponseResultDto;
 import back.client_exp_backend.exception.ApiError;
-import back.client_exp_backend.models.ClientAnswer;
-import back.client_exp_backend.repository.ClientAnswerRepository;
+import back.client_exp_backend.exception.IngestionQueueFullException;
+import back.client_exp_backend.exception.ResourceNotFoundException;
 import back.client_exp_backend.repository.SurveyRepository;
+import back.client_exp_backend.service.AnswerSearchService;
+import back.client_exp_backend.service.SurveyBulkSubmissionService;
+import back.client_exp_backend.service.SurveyIngestionService;
 import back.client_exp_backend.service.SurveyResponseService;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import back.client_exp_backend.service.SurveyStatsService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Map;
 
 @RestController
 @RequestMapping("/api/surveys/responses")
@@ -28,18 +38,22 @@ import java.util.Map;
 @Slf4j
 public class SurveyResponseController {
 
+  private static final String NDJSON = "application/x-ndjson";
+  private static final int MAX_PAGE_SIZE = 500;
+
   private final SurveyResponseService surveyResponseService;
-  private final ClientAnswerRepository clientAnswerRepository;
+  private final SurveyIngestionService surveyIngestionService;
+  private final SurveyBulkSubmissionService surveyBulkSubmissionService;
+  private final SurveyStatsService surveyStatsService;
   private final SurveyRepository surveyRepository;
+  private final AnswerSearchService answerSearchService;
+  private final PayloadAuditLogger payloadAuditLogger;
 
   @PostMapping
   public ResponseEntity<Object> submitSurveyResponse(@Valid @RequestBody SurveyResponseDto responseDto) {
     try {
       // Логирование запроса
-      ObjectMapper objectMapper = new ObjectMapper();
-      objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
-      objectMapper.registerModule(new JavaTimeModule());
-      log.info("Получены ответы на опрос: \n{}", objectMapper.writeValueAsString(responseDto));
+      payloadAuditLogger.audit("survey-response.submit", "Получены ответы на опрос", responseDto);
 
       // Проверка наличия данных о респонденте
       if (responseDto.getRespondent() == null) {
@@ -48,6 +62,14 @@ public class SurveyResponseController {
             new ApiError(HttpStatus.BAD_REQUEST, "Ошибка валидации", "Отсутствуют данные о респонденте"));
       }
 
+      // В режиме отложенной записи только ставим ответы в очередь
+      if (surveyIngestionService.isAsyncEnabled()) {
+        IngestionReceiptDto receipt = surveyIngestionService.enqueue(responseDto);
+        log.info("Ответы на опрос {} поставлены в очередь, квитанция {}", receipt.getSurveyId(),
+            receipt.getReceiptId());
+        return ResponseEntity.accepted().body(receipt);
+      }
+
       // Обработка ответов на опрос
       SurveyResponseResultDto result = surveyResponseService.processSurveyResponse(responseDto);
 
@@ -56,6 +78,17 @@ public class SurveyResponseController {
           result.getId(), result.getSurveyId(), result.getAnswersCount());
 
       return ResponseEntity.ok(result);
+    } catch (IngestionQueueFullException e) {
+      log.warn("Ответы на опрос {} отклонены: {}", responseDto.getSurveyId(), e.getMessage());
+      return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+          .header(HttpHeaders.RETRY_AFTER, "5")
+          .body(new ApiError(HttpStatus.SERVICE_UNAVAILABLE, "Сервис перегружен", e.getMessage()));
+    } catch (ResourceNotFoundException e) {
+      return ResponseEntity.status(HttpStatus.NOT_FOUND).body(
+          new ApiError(HttpStatus.NOT_FOUND, "Опрос не найден", e.getMessage()));
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.badRequest().body(
+          new ApiError(HttpStatus.BAD_REQUEST, "Ошибка валидации", e.getMessage()));
     } catch (Exception e) {
       log.error("Ошибка при обработке ответов на опрос", e);
       return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
@@ -63,9 +96,36 @@ public class SurveyResponseController {
     }
   }
 
+  /**
+   * Пакетная загрузка ответов: тело запроса — NDJSON, по одному
+   * SurveyResponseDto в строке. Ответ — NDJSON с результатом каждой строки
+   */
+  @PostMapping(path = "/bulk", consumes = { NDJSON, MediaType.APPLICATION_JSON_VALUE })
+  public void submitSurveyResponsesBulk(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    response.setStatus(HttpStatus.OK.value());
+    response.setContentType(NDJSON);
+    response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+
+    long lines = surveyBulkSubmissionService.processNdjson(request.getInputStream(), response.getOutputStream());
+    log.info("Обработан пакет ответов из {} строк", lines);
+  }
+
+  @GetMapping("/receipts/{receiptId}")
+  public ResponseEntity<Object> getSubmissionReceipt(@PathVariable String receiptId) {
+    return surveyIngestionService.getReceipt(receiptId)
+        .<ResponseEntity<Object>>map(ResponseEntity::ok)
+        .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).body(
+            new ApiError(HttpStatus.NOT_FOUND, "Квитанция не найдена",
+                "Квитанция " + receiptId + " не найдена или срок ее хранения истек")));
+  }
+
   @GetMapping("/survey/{surveyId}/summary")
   @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
-  public ResponseEntity<Object> getSurveyResponsesSummary(@PathVariable Long surveyId) {
+  public ResponseEntity<Object> getSurveyResponsesSummary(
+      @PathVariable Long surveyId,
+      @RequestParam(required = false) String cursor,
+      @RequestParam(defaultValue = "100") int size) {
     try {
       // Проверяем существование опроса
       boolean surveyExists = surveyRepository.existsById(surveyId);
@@ -74,23 +134,12 @@ public class SurveyResponseController {
             new ApiError(HttpStatus.NOT_FOUND, "Опрос не найден", "Опрос с ID " + surveyId + " не найден"));
       }
 
-      // Получаем количество уникальных респондентов
-      List<Long> respondentIds = clientAnswerRepository.findDistinctClientIdsBySurveyId(surveyId);
-      int respondentsCount = respondentIds.size();
-
-      // Получаем общее количество ответов
-      List<ClientAnswer> answers = clientAnswerRepository.findBySurvey(
-          surveyRepository.findById(surveyId).get());
-      int totalAnswersCount = answers.size();
-
-      // Формируем результат
-      Map<String, Object> result = new HashMap<>();
-      result.put("surveyId", surveyId);
-      result.put("respondentsCount", respondentsCount);
-      result.put("totalAnswersCount", totalAnswersCount);
-      result.put("respondentIds", respondentIds);
-
-      return ResponseEntity.ok(result);
+      // Счетчики берутся из survey_stats, ID респондентов отдаются постранично
+      int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+      return ResponseEntity.ok(surveyStatsService.getSummary(surveyId, cursor, pageSize));
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.badRequest().body(
+          new ApiError(HttpStatus.BAD_REQUEST, "Некорректный запрос", e.getMessage()));
     } catch (Exception e) {
       log.error("Ошибка при получении сводки ответов по опросу с ID {}", surveyId, e);
       return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
@@ -98,6 +147,33 @@ public class SurveyResponseController {
     }
   }
 
+  /**
+   * Полнотекстовый поиск по текстовым ответам с подсветкой совпадений.
+   * Запрос в синтаксисе websearch: слова, "фразы", or, -исключение
+   */
+  @GetMapping("/search")
+  @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
+  public ResponseEntity<Object> searchTextAnswers(
+      @RequestParam("q") String query,
+      @RequestParam(required = false) Long surveyId,
+      @RequestParam(required = false) Long questionId,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+      @RequestParam(required = false) String cursor,
+      @RequestParam(defaultValue = "20") int size) {
+    try {
+      int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+      return ResponseEntity.ok(answerSearchService.search(query, surveyId, questionId, from, to, cursor, pageSize));
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.badRequest().body(
+          new ApiError(HttpStatus.BAD_REQUEST, "Некорректный запрос", e.getMessage()));
+    } catch (Exception e) {
+      log.error("Ошибка при поиске по текстовым ответам", e);
+      return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
+          new ApiError(HttpStatus.INTERNAL_SERVER_ERROR, "Внутренняя ошибка сервера", e.getMessage()));
+    }
+  }
+
   // @GetMapping("/{surveyId}")
   // @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
   // public ResponseEntity<Object> getClientSurveyResponses(
@@ -136,6 +212,52 @@ public class SurveyResponseController {
   // }
   // }
 
+  /**
+   * Постраничная выдача ответов на опрос по курсору (ID последнего клиента
+   * предыдущей страницы)
+   */
+  @GetMapping("/{surveyId}/page")
+  @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
+  public ResponseEntity<Object> getFormattedResponsesPage(
+      @PathVariable Long surveyId,
+      @RequestParam(required = false) String cursor,
+      @RequestParam(defaultValue = "50") int size) {
+    try {
+      if (!surveyRepository.existsById(surveyId)) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(
+            new ApiError(HttpStatus.NOT_FOUND, "Опрос не найден", "Опрос с ID " + surveyId + " не найден"));
+      }
+
+      int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+      return ResponseEntity.ok(surveyResponseService.getFormattedResponsesPage(surveyId, cursor, pageSize));
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.badRequest().body(
+          new ApiError(HttpStatus.BAD_REQUEST, "Некорректный запрос", e.getMessage()));
+    } catch (Exception e) {
+      log.error("Ошибка при получении страницы ответов на опрос {}", surveyId, e);
+      return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
+          new ApiError(HttpStatus.INTERNAL_SERVER_ERROR, "Внутренняя ошибка сервера", e.getMessage()));
+    }
+  }
+
+  /**
+   * Потоковая выгрузка всех ответов на опрос JSON-массивом
+   */
+  @GetMapping("/{surveyId}/export")
+  @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
+  public ResponseEntity<StreamingResponseBody> exportFormattedResponses(@PathVariable Long surveyId) {
+    // Тело отдается потоком, поэтому отсутствие опроса обрабатывает GlobalExceptionHandler
+    if (!surveyRepository.existsById(surveyId)) {
+      throw new ResourceNotFoundException("Опрос с ID " + surveyId + " не найден");
+    }
+
+    StreamingResponseBody body = output -> surveyResponseService.exportFormattedResponses(surveyId, output);
+    return ResponseEntity.ok()
+        .contentType(MediaType.APPLICATION_JSON)
+        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"survey-" + surveyId + "-responses.json\"")
+        .body(body);
+  }
+
   @GetMapping("/{surveyId}")
   @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
   public ResponseEntity<Object> getFormattedResponses(@PathVariable Long surveyId) {
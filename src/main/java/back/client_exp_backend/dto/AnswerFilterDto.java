@@ -0,0 +1,27 @@
+package back.client_exp_backend.dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Условие на ответ респондента: для вопросов с выбором — выбран хотя бы один
+ * из вариантов options, для RATING — оценка от min до max, для TEXT — ответ
+ * равен text. Без значений условие означает «на вопрос есть ответ»
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnswerFilterDto {
+  @NotNull(message = "ID вопроса обязателен")
+  private Long questionId;
+  private List<String> options;
+  private Integer min;
+  private Integer max;
+  private String text;
+}
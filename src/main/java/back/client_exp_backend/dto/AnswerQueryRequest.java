@@ -0,0 +1,26 @@
+package back.client_exp_backend.dto;
+
+import jakarta.validation.Valid;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Распределение ответов на вопросы questionIds (без них — на все вопросы)
+ * среди респондентов, удовлетворяющих всем условиям filters
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnswerQueryRequest {
+  @Valid
+  @Builder.Default
+  private List<AnswerFilterDto> filters = new ArrayList<>();
+  @Builder.Default
+  private List<Long> questionIds = new ArrayList<>();
+}
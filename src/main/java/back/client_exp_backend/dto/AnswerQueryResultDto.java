@@ -0,0 +1,19 @@
+package back.client_exp_backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class AnswerQueryResultDto {
+  private Long surveyId;
+  private long totalRespondents;
+  private long matchedRespondents;
+  private List<ClientAnswerAnalyticsDto> questions;
+}
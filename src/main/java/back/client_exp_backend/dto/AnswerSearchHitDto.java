@@ -0,0 +1,30 @@
+package back.client_exp_backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Найденный текстовый ответ. highlight — фрагменты ответа, где совпадения
+ * выделены тегами mark
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class AnswerSearchHitDto {
+  private Long answerId;
+  private Long surveyId;
+  private Long questionId;
+  private String questionText;
+  private Long clientId;
+  private float rank;
+  private String highlight;
+
+  @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+  private LocalDateTime answeredAt;
+}
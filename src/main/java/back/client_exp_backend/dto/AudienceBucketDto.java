@@ -0,0 +1,17 @@
+package back.client_exp_backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class AudienceBucketDto {
+  private String value;
+  private String label;
+  private long count;
+  private double share;
+}
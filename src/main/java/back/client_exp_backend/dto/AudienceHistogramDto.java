@@ -0,0 +1,21 @@
+package back.client_exp_backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Распределение аудитории по значениям поля; последний элемент buckets —
+ * клиенты без значения (value = null)
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class AudienceHistogramDto {
+  private String field;
+  private List<AudienceBucketDto> buckets;
+}
@@ -0,0 +1,25 @@
+package back.client_exp_backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Размер аудитории по фильтрам и распределение подходящих клиентов по
+ * остальным полям-перечислениям
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class AudienceSizeDto {
+  private String plan;
+  private long totalClients;
+  private long matched;
+  private double share;
+  private List<AudienceHistogramDto> histograms;
+  private long elapsedMs;
+}
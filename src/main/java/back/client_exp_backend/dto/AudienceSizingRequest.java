@@ -0,0 +1,23 @@
+package back.client_exp_backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Фильтры подбора аудитории по полям клиента (имена как в условиях
+ * сегментов: ageGroup, gender, usageFrequency, source, usagePurpose,
+ * locationPreference, region). Значения одного поля объединяются через OR,
+ * разные поля — через AND; exclude работает как NOT IN в условиях сегмента:
+ * остаются клиенты с другим заполненным значением поля
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class AudienceSizingRequest {
+  private Map<String, List<String>> include;
+  private Map<String, List<String>> exclude;
+}
@@ -0,0 +1,23 @@
+package back.client_exp_backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Результат обработки одной строки NDJSON-пакета ответов
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkSubmissionLineDto {
+  private long line;
+  private boolean success;
+  private Long surveyId;
+  private SurveyResponseResultDto result;
+  private String error;
+}
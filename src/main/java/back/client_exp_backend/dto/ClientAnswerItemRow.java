@@ -0,0 +1,26 @@
+package back.client_exp_backend.dto;
+
+import back.client_exp_backend.models.enums.QuestionType;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Ответ клиента с текстом вопроса для списка клиентов с ответами
+ */
+@Getter
+@AllArgsConstructor
+public class ClientAnswerItemRow {
+  private final Long id;
+  private final Long clientId;
+  private final Long surveyId;
+  private final Long questionId;
+  private final String questionText;
+  private final QuestionType questionType;
+  private final Long optionMask;
+  private final String textAnswer;
+  private final Integer numericAnswer;
+  private final String optionText;
+  private final LocalDateTime createdAt;
+}
@@ -0,0 +1,24 @@
+package back.client_exp_backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Плоская строка ответа клиента для выгрузки ответов на опрос. Читается
+ * проекцией без загрузки сущностей и их связей
+ */
+@Getter
+@AllArgsConstructor
+public class ClientAnswerRow {
+  private final Long clientId;
+  private final String clientName;
+  private final String clientEmail;
+  private final Long questionId;
+  private final Long optionMask;
+  private final String textAnswer;
+  private final Integer numericAnswer;
+  private final String optionText;
+  private final LocalDateTime createdAt;
+}
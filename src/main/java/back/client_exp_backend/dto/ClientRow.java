@@ -0,0 +1,33 @@
+package back.client_exp_backend.dto;
+
+import back.client_exp_backend.models.enums.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Поля клиента для списка клиентов с ответами. Читается проекцией без
+ * загрузки сегментов, отзывов и других связей клиента
+ */
+@Getter
+@AllArgsConstructor
+public class ClientRow {
+  private final Long id;
+  private final String name;
+  private final String email;
+  private final String phone;
+  private final AgeGroup ageGroup;
+  private final Gender gender;
+  private final String profession;
+  private final String region;
+  private final LocationPreference locationPreference;
+  private final UsageFrequency usageFrequency;
+  private final Source source;
+  private final String socialNetwork;
+  private final UsagePurpose usagePurpose;
+  private final LocalDate clientSince;
+  private final LocalDateTime createdAt;
+  private final LocalDateTime updatedAt;
+}
@@ -0,0 +1,41 @@
+package back.client_exp_backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Таблица сопряженности двух признаков. Пустые строки и столбцы не выводятся.
+ * Проценты по строкам и столбцам — доля ячейки в итоге строки или столбца.
+ * Критерий хи-квадрат не считается, если хотя бы один признак — множественный
+ * выбор (респондент попадает в несколько ячеек). lowExpectedShare — доля
+ * ячеек с ожидаемой частотой меньше 5; если она больше 0.2, p-value ненадежно
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CrosstabDto {
+  private Long surveyId;
+  private String rowVariable;
+  private String columnVariable;
+  private List<String> rowLabels;
+  private List<String> columnLabels;
+  private long[][] counts;
+  private double[][] rowPercentages;
+  private double[][] columnPercentages;
+  private long[] rowTotals;
+  private long[] columnTotals;
+  private long total;
+  private boolean multipleResponse;
+  private Double chiSquare;
+  private Integer degreesOfFreedom;
+  private Double pValue;
+  private Double cramersV;
+  private Double lowExpectedShare;
+}
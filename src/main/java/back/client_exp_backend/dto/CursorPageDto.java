@@ -0,0 +1,23 @@
+package back.client_exp_backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Страница при постраничной выборке по курсору (keyset). Для следующей
+ * страницы в запрос передается nextCursor
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class CursorPageDto<T> {
+  private List<T> content;
+  private int size;
+  private String nextCursor;
+  private boolean hasMore;
+}
@@ -0,0 +1,31 @@
+package back.client_exp_backend.dto;
+
+import back.client_exp_backend.models.enums.IngestionStatus;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class IngestionReceiptDto {
+  private String receiptId;
+  private Long surveyId;
+  private IngestionStatus status;
+
+  @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+  private LocalDateTime acceptedAt;
+
+  @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+  private LocalDateTime completedAt;
+
+  // Квитанция доступна без авторизации, поэтому данные респондента и
+  // ответы в нее не попадают
+  private Integer answersCount;
+  private String error;
+}
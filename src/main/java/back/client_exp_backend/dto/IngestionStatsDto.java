@@ -0,0 +1,25 @@
+package back.client_exp_backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class IngestionStatsDto {
+  private boolean asyncEnabled;
+  private boolean accepting;
+  private int queueDepth;
+  private int queueCapacity;
+  private int workers;
+  private long acceptedTotal;
+  private long rejectedTotal;
+  private long completedTotal;
+  private long failedTotal;
+  private long batchesTotal;
+  private long lastBatchDurationMs;
+  private int trackedReceipts;
+}
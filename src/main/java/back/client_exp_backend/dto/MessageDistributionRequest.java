@@ -5,6 +5,13 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
+/**
+ * Тематическое письмо. segmentIds и clientIds ограничивают получателей,
+ * notRespondedSurveyId оставляет только не ответивших на опрос (напоминание).
+ * Без условий — все клиенты
+ */
 @Data
 @Builder
 @NoArgsConstructor
@@ -12,4 +19,7 @@ import lombok.NoArgsConstructor;
 public class MessageDistributionRequest {
   private String subject;
   private String message;
+  private List<Long> segmentIds;
+  private List<Long> clientIds;
+  private Long notRespondedSurveyId;
 }
\ No newline at end of file
@@ -0,0 +1,27 @@
+package back.client_exp_backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Значение показателя за период. score — NPS (от -100 до 100), доля
+ * удовлетворенных для CSAT (%) или средняя оценка для CES
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MetricScoreDto {
+  private String period;
+  private long responses;
+  private Double score;
+  private Double average;
+  private Double topBoxRate;
+  private Long promoters;
+  private Long passives;
+  private Long detractors;
+}
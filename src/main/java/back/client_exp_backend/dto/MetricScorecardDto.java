@@ -0,0 +1,20 @@
+package back.client_exp_backend.dto;
+
+import back.client_exp_backend.models.enums.MetricType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class MetricScorecardDto {
+  private Long questionId;
+  private String questionText;
+  private MetricType metricType;
+  private List<MetricScoreDto> scores;
+}
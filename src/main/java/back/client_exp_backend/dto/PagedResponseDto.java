@@ -13,8 +13,14 @@ import java.util.List;
 @NoArgsConstructor
 public class PagedResponseDto<T> {
   private List<T> content;
+
+  // В режиме курсора без запроса количества totalElements и totalPages равны -1
   private long totalElements;
   private int totalPages;
   private int size;
   private int number;
+
+  // Заполняются только в режиме курсора
+  private String nextCursor;
+  private String prevCursor;
 }
\ No newline at end of file
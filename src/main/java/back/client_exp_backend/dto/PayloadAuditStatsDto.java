@@ -0,0 +1,37 @@
+package back.client_exp_backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class PayloadAuditStatsDto {
+  private boolean enabled;
+  private int queueDepth;
+  private int queueCapacity;
+  private long loggedTotal;
+  private long sampledOutTotal;
+  private long droppedTotal;
+  private long truncatedTotal;
+  private long failedTotal;
+  private Map<String, EndpointStats> endpoints;
+
+  @Data
+  @Builder
+  @AllArgsConstructor
+  @NoArgsConstructor
+  public static class EndpointStats {
+    private double sampleRate;
+    private int maxBytes;
+    private long logged;
+    private long sampledOut;
+    private long dropped;
+    private long truncated;
+  }
+}
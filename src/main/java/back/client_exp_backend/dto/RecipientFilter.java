@@ -0,0 +1,24 @@
+package back.client_exp_backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Отбор получателей рассылки. Заданные условия пересекаются: клиенты из
+ * сегментов segmentIds (по client_segments, состав сегментов с условием
+ * записывается перед рассылкой), из списка clientIds и не отвечавшие на опрос
+ * notRespondedSurveyId. Без условий — все клиенты
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class RecipientFilter {
+  private List<Long> segmentIds;
+  private List<Long> clientIds;
+  private Long notRespondedSurveyId;
+}
@@ -0,0 +1,15 @@
+package back.client_exp_backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Получатель рассылки: только поля, нужные для письма
+ */
+@Getter
+@AllArgsConstructor
+public class RecipientRow {
+  private final Long id;
+  private final String name;
+  private final String email;
+}
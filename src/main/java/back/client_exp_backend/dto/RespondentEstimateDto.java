@@ -0,0 +1,21 @@
+package back.client_exp_backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Оценка числа уникальных респондентов и границы интервала, в который
+ * истинное значение попадает примерно с вероятностью 95%
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class RespondentEstimateDto {
+  private String key;
+  private long estimate;
+  private long lowerBound;
+  private long upperBound;
+}
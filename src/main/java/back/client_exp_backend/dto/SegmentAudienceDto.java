@@ -0,0 +1,23 @@
+package back.client_exp_backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Аудитория условия сегмента: план вычисления, число клиентов и первые ID
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class SegmentAudienceDto {
+  private String criteria;
+  private String plan;
+  private int size;
+  private List<Long> sampleClientIds;
+  private long elapsedMs;
+}
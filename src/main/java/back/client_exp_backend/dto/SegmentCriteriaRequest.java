@@ -0,0 +1,14 @@
+package back.client_exp_backend.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SegmentCriteriaRequest {
+  @NotBlank(message = "Условие сегмента обязательно")
+  private String criteria;
+}
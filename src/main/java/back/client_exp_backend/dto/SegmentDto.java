@@ -0,0 +1,31 @@
+package back.client_exp_backend.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Сегмент клиентов. criteria — условие на языке {@code CriteriaParser}
+ * (пусто — состав сегмента ведется вручную), audienceSize — число
+ * подходящих клиентов по индексу атрибутов
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class SegmentDto {
+  private Long id;
+
+  @NotBlank(message = "Название сегмента обязательно")
+  private String name;
+
+  private String description;
+  private String criteria;
+  private Integer audienceSize;
+  private LocalDateTime createdAt;
+  private LocalDateTime updatedAt;
+}
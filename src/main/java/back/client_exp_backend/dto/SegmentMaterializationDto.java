@@ -0,0 +1,21 @@
+package back.client_exp_backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Итог записи состава сегмента в client_segments
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class SegmentMaterializationDto {
+  private Long segmentId;
+  private int members;
+  private int added;
+  private int removed;
+  private long elapsedMs;
+}
@@ -5,6 +5,13 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
+/**
+ * Рассылка опроса. segmentIds и useSurveySegments (сегменты, привязанные к
+ * опросу) выбирают сегменты, clientIds — конкретных клиентов,
+ * excludeResponded исключает уже ответивших. Без условий — все клиенты
+ */
 @Data
 @Builder
 @NoArgsConstructor
@@ -12,4 +19,8 @@ import lombok.NoArgsConstructor;
 public class SurveyDistributionRequest {
   private Long surveyId;
   private String subject;
+  private List<Long> segmentIds;
+  private boolean useSurveySegments;
+  private List<Long> clientIds;
+  private boolean excludeResponded;
 }
\ No newline at end of file
@@ -0,0 +1,15 @@
+package back.client_exp_backend.dto;
+
+import back.client_exp_backend.models.enums.SurveyStatus;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Название и статус опроса для компиляции схемы без загрузки сущности
+ */
+@Getter
+@AllArgsConstructor
+public class SurveyHeaderRow {
+  private final String title;
+  private final SurveyStatus status;
+}
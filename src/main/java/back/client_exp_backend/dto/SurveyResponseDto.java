@@ -4,6 +4,7 @@ import com.fasterxml.jackson.annotation.JsonFormat;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -31,6 +32,11 @@ public class SurveyResponseDto {
   @NotEmpty(message = "Список ответов не может быть пустым")
   private List<SurveyAnswerDto> answers;
 
+  // Ключ идемпотентности от клиента. Если не передан, вычисляется по опросу,
+  // email респондента и ответам
+  @Size(max = 128, message = "Ключ идемпотентности не может быть длиннее 128 символов")
+  private String idempotencyKey;
+
   @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'")
   private LocalDateTime createdAt;
 
@@ -0,0 +1,28 @@
+package back.client_exp_backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class SurveyResponsesSummaryDto {
+  private Long surveyId;
+  private long respondentsCount;
+  private long totalAnswersCount;
+
+  @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+  private LocalDateTime lastResponseAt;
+
+  // Страница ID респондентов; следующая запрашивается с cursor = nextCursor
+  private List<Long> respondentIds;
+  private String nextCursor;
+  private boolean hasMore;
+}
@@ -0,0 +1,40 @@
+package back.client_exp_backend.dto;
+
+import back.client_exp_backend.models.enums.SurveyStatus;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Строка списка опросов без вопросов и вариантов ответов. responseCount —
+ * количество респондентов из счетчиков survey_stats
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class SurveySummaryDto {
+  private Long id;
+  private String title;
+  private SurveyStatus status;
+
+  @JsonFormat(pattern = "yyyy-MM-dd")
+  private LocalDate startDate;
+
+  @JsonFormat(pattern = "yyyy-MM-dd")
+  private LocalDate endDate;
+
+  @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+  private LocalDateTime createdAt;
+
+  @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+  private LocalDateTime updatedAt;
+
+  private long questionCount;
+  private long responseCount;
+}
@@ -0,0 +1,19 @@
+package back.client_exp_backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Слово или пара слов и взвешенное число упоминаний: каждое упоминание
+ * теряет половину веса за период полураспада
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class TermScoreDto {
+  private String term;
+  private double score;
+}
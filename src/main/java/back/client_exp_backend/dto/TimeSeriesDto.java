@@ -0,0 +1,34 @@
+package back.client_exp_backend.dto;
+
+import back.client_exp_backend.models.enums.RollupBucket;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Количество ответов по интервалам [from, to). Если questionId не задан,
+ * считаются отправки опроса. Пустые интервалы возвращаются с нулем
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class TimeSeriesDto {
+  private Long surveyId;
+  private Long questionId;
+  private RollupBucket bucket;
+
+  @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+  private LocalDateTime from;
+
+  @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+  private LocalDateTime to;
+
+  private long total;
+  private List<TimeSeriesPointDto> points;
+}
@@ -0,0 +1,20 @@
+package back.client_exp_backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class TopTermsDto {
+  private Long questionId;
+  private String questionText;
+  private long halfLifeHours;
+  private List<TermScoreDto> words;
+  private List<TermScoreDto> phrases;
+}
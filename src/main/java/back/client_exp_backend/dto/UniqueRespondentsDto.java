@@ -0,0 +1,28 @@
+package back.client_exp_backend.dto;
+
+import back.client_exp_backend.models.enums.RespondentDimension;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Приблизительное число уникальных респондентов за период: всего по
+ * выбранным значениям разреза и по каждому значению отдельно.
+ * relativeStandardError — относительная стандартная ошибка оценки
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class UniqueRespondentsDto {
+  private RespondentDimension dimension;
+  private LocalDate from;
+  private LocalDate to;
+  private double relativeStandardError;
+  private RespondentEstimateDto total;
+  private List<RespondentEstimateDto> byKey;
+}
@@ -0,0 +1,17 @@
+package back.client_exp_backend.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Публикуется, когда бит удаленного варианта ответа убран из option_mask
+ * сохраненных ответов, а старшие биты сдвинуты вниз. При удалении нескольких
+ * вариантов события идут в порядке сдвигов (от старших номеров к младшим)
+ */
+@Getter
+@AllArgsConstructor
+public class AnswerOptionRemovedEvent {
+  private final Long surveyId;
+  private final Long questionId;
+  private final int ordinal;
+}
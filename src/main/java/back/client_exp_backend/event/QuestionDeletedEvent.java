@@ -0,0 +1,14 @@
+package back.client_exp_backend.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Публикуется при удалении вопроса вместе с ответами на него
+ */
+@Getter
+@AllArgsConstructor
+public class QuestionDeletedEvent {
+  private final Long surveyId;
+  private final Long questionId;
+}
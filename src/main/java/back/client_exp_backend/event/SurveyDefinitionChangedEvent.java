@@ -0,0 +1,15 @@
+package back.client_exp_backend.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Публикуется при изменении структуры опроса (сам опрос, его вопросы или
+ * варианты ответов) и при его удалении
+ */
+@Getter
+@AllArgsConstructor
+public class SurveyDefinitionChangedEvent {
+  private final Long surveyId;
+  private final boolean deleted;
+}
@@ -0,0 +1,34 @@
+package back.client_exp_backend.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Публикуется при сохранении новой отправки ответов на опрос. Слушатели
+ * обрабатывают его после фиксации транзакции, поэтому откатившиеся отправки в
+ * аналитику не попадают
+ */
+@Getter
+@AllArgsConstructor
+public class SurveyResponseSubmittedEvent {
+  private final Long surveyId;
+  private final Long clientId;
+  private final boolean newRespondent;
+  private final LocalDateTime submittedAt;
+  private final List<AnswerFact> answers;
+
+  /**
+   * Сохраненный ответ на один вопрос
+   */
+  @Getter
+  @AllArgsConstructor
+  public static class AnswerFact {
+    private final Long questionId;
+    private final Long optionMask;
+    private final Integer numericAnswer;
+    private final String textAnswer;
+  }
+}
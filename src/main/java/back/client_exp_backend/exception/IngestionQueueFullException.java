@@ -0,0 +1,8 @@
+package back.client_exp_backend.exception;
+
+public class IngestionQueueFullException extends RuntimeException {
+
+  public IngestionQueueFullException(String message) {
+    super(message);
+  }
+}
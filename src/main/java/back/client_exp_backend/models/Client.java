@@ -1,6 +1,7 @@
 package back.client_exp_backend.models;
 
 import back.client_exp_backend.models.enums.*;
+import back.client_exp_backend.segment.ClientIndexListener;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -16,6 +17,7 @@ import java.util.Set;
 
 @Entity
 @Table(name = "clients")
+@EntityListeners(ClientIndexListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -9,15 +9,21 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "client_answers")
+@Table(name = "client_answers", indexes = {
+    @Index(name = "idx_client_answers_survey_client", columnList = "survey_id, client_id, id"),
+    @Index(name = "idx_client_answers_client", columnList = "client_id, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 public class ClientAnswer {
 
+  // Пул идентификаторов из последовательности позволяет Hibernate группировать
+  // вставки в JDBC batch (с IDENTITY каждая вставка — отдельный запрос)
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "client_answers_seq")
+  @SequenceGenerator(name = "client_answers_seq", sequenceName = "client_answers_id_seq", allocationSize = 50)
   private Long id;
 
   @ManyToOne
@@ -42,6 +48,11 @@ public class ClientAnswer {
   @Column(name = "numeric_answer")
   private Integer numericAnswer;
 
+  // Выбранные варианты ответа для SINGLE_CHOICE и MULTIPLE_CHOICE: бит i
+  // соответствует варианту с порядковым номером i (см. CompiledSurveySchema)
+  @Column(name = "option_mask")
+  private Long optionMask;
+
   @Column(name = "created_at", nullable = false)
   private LocalDateTime createdAt;
 
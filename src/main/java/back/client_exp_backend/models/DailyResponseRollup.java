@@ -0,0 +1,27 @@
+package back.client_exp_backend.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Количество ответов за день, полученное сворачиванием почасовых строк
+ * {@link HourlyResponseRollup}. Дни, еще не свернутые, есть только в почасовой
+ * таблице
+ */
+@Entity
+@Table(name = "response_rollups_daily")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DailyResponseRollup {
+
+  @EmbeddedId
+  private ResponseRollupKey id;
+
+  @Column(name = "responses_count", nullable = false)
+  private long responsesCount;
+}
@@ -0,0 +1,27 @@
+package back.client_exp_backend.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Количество ответов за час. Для question_id = 0 считаются отправки опроса,
+ * для остальных — ответы на вопрос. Заполняется при сохранении ответов, а
+ * строки старше нескольких дней сворачиваются в {@link DailyResponseRollup}
+ */
+@Entity
+@Table(name = "response_rollups_hourly")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class HourlyResponseRollup {
+
+  @EmbeddedId
+  private ResponseRollupKey id;
+
+  @Column(name = "responses_count", nullable = false)
+  private long responsesCount;
+}
@@ -0,0 +1,42 @@
+package back.client_exp_backend.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+
+/**
+ * Снимок счетчиков распределения ответов на вопрос. Для вопросов с выбором
+ * value_counts индексируется порядковым номером варианта, для RATING —
+ * значением оценки
+ */
+@Entity
+@Table(name = "question_answer_counters", indexes = @Index(name = "idx_question_answer_counters_survey", columnList = "survey_id"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class QuestionAnswerCounters {
+
+  @Id
+  @Column(name = "question_id")
+  private Long questionId;
+
+  @Column(name = "survey_id", nullable = false)
+  private Long surveyId;
+
+  @Column(name = "total_count", nullable = false)
+  private long totalCount;
+
+  @JdbcTypeCode(SqlTypes.ARRAY)
+  @Column(name = "value_counts", nullable = false, columnDefinition = "bigint[]")
+  private long[] valueCounts;
+
+  @Column(name = "snapshot_at", nullable = false)
+  private LocalDateTime snapshotAt;
+}
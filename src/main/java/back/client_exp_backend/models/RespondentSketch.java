@@ -0,0 +1,32 @@
+package back.client_exp_backend.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * HyperLogLog респондентов, ответивших за день, в одном разрезе. Регистры
+ * хранятся сжатыми gzip; sketch разных дней и значений разреза объединяются
+ * при запросе
+ */
+@Entity
+@Table(name = "respondent_sketches", indexes = @Index(name = "idx_respondent_sketches_day", columnList = "dimension, day"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RespondentSketch {
+
+  @EmbeddedId
+  private RespondentSketchKey id;
+
+  @Column(name = "registers", nullable = false, columnDefinition = "bytea")
+  private byte[] registers;
+
+  @Column(name = "updated_at", nullable = false)
+  private LocalDateTime updatedAt;
+}
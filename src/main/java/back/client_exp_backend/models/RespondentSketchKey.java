@@ -0,0 +1,33 @@
+package back.client_exp_backend.models;
+
+import back.client_exp_backend.models.enums.RespondentDimension;
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Ключ sketch: разрез, значение разреза и день
+ */
+@Embeddable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RespondentSketchKey implements Serializable {
+
+  @Enumerated(EnumType.STRING)
+  @Column(name = "dimension", nullable = false, length = 16)
+  private RespondentDimension dimension;
+
+  @Column(name = "dimension_key", nullable = false)
+  private String dimensionKey;
+
+  @Column(name = "day", nullable = false)
+  private LocalDate day;
+}
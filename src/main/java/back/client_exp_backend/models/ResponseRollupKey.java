@@ -0,0 +1,29 @@
+package back.client_exp_backend.models;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * Ключ строки агрегата: опрос, вопрос (0 — опрос целиком) и начало интервала
+ */
+@Embeddable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResponseRollupKey implements Serializable {
+
+  @Column(name = "survey_id", nullable = false)
+  private Long surveyId;
+
+  @Column(name = "question_id", nullable = false)
+  private Long questionId;
+
+  @Column(name = "bucket_start", nullable = false)
+  private LocalDateTime bucketStart;
+}
@@ -6,6 +6,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.BatchSize;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -15,7 +16,11 @@ import java.util.List;
 import java.util.Set;
 
 @Entity
-@Table(name = "surveys")
+@Table(name = "surveys", indexes = {
+    @Index(name = "idx_surveys_created_at_id", columnList = "created_at, id"),
+    @Index(name = "idx_surveys_status_created_at_id", columnList = "status, created_at, id"),
+    @Index(name = "idx_surveys_created_by_created_at_id", columnList = "created_by, created_at, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -50,6 +55,7 @@ public class Survey {
   @JoinTable(name = "survey_segments", joinColumns = @JoinColumn(name = "survey_id"), inverseJoinColumns = @JoinColumn(name = "segment_id"))
   private Set<Segment> segments = new HashSet<>();
 
+  @BatchSize(size = 100)
   @OneToMany(mappedBy = "survey", cascade = CascadeType.ALL, orphanRemoval = true)
   private List<Question> questions = new ArrayList<>();
 
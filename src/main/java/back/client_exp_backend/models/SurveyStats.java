@@ -0,0 +1,38 @@
+package back.client_exp_backend.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Счетчики ответов на опрос. Обновляются в той же транзакции, что и сохранение
+ * ответов, и периодически сверяются с client_answers
+ */
+@Entity
+@Table(name = "survey_stats")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SurveyStats {
+
+  @Id
+  @Column(name = "survey_id")
+  private Long surveyId;
+
+  @Column(name = "respondents_count", nullable = false)
+  private long respondentsCount;
+
+  @Column(name = "total_answers_count", nullable = false)
+  private long totalAnswersCount;
+
+  @Column(name = "last_response_at")
+  private LocalDateTime lastResponseAt;
+
+  @Column(name = "updated_at", nullable = false)
+  private LocalDateTime updatedAt;
+}
@@ -0,0 +1,50 @@
+package back.client_exp_backend.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Факт отправки ответов на опрос. Ключ идемпотентности уникален в пределах
+ * опроса, поэтому повторная отправка тех же ответов не создает дубликатов
+ */
+@Entity
+@Table(name = "survey_submissions", uniqueConstraints = @UniqueConstraint(name = "uk_survey_submissions_survey_key", columnNames = {
+    "survey_id", "idempotency_key" }))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SurveySubmission {
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  @ManyToOne(fetch = FetchType.LAZY)
+  @JoinColumn(name = "survey_id", nullable = false)
+  private Survey survey;
+
+  @ManyToOne(fetch = FetchType.LAZY)
+  @JoinColumn(name = "client_id", nullable = false)
+  private Client client;
+
+  @Column(name = "idempotency_key", nullable = false, length = 64)
+  private String idempotencyKey;
+
+  @Column(name = "answers_count", nullable = false)
+  private Integer answersCount;
+
+  @Column(name = "respondent_name", nullable = false)
+  private String respondentName;
+
+  @Column(name = "respondent_email", nullable = false)
+  private String respondentEmail;
+
+  @Column(name = "submitted_at", nullable = false)
+  private LocalDateTime submittedAt;
+}
@@ -0,0 +1,35 @@
+package back.client_exp_backend.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Снимок частот слов и пар слов в ответах на текстовый вопрос: sketch и топ-K
+ * в сжатом двоичном виде
+ */
+@Entity
+@Table(name = "text_term_sketches", indexes = @Index(name = "idx_text_term_sketches_survey", columnList = "survey_id"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TextTermSketch {
+
+  @Id
+  @Column(name = "question_id")
+  private Long questionId;
+
+  @Column(name = "survey_id", nullable = false)
+  private Long surveyId;
+
+  @Column(name = "state", nullable = false, columnDefinition = "bytea")
+  private byte[] state;
+
+  @Column(name = "snapshot_at", nullable = false)
+  private LocalDateTime snapshotAt;
+}
@@ -0,0 +1,41 @@
+package back.client_exp_backend.models.enums;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Поле клиента, по которому можно строить таблицы сопряженности. column —
+ * столбец таблицы clients, labels — подписи допустимых значений в порядке
+ * вывода (null — значения и их порядок берутся из данных)
+ */
+public enum ClientDemographicField {
+  AGE_GROUP("age_group", labels(AgeGroup.values(), AgeGroup::getDisplayValue)),
+  GENDER("gender", labels(Gender.values(), Gender::getDisplayValue)),
+  REGION("region", null),
+  USAGE_FREQUENCY("usage_frequency", labels(UsageFrequency.values(), UsageFrequency::getDisplayValue));
+
+  private final String column;
+  private final Map<String, String> labels;
+
+  ClientDemographicField(String column, Map<String, String> labels) {
+    this.column = column;
+    this.labels = labels;
+  }
+
+  public String getColumn() {
+    return column;
+  }
+
+  public Map<String, String> getLabels() {
+    return labels;
+  }
+
+  private static <E extends Enum<E>> Map<String, String> labels(E[] constants, Function<E, String> label) {
+    Map<String, String> labels = new LinkedHashMap<>();
+    for (E constant : constants) {
+      labels.put(constant.name(), label.apply(constant));
+    }
+    return labels;
+  }
+}
@@ -0,0 +1,8 @@
+package back.client_exp_backend.models.enums;
+
+public enum IngestionStatus {
+  QUEUED,
+  PROCESSING,
+  COMPLETED,
+  FAILED
+}
@@ -0,0 +1,13 @@
+package back.client_exp_backend.models.enums;
+
+/**
+ * Разрез, по которому ведутся sketch уникальных респондентов. Ключ разреза:
+ * для ALL — пустая строка, для SURVEY — ID опроса, для REGION — регион
+ * клиента, для SEGMENT — ID сегмента
+ */
+public enum RespondentDimension {
+  ALL,
+  SURVEY,
+  REGION,
+  SEGMENT
+}
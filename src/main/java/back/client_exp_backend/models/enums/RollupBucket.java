@@ -0,0 +1,47 @@
+package back.client_exp_backend.models.enums;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * Размер интервала временного ряда. sqlUnit совпадает с единицей date_trunc
+ */
+public enum RollupBucket {
+  HOUR("hour"),
+  DAY("day"),
+  WEEK("week"),
+  MONTH("month");
+
+  private final String sqlUnit;
+
+  RollupBucket(String sqlUnit) {
+    this.sqlUnit = sqlUnit;
+  }
+
+  public String getSqlUnit() {
+    return sqlUnit;
+  }
+
+  /**
+   * Начало интервала, в который попадает момент времени
+   */
+  public LocalDateTime truncate(LocalDateTime time) {
+    return switch (this) {
+      case HOUR -> time.truncatedTo(ChronoUnit.HOURS);
+      case DAY -> time.truncatedTo(ChronoUnit.DAYS);
+      case WEEK -> time.truncatedTo(ChronoUnit.DAYS).with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+      case MONTH -> time.truncatedTo(ChronoUnit.DAYS).withDayOfMonth(1);
+    };
+  }
+
+  public LocalDateTime next(LocalDateTime bucketStart) {
+    return switch (this) {
+      case HOUR -> bucketStart.plusHours(1);
+      case DAY -> bucketStart.plusDays(1);
+      case WEEK -> bucketStart.plusWeeks(1);
+      case MONTH -> bucketStart.plusMonths(1);
+    };
+  }
+}
@@ -12,4 +12,7 @@ public interface AnswerOptionRepository extends JpaRepository<AnswerOption, Long
   List<AnswerOption> findByQuestionOrderByOrderNumberAsc(Question question);
 
   void deleteByQuestion(Question question);
+
+  // Порядковый номер варианта ответа в маске (см. CompiledSurveySchema)
+  long countByQuestionAndIdLessThan(Question question, Long id);
 }
\ No newline at end of file
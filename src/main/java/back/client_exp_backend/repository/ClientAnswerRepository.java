@@ -1,15 +1,25 @@
 package back.client_exp_backend.repository;
 
+import back.client_exp_backend.dto.ClientAnswerItemRow;
+import back.client_exp_backend.dto.ClientAnswerRow;
 import back.client_exp_backend.models.Client;
 import back.client_exp_backend.models.ClientAnswer;
 import back.client_exp_backend.models.Question;
 import back.client_exp_backend.models.Survey;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface ClientAnswerRepository extends JpaRepository<ClientAnswer, Long> {
@@ -24,9 +34,61 @@ public interface ClientAnswerRepository extends JpaRepository<ClientAnswer, Long
   @Query("SELECT COUNT(ca) FROM ClientAnswer ca WHERE ca.survey.id = :surveyId AND ca.client.id = :clientId")
   int countBySurveyIdAndClientId(Long surveyId, Long clientId);
 
+  boolean existsBySurvey_IdAndClient_Id(Long surveyId, Long clientId);
+
   @Query("SELECT DISTINCT ca.client.id FROM ClientAnswer ca WHERE ca.survey.id = :surveyId")
   List<Long> findDistinctClientIdsBySurveyId(@Param("surveyId") Long surveyId);
 
   @Query("SELECT COUNT(DISTINCT ca.client.id) FROM ClientAnswer ca WHERE ca.survey.id = :surveyId")
   Long countDistinctClientsBySurveyId(@Param("surveyId") Long surveyId);
+
+  /**
+   * ID респондентов опроса после указанного клиента (keyset по client_id)
+   */
+  @Query("SELECT DISTINCT ca.client.id FROM ClientAnswer ca "
+      + "WHERE ca.survey.id = :surveyId AND ca.client.id > :afterClientId ORDER BY ca.client.id")
+  List<Long> findClientIdsBySurveyIdAfter(@Param("surveyId") Long surveyId,
+      @Param("afterClientId") Long afterClientId, Pageable pageable);
+
+  @Query("SELECT new back.client_exp_backend.dto.ClientAnswerRow(c.id, c.name, c.email, ca.question.id, "
+      + "ca.optionMask, ca.textAnswer, ca.numericAnswer, ao.text, ca.createdAt) "
+      + "FROM ClientAnswer ca JOIN ca.client c LEFT JOIN ca.answerOption ao "
+      + "WHERE ca.survey.id = :surveyId AND c.id IN :clientIds ORDER BY c.id, ca.id")
+  List<ClientAnswerRow> findRowsBySurveyIdAndClientIds(@Param("surveyId") Long surveyId,
+      @Param("clientIds") Collection<Long> clientIds);
+
+  /**
+   * Ответы страницы клиентов одним запросом, с теми же необязательными
+   * условиями по опросу и периоду, что и при выборке клиентов
+   */
+  @Query("SELECT new back.client_exp_backend.dto.ClientAnswerItemRow(ca.id, ca.client.id, ca.survey.id, q.id, "
+      + "q.text, q.type, ca.optionMask, ca.textAnswer, ca.numericAnswer, ao.text, ca.createdAt) "
+      + "FROM ClientAnswer ca JOIN ca.question q LEFT JOIN ca.answerOption ao "
+      + "WHERE ca.client.id IN :clientIds "
+      + "AND (:surveyId IS NULL OR ca.survey.id = :surveyId) "
+      + "AND (:from IS NULL OR ca.createdAt >= :from) "
+      + "AND (:to IS NULL OR ca.createdAt < :to) "
+      + "ORDER BY ca.client.id, ca.id")
+  List<ClientAnswerItemRow> findItemRowsByClientIds(@Param("clientIds") Collection<Long> clientIds,
+      @Param("surveyId") Long surveyId, @Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+  /**
+   * Все ответы на опрос, сгруппированные по клиентам. Строки читаются курсором
+   * БД порциями по fetch size, поэтому поток нужно читать внутри транзакции
+   */
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+  @Query("SELECT new back.client_exp_backend.dto.ClientAnswerRow(c.id, c.name, c.email, ca.question.id, "
+      + "ca.optionMask, ca.textAnswer, ca.numericAnswer, ao.text, ca.createdAt) "
+      + "FROM ClientAnswer ca JOIN ca.client c LEFT JOIN ca.answerOption ao "
+      + "WHERE ca.survey.id = :surveyId ORDER BY c.id, ca.id")
+  Stream<ClientAnswerRow> streamRowsBySurveyId(@Param("surveyId") Long surveyId);
+
+  /**
+   * Убирает из масок бит удаленного варианта ответа, сдвигая старшие биты вниз
+   */
+  @Modifying
+  @Query(value = "UPDATE client_answers SET option_mask = NULLIF("
+      + "(option_mask & ((CAST(1 AS BIGINT) << :ordinal) - 1)) | ((option_mask >> (:ordinal + 1)) << :ordinal), 0) "
+      + "WHERE question_id = :questionId AND option_mask IS NOT NULL", nativeQuery = true)
+  int removeOptionFromMasks(@Param("questionId") Long questionId, @Param("ordinal") int ordinal);
 }
\ No newline at end of file
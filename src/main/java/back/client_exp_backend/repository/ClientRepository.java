@@ -1,9 +1,16 @@
 package back.client_exp_backend.repository;
 
+import back.client_exp_backend.dto.ClientRow;
 import back.client_exp_backend.models.Client;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -11,4 +18,40 @@ public interface ClientRepository extends JpaRepository<Client, Long> {
   Optional<Client> findByEmail(String email);
 
   boolean existsByEmail(String email);
-}
\ No newline at end of file
+
+  /**
+   * Создает клиента или обновляет имя существующего одним запросом, без гонки
+   * между проверкой email и вставкой
+   *
+   * @return ID клиента
+   */
+  @Transactional
+  @Query(value = "INSERT INTO clients (name, email, created_at, updated_at) VALUES (:name, :email, now(), now()) "
+      + "ON CONFLICT (email) DO UPDATE SET name = EXCLUDED.name, updated_at = now() "
+      + "RETURNING id", nativeQuery = true)
+  Long upsertByEmail(@Param("name") String name, @Param("email") String email);
+
+  /**
+   * Клиенты после указанного ID (keyset по id)
+   */
+  @Query("SELECT new back.client_exp_backend.dto.ClientRow(c.id, c.name, c.email, c.phone, c.ageGroup, c.gender, "
+      + "c.profession, c.region, c.locationPreference, c.usageFrequency, c.source, c.socialNetwork, c.usagePurpose, "
+      + "c.clientSince, c.createdAt, c.updatedAt) "
+      + "FROM Client c WHERE c.id > :afterId ORDER BY c.id")
+  List<ClientRow> findRowsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+  /**
+   * Клиенты после указанного ID, у которых есть ответы на опрос и/или за
+   * период [from, to). Незаданные условия не проверяются
+   */
+  @Query("SELECT new back.client_exp_backend.dto.ClientRow(c.id, c.name, c.email, c.phone, c.ageGroup, c.gender, "
+      + "c.profession, c.region, c.locationPreference, c.usageFrequency, c.source, c.socialNetwork, c.usagePurpose, "
+      + "c.clientSince, c.createdAt, c.updatedAt) "
+      + "FROM Client c WHERE c.id > :afterId AND EXISTS (SELECT 1 FROM ClientAnswer ca WHERE ca.client.id = c.id "
+      + "AND (:surveyId IS NULL OR ca.survey.id = :surveyId) "
+      + "AND (:from IS NULL OR ca.createdAt >= :from) "
+      + "AND (:to IS NULL OR ca.createdAt < :to)) "
+      + "ORDER BY c.id")
+  List<ClientRow> findRowsWithAnswersAfter(@Param("afterId") Long afterId, @Param("surveyId") Long surveyId,
+      @Param("from") LocalDateTime from, @Param("to") LocalDateTime to, Pageable pageable);
+}
@@ -0,0 +1,25 @@
+package back.client_exp_backend.repository;
+
+import back.client_exp_backend.models.QuestionAnswerCounters;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface QuestionAnswerCountersRepository extends JpaRepository<QuestionAnswerCounters, Long> {
+
+  // Вызывается из слушателя после фиксации транзакции, поэтому в собственной транзакции
+  @Transactional(propagation = Propagation.REQUIRES_NEW)
+  @Modifying
+  @Query("DELETE FROM QuestionAnswerCounters c WHERE c.surveyId = :surveyId")
+  void deleteBySurveyId(@Param("surveyId") Long surveyId);
+
+  @Transactional(propagation = Propagation.REQUIRES_NEW)
+  @Modifying
+  @Query("DELETE FROM QuestionAnswerCounters c WHERE c.questionId = :questionId")
+  void deleteByQuestionId(@Param("questionId") Long questionId);
+}
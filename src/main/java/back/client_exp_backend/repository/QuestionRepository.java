@@ -3,6 +3,8 @@ package back.client_exp_backend.repository;
 import back.client_exp_backend.models.Question;
 import back.client_exp_backend.models.Survey;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -12,4 +14,8 @@ public interface QuestionRepository extends JpaRepository<Question, Long> {
   List<Question> findBySurveyOrderByOrderNumberAsc(Survey survey);
 
   void deleteBySurvey(Survey survey);
+
+  @Query("SELECT DISTINCT q FROM Question q LEFT JOIN FETCH q.answerOptions "
+      + "WHERE q.survey.id = :surveyId ORDER BY q.orderNumber")
+  List<Question> findWithOptionsBySurveyId(@Param("surveyId") Long surveyId);
 }
\ No newline at end of file
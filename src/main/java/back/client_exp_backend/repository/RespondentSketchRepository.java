@@ -0,0 +1,23 @@
+package back.client_exp_backend.repository;
+
+import back.client_exp_backend.models.RespondentSketch;
+import back.client_exp_backend.models.RespondentSketchKey;
+import back.client_exp_backend.models.enums.RespondentDimension;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface RespondentSketchRepository extends JpaRepository<RespondentSketch, RespondentSketchKey> {
+
+  // Вызывается из слушателя после фиксации транзакции, поэтому в собственной транзакции
+  @Transactional(propagation = Propagation.REQUIRES_NEW)
+  @Modifying
+  @Query("DELETE FROM RespondentSketch s WHERE s.id.dimension = :dimension AND s.id.dimensionKey = :dimensionKey")
+  void deleteByDimensionKey(@Param("dimension") RespondentDimension dimension,
+      @Param("dimensionKey") String dimensionKey);
+}
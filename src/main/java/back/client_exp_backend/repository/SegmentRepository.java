@@ -0,0 +1,9 @@
+package back.client_exp_backend.repository;
+
+import back.client_exp_backend.models.Segment;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SegmentRepository extends JpaRepository<Segment, Long> {
+}
@@ -1,18 +1,55 @@
 package back.client_exp_backend.repository;
 
+import back.client_exp_backend.dto.SurveyHeaderRow;
+import back.client_exp_backend.dto.SurveySummaryDto;
 import back.client_exp_backend.models.Survey;
 import back.client_exp_backend.models.User;
 import back.client_exp_backend.models.enums.SurveyStatus;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Optional;
+
 @Repository
-public interface SurveyRepository extends JpaRepository<Survey, Long> {
+public interface SurveyRepository extends JpaRepository<Survey, Long>, JpaSpecificationExecutor<Survey> {
+  // Автор загружается тем же запросом, вопросы и варианты — пакетно (@BatchSize)
+  @Override
+  @EntityGraph(attributePaths = "createdBy")
+  Page<Survey> findAll(Pageable pageable);
+
+  @EntityGraph(attributePaths = "createdBy")
   Page<Survey> findByStatus(SurveyStatus status, Pageable pageable);
 
   Page<Survey> findByCreatedBy(User user, Pageable pageable);
 
   Page<Survey> findByStatusAndCreatedBy(SurveyStatus status, User user, Pageable pageable);
-}
\ No newline at end of file
+
+  @Query("SELECT new back.client_exp_backend.dto.SurveyHeaderRow(s.title, s.status) FROM Survey s WHERE s.id = :id")
+  Optional<SurveyHeaderRow> findHeaderById(@Param("id") Long id);
+
+  /**
+   * Опрос с автором и вопросами одним запросом; варианты ответов догружаются
+   * одним пакетным запросом
+   */
+  @EntityGraph(attributePaths = { "createdBy", "questions" })
+  @Query("SELECT s FROM Survey s WHERE s.id = :id")
+  Optional<Survey> findWithQuestionsById(@Param("id") Long id);
+
+  /**
+   * Страница списка опросов одним запросом: количество вопросов считается
+   * подзапросом, количество респондентов берется из survey_stats
+   */
+  @Query(value = "SELECT new back.client_exp_backend.dto.SurveySummaryDto(s.id, s.title, s.status, s.startDate, "
+      + "s.endDate, s.createdAt, s.updatedAt, "
+      + "(SELECT COUNT(q) FROM Question q WHERE q.survey.id = s.id), COALESCE(st.respondentsCount, 0)) "
+      + "FROM Survey s LEFT JOIN SurveyStats st ON st.surveyId = s.id "
+      + "WHERE (:status IS NULL OR s.status = :status)",
+      countQuery = "SELECT COUNT(s) FROM Survey s WHERE (:status IS NULL OR s.status = :status)")
+  Page<SurveySummaryDto> findSummaries(@Param("status") SurveyStatus status, Pageable pageable);
+}
@@ -0,0 +1,54 @@
+package back.client_exp_backend.repository;
+
+import back.client_exp_backend.models.Survey;
+import back.client_exp_backend.models.enums.SurveyStatus;
+import jakarta.persistence.criteria.JoinType;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+
+/**
+ * Условия выборки опросов для постраничного списка по курсору. Условие
+ * добавляется в SQL только когда фильтр задан, поэтому запрос может
+ * использовать составные индексы (status|created_by, created_at, id)
+ */
+public final class SurveySpecifications {
+
+  private SurveySpecifications() {
+  }
+
+  public static Specification<Survey> hasStatus(SurveyStatus status) {
+    return status == null ? null : (root, query, cb) -> cb.equal(root.get("status"), status);
+  }
+
+  public static Specification<Survey> createdBy(Long userId) {
+    return userId == null ? null : (root, query, cb) -> cb.equal(root.get("createdBy").get("id"), userId);
+  }
+
+  /**
+   * Опросы строго после позиции (createdAt, id) в порядке от новых к старым
+   * (before = false) или строго перед ней (before = true)
+   */
+  public static Specification<Survey> keyset(LocalDateTime createdAt, Long id, boolean before) {
+    if (createdAt == null || id == null) {
+      return null;
+    }
+    return (root, query, cb) -> before
+        ? cb.or(cb.greaterThan(root.get("createdAt"), createdAt),
+            cb.and(cb.equal(root.get("createdAt"), createdAt), cb.greaterThan(root.get("id"), id)))
+        : cb.or(cb.lessThan(root.get("createdAt"), createdAt),
+            cb.and(cb.equal(root.get("createdAt"), createdAt), cb.lessThan(root.get("id"), id)));
+  }
+
+  /**
+   * Загружает автора тем же запросом. Для запроса количества не применяется
+   */
+  public static Specification<Survey> fetchCreatedBy() {
+    return (root, query, cb) -> {
+      if (query != null && query.getResultType() != Long.class && query.getResultType() != long.class) {
+        root.fetch("createdBy", JoinType.LEFT);
+      }
+      return null;
+    };
+  }
+}
@@ -0,0 +1,75 @@
+package back.client_exp_backend.repository;
+
+import back.client_exp_backend.models.SurveyStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface SurveyStatsRepository extends JpaRepository<SurveyStats, Long> {
+
+  /**
+   * Атомарно увеличивает счетчики опроса, создавая строку при первом ответе
+   */
+  @Modifying
+  @Query(value = "INSERT INTO survey_stats (survey_id, respondents_count, total_answers_count, last_response_at, updated_at) "
+      + "VALUES (:surveyId, :newRespondents, :answers, :respondedAt, now()) "
+      + "ON CONFLICT (survey_id) DO UPDATE SET "
+      + "respondents_count = survey_stats.respondents_count + EXCLUDED.respondents_count, "
+      + "total_answers_count = survey_stats.total_answers_count + EXCLUDED.total_answers_count, "
+      + "last_response_at = GREATEST(survey_stats.last_response_at, EXCLUDED.last_response_at), "
+      + "updated_at = now()", nativeQuery = true)
+  void recordSubmission(@Param("surveyId") Long surveyId, @Param("newRespondents") int newRespondents,
+      @Param("answers") int answers, @Param("respondedAt") LocalDateTime respondedAt);
+
+  /**
+   * Сверяет счетчики опросов с client_answers. Пересчет и снимок счетчиков
+   * читаются в одном снимке БД, а в строку записывается пересчет плюс
+   * приращения, зафиксированные после снимка (текущее значение минус снимок),
+   * поэтому отправки, сохраненные во время сверки, не теряются. Опросы без
+   * ответов обнуляются так же
+   */
+  @Modifying
+  @Query(value = "UPDATE survey_stats s SET "
+      + "respondents_count = c.respondents + (s.respondents_count - c.snapshot_respondents), "
+      + "total_answers_count = c.answers + (s.total_answers_count - c.snapshot_answers), "
+      + "last_response_at = GREATEST(c.last_response_at, "
+      + "  CASE WHEN s.total_answers_count <> c.snapshot_answers THEN s.last_response_at END), "
+      + "updated_at = now() "
+      + "FROM (SELECT st.survey_id, st.respondents_count AS snapshot_respondents, "
+      + "  st.total_answers_count AS snapshot_answers, COALESCE(ca.respondents, 0) AS respondents, "
+      + "  COALESCE(ca.answers, 0) AS answers, ca.last_response_at "
+      + "  FROM survey_stats st LEFT JOIN (SELECT survey_id, COUNT(DISTINCT client_id) AS respondents, "
+      + "    COUNT(*) AS answers, MAX(created_at) AS last_response_at "
+      + "    FROM client_answers GROUP BY survey_id) ca ON ca.survey_id = st.survey_id) c "
+      + "WHERE s.survey_id = c.survey_id "
+      + "AND (c.respondents, c.answers) IS DISTINCT FROM (c.snapshot_respondents, c.snapshot_answers)",
+      nativeQuery = true)
+  int rebuildAll();
+
+  /**
+   * Создает счетчики опросов, у которых есть ответы, но нет строки в
+   * survey_stats. Если строку успела создать отправка, ее приращения
+   * добавляются к пересчету
+   */
+  @Modifying
+  @Query(value = "INSERT INTO survey_stats (survey_id, respondents_count, total_answers_count, last_response_at, updated_at) "
+      + "SELECT survey_id, COUNT(DISTINCT client_id), COUNT(*), MAX(created_at), now() "
+      + "FROM client_answers ca "
+      + "WHERE NOT EXISTS (SELECT 1 FROM survey_stats st WHERE st.survey_id = ca.survey_id) "
+      + "GROUP BY survey_id "
+      + "ON CONFLICT (survey_id) DO UPDATE SET "
+      + "respondents_count = survey_stats.respondents_count + EXCLUDED.respondents_count, "
+      + "total_answers_count = survey_stats.total_answers_count + EXCLUDED.total_answers_count, "
+      + "last_response_at = GREATEST(survey_stats.last_response_at, EXCLUDED.last_response_at), "
+      + "updated_at = now()", nativeQuery = true)
+  int insertMissing();
+
+  @Modifying
+  @Query("DELETE FROM SurveyStats s WHERE s.surveyId = :surveyId")
+  void deleteBySurveyId(@Param("surveyId") Long surveyId);
+}
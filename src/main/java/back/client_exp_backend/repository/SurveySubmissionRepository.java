@@ -0,0 +1,41 @@
+package back.client_exp_backend.repository;
+
+import back.client_exp_backend.models.SurveySubmission;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface SurveySubmissionRepository extends JpaRepository<SurveySubmission, Long> {
+
+  @Query("SELECT s FROM SurveySubmission s WHERE s.survey.id = :surveyId AND s.idempotencyKey = :key")
+  Optional<SurveySubmission> findBySurveyIdAndKey(@Param("surveyId") Long surveyId, @Param("key") String key);
+
+  @Query("SELECT s.idempotencyKey FROM SurveySubmission s WHERE s.survey.id = :surveyId")
+  List<String> findKeysBySurveyId(@Param("surveyId") Long surveyId);
+
+  /**
+   * Регистрирует отправку, если такой ключ в опросе еще не встречался
+   *
+   * @return ID новой отправки или пустое значение для повторной отправки
+   */
+  @Transactional
+  @Query(value = "INSERT INTO survey_submissions "
+      + "(survey_id, client_id, idempotency_key, answers_count, respondent_name, respondent_email, submitted_at) "
+      + "VALUES (:surveyId, :clientId, :key, :answersCount, :name, :email, :submittedAt) "
+      + "ON CONFLICT (survey_id, idempotency_key) DO NOTHING RETURNING id", nativeQuery = true)
+  Optional<Long> claim(@Param("surveyId") Long surveyId, @Param("clientId") Long clientId, @Param("key") String key,
+      @Param("answersCount") int answersCount, @Param("name") String name, @Param("email") String email,
+      @Param("submittedAt") LocalDateTime submittedAt);
+
+  @Modifying
+  @Query("DELETE FROM SurveySubmission s WHERE s.survey.id = :surveyId")
+  void deleteBySurveyId(@Param("surveyId") Long surveyId);
+}
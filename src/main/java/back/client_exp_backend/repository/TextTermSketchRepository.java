@@ -0,0 +1,27 @@
+package back.client_exp_backend.repository;
+
+import back.client_exp_backend.models.TextTermSketch;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+
+@Repository
+public interface TextTermSketchRepository extends JpaRepository<TextTermSketch, Long> {
+
+  // Вызывается из слушателя после фиксации транзакции, поэтому в собственной транзакции
+  @Transactional(propagation = Propagation.REQUIRES_NEW)
+  @Modifying
+  @Query("DELETE FROM TextTermSketch s WHERE s.surveyId = :surveyId")
+  void deleteBySurveyId(@Param("surveyId") Long surveyId);
+
+  @Transactional(propagation = Propagation.REQUIRES_NEW)
+  @Modifying
+  @Query("DELETE FROM TextTermSketch s WHERE s.questionId IN :questionIds")
+  void deleteByQuestionIds(@Param("questionIds") Collection<Long> questionIds);
+}
@@ -0,0 +1,383 @@
+package back.client_exp_backend.segment;
+
+import back.client_exp_backend.models.Client;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Битовые карты клиентов по значениям полей {@link CriteriaField}: бит с
+ * номером ID клиента установлен в карте каждого значения его поля. Индекс
+ * строится из clients при запуске, после фиксации транзакций обновляется по
+ * отдельным клиентам и на случай изменений в обход приложения периодически
+ * перестраивается целиком
+ */
+@Component
+@Slf4j
+public class ClientAttributeIndex implements SmartInitializingSingleton {
+
+  static final int NO_DATE = Integer.MIN_VALUE;
+
+  private static final String LOAD_SQL = "SELECT id, age_group, gender, location_preference, usage_frequency, "
+      + "source, usage_purpose, region, client_since FROM clients";
+
+  // Порядок полей совпадает с порядком столбцов LOAD_SQL после id
+  private static final CriteriaField[] VALUE_FIELDS = {
+      CriteriaField.AGE_GROUP, CriteriaField.GENDER, CriteriaField.LOCATION_PREFERENCE,
+      CriteriaField.USAGE_FREQUENCY, CriteriaField.SOURCE, CriteriaField.USAGE_PURPOSE, CriteriaField.REGION
+  };
+
+  private final JdbcTemplate jdbcTemplate;
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+  private Bitmaps bitmaps;
+  // Изменения, пришедшие во время перестройки: повторяются на новом индексе перед подменой
+  private List<Consumer<Bitmaps>> replay;
+
+  public ClientAttributeIndex(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  @Override
+  public void afterSingletonsInstantiated() {
+    try {
+      rebuild();
+    } catch (Exception e) {
+      // Индекс будет построен при следующей плановой перестройке
+      log.error("Не удалось построить индекс атрибутов клиентов", e);
+    }
+  }
+
+  /**
+   * Полная перестройка: новый индекс собирается без блокировки и подменяет
+   * старый, запросы во время сборки читают прежние карты
+   */
+  @Scheduled(initialDelayString = "${segments.index.refresh-interval-ms:3600000}",
+      fixedDelayString = "${segments.index.refresh-interval-ms:3600000}")
+  public synchronized void rebuild() {
+    long started = System.currentTimeMillis();
+    lock.writeLock().lock();
+    try {
+      replay = new ArrayList<>();
+    } finally {
+      lock.writeLock().unlock();
+    }
+
+    Bitmaps loaded = new Bitmaps();
+    long[] skipped = new long[1];
+    try {
+      jdbcTemplate.query(LOAD_SQL, rs -> {
+        long id = rs.getLong(1);
+        if (id > Integer.MAX_VALUE) {
+          skipped[0]++;
+          return;
+        }
+        String[] values = new String[VALUE_FIELDS.length];
+        for (int i = 0; i < values.length; i++) {
+          values[i] = rs.getString(i + 2);
+        }
+        loaded.add((int) id, values, epochDay(rs.getDate(VALUE_FIELDS.length + 2)));
+      });
+    } catch (RuntimeException e) {
+      lock.writeLock().lock();
+      try {
+        replay = null;
+      } finally {
+        lock.writeLock().unlock();
+      }
+      throw e;
+    }
+    if (skipped[0] > 0) {
+      log.warn("В индекс атрибутов не попали клиенты с ID больше {}: {}", Integer.MAX_VALUE, skipped[0]);
+    }
+
+    int replayed;
+    lock.writeLock().lock();
+    try {
+      replayed = replay.size();
+      replay.forEach(update -> update.accept(loaded));
+      replay = null;
+      bitmaps = loaded;
+    } finally {
+      lock.writeLock().unlock();
+    }
+    log.info("Индекс атрибутов клиентов построен за {} мс: клиентов {}, изменений во время сборки {}",
+        System.currentTimeMillis() - started, loaded.all.cardinality(), replayed);
+  }
+
+  /**
+   * Записывает атрибуты клиента в индекс после фиксации текущей транзакции
+   */
+  public void putAfterCommit(Client client) {
+    if (client.getId() == null || client.getId() > Integer.MAX_VALUE) {
+      return;
+    }
+    int id = client.getId().intValue();
+    String[] values = {
+        name(client.getAgeGroup()), name(client.getGender()), name(client.getLocationPreference()),
+        name(client.getUsageFrequency()), name(client.getSource()), name(client.getUsagePurpose()),
+        client.getRegion()
+    };
+    int clientSince = client.getClientSince() != null ? (int) client.getClientSince().toEpochDay() : NO_DATE;
+    afterCommit(bitmaps -> bitmaps.put(id, values, clientSince));
+  }
+
+  /**
+   * Добавляет клиента, созданного upsert по email (без атрибутов), если его
+   * еще нет в индексе. Атрибуты уже известного клиента upsert не меняет
+   */
+  public void addAfterCommit(Long clientId) {
+    if (clientId > Integer.MAX_VALUE) {
+      return;
+    }
+    int id = clientId.intValue();
+    afterCommit(bitmaps -> {
+      if (!bitmaps.all.get(id)) {
+        bitmaps.add(id, new String[VALUE_FIELDS.length], NO_DATE);
+      }
+    });
+  }
+
+  public void removeAfterCommit(Long clientId) {
+    if (clientId == null || clientId > Integer.MAX_VALUE) {
+      return;
+    }
+    int id = clientId.intValue();
+    afterCommit(bitmaps -> bitmaps.remove(id));
+  }
+
+  /**
+   * ID клиентов, подходящих под условие
+   */
+  public BitSet evaluate(CriteriaPlan plan) {
+    lock.readLock().lock();
+    try {
+      return plan.evaluate(bitmaps());
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Распределение клиентов из clients по значениям поля-перечисления:
+   * число клиентов для каждого значения в порядке {@link CriteriaField#getValues()},
+   * последний элемент — клиенты без значения. Считается пересечением карт
+   */
+  public long[] histogram(BitSet clients, CriteriaField field) {
+    if (field.getValues() == null) {
+      throw new IllegalArgumentException("Поле " + field.getFieldName() + " не является перечислением");
+    }
+
+    long[] counts = new long[field.getValues().size() + 1];
+    lock.readLock().lock();
+    try {
+      Bitmaps current = bitmaps();
+      long specified = 0;
+      int i = 0;
+      for (String value : field.getValues()) {
+        BitSet valueClients = current.clients(field, value);
+        if (valueClients != null) {
+          BitSet intersection = (BitSet) clients.clone();
+          intersection.and(valueClients);
+          counts[i] = intersection.cardinality();
+          specified += counts[i];
+        }
+        i++;
+      }
+      counts[i] = clients.cardinality() - specified;
+    } finally {
+      lock.readLock().unlock();
+    }
+    return counts;
+  }
+
+  /**
+   * Значение поля клиента или null, если оно не задано или индекс еще не
+   * построен. Перебирает карты значений поля, поэтому рассчитано на поля с
+   * небольшим числом значений (перечисления, region)
+   */
+  public String valueOf(long clientId, CriteriaField field) {
+    if (clientId > Integer.MAX_VALUE) {
+      return null;
+    }
+    lock.readLock().lock();
+    try {
+      if (bitmaps == null) {
+        return null;
+      }
+      Map<String, BitSet> fieldValues = bitmaps.values.get(field);
+      if (fieldValues == null) {
+        return null;
+      }
+      for (Map.Entry<String, BitSet> entry : fieldValues.entrySet()) {
+        if (entry.getValue().get((int) clientId)) {
+          return entry.getKey();
+        }
+      }
+      return null;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public boolean isReady() {
+    lock.readLock().lock();
+    try {
+      return bitmaps != null;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return bitmaps().all.cardinality();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private Bitmaps bitmaps() {
+    if (bitmaps == null) {
+      throw new IllegalStateException("Индекс атрибутов клиентов еще не построен");
+    }
+    return bitmaps;
+  }
+
+  /**
+   * Изменение, откаченное вместе с транзакцией, в индекс не попадает
+   */
+  private void afterCommit(Consumer<Bitmaps> update) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      apply(update);
+      return;
+    }
+
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        apply(update);
+      }
+    });
+  }
+
+  private void apply(Consumer<Bitmaps> update) {
+    lock.writeLock().lock();
+    try {
+      if (bitmaps != null) {
+        update.accept(bitmaps);
+      }
+      if (replay != null) {
+        replay.add(update);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private static String name(Enum<?> value) {
+    return value != null ? value.name() : null;
+  }
+
+  private static int epochDay(Date date) {
+    return date != null ? (int) date.toLocalDate().toEpochDay() : NO_DATE;
+  }
+
+  /**
+   * Карты значений по полям, все клиенты и даты client_since (эпохальный день
+   * по ID клиента, {@link #NO_DATE} — не задана)
+   */
+  static final class Bitmaps {
+    private final Map<CriteriaField, Map<String, BitSet>> values = new EnumMap<>(CriteriaField.class);
+    private final BitSet all = new BitSet();
+    private int[] clientSinceDays = new int[0];
+
+    private void add(int id, String[] fieldValues, int clientSinceDay) {
+      all.set(id);
+      for (int i = 0; i < VALUE_FIELDS.length; i++) {
+        if (fieldValues[i] != null) {
+          values.computeIfAbsent(VALUE_FIELDS[i], field -> new HashMap<>())
+              .computeIfAbsent(fieldValues[i], value -> new BitSet())
+              .set(id);
+        }
+      }
+      if (id >= clientSinceDays.length) {
+        int previous = clientSinceDays.length;
+        clientSinceDays = Arrays.copyOf(clientSinceDays, Math.max(id + 1, previous * 2));
+        Arrays.fill(clientSinceDays, previous, clientSinceDays.length, NO_DATE);
+      }
+      clientSinceDays[id] = clientSinceDay;
+    }
+
+    private void put(int id, String[] fieldValues, int clientSinceDay) {
+      remove(id);
+      add(id, fieldValues, clientSinceDay);
+    }
+
+    /**
+     * Прежнее значение поля не хранится, поэтому бит снимается во всех картах
+     * поля; для перечислений это несколько карт, для region — по числу регионов
+     */
+    private void remove(int id) {
+      if (!all.get(id)) {
+        return;
+      }
+      all.clear(id);
+      for (Map<String, BitSet> fieldValues : values.values()) {
+        for (BitSet clients : fieldValues.values()) {
+          clients.clear(id);
+        }
+      }
+      clientSinceDays[id] = NO_DATE;
+    }
+
+    BitSet clients(CriteriaField field, String value) {
+      Map<String, BitSet> fieldValues = values.get(field);
+      return fieldValues != null ? fieldValues.get(value) : null;
+    }
+
+    BitSet all() {
+      return all;
+    }
+
+    /**
+     * Новый BitSet клиентов, у которых поле задано
+     */
+    BitSet known(CriteriaField field) {
+      BitSet known = new BitSet();
+      if (field.isDate()) {
+        for (int id = all.nextSetBit(0); id >= 0; id = all.nextSetBit(id + 1)) {
+          if (clientSinceDays[id] != NO_DATE) {
+            known.set(id);
+          }
+        }
+        return known;
+      }
+      Map<String, BitSet> fieldValues = values.get(field);
+      if (fieldValues != null) {
+        fieldValues.values().forEach(known::or);
+      }
+      return known;
+    }
+
+    int[] clientSinceDays() {
+      return clientSinceDays;
+    }
+  }
+}
@@ -0,0 +1,31 @@
+package back.client_exp_backend.segment;
+
+import back.client_exp_backend.models.Client;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Передает изменения клиентов, сохраненных через JPA, в
+ * {@link ClientAttributeIndex}. Экземпляр слушателя Hibernate берет из
+ * контекста Spring
+ */
+@Component
+@RequiredArgsConstructor
+public class ClientIndexListener {
+
+  private final ClientAttributeIndex clientAttributeIndex;
+
+  @PostPersist
+  @PostUpdate
+  public void onClientSaved(Client client) {
+    clientAttributeIndex.putAfterCommit(client);
+  }
+
+  @PostRemove
+  public void onClientRemoved(Client client) {
+    clientAttributeIndex.removeAfterCommit(client.getId());
+  }
+}
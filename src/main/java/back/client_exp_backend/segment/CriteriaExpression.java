@@ -0,0 +1,32 @@
+package back.client_exp_backend.segment;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Разобранное условие сегмента
+ */
+public sealed interface CriteriaExpression {
+
+  record And(List<CriteriaExpression> operands) implements CriteriaExpression {
+  }
+
+  record Or(List<CriteriaExpression> operands) implements CriteriaExpression {
+  }
+
+  record Not(CriteriaExpression operand) implements CriteriaExpression {
+  }
+
+  /**
+   * Значение поля входит в набор values
+   */
+  record ValueIn(CriteriaField field, Set<String> values) implements CriteriaExpression {
+  }
+
+  /**
+   * Сравнение даты clientSince: operator — один из &lt;, &lt;=, &gt;, &gt;=, =, !=
+   */
+  record DateCompare(CriteriaField field, String operator, LocalDate date) implements CriteriaExpression {
+  }
+}
@@ -0,0 +1,98 @@
+package back.client_exp_backend.segment;
+
+import back.client_exp_backend.models.enums.AgeGroup;
+import back.client_exp_backend.models.enums.Gender;
+import back.client_exp_backend.models.enums.LocationPreference;
+import back.client_exp_backend.models.enums.Source;
+import back.client_exp_backend.models.enums.UsageFrequency;
+import back.client_exp_backend.models.enums.UsagePurpose;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Поле клиента, доступное в условиях сегмента. name — имя в языке условий,
+ * column — столбец таблицы clients, labels — допустимые значения полей-
+ * перечислений с подписями в порядке объявления (null — произвольная строка).
+ * clientSince сравнивается как дата
+ */
+public enum CriteriaField {
+  AGE_GROUP("ageGroup", "age_group", labels(AgeGroup.values(), AgeGroup::getDisplayValue)),
+  GENDER("gender", "gender", labels(Gender.values(), Gender::getDisplayValue)),
+  LOCATION_PREFERENCE("locationPreference", "location_preference",
+      labels(LocationPreference.values(), LocationPreference::getDisplayValue)),
+  USAGE_FREQUENCY("usageFrequency", "usage_frequency", labels(UsageFrequency.values(), UsageFrequency::getDisplayValue)),
+  SOURCE("source", "source", labels(Source.values(), Source::getDisplayValue)),
+  USAGE_PURPOSE("usagePurpose", "usage_purpose", labels(UsagePurpose.values(), UsagePurpose::getDisplayValue)),
+  REGION("region", "region", null),
+  CLIENT_SINCE("clientSince", "client_since", null);
+
+  private final String fieldName;
+  private final String column;
+  private final Map<String, String> labels;
+
+  CriteriaField(String fieldName, String column, Map<String, String> labels) {
+    this.fieldName = fieldName;
+    this.column = column;
+    this.labels = labels;
+  }
+
+  public String getFieldName() {
+    return fieldName;
+  }
+
+  public String getColumn() {
+    return column;
+  }
+
+  public Set<String> getValues() {
+    return labels != null ? labels.keySet() : null;
+  }
+
+  /**
+   * Значение в том виде, в каком оно хранится: перечисления приводятся к
+   * верхнему регистру. null — значения нет среди допустимых
+   */
+  public String normalize(String value) {
+    if (labels == null) {
+      return value;
+    }
+    String normalized = value.toUpperCase(Locale.ROOT);
+    return labels.containsKey(normalized) ? normalized : null;
+  }
+
+  /**
+   * Подпись значения перечисления для вывода или само значение
+   */
+  public String label(String value) {
+    return labels != null ? labels.getOrDefault(value, value) : value;
+  }
+
+  public boolean isDate() {
+    return this == CLIENT_SINCE;
+  }
+
+  /**
+   * Поле по имени из языка условий без учета регистра или null
+   */
+  public static CriteriaField byName(String name) {
+    for (CriteriaField field : values()) {
+      if (field.fieldName.equalsIgnoreCase(name)) {
+        return field;
+      }
+    }
+    return null;
+  }
+
+  private static <E extends Enum<E>> Map<String, String> labels(E[] constants, Function<E, String> label) {
+    Map<String, String> labels = new LinkedHashMap<>();
+    for (E constant : constants) {
+      labels.put(constant.name(), label.apply(constant));
+    }
+    return Collections.unmodifiableMap(labels);
+  }
+}
@@ -0,0 +1,247 @@
+package back.client_exp_backend.segment;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Разбор условий сегмента. Грамматика:
+ * <pre>
+ * выражение := и ('OR' и)*
+ * и         := унарное ('AND' унарное)*
+ * унарное   := 'NOT' унарное | '(' выражение ')' | условие
+ * условие   := поле ('=' | '!=') значение
+ *            | поле ['NOT'] 'IN' '(' значение (',' значение)* ')'
+ *            | clientSince ('&lt;' | '&lt;=' | '&gt;' | '&gt;=' | '=' | '!=') дата
+ * значение  := слово | 'строка в кавычках'
+ * </pre>
+ * Ключевые слова и имена полей не зависят от регистра, значения перечислений
+ * пишутся как в базе: {@code ageGroup IN (FROM_18_TO_25, FROM_26_TO_35) AND
+ * region = 'Москва' AND clientSince >= 2024-01-01}. Ошибки сообщаются
+ * {@link IllegalArgumentException} с позицией в строке
+ */
+public final class CriteriaParser {
+
+  private static final int MAX_LENGTH = 4000;
+
+  private final List<Token> tokens;
+  private int position;
+
+  private CriteriaParser(String source) {
+    this.tokens = tokenize(source);
+  }
+
+  public static CriteriaExpression parse(String criteria) {
+    if (criteria == null || criteria.isBlank()) {
+      throw new IllegalArgumentException("Условие сегмента не задано");
+    }
+    if (criteria.length() > MAX_LENGTH) {
+      throw new IllegalArgumentException("Условие сегмента длиннее " + MAX_LENGTH + " символов");
+    }
+
+    CriteriaParser parser = new CriteriaParser(criteria);
+    CriteriaExpression expression = parser.parseOr();
+    if (parser.position < parser.tokens.size()) {
+      throw parser.error("Лишний текст после условия");
+    }
+    return expression;
+  }
+
+  private CriteriaExpression parseOr() {
+    List<CriteriaExpression> operands = new ArrayList<>();
+    operands.add(parseAnd());
+    while (acceptKeyword("OR")) {
+      operands.add(parseAnd());
+    }
+    return operands.size() == 1 ? operands.get(0) : new CriteriaExpression.Or(operands);
+  }
+
+  private CriteriaExpression parseAnd() {
+    List<CriteriaExpression> operands = new ArrayList<>();
+    operands.add(parseUnary());
+    while (acceptKeyword("AND")) {
+      operands.add(parseUnary());
+    }
+    return operands.size() == 1 ? operands.get(0) : new CriteriaExpression.And(operands);
+  }
+
+  private CriteriaExpression parseUnary() {
+    if (acceptKeyword("NOT")) {
+      return new CriteriaExpression.Not(parseUnary());
+    }
+    if (accept("(")) {
+      CriteriaExpression expression = parseOr();
+      expect(")");
+      return expression;
+    }
+    return parseCondition();
+  }
+
+  private CriteriaExpression parseCondition() {
+    Token fieldToken = next("Ожидалось имя поля");
+    CriteriaField field = fieldToken.type == TokenType.WORD ? CriteriaField.byName(fieldToken.text) : null;
+    if (field == null) {
+      throw error(fieldToken, "Неизвестное поле «" + fieldToken.text + "»");
+    }
+
+    boolean negated = acceptKeyword("NOT");
+    if (acceptKeyword("IN")) {
+      if (field.isDate()) {
+        throw error(fieldToken, "Поле " + field.getFieldName() + " сравнивается только с датой");
+      }
+      expect("(");
+      Set<String> values = new LinkedHashSet<>();
+      do {
+        values.add(value(field));
+      } while (accept(","));
+      expect(")");
+      CriteriaExpression in = new CriteriaExpression.ValueIn(field, values);
+      return negated ? new CriteriaExpression.Not(in) : in;
+    }
+    if (negated) {
+      throw error("После NOT ожидалось IN");
+    }
+
+    Token operator = next("Ожидался оператор сравнения");
+    if (operator.type != TokenType.SYMBOL) {
+      throw error(operator, "Ожидался оператор сравнения");
+    }
+
+    if (field.isDate()) {
+      if (!List.of("<", "<=", ">", ">=", "=", "!=").contains(operator.text)) {
+        throw error(operator, "Недопустимый оператор «" + operator.text + "»");
+      }
+      Token dateToken = next("Ожидалась дата");
+      try {
+        return new CriteriaExpression.DateCompare(field, operator.text, LocalDate.parse(dateToken.text));
+      } catch (DateTimeParseException e) {
+        throw error(dateToken, "Ожидалась дата в формате ГГГГ-ММ-ДД");
+      }
+    }
+
+    if (!operator.text.equals("=") && !operator.text.equals("!=")) {
+      throw error(operator, "Поле " + field.getFieldName() + " сравнивается только через =, != или IN");
+    }
+    CriteriaExpression equals = new CriteriaExpression.ValueIn(field, Set.of(value(field)));
+    return operator.text.equals("!=") ? new CriteriaExpression.Not(equals) : equals;
+  }
+
+  private String value(CriteriaField field) {
+    Token token = next("Ожидалось значение");
+    if (token.type == TokenType.SYMBOL) {
+      throw error(token, "Ожидалось значение");
+    }
+    String value = field.normalize(token.text);
+    if (value == null) {
+      throw error(token, "Недопустимое значение «" + token.text + "» поля " + field.getFieldName()
+          + ", допустимы: " + field.getValues());
+    }
+    return value;
+  }
+
+  private boolean acceptKeyword(String keyword) {
+    if (position < tokens.size() && tokens.get(position).type == TokenType.WORD
+        && tokens.get(position).text.equalsIgnoreCase(keyword)) {
+      position++;
+      return true;
+    }
+    return false;
+  }
+
+  private boolean accept(String symbol) {
+    if (position < tokens.size() && tokens.get(position).type == TokenType.SYMBOL
+        && tokens.get(position).text.equals(symbol)) {
+      position++;
+      return true;
+    }
+    return false;
+  }
+
+  private void expect(String symbol) {
+    if (!accept(symbol)) {
+      throw error("Ожидалось «" + symbol + "»");
+    }
+  }
+
+  private Token next(String message) {
+    if (position >= tokens.size()) {
+      throw error(message);
+    }
+    return tokens.get(position++);
+  }
+
+  private IllegalArgumentException error(String message) {
+    return position < tokens.size()
+        ? error(tokens.get(position), message)
+        : new IllegalArgumentException(message + " (конец условия)");
+  }
+
+  private IllegalArgumentException error(Token token, String message) {
+    return new IllegalArgumentException(message + " (позиция " + (token.offset + 1) + ")");
+  }
+
+  private static List<Token> tokenize(String source) {
+    List<Token> tokens = new ArrayList<>();
+    int i = 0;
+    while (i < source.length()) {
+      char c = source.charAt(i);
+      if (Character.isWhitespace(c)) {
+        i++;
+      } else if (c == '\'') {
+        // Кавычка внутри строки удваивается: 'Д''Артаньян'
+        StringBuilder text = new StringBuilder();
+        int start = i++;
+        while (true) {
+          if (i >= source.length()) {
+            throw new IllegalArgumentException("Незакрытая кавычка (позиция " + (start + 1) + ")");
+          }
+          if (source.charAt(i) == '\'') {
+            if (i + 1 < source.length() && source.charAt(i + 1) == '\'') {
+              text.append('\'');
+              i += 2;
+              continue;
+            }
+            i++;
+            break;
+          }
+          text.append(source.charAt(i++));
+        }
+        tokens.add(new Token(TokenType.STRING, text.toString(), start));
+      } else if (c == '<' || c == '>' || c == '!' || c == '=') {
+        int start = i++;
+        if (i < source.length() && source.charAt(i) == '=') {
+          i++;
+        }
+        String symbol = source.substring(start, i);
+        if (symbol.equals("!")) {
+          throw new IllegalArgumentException("Ожидалось «!=» (позиция " + (start + 1) + ")");
+        }
+        tokens.add(new Token(TokenType.SYMBOL, symbol, start));
+      } else if (c == '(' || c == ')' || c == ',') {
+        tokens.add(new Token(TokenType.SYMBOL, String.valueOf(c), i++));
+      } else if (Character.isLetterOrDigit(c) || c == '_') {
+        int start = i;
+        while (i < source.length() && (Character.isLetterOrDigit(source.charAt(i))
+            || source.charAt(i) == '_' || source.charAt(i) == '-' || source.charAt(i) == '.')) {
+          i++;
+        }
+        tokens.add(new Token(TokenType.WORD, source.substring(start, i), start));
+      } else {
+        throw new IllegalArgumentException("Недопустимый символ «" + c + "» (позиция " + (i + 1) + ")");
+      }
+    }
+    return tokens;
+  }
+
+  private enum TokenType {
+    WORD,
+    STRING,
+    SYMBOL
+  }
+
+  private record Token(TokenType type, String text, int offset) {
+  }
+}
@@ -0,0 +1,254 @@
+package back.client_exp_backend.segment;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Скомпилированное условие сегмента: дерево операций над битовыми картами
+ * {@link ClientAttributeIndex}. Вложенные AND/OR сворачиваются, отрицания
+ * внутри AND вычитаются из результата (AND NOT) вместо построения дополнения,
+ * а положительные операнды AND пересекаются от самого маленького.
+ * Отрицание как в SQL: NOT, != и NOT IN не выбирают клиентов, у которых поле
+ * не заполнено. Для этого NOT проносится к условиям по законам де Моргана, а
+ * отрицание условия вычитается из клиентов с заполненным полем
+ */
+public final class CriteriaPlan {
+
+  private final String criteria;
+  private final Node root;
+
+  private CriteriaPlan(String criteria, Node root) {
+    this.criteria = criteria;
+    this.root = root;
+  }
+
+  public static CriteriaPlan compile(String criteria) {
+    return new CriteriaPlan(criteria, node(CriteriaParser.parse(criteria)));
+  }
+
+  /**
+   * План по уже собранному выражению, например из фильтров подбора аудитории
+   */
+  public static CriteriaPlan compile(CriteriaExpression expression) {
+    return new CriteriaPlan(null, node(expression));
+  }
+
+  public String getCriteria() {
+    return criteria;
+  }
+
+  /**
+   * Читаемый вид плана, например {@code AND(gender IN [FEMALE]) ANDNOT OR(region IN [Москва])}
+   */
+  public String explain() {
+    return root.explain();
+  }
+
+  /**
+   * Вызывается индексом под блокировкой чтения; возвращает новый BitSet
+   */
+  BitSet evaluate(ClientAttributeIndex.Bitmaps bitmaps) {
+    return root.evaluate(bitmaps);
+  }
+
+  private static Node node(CriteriaExpression expression) {
+    return switch (expression) {
+      case CriteriaExpression.ValueIn in -> new ValuesNode(in.field(), List.copyOf(in.values()));
+      case CriteriaExpression.DateCompare compare ->
+          new DateNode(compare.field(), compare.operator(), compare.date());
+      case CriteriaExpression.Not not -> negated(not.operand());
+      case CriteriaExpression.Or or -> or(or.operands().stream().map(CriteriaPlan::node).toList());
+      case CriteriaExpression.And and -> and(and.operands().stream().map(CriteriaPlan::node).toList());
+    };
+  }
+
+  /**
+   * План для NOT expression: NOT (a AND b) = NOT a OR NOT b,
+   * NOT (a OR b) = NOT a AND NOT b, NOT (field IN values) = заполненное поле
+   * ANDNOT values, отрицание сравнения дат — обратное сравнение
+   */
+  private static Node negated(CriteriaExpression expression) {
+    return switch (expression) {
+      case CriteriaExpression.ValueIn in ->
+          new AndNode(List.of(new KnownNode(in.field())), List.of(new ValuesNode(in.field(), List.copyOf(in.values()))));
+      case CriteriaExpression.DateCompare compare ->
+          new DateNode(compare.field(), inverse(compare.operator()), compare.date());
+      case CriteriaExpression.Not not -> node(not.operand());
+      case CriteriaExpression.Or or -> and(or.operands().stream().map(CriteriaPlan::negated).toList());
+      case CriteriaExpression.And and -> or(and.operands().stream().map(CriteriaPlan::negated).toList());
+    };
+  }
+
+  private static Node or(List<Node> nodes) {
+    List<Node> operands = new ArrayList<>();
+    for (Node node : nodes) {
+      if (node instanceof OrNode nested) {
+        operands.addAll(nested.operands());
+      } else {
+        operands.add(node);
+      }
+    }
+    return operands.size() == 1 ? operands.get(0) : new OrNode(operands);
+  }
+
+  private static Node and(List<Node> nodes) {
+    List<Node> positives = new ArrayList<>();
+    List<Node> negatives = new ArrayList<>();
+    for (Node node : nodes) {
+      if (node instanceof AndNode nested) {
+        nested.positives().stream().filter(positive -> !positives.contains(positive)).forEach(positives::add);
+        negatives.addAll(nested.negatives());
+      } else if (!positives.contains(node)) {
+        positives.add(node);
+      }
+    }
+    return new AndNode(positives, negatives);
+  }
+
+  private static String inverse(String operator) {
+    return switch (operator) {
+      case "<" -> ">=";
+      case "<=" -> ">";
+      case ">" -> "<=";
+      case ">=" -> "<";
+      case "=" -> "!=";
+      default -> "=";
+    };
+  }
+
+  private sealed interface Node {
+    BitSet evaluate(ClientAttributeIndex.Bitmaps bitmaps);
+
+    String explain();
+  }
+
+  private record ValuesNode(CriteriaField field, List<String> values) implements Node {
+    @Override
+    public BitSet evaluate(ClientAttributeIndex.Bitmaps bitmaps) {
+      BitSet result = new BitSet();
+      for (String value : values) {
+        BitSet clients = bitmaps.clients(field, value);
+        if (clients != null) {
+          result.or(clients);
+        }
+      }
+      return result;
+    }
+
+    @Override
+    public String explain() {
+      return field.getFieldName() + " IN " + values;
+    }
+  }
+
+  /**
+   * Клиенты, у которых поле заполнено: объединение карт всех значений поля
+   */
+  private record KnownNode(CriteriaField field) implements Node {
+    @Override
+    public BitSet evaluate(ClientAttributeIndex.Bitmaps bitmaps) {
+      return bitmaps.known(field);
+    }
+
+    @Override
+    public String explain() {
+      return field.getFieldName() + " IS NOT NULL";
+    }
+  }
+
+  /**
+   * Сравнение дат — проход по массиву дней; клиенты без даты не подходят
+   */
+  private record DateNode(CriteriaField field, String operator, LocalDate date) implements Node {
+    @Override
+    public BitSet evaluate(ClientAttributeIndex.Bitmaps bitmaps) {
+      int day = (int) date.toEpochDay();
+      int[] days = bitmaps.clientSinceDays();
+      BitSet all = bitmaps.all();
+      BitSet result = new BitSet(days.length);
+      for (int id = all.nextSetBit(0); id >= 0; id = all.nextSetBit(id + 1)) {
+        int value = days[id];
+        if (value != ClientAttributeIndex.NO_DATE && matches(value, day)) {
+          result.set(id);
+        }
+      }
+      return result;
+    }
+
+    private boolean matches(int value, int day) {
+      return switch (operator) {
+        case "<" -> value < day;
+        case "<=" -> value <= day;
+        case ">" -> value > day;
+        case ">=" -> value >= day;
+        case "=" -> value == day;
+        default -> value != day;
+      };
+    }
+
+    @Override
+    public String explain() {
+      return field.getFieldName() + " " + operator + " " + date;
+    }
+  }
+
+  private record OrNode(List<Node> operands) implements Node {
+    @Override
+    public BitSet evaluate(ClientAttributeIndex.Bitmaps bitmaps) {
+      BitSet result = new BitSet();
+      for (Node operand : operands) {
+        result.or(operand.evaluate(bitmaps));
+      }
+      return result;
+    }
+
+    @Override
+    public String explain() {
+      return operands.stream().map(Node::explain).collect(Collectors.joining(", ", "OR(", ")"));
+    }
+  }
+
+  /**
+   * AND(positives) AND NOT OR(negatives); без положительных операндов
+   * вычитание идет из всех клиентов
+   */
+  private record AndNode(List<Node> positives, List<Node> negatives) implements Node {
+    @Override
+    public BitSet evaluate(ClientAttributeIndex.Bitmaps bitmaps) {
+      BitSet result;
+      if (positives.isEmpty()) {
+        result = (BitSet) bitmaps.all().clone();
+      } else {
+        List<BitSet> operands = new ArrayList<>(positives.size());
+        for (Node positive : positives) {
+          operands.add(positive.evaluate(bitmaps));
+        }
+        operands.sort(Comparator.comparingInt(BitSet::cardinality));
+        result = operands.get(0);
+        for (int i = 1; i < operands.size() && !result.isEmpty(); i++) {
+          result.and(operands.get(i));
+        }
+      }
+
+      for (int i = 0; i < negatives.size() && !result.isEmpty(); i++) {
+        result.andNot(negatives.get(i).evaluate(bitmaps));
+      }
+      return result;
+    }
+
+    @Override
+    public String explain() {
+      String included = positives.isEmpty()
+          ? "ALL"
+          : positives.stream().map(Node::explain).collect(Collectors.joining(", ", "AND(", ")"));
+      if (negatives.isEmpty()) {
+        return included;
+      }
+      return included + negatives.stream().map(Node::explain).collect(Collectors.joining(", ", " ANDNOT OR(", ")"));
+    }
+  }
+}
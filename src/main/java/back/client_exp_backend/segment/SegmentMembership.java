@@ -0,0 +1,93 @@
+package back.client_exp_backend.segment;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Состав всех сегментов в памяти: сегменты с условием вычисляются по
+ * {@link ClientAttributeIndex}, сегменты без условия читаются из
+ * client_segments. Нужен там, где сегменты клиента требуются на каждую
+ * отправку и запрос к БД недопустим; состав обновляется периодически, поэтому
+ * может отставать на segments.membership.refresh-interval-ms
+ */
+@Component
+@Slf4j
+public class SegmentMembership {
+
+  private static final String SEGMENTS_SQL = "SELECT id, criteria FROM segments";
+  private static final String MANUAL_MEMBERS_SQL = "SELECT cs.segment_id, cs.client_id FROM client_segments cs "
+      + "JOIN segments s ON s.id = cs.segment_id WHERE s.criteria IS NULL OR s.criteria = ''";
+
+  private final JdbcTemplate jdbcTemplate;
+  private final ClientAttributeIndex clientAttributeIndex;
+
+  // segmentId -> клиенты; подменяется целиком при обновлении
+  private volatile Map<Long, BitSet> members;
+
+  public SegmentMembership(JdbcTemplate jdbcTemplate, ClientAttributeIndex clientAttributeIndex) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.clientAttributeIndex = clientAttributeIndex;
+  }
+
+  @Scheduled(fixedDelayString = "${segments.membership.refresh-interval-ms:300000}")
+  public synchronized void refresh() {
+    if (!clientAttributeIndex.isReady()) {
+      return;
+    }
+
+    long started = System.currentTimeMillis();
+    Map<Long, BitSet> loaded = new HashMap<>();
+    jdbcTemplate.query(SEGMENTS_SQL, rs -> {
+      long segmentId = rs.getLong(1);
+      String criteria = rs.getString(2);
+      BitSet clients = new BitSet();
+      if (criteria != null && !criteria.isBlank()) {
+        try {
+          clients = clientAttributeIndex.evaluate(CriteriaPlan.compile(criteria));
+        } catch (IllegalArgumentException e) {
+          log.warn("Условие сегмента {} не разбирается, сегмент считается пустым: {}", segmentId, e.getMessage());
+        }
+      }
+      loaded.put(segmentId, clients);
+    });
+    jdbcTemplate.query(MANUAL_MEMBERS_SQL, rs -> {
+      long clientId = rs.getLong(2);
+      BitSet clients = loaded.get(rs.getLong(1));
+      if (clients != null && clientId <= Integer.MAX_VALUE) {
+        clients.set((int) clientId);
+      }
+    });
+
+    members = loaded;
+    log.debug("Состав сегментов обновлен за {} мс: сегментов {}", System.currentTimeMillis() - started, loaded.size());
+  }
+
+  public boolean isReady() {
+    return members != null;
+  }
+
+  /**
+   * Сегменты клиента; пустой список, пока состав еще не загружен
+   */
+  public List<Long> segmentsOf(long clientId) {
+    Map<Long, BitSet> current = members;
+    if (current == null || clientId > Integer.MAX_VALUE) {
+      return List.of();
+    }
+    List<Long> segmentIds = new ArrayList<>();
+    current.forEach((segmentId, clients) -> {
+      if (clients.get((int) clientId)) {
+        segmentIds.add(segmentId);
+      }
+    });
+    return segmentIds;
+  }
+}
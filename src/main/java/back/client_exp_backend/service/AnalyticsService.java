@@ -0,0 +1,27 @@
+package back.client_exp_backend.service;
+
+import back.client_exp_backend.dto.AnswerQueryRequest;
+import back.client_exp_backend.dto.AnswerQueryResultDto;
+import back.client_exp_backend.dto.ClientAnswerAnalyticsDto;
+import back.client_exp_backend.dto.MetricScorecardDto;
+import back.client_exp_backend.dto.TopTermsDto;
+import back.client_exp_backend.dto.UniqueRespondentsDto;
+import back.client_exp_backend.models.enums.RespondentDimension;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface AnalyticsService {
+  List<ClientAnswerAnalyticsDto> getSurveyDistribution(Long surveyId);
+
+  ClientAnswerAnalyticsDto getQuestionDistribution(Long surveyId, Long questionId);
+
+  List<MetricScorecardDto> getScorecard(Long surveyId);
+
+  TopTermsDto getTopTerms(Long surveyId, Long questionId, int limit);
+
+  UniqueRespondentsDto getUniqueRespondents(RespondentDimension dimension, List<String> keys,
+      LocalDate from, LocalDate to);
+
+  AnswerQueryResultDto queryAnswers(Long surveyId, AnswerQueryRequest request);
+}
@@ -0,0 +1,11 @@
+package back.client_exp_backend.service;
+
+import back.client_exp_backend.dto.AnswerSearchHitDto;
+import back.client_exp_backend.dto.CursorPageDto;
+
+import java.time.LocalDateTime;
+
+public interface AnswerSearchService {
+  CursorPageDto<AnswerSearchHitDto> search(String query, Long surveyId, Long questionId, LocalDateTime from,
+      LocalDateTime to, String cursor, int size);
+}
@@ -1,8 +1,19 @@
 package back.client_exp_backend.service;
 
 import back.client_exp_backend.dto.ClientWithAnswersDto;
+import back.client_exp_backend.dto.CursorPageDto;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface ClientService {
   List<ClientWithAnswersDto> getAllClientsWithAnswers();
-}
\ No newline at end of file
+
+  CursorPageDto<ClientWithAnswersDto> getClientsWithAnswersPage(Long surveyId, LocalDateTime from,
+      LocalDateTime to, String cursor, int size);
+
+  void exportClientsWithAnswers(Long surveyId, LocalDateTime from, LocalDateTime to, OutputStream output)
+      throws IOException;
+}
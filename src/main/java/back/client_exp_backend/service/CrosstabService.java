@@ -0,0 +1,9 @@
+package back.client_exp_backend.service;
+
+import back.client_exp_backend.dto.CrosstabDto;
+import back.client_exp_backend.models.enums.ClientDemographicField;
+
+public interface CrosstabService {
+  CrosstabDto crossTabulate(Long surveyId, Long rowQuestionId, Long columnQuestionId,
+      ClientDemographicField columnField);
+}
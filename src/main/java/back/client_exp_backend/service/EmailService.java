@@ -1,9 +1,11 @@
 package back.client_exp_backend.service;
 
+import back.client_exp_backend.dto.RecipientFilter;
+
 public interface EmailService {
-  void sendSurveyToAllClients(Long surveyId, String subject, String baseUrl);
+  int sendSurvey(Long surveyId, String subject, String baseUrl, RecipientFilter recipients);
 
-  void sendCustomMessageToAllClients(String subject, String messageText);
+  int sendCustomMessage(String subject, String messageText, RecipientFilter recipients);
 
   void sendEmail(String to, String subject, String text);
-}
\ No newline at end of file
+}
@@ -0,0 +1,17 @@
+package back.client_exp_backend.service;
+
+import back.client_exp_backend.dto.RecipientFilter;
+import back.client_exp_backend.dto.RecipientRow;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+public interface RecipientService {
+  List<Long> getSurveySegmentIds(Long surveyId);
+
+  void prepareSegments(List<Long> segmentIds);
+
+  long countRecipients(RecipientFilter filter);
+
+  int forEachRecipientChunk(RecipientFilter filter, Consumer<List<RecipientRow>> chunkConsumer);
+}
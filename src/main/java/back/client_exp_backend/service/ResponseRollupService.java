@@ -0,0 +1,16 @@
+package back.client_exp_backend.service;
+
+import back.client_exp_backend.dto.TimeSeriesDto;
+import back.client_exp_backend.models.enums.RollupBucket;
+
+import java.time.LocalDateTime;
+
+public interface ResponseRollupService {
+  void flush();
+
+  TimeSeriesDto getSeries(Long surveyId, Long questionId, LocalDateTime from, LocalDateTime to, RollupBucket bucket);
+
+  int compact();
+
+  void deleteBySurveyId(Long surveyId);
+}
@@ -0,0 +1,25 @@
+package back.client_exp_backend.service;
+
+import back.client_exp_backend.dto.AudienceSizeDto;
+import back.client_exp_backend.dto.AudienceSizingRequest;
+import back.client_exp_backend.dto.SegmentAudienceDto;
+import back.client_exp_backend.dto.SegmentDto;
+import back.client_exp_backend.dto.SegmentMaterializationDto;
+
+import java.util.List;
+
+public interface SegmentService {
+  List<SegmentDto> getAllSegments();
+
+  SegmentDto getSegmentById(Long id);
+
+  SegmentDto createSegment(SegmentDto segmentDto);
+
+  SegmentDto updateSegment(Long id, SegmentDto segmentDto);
+
+  SegmentAudienceDto previewAudience(String criteria);
+
+  SegmentMaterializationDto materialize(Long id);
+
+  AudienceSizeDto sizeAudience(AudienceSizingRequest request);
+}
@@ -0,0 +1,16 @@
+package back.client_exp_backend.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+public interface SurveyBulkSubmissionService {
+
+  /**
+   * Читает поток NDJSON с ответами на опросы и пишет в выходной поток по одной
+   * строке результата на каждую входную строку
+   *
+   * @return количество обработанных строк
+   */
+  long processNdjson(InputStream input, OutputStream output) throws IOException;
+}
@@ -0,0 +1,17 @@
+package back.client_exp_backend.service;
+
+import back.client_exp_backend.dto.IngestionReceiptDto;
+import back.client_exp_backend.dto.IngestionStatsDto;
+import back.client_exp_backend.dto.SurveyResponseDto;
+
+import java.util.Optional;
+
+public interface SurveyIngestionService {
+  boolean isAsyncEnabled();
+
+  IngestionReceiptDto enqueue(SurveyResponseDto responseDto);
+
+  Optional<IngestionReceiptDto> getReceipt(String receiptId);
+
+  IngestionStatsDto getStats();
+}
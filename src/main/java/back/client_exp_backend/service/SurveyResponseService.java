@@ -1,12 +1,21 @@
 package back.client_exp_backend.service;
 
+import back.client_exp_backend.dto.CursorPageDto;
 import back.client_exp_backend.dto.SurveyResponseDto;
 import back.client_exp_backend.dto.SurveyResponseResultDto;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 
 public interface SurveyResponseService {
   SurveyResponseResultDto processSurveyResponse(SurveyResponseDto responseDto);
 
+  List<SurveyResponseResultDto> processSurveyResponses(List<SurveyResponseDto> responseDtos);
+
   List<SurveyResponseDto> getFormattedResponsesBySurveyId(Long surveyId);
+
+  CursorPageDto<SurveyResponseDto> getFormattedResponsesPage(Long surveyId, String cursor, int size);
+
+  void exportFormattedResponses(Long surveyId, OutputStream output) throws IOException;
 }
\ No newline at end of file
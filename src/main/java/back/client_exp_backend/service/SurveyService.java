@@ -3,6 +3,7 @@ package back.client_exp_backend.service;
 import back.client_exp_backend.dto.PagedResponseDto;
 import back.client_exp_backend.dto.SurveyDto;
 import back.client_exp_backend.dto.SurveyStatusUpdateRequest;
+import back.client_exp_backend.dto.SurveySummaryDto;
 import back.client_exp_backend.models.enums.SurveyStatus;
 
 public interface SurveyService {
@@ -10,6 +11,11 @@ public interface SurveyService {
 
   PagedResponseDto<SurveyDto> getAllSurveys(int page, int size, SurveyStatus status);
 
+  PagedResponseDto<SurveyDto> getSurveysByCursor(String cursor, int size, SurveyStatus status, Long createdById,
+      boolean includeTotal);
+
+  PagedResponseDto<SurveySummaryDto> getSurveySummaries(int page, int size, SurveyStatus status);
+
   SurveyDto getSurveyById(Long id);
 
   SurveyDto updateSurvey(Long id, SurveyDto surveyDto, String userEmail);
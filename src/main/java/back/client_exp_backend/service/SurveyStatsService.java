@@ -0,0 +1,9 @@
+package back.client_exp_backend.service;
+
+import back.client_exp_backend.dto.SurveyResponsesSummaryDto;
+
+public interface SurveyStatsService {
+  SurveyResponsesSummaryDto getSummary(Long surveyId, String cursor, int size);
+
+  void reconcile();
+}
@@ -0,0 +1,350 @@
+package back.client_exp_backend.service.impl;
+
+import back.client_exp_backend.analytics.AnswerDistributionEngine;
+import back.client_exp_backend.analytics.AnswerDistributionEngine.CounterSnapshot;
+import back.client_exp_backend.analytics.ColumnPredicate;
+import back.client_exp_backend.analytics.ColumnarAnswerStore;
+import back.client_exp_backend.analytics.MetricEngine;
+import back.client_exp_backend.analytics.RespondentSketchEngine;
+import back.client_exp_backend.analytics.SurveyColumns;
+import back.client_exp_backend.analytics.TextTermEngine;
+import back.client_exp_backend.cache.CompiledSurveySchema;
+import back.client_exp_backend.cache.SurveySchemaCache;
+import back.client_exp_backend.dto.AnswerFilterDto;
+import back.client_exp_backend.dto.AnswerQueryRequest;
+import back.client_exp_backend.dto.AnswerQueryResultDto;
+import back.client_exp_backend.dto.ClientAnswerAnalyticsDto;
+import back.client_exp_backend.dto.MetricScoreDto;
+import back.client_exp_backend.dto.MetricScorecardDto;
+import back.client_exp_backend.dto.RespondentEstimateDto;
+import back.client_exp_backend.dto.TermScoreDto;
+import back.client_exp_backend.dto.TopTermsDto;
+import back.client_exp_backend.dto.UniqueRespondentsDto;
+import back.client_exp_backend.exception.ResourceNotFoundException;
+import back.client_exp_backend.models.enums.MetricType;
+import back.client_exp_backend.models.enums.QuestionType;
+import back.client_exp_backend.models.enums.RespondentDimension;
+import back.client_exp_backend.service.AnalyticsService;
+import back.client_exp_backend.util.HyperLogLog;
+import back.client_exp_backend.util.TopK;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Распределение ответов, показатели NPS/CSAT/CES и частые слова из счетчиков
+ * в памяти, без обращения к client_answers
+ */
+@Service
+@RequiredArgsConstructor
+public class AnalyticsServiceImpl implements AnalyticsService {
+
+  private static final int[] SCORECARD_PERIODS = { 7, 30, MetricEngine.WINDOW_DAYS };
+  private static final long MAX_UNIQUE_RESPONDENTS_DAYS = 366;
+  // Границы интервала — две стандартные ошибки, около 95%
+  private static final double CONFIDENCE_SIGMAS = 2;
+  // Для TEXT в распределении показываются только самые частые ответы
+  private static final int TEXT_TOP_VALUES = 20;
+
+  private final AnswerDistributionEngine answerDistributionEngine;
+  private final SurveySchemaCache surveySchemaCache;
+  private final MetricEngine metricEngine;
+  private final TextTermEngine textTermEngine;
+  private final RespondentSketchEngine respondentSketchEngine;
+  private final ColumnarAnswerStore columnarAnswerStore;
+
+  @Override
+  public List<ClientAnswerAnalyticsDto> getSurveyDistribution(Long surveyId) {
+    CompiledSurveySchema schema = surveySchemaCache.get(surveyId);
+    Map<Long, CounterSnapshot> counters = answerDistributionEngine.getSurvey(surveyId);
+
+    List<ClientAnswerAnalyticsDto> result = new ArrayList<>(schema.questionCount());
+    for (int i = 0; i < schema.questionCount(); i++) {
+      result.add(toDto(schema, i, counters.getOrDefault(schema.questionId(i), CounterSnapshot.EMPTY)));
+    }
+    return result;
+  }
+
+  @Override
+  public ClientAnswerAnalyticsDto getQuestionDistribution(Long surveyId, Long questionId) {
+    CompiledSurveySchema schema = surveySchemaCache.get(surveyId);
+    int questionIndex = schema.indexOf(questionId);
+    if (questionIndex < 0) {
+      throw new ResourceNotFoundException("Вопрос с ID " + questionId + " не найден в опросе " + surveyId);
+    }
+    return toDto(schema, questionIndex, answerDistributionEngine.getQuestion(surveyId, questionId));
+  }
+
+  /**
+   * Показатели NPS/CSAT/CES вопросов опроса за 7, 30, 90 дней и за все время
+   */
+  @Override
+  public List<MetricScorecardDto> getScorecard(Long surveyId) {
+    CompiledSurveySchema schema = surveySchemaCache.get(surveyId);
+
+    List<MetricScorecardDto> result = new ArrayList<>();
+    for (int i = 0; i < schema.questionCount(); i++) {
+      MetricType metricType = schema.metricType(i);
+      if (schema.questionType(i) != QuestionType.RATING || metricType == null || metricType == MetricType.NONE) {
+        continue;
+      }
+
+      List<MetricScoreDto> scores = new ArrayList<>(SCORECARD_PERIODS.length + 1);
+      for (int days : SCORECARD_PERIODS) {
+        scores.add(toScore(days + "d", metricType, metricEngine.getWindow(surveyId, schema.questionId(i), days)));
+      }
+      scores.add(toScore("all", metricType, metricEngine.getWindow(surveyId, schema.questionId(i), null)));
+
+      result.add(MetricScorecardDto.builder()
+          .questionId(schema.questionId(i))
+          .questionText(schema.questionText(i))
+          .metricType(metricType)
+          .scores(scores)
+          .build());
+    }
+    return result;
+  }
+
+  /**
+   * Самые частые слова и пары слов в ответах на текстовый вопрос
+   */
+  @Override
+  public TopTermsDto getTopTerms(Long surveyId, Long questionId, int limit) {
+    CompiledSurveySchema schema = surveySchemaCache.get(surveyId);
+    int questionIndex = schema.indexOf(questionId);
+    if (questionIndex < 0) {
+      throw new ResourceNotFoundException("Вопрос с ID " + questionId + " не найден в опросе " + surveyId);
+    }
+    if (schema.questionType(questionIndex) != QuestionType.TEXT) {
+      throw new IllegalArgumentException("Частоты слов считаются только для текстовых вопросов");
+    }
+
+    return TopTermsDto.builder()
+        .questionId(questionId)
+        .questionText(schema.questionText(questionIndex))
+        .halfLifeHours(textTermEngine.getHalfLifeHours())
+        .words(toTermScores(textTermEngine.getTop(surveyId, questionId, false, limit)))
+        .phrases(toTermScores(textTermEngine.getTop(surveyId, questionId, true, limit)))
+        .build();
+  }
+
+  /**
+   * Приблизительное число уникальных респондентов за период по HyperLogLog:
+   * итог — объединение sketch всех выбранных значений разреза, поэтому
+   * респондент из нескольких регионов или сегментов учитывается один раз
+   */
+  @Override
+  public UniqueRespondentsDto getUniqueRespondents(RespondentDimension dimension, List<String> keys,
+      LocalDate from, LocalDate to) {
+    if (from.isAfter(to)) {
+      throw new IllegalArgumentException("Начало периода позже конца");
+    }
+    if (ChronoUnit.DAYS.between(from, to) >= MAX_UNIQUE_RESPONDENTS_DAYS) {
+      throw new IllegalArgumentException("Период не должен превышать " + MAX_UNIQUE_RESPONDENTS_DAYS + " дней");
+    }
+
+    Map<String, HyperLogLog> sketches = respondentSketchEngine.merge(dimension, keys, from, to);
+    HyperLogLog total = respondentSketchEngine.empty();
+    List<RespondentEstimateDto> byKey = new ArrayList<>(sketches.size());
+    sketches.forEach((key, sketch) -> {
+      total.merge(sketch);
+      byKey.add(toEstimate(key, sketch));
+    });
+    byKey.sort(Comparator.comparingLong(RespondentEstimateDto::getEstimate).reversed());
+
+    return UniqueRespondentsDto.builder()
+        .dimension(dimension)
+        .from(from)
+        .to(to)
+        .relativeStandardError(total.relativeStandardError())
+        .total(toEstimate(null, total))
+        .byKey(dimension == RespondentDimension.ALL ? List.of() : byKey)
+        .build();
+  }
+
+  /**
+   * Распределение ответов среди респондентов, подходящих под условия, по
+   * столбцовой копии ответов опроса
+   */
+  @Override
+  public AnswerQueryResultDto queryAnswers(Long surveyId, AnswerQueryRequest request) {
+    return columnarAnswerStore.read(surveyId, columns -> {
+      CompiledSurveySchema schema = columns.getSchema();
+      List<ColumnPredicate> predicates = new ArrayList<>();
+      for (AnswerFilterDto filter : request.getFilters()) {
+        predicates.add(toPredicate(schema, filter));
+      }
+
+      List<Integer> targets = new ArrayList<>();
+      if (request.getQuestionIds() == null || request.getQuestionIds().isEmpty()) {
+        for (int i = 0; i < schema.questionCount(); i++) {
+          targets.add(i);
+        }
+      } else {
+        for (Long questionId : request.getQuestionIds()) {
+          targets.add(questionIndex(schema, questionId));
+        }
+      }
+
+      long[] selection = columns.select(predicates);
+      long matched = 0;
+      for (long word : selection) {
+        matched += Long.bitCount(word);
+      }
+
+      List<ClientAnswerAnalyticsDto> questions = new ArrayList<>(targets.size());
+      for (int questionIndex : targets) {
+        questions.add(toDto(columns, questionIndex, columns.count(questionIndex, selection)));
+      }
+
+      return AnswerQueryResultDto.builder()
+          .surveyId(surveyId)
+          .totalRespondents(columns.rowCount())
+          .matchedRespondents(matched)
+          .questions(questions)
+          .build();
+    });
+  }
+
+  private ColumnPredicate toPredicate(CompiledSurveySchema schema, AnswerFilterDto filter) {
+    int questionIndex = questionIndex(schema, filter.getQuestionId());
+    long options = 0;
+    if (filter.getOptions() != null && !filter.getOptions().isEmpty()) {
+      Long mask = schema.optionMask(questionIndex, filter.getOptions());
+      if (mask == null) {
+        throw new IllegalArgumentException("Варианты " + filter.getOptions() + " не найдены в вопросе "
+            + filter.getQuestionId());
+      }
+      options = mask;
+    }
+    return new ColumnPredicate(questionIndex, options, filter.getMin(), filter.getMax(), filter.getText());
+  }
+
+  private int questionIndex(CompiledSurveySchema schema, Long questionId) {
+    int questionIndex = schema.indexOf(questionId);
+    if (questionIndex < 0) {
+      throw new ResourceNotFoundException("Вопрос с ID " + questionId + " не найден в опросе " + schema.getSurveyId());
+    }
+    return questionIndex;
+  }
+
+  private ClientAnswerAnalyticsDto toDto(SurveyColumns columns, int questionIndex, long[] counts) {
+    CompiledSurveySchema schema = columns.getSchema();
+    Map<String, Long> distribution = new LinkedHashMap<>();
+    int size = counts.length - 1;
+
+    switch (schema.questionType(questionIndex)) {
+      case SINGLE_CHOICE, MULTIPLE_CHOICE -> {
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+          distribution.merge(schema.optionText(questionIndex, ordinal), counts[ordinal], Long::sum);
+        }
+      }
+      case RATING -> {
+        for (int value = 0; value < size; value++) {
+          if (counts[value] > 0) {
+            distribution.put(String.valueOf(value), counts[value]);
+          }
+        }
+      }
+      case TEXT -> {
+        List<Integer> codes = new ArrayList<>();
+        for (int code = 0; code < size; code++) {
+          if (counts[code] > 0) {
+            codes.add(code);
+          }
+        }
+        codes.sort(Comparator.comparingLong((Integer code) -> counts[code]).reversed());
+        for (int code : codes.subList(0, Math.min(TEXT_TOP_VALUES, codes.size()))) {
+          distribution.put(columns.text(questionIndex, code), counts[code]);
+        }
+      }
+      default -> {
+      }
+    }
+
+    return ClientAnswerAnalyticsDto.builder()
+        .questionId(schema.questionId(questionIndex))
+        .questionText(schema.questionText(questionIndex))
+        .totalResponses(counts[size])
+        .answerDistribution(distribution)
+        .build();
+  }
+
+  private RespondentEstimateDto toEstimate(String key, HyperLogLog sketch) {
+    long estimate = sketch.estimate();
+    long margin = Math.round(estimate * sketch.relativeStandardError() * CONFIDENCE_SIGMAS);
+    return RespondentEstimateDto.builder()
+        .key(key)
+        .estimate(estimate)
+        .lowerBound(Math.max(0, estimate - margin))
+        .upperBound(estimate + margin)
+        .build();
+  }
+
+  private List<TermScoreDto> toTermScores(List<TopK.Entry> entries) {
+    return entries.stream()
+        .map(entry -> TermScoreDto.builder().term(entry.key()).score(entry.weight()).build())
+        .toList();
+  }
+
+  private MetricScoreDto toScore(String period, MetricType metricType, MetricEngine.MetricWindow window) {
+    MetricScoreDto.MetricScoreDtoBuilder score = MetricScoreDto.builder()
+        .period(period)
+        .responses(window.count());
+    if (window.count() == 0) {
+      return score.build();
+    }
+
+    double average = (double) window.sum() / window.count();
+    double topBoxRate = 100.0 * window.topBox() / window.count();
+    score.average(average).topBoxRate(topBoxRate);
+
+    switch (metricType) {
+      case NPS -> score
+          .score(100.0 * (window.promoters() - window.detractors()) / window.count())
+          .promoters(window.promoters())
+          .passives(window.passives())
+          .detractors(window.detractors());
+      case CSAT -> score.score(topBoxRate);
+      case CES -> score.score(average);
+      default -> {
+      }
+    }
+    return score.build();
+  }
+
+  private ClientAnswerAnalyticsDto toDto(CompiledSurveySchema schema, int questionIndex, CounterSnapshot counters) {
+    Map<String, Long> distribution = new LinkedHashMap<>();
+    QuestionType questionType = schema.questionType(questionIndex);
+
+    if (questionType == QuestionType.SINGLE_CHOICE || questionType == QuestionType.MULTIPLE_CHOICE) {
+      // Все варианты ответа, включая невыбранные, в порядке ordinal
+      int optionCount = Math.min(schema.optionCount(questionIndex), CompiledSurveySchema.MAX_MASK_OPTIONS);
+      for (int ordinal = 0; ordinal < optionCount; ordinal++) {
+        distribution.merge(schema.optionText(questionIndex, ordinal), counters.count(ordinal), Long::sum);
+      }
+    } else if (questionType == QuestionType.RATING) {
+      // Только встречавшиеся оценки по возрастанию
+      long[] counts = counters.counts();
+      for (int value = 0; value < counts.length; value++) {
+        if (counts[value] > 0) {
+          distribution.put(String.valueOf(value), counts[value]);
+        }
+      }
+    }
+
+    return ClientAnswerAnalyticsDto.builder()
+        .questionId(schema.questionId(questionIndex))
+        .questionText(schema.questionText(questionIndex))
+        .totalResponses(counters.total())
+        .answerDistribution(distribution)
+        .build();
+  }
+}
@@ -1,13 +1,18 @@
 package back.client_exp_backend.service.impl;
 
+import back.client_exp_backend.cache.CompiledSurveySchema;
 import back.client_exp_backend.dto.AnswerOptionDto;
+import back.client_exp_backend.event.AnswerOptionRemovedEvent;
+import back.client_exp_backend.event.SurveyDefinitionChangedEvent;
 import back.client_exp_backend.exception.ResourceNotFoundException;
 import back.client_exp_backend.models.AnswerOption;
 import back.client_exp_backend.models.Question;
 import back.client_exp_backend.repository.AnswerOptionRepository;
+import back.client_exp_backend.repository.ClientAnswerRepository;
 import back.client_exp_backend.repository.QuestionRepository;
 import back.client_exp_backend.service.AnswerOptionService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -20,6 +25,8 @@ public class AnswerOptionServiceImpl implements AnswerOptionService {
 
   private final AnswerOptionRepository answerOptionRepository;
   private final QuestionRepository questionRepository;
+  private final ClientAnswerRepository clientAnswerRepository;
+  private final ApplicationEventPublisher eventPublisher;
 
   @Override
   public List<AnswerOptionDto> getAnswerOptionsByQuestionId(Long questionId) {
@@ -59,6 +66,7 @@ public class AnswerOptionServiceImpl implements AnswerOptionService {
     answerOption.setQuestion(question);
 
     AnswerOption savedOption = answerOptionRepository.save(answerOption);
+    publishSurveyChanged(question);
     return mapToDto(savedOption);
   }
 
@@ -75,6 +83,7 @@ public class AnswerOptionServiceImpl implements AnswerOptionService {
     }
 
     AnswerOption updatedOption = answerOptionRepository.save(answerOption);
+    publishSurveyChanged(answerOption.getQuestion());
     return mapToDto(updatedOption);
   }
 
@@ -84,7 +93,23 @@ public class AnswerOptionServiceImpl implements AnswerOptionService {
     AnswerOption answerOption = answerOptionRepository.findById(id)
         .orElseThrow(() -> new ResourceNotFoundException("Вариант ответа с ID " + id + " не найден"));
 
+    // Порядковые номера следующих вариантов сдвигаются, поэтому сдвигаем и
+    // биты в масках уже сохраненных ответов
+    long ordinal = answerOptionRepository.countByQuestionAndIdLessThan(answerOption.getQuestion(), id);
+    if (ordinal < CompiledSurveySchema.MAX_MASK_OPTIONS) {
+      clientAnswerRepository.removeOptionFromMasks(answerOption.getQuestion().getId(), (int) ordinal);
+      eventPublisher.publishEvent(new AnswerOptionRemovedEvent(answerOption.getQuestion().getSurvey().getId(),
+          answerOption.getQuestion().getId(), (int) ordinal));
+    }
+
     answerOptionRepository.delete(answerOption);
+    publishSurveyChanged(answerOption.getQuestion());
+  }
+
+  private void publishSurveyChanged(Question question) {
+    if (question != null && question.getSurvey() != null) {
+      eventPublisher.publishEvent(new SurveyDefinitionChangedEvent(question.getSurvey().getId(), false));
+    }
   }
 
   private AnswerOptionDto mapToDto(AnswerOption answerOption) {
@@ -0,0 +1,159 @@
+package back.client_exp_backend.service.impl;
+
+import back.client_exp_backend.dto.AnswerSearchHitDto;
+import back.client_exp_backend.dto.CursorPageDto;
+import back.client_exp_backend.service.AnswerSearchService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Полнотекстовый поиск по ответам на вопросы TEXT через колонку
+ * client_answers.text_search (tsvector, словарь russian) и GIN-индекс.
+ * Если колонки нет (скрипт V20250710 не выполнился), tsvector вычисляется
+ * в запросе — без индекса, но с тем же результатом.
+ * Результаты упорядочены по релевантности (ts_rank_cd) и отдаются по курсору
+ * (rank, id); фрагменты с подсветкой строятся только для строк страницы
+ */
+@Service
+@RequiredArgsConstructor
+public class AnswerSearchServiceImpl implements AnswerSearchService {
+
+  private static final String HEADLINE_OPTIONS =
+      "StartSel=<mark>, StopSel=</mark>, MaxWords=35, MinWords=15, MaxFragments=2, FragmentDelimiter=\" ... \"";
+
+  private static final String TEXT_SEARCH_COLUMN = "ca.text_search";
+  private static final String TEXT_SEARCH_INLINE = "to_tsvector('russian', coalesce(ca.text_answer, ''))";
+  private static final long TEXT_SEARCH_RECHECK_MS = 60_000;
+
+  private final JdbcTemplate jdbcTemplate;
+
+  // Колонка text_search найдена; пока ее нет, наличие проверяется не чаще раза в минуту
+  private volatile boolean textSearchColumn;
+  private volatile long textSearchCheckedAt;
+
+  @Override
+  @Transactional(readOnly = true)
+  public CursorPageDto<AnswerSearchHitDto> search(String query, Long surveyId, Long questionId, LocalDateTime from,
+      LocalDateTime to, String cursor, int size) {
+    if (query == null || query.isBlank()) {
+      throw new IllegalArgumentException("Поисковый запрос не задан");
+    }
+    SearchCursor position = SearchCursor.decode(cursor);
+    String tsvector = textSearch();
+
+    List<Object> args = new ArrayList<>();
+    StringBuilder matches = new StringBuilder()
+        .append("SELECT ca.id, ca.survey_id, ca.question_id, qu.text AS question_text, ca.client_id, ")
+        .append("ca.created_at, ca.text_answer, ts_rank_cd(").append(tsvector).append(", q.query) AS rank, ")
+        .append("q.query FROM client_answers ca JOIN questions qu ON qu.id = ca.question_id, ")
+        .append("websearch_to_tsquery('russian', ?) AS q(query) ")
+        .append("WHERE ca.text_answer IS NOT NULL AND ").append(tsvector).append(" @@ q.query ")
+        .append("AND qu.type = 'TEXT'");
+    args.add(query);
+
+    if (surveyId != null) {
+      matches.append(" AND ca.survey_id = ?");
+      args.add(surveyId);
+    }
+    if (questionId != null) {
+      matches.append(" AND ca.question_id = ?");
+      args.add(questionId);
+    }
+    if (from != null) {
+      matches.append(" AND ca.created_at >= ?");
+      args.add(Timestamp.valueOf(from));
+    }
+    if (to != null) {
+      matches.append(" AND ca.created_at < ?");
+      args.add(Timestamp.valueOf(to));
+    }
+
+    StringBuilder sql = new StringBuilder()
+        .append("SELECT m.id, m.survey_id, m.question_id, m.question_text, m.client_id, m.created_at, m.rank, ")
+        .append("ts_headline('russian', m.text_answer, m.query, '").append(HEADLINE_OPTIONS).append("') ")
+        .append("FROM (SELECT * FROM (").append(matches).append(") r");
+    if (position != null) {
+      sql.append(" WHERE r.rank < CAST(? AS real) OR (r.rank = CAST(? AS real) AND r.id < ?)");
+      args.add(position.rank());
+      args.add(position.rank());
+      args.add(position.id());
+    }
+    // Запрашиваем на одну строку больше, чтобы узнать, есть ли следующая страница
+    sql.append(" ORDER BY r.rank DESC, r.id DESC LIMIT ?) m ORDER BY m.rank DESC, m.id DESC");
+    args.add(size + 1);
+
+    List<AnswerSearchHitDto> hits = jdbcTemplate.query(sql.toString(), (rs, rowNum) -> AnswerSearchHitDto.builder()
+        .answerId(rs.getLong(1))
+        .surveyId(rs.getLong(2))
+        .questionId(rs.getLong(3))
+        .questionText(rs.getString(4))
+        .clientId(rs.getLong(5))
+        .answeredAt(rs.getTimestamp(6).toLocalDateTime())
+        .rank(rs.getFloat(7))
+        .highlight(rs.getString(8))
+        .build(), args.toArray());
+
+    boolean hasMore = hits.size() > size;
+    if (hasMore) {
+      hits = hits.subList(0, size);
+    }
+    AnswerSearchHitDto last = hits.isEmpty() ? null : hits.get(hits.size() - 1);
+
+    return CursorPageDto.<AnswerSearchHitDto>builder()
+        .content(hits)
+        .size(hits.size())
+        .nextCursor(hasMore ? new SearchCursor(last.getRank(), last.getAnswerId()).encode() : null)
+        .hasMore(hasMore)
+        .build();
+  }
+
+  // Выражение tsvector: колонка text_search или, пока ее нет, вычисление на лету
+  private String textSearch() {
+    if (textSearchColumn) {
+      return TEXT_SEARCH_COLUMN;
+    }
+    long now = System.currentTimeMillis();
+    if (now - textSearchCheckedAt >= TEXT_SEARCH_RECHECK_MS) {
+      Boolean exists = jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM information_schema.columns "
+          + "WHERE table_name = 'client_answers' AND column_name = 'text_search')", Boolean.class);
+      textSearchColumn = Boolean.TRUE.equals(exists);
+      textSearchCheckedAt = now;
+    }
+    return textSearchColumn ? TEXT_SEARCH_COLUMN : TEXT_SEARCH_INLINE;
+  }
+
+  /**
+   * Позиция в выдаче: релевантность и ID последнего ответа страницы
+   */
+  private record SearchCursor(float rank, long id) {
+
+    private String encode() {
+      String raw = rank + "|" + id;
+      return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static SearchCursor decode(String cursor) {
+      if (cursor == null || cursor.isBlank()) {
+        return null;
+      }
+      try {
+        String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+        if (parts.length != 2) {
+          throw new IllegalArgumentException();
+        }
+        return new SearchCursor(Float.parseFloat(parts[0]), Long.parseLong(parts[1]));
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException("Некорректный курсор: " + cursor);
+      }
+    }
+  }
+}
@@ -1,45 +1,137 @@
 package back.client_exp_backend.service.impl;
 
+import back.client_exp_backend.cache.CompiledSurveySchema;
+import back.client_exp_backend.cache.SurveySchemaCache;
 import back.client_exp_backend.dto.ClientAnswerDto;
+import back.client_exp_backend.dto.ClientAnswerItemRow;
+import back.client_exp_backend.dto.ClientRow;
 import back.client_exp_backend.dto.ClientWithAnswersDto;
-import back.client_exp_backend.models.Client;
-import back.client_exp_backend.models.ClientAnswer;
+import back.client_exp_backend.dto.CursorPageDto;
+import back.client_exp_backend.models.enums.QuestionType;
 import back.client_exp_backend.repository.ClientAnswerRepository;
 import back.client_exp_backend.repository.ClientRepository;
 import back.client_exp_backend.service.ClientService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
+/**
+ * Клиенты с ответами. Страница читается двумя запросами-проекциями: клиенты
+ * по курсору (ID последнего клиента) и ответы всех клиентов страницы
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class ClientServiceImpl implements ClientService {
 
+  private static final int EXPORT_PAGE_SIZE = 500;
+
   private final ClientRepository clientRepository;
   private final ClientAnswerRepository clientAnswerRepository;
+  private final SurveySchemaCache surveySchemaCache;
+  private final ObjectMapper objectMapper;
 
   @Override
   @Transactional(readOnly = true)
   public List<ClientWithAnswersDto> getAllClientsWithAnswers() {
-    List<Client> clients = clientRepository.findAll();
+    List<ClientWithAnswersDto> clients = new ArrayList<>();
+    String cursor = null;
+    do {
+      CursorPageDto<ClientWithAnswersDto> page = getClientsWithAnswersPage(null, null, null, cursor, EXPORT_PAGE_SIZE);
+      clients.addAll(page.getContent());
+      cursor = page.getNextCursor();
+    } while (cursor != null);
+    return clients;
+  }
+
+  /**
+   * Страница клиентов с ответами. Если задан опрос или период, в страницу
+   * попадают только клиенты с подходящими ответами и только эти ответы
+   */
+  @Override
+  @Transactional(readOnly = true)
+  public CursorPageDto<ClientWithAnswersDto> getClientsWithAnswersPage(Long surveyId, LocalDateTime from,
+      LocalDateTime to, String cursor, int size) {
+    long afterId = parseCursor(cursor);
+    boolean filtered = surveyId != null || from != null || to != null;
+
+    // Запрашиваем на одного клиента больше, чтобы узнать, есть ли следующая страница
+    PageRequest limit = PageRequest.of(0, size + 1);
+    List<ClientRow> clients = filtered
+        ? clientRepository.findRowsWithAnswersAfter(afterId, surveyId, from, to, limit)
+        : clientRepository.findRowsAfter(afterId, limit);
+    boolean hasMore = clients.size() > size;
+    if (hasMore) {
+      clients = clients.subList(0, size);
+    }
+
+    Map<Long, ClientWithAnswersDto> byId = new LinkedHashMap<>();
+    for (ClientRow client : clients) {
+      byId.put(client.getId(), mapToClientWithAnswersDto(client));
+    }
+
+    if (!byId.isEmpty()) {
+      Map<Long, CompiledSurveySchema> schemas = new HashMap<>();
+      for (ClientAnswerItemRow row : clientAnswerRepository.findItemRowsByClientIds(byId.keySet(), surveyId, from, to)) {
+        ClientWithAnswersDto client = byId.get(row.getClientId());
+        client.getAnswers().add(mapToClientAnswerDto(row, client.getName(), schemas));
+      }
+    }
 
-    return clients.stream()
-        .map(this::mapToClientWithAnswersDto)
-        .collect(Collectors.toList());
+    return CursorPageDto.<ClientWithAnswersDto>builder()
+        .content(new ArrayList<>(byId.values()))
+        .size(byId.size())
+        .nextCursor(hasMore ? String.valueOf(clients.get(clients.size() - 1).getId()) : null)
+        .hasMore(hasMore)
+        .build();
   }
 
-  private ClientWithAnswersDto mapToClientWithAnswersDto(Client client) {
-    List<ClientAnswer> clientAnswers = clientAnswerRepository.findByClient(client);
+  /**
+   * Пишет всех подходящих клиентов с ответами JSON-массивом в выходной поток,
+   * страница за страницей, не держа всю выгрузку в памяти
+   */
+  @Override
+  public void exportClientsWithAnswers(Long surveyId, LocalDateTime from, LocalDateTime to, OutputStream output)
+      throws IOException {
+    ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    long written = 0;
+    try (JsonGenerator generator = objectMapper.createGenerator(output)) {
+      generator.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+      generator.writeStartArray();
+
+      String cursor = null;
+      do {
+        CursorPageDto<ClientWithAnswersDto> page = getClientsWithAnswersPage(surveyId, from, to, cursor,
+            EXPORT_PAGE_SIZE);
+        for (ClientWithAnswersDto client : page.getContent()) {
+          writer.writeValue(generator, client);
+        }
+        written += page.getSize();
+        generator.flush();
+        cursor = page.getNextCursor();
+      } while (cursor != null);
 
-    List<ClientAnswerDto> answerDtos = clientAnswers.stream()
-        .map(this::mapToClientAnswerDto)
-        .collect(Collectors.toList());
+      generator.writeEndArray();
+    }
+    log.info("Выгружено {} клиентов с ответами", written);
+  }
 
+  private ClientWithAnswersDto mapToClientWithAnswersDto(ClientRow client) {
     return ClientWithAnswersDto.builder()
         .id(client.getId())
         .name(client.getName())
@@ -57,27 +149,48 @@ public class ClientServiceImpl implements ClientService {
         .clientSince(client.getClientSince())
         .createdAt(client.getCreatedAt())
         .updatedAt(client.getUpdatedAt())
-        .answers(answerDtos)
+        .answers(new ArrayList<>())
         .build();
   }
 
-  private ClientAnswerDto mapToClientAnswerDto(ClientAnswer clientAnswer) {
-    String answer = clientAnswer.getAnswerOption() != null
-        ? clientAnswer.getAnswerOption().getText()
-        : clientAnswer.getTextAnswer() != null
-            ? clientAnswer.getTextAnswer()
-            : clientAnswer.getNumericAnswer() != null
-                ? clientAnswer.getNumericAnswer().toString()
+  private ClientAnswerDto mapToClientAnswerDto(ClientAnswerItemRow row, String clientName,
+      Map<Long, CompiledSurveySchema> schemas) {
+    String answer = row.getOptionText() != null
+        ? row.getOptionText()
+        : row.getTextAnswer() != null
+            ? row.getTextAnswer()
+            : row.getNumericAnswer() != null
+                ? row.getNumericAnswer().toString()
                 : null;
 
+    // Множественный выбор хранится маской вариантов без текста
+    if (answer == null && row.getQuestionType() == QuestionType.MULTIPLE_CHOICE && row.getOptionMask() != null) {
+      CompiledSurveySchema schema = schemas.computeIfAbsent(row.getSurveyId(), surveySchemaCache::get);
+      int questionIndex = schema.indexOf(row.getQuestionId());
+      if (questionIndex >= 0) {
+        answer = String.join(", ", schema.optionTexts(questionIndex, row.getOptionMask()));
+      }
+    }
+
     return ClientAnswerDto.builder()
-        .id(clientAnswer.getId())
-        .questionId(clientAnswer.getQuestion().getId())
-        .questionText(clientAnswer.getQuestion().getText())
+        .id(row.getId())
+        .questionId(row.getQuestionId())
+        .questionText(row.getQuestionText())
         .answer(answer)
-        .clientId(clientAnswer.getClient().getId())
-        .clientName(clientAnswer.getClient().getName())
-        .answeredAt(clientAnswer.getCreatedAt())
+        .clientId(row.getClientId())
+        .clientName(clientName)
+        .answeredAt(row.getCreatedAt())
         .build();
   }
-}
\ No newline at end of file
+
+  private long parseCursor(String cursor) {
+    if (cursor == null || cursor.isBlank()) {
+      return 0L;
+    }
+    try {
+      return Long.parseLong(cursor);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Некорректный курсор: " + cursor);
+    }
+  }
+}
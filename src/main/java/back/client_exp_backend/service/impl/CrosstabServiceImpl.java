@@ -0,0 +1,240 @@
+package back.client_exp_backend.service.impl;
+
+import back.client_exp_backend.analytics.ColumnarAnswerStore;
+import back.client_exp_backend.analytics.SurveyColumns;
+import back.client_exp_backend.cache.CompiledSurveySchema;
+import back.client_exp_backend.dto.CrosstabDto;
+import back.client_exp_backend.exception.ResourceNotFoundException;
+import back.client_exp_backend.models.enums.ClientDemographicField;
+import back.client_exp_backend.service.CrosstabService;
+import back.client_exp_backend.util.Statistics;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Таблицы сопряженности по столбцовой копии ответов опроса: один проход по
+ * респондентам, без чтения client_answers (кроме загрузки опроса в память)
+ */
+@Service
+@RequiredArgsConstructor
+public class CrosstabServiceImpl implements CrosstabService {
+
+  private static final int MAX_CATEGORIES = 100;
+  // Критерий хи-квадрат ненадежен, если ожидаемая частота ячейки меньше 5
+  private static final double MIN_EXPECTED_COUNT = 5;
+
+  private static final String DEMOGRAPHICS_SQL = "SELECT c.id, c.%s FROM clients c "
+      + "WHERE c.id IN (SELECT ca.client_id FROM client_answers ca WHERE ca.survey_id = ?)";
+
+  private final ColumnarAnswerStore columnarAnswerStore;
+  private final JdbcTemplate jdbcTemplate;
+
+  @Override
+  public CrosstabDto crossTabulate(Long surveyId, Long rowQuestionId, Long columnQuestionId,
+      ClientDemographicField columnField) {
+    if ((columnQuestionId == null) == (columnField == null)) {
+      throw new IllegalArgumentException("Укажите второй вопрос или поле клиента");
+    }
+
+    // Поле клиента читается до столбцов: новые респонденты без значения просто не попадут в таблицу
+    Map<Long, String> clientValues = columnField != null ? loadClientValues(surveyId, columnField) : Map.of();
+
+    return columnarAnswerStore.read(surveyId, columns -> {
+      CompiledSurveySchema schema = columns.getSchema();
+      int rowQuestion = questionIndex(schema, rowQuestionId);
+      SurveyColumns.Axis rowAxis = columns.axis(rowQuestion);
+      List<String> rowLabels = labels(columns, rowQuestion, rowAxis.categories());
+
+      SurveyColumns.Axis columnAxis;
+      List<String> columnLabels;
+      String columnVariable;
+      if (columnField != null) {
+        columnLabels = new ArrayList<>();
+        columnAxis = demographicAxis(columns, columnField, clientValues, columnLabels);
+        columnVariable = columnField.name();
+      } else {
+        int columnQuestion = questionIndex(schema, columnQuestionId);
+        columnAxis = columns.axis(columnQuestion);
+        columnLabels = labels(columns, columnQuestion, columnAxis.categories());
+        columnVariable = schema.questionText(columnQuestion);
+      }
+
+      if (rowAxis.categories() > MAX_CATEGORIES || columnAxis.categories() > MAX_CATEGORIES) {
+        throw new IllegalArgumentException("Слишком много различных значений (больше " + MAX_CATEGORIES + ")");
+      }
+
+      long[] counts = columns.crossTabulate(rowAxis, columnAxis);
+      return toDto(surveyId, schema.questionText(rowQuestion), columnVariable, rowLabels, columnLabels,
+          counts, rowAxis.isMultiple() || columnAxis.isMultiple());
+    });
+  }
+
+  private Map<Long, String> loadClientValues(Long surveyId, ClientDemographicField field) {
+    Map<Long, String> values = new HashMap<>();
+    jdbcTemplate.query(String.format(DEMOGRAPHICS_SQL, field.getColumn()), rs -> {
+      String value = rs.getString(2);
+      if (value != null && !value.isBlank()) {
+        values.put(rs.getLong(1), value);
+      }
+    }, surveyId);
+    return values;
+  }
+
+  /**
+   * Категории поля клиента: для перечислений — в порядке объявления, для
+   * свободных значений — по алфавиту
+   */
+  private SurveyColumns.Axis demographicAxis(SurveyColumns columns, ClientDemographicField field,
+      Map<Long, String> clientValues, List<String> labels) {
+    Map<String, Integer> categories = new HashMap<>();
+    if (field.getLabels() != null) {
+      field.getLabels().forEach((value, label) -> {
+        categories.put(value, labels.size());
+        labels.add(label);
+      });
+    } else {
+      for (String value : new TreeSet<>(clientValues.values())) {
+        categories.put(value, labels.size());
+        labels.add(value);
+      }
+    }
+
+    int[] codes = new int[columns.rowCount()];
+    for (int row = 0; row < codes.length; row++) {
+      String value = clientValues.get(columns.clientId(row));
+      Integer category = value != null ? categories.get(value) : null;
+      codes[row] = category != null ? category : -1;
+    }
+    return SurveyColumns.Axis.of(codes, labels.size());
+  }
+
+  private List<String> labels(SurveyColumns columns, int questionIndex, int categories) {
+    CompiledSurveySchema schema = columns.getSchema();
+    List<String> labels = new ArrayList<>(categories);
+    for (int i = 0; i < categories; i++) {
+      labels.add(switch (schema.questionType(questionIndex)) {
+        case SINGLE_CHOICE, MULTIPLE_CHOICE -> schema.optionText(questionIndex, i);
+        case TEXT -> columns.text(questionIndex, i);
+        default -> String.valueOf(i);
+      });
+    }
+    return labels;
+  }
+
+  private int questionIndex(CompiledSurveySchema schema, Long questionId) {
+    int questionIndex = schema.indexOf(questionId);
+    if (questionIndex < 0) {
+      throw new ResourceNotFoundException("Вопрос с ID " + questionId + " не найден в опросе " + schema.getSurveyId());
+    }
+    return questionIndex;
+  }
+
+  private CrosstabDto toDto(Long surveyId, String rowVariable, String columnVariable, List<String> allRowLabels,
+      List<String> allColumnLabels, long[] cells, boolean multipleResponse) {
+    int width = allColumnLabels.size();
+    long[] allRowTotals = new long[allRowLabels.size()];
+    long[] allColumnTotals = new long[width];
+    for (int i = 0; i < allRowTotals.length; i++) {
+      for (int j = 0; j < width; j++) {
+        allRowTotals[i] += cells[i * width + j];
+        allColumnTotals[j] += cells[i * width + j];
+      }
+    }
+
+    int[] keptRows = nonEmpty(allRowTotals);
+    int[] keptColumns = nonEmpty(allColumnTotals);
+    int r = keptRows.length;
+    int c = keptColumns.length;
+
+    long[][] counts = new long[r][c];
+    long[] rowTotals = new long[r];
+    long[] columnTotals = new long[c];
+    long total = 0;
+    for (int i = 0; i < r; i++) {
+      rowTotals[i] = allRowTotals[keptRows[i]];
+      total += rowTotals[i];
+      for (int j = 0; j < c; j++) {
+        counts[i][j] = cells[keptRows[i] * width + keptColumns[j]];
+      }
+    }
+    for (int j = 0; j < c; j++) {
+      columnTotals[j] = allColumnTotals[keptColumns[j]];
+    }
+
+    double[][] rowPercentages = new double[r][c];
+    double[][] columnPercentages = new double[r][c];
+    for (int i = 0; i < r; i++) {
+      for (int j = 0; j < c; j++) {
+        rowPercentages[i][j] = 100.0 * counts[i][j] / rowTotals[i];
+        columnPercentages[i][j] = 100.0 * counts[i][j] / columnTotals[j];
+      }
+    }
+
+    CrosstabDto.CrosstabDtoBuilder dto = CrosstabDto.builder()
+        .surveyId(surveyId)
+        .rowVariable(rowVariable)
+        .columnVariable(columnVariable)
+        .rowLabels(select(allRowLabels, keptRows))
+        .columnLabels(select(allColumnLabels, keptColumns))
+        .counts(counts)
+        .rowPercentages(rowPercentages)
+        .columnPercentages(columnPercentages)
+        .rowTotals(rowTotals)
+        .columnTotals(columnTotals)
+        .total(total)
+        .multipleResponse(multipleResponse);
+
+    if (!multipleResponse && r > 1 && c > 1) {
+      double chiSquare = 0;
+      int lowExpected = 0;
+      for (int i = 0; i < r; i++) {
+        for (int j = 0; j < c; j++) {
+          double expected = (double) rowTotals[i] * columnTotals[j] / total;
+          double diff = counts[i][j] - expected;
+          chiSquare += diff * diff / expected;
+          if (expected < MIN_EXPECTED_COUNT) {
+            lowExpected++;
+          }
+        }
+      }
+      int degreesOfFreedom = (r - 1) * (c - 1);
+      dto.chiSquare(chiSquare)
+          .degreesOfFreedom(degreesOfFreedom)
+          .pValue(Statistics.chiSquarePValue(chiSquare, degreesOfFreedom))
+          .cramersV(Math.sqrt(chiSquare / (total * (Math.min(r, c) - 1))))
+          .lowExpectedShare((double) lowExpected / (r * c));
+    }
+    return dto.build();
+  }
+
+  private static int[] nonEmpty(long[] totals) {
+    int count = 0;
+    for (long value : totals) {
+      if (value > 0) {
+        count++;
+      }
+    }
+    int[] indexes = new int[count];
+    for (int i = 0, k = 0; i < totals.length; i++) {
+      if (totals[i] > 0) {
+        indexes[k++] = i;
+      }
+    }
+    return indexes;
+  }
+
+  private static List<String> select(List<String> labels, int[] indexes) {
+    List<String> selected = new ArrayList<>(indexes.length);
+    for (int index : indexes) {
+      selected.add(labels.get(index));
+    }
+    return selected;
+  }
+}
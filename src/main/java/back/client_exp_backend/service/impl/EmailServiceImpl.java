@@ -1,13 +1,14 @@
 package back.client_exp_backend.service.impl;
 
-import back.client_exp_backend.repository.ClientRepository;
+import back.client_exp_backend.dto.RecipientFilter;
+import back.client_exp_backend.dto.RecipientRow;
 import back.client_exp_backend.service.EmailService;
+import back.client_exp_backend.service.RecipientService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 @Slf4j
 @Service
@@ -15,62 +16,76 @@ import org.springframework.transaction.annotation.Transactional;
 public class EmailServiceImpl implements EmailService {
 
   private final JavaMailSender mailSender;
-  private final ClientRepository clientRepository;
+  private final RecipientService recipientService;
 
-  @Transactional(readOnly = true)
-  public void sendSurveyToAllClients(Long surveyId, String subject, String baseUrl) {
-    log.info("Начинаем отправку опросника с ID: {} всем клиентам", surveyId);
-    int totalSent = 0;
+  /**
+   * Отправляет опрос получателям, которых читает порциями
+   *
+   * @return число отправленных писем
+   */
+  @Override
+  public int sendSurvey(Long surveyId, String subject, String baseUrl, RecipientFilter recipients) {
+    log.info("Начинаем отправку опросника с ID: {}", surveyId);
+    int[] totalSent = new int[1];
 
     try {
-      var clients = clientRepository.findAll();
-      for (var client : clients) {
-        try {
-          String surveyLink = baseUrl + "/survey/" + surveyId;
-          String emailContent = String.format(
-              "Уважаемый(ая) %s,\n\n" +
-                  "Мы хотели бы узнать Ваше мнение о наших услугах. " +
-                  "Пожалуйста, пройдите опрос по следующей ссылке:\n\n" +
-                  "%s\n\n" +
-                  "Спасибо за Ваше участие!\n" +
-                  "С уважением, команда ClientExp",
-              client.getName(), surveyLink);
+      String surveyLink = baseUrl + "/survey/" + surveyId;
+      int total = recipientService.forEachRecipientChunk(recipients, chunk -> {
+        for (RecipientRow client : chunk) {
+          try {
+            String emailContent = String.format(
+                "Уважаемый(ая) %s,\n\n" +
+                    "Мы хотели бы узнать Ваше мнение о наших услугах. " +
+                    "Пожалуйста, пройдите опрос по следующей ссылке:\n\n" +
+                    "%s\n\n" +
+                    "Спасибо за Ваше участие!\n" +
+                    "С уважением, команда ClientExp",
+                client.getName(), surveyLink);
 
-          sendEmail(client.getEmail(), subject, emailContent);
-          totalSent++;
-        } catch (Exception e) {
-          log.error("Ошибка при отправке опросника клиенту {}: {}", client.getEmail(), e.getMessage());
+            sendEmail(client.getEmail(), subject, emailContent);
+            totalSent[0]++;
+          } catch (Exception e) {
+            log.error("Ошибка при отправке опросника клиенту {}: {}", client.getEmail(), e.getMessage());
+          }
         }
-      }
-      log.info("Рассылка опросника завершена. Всего отправлено {} писем", totalSent);
+      });
+      log.info("Рассылка опросника завершена. Всего отправлено {} писем из {}", totalSent[0], total);
+      return totalSent[0];
     } catch (Exception e) {
       log.error("Ошибка при выполнении рассылки опросника: {}", e.getMessage());
       throw e;
     }
   }
 
-  @Transactional(readOnly = true)
-  public void sendCustomMessageToAllClients(String subject, String messageText) {
+  /**
+   * Отправляет тематическое письмо получателям, которых читает порциями
+   *
+   * @return число отправленных писем
+   */
+  @Override
+  public int sendCustomMessage(String subject, String messageText, RecipientFilter recipients) {
     log.info("Начинаем отправку тематического письма с темой: {}", subject);
-    int totalSent = 0;
+    int[] totalSent = new int[1];
 
     try {
-      var clients = clientRepository.findAll();
-      for (var client : clients) {
-        try {
-          String personalizedMessage = String.format(
-              "Уважаемый(ая) %s,\n\n" +
-                  "%s\n\n" +
-                  "С уважением, команда ClientExp",
-              client.getName(), messageText);
+      int total = recipientService.forEachRecipientChunk(recipients, chunk -> {
+        for (RecipientRow client : chunk) {
+          try {
+            String personalizedMessage = String.format(
+                "Уважаемый(ая) %s,\n\n" +
+                    "%s\n\n" +
+                    "С уважением, команда ClientExp",
+                client.getName(), messageText);
 
-          sendEmail(client.getEmail(), subject, personalizedMessage);
-          totalSent++;
-        } catch (Exception e) {
-          log.error("Ошибка при отправке письма клиенту {}: {}", client.getEmail(), e.getMessage());
+            sendEmail(client.getEmail(), subject, personalizedMessage);
+            totalSent[0]++;
+          } catch (Exception e) {
+            log.error("Ошибка при отправке письма клиенту {}: {}", client.getEmail(), e.getMessage());
+          }
         }
-      }
-      log.info("Рассылка тематического письма завершена. Всего отправлено {} писем", totalSent);
+      });
+      log.info("Рассылка тематического письма завершена. Всего отправлено {} писем из {}", totalSent[0], total);
+      return totalSent[0];
     } catch (Exception e) {
       log.error("Ошибка при выполнении рассылки тематического письма: {}", e.getMessage());
       throw e;
@@ -2,6 +2,8 @@ package back.client_exp_backend.service.impl;
 
 import back.client_exp_backend.dto.AnswerOptionDto;
 import back.client_exp_backend.dto.QuestionDto;
+import back.client_exp_backend.event.QuestionDeletedEvent;
+import back.client_exp_backend.event.SurveyDefinitionChangedEvent;
 import back.client_exp_backend.exception.ResourceNotFoundException;
 import back.client_exp_backend.models.AnswerOption;
 import back.client_exp_backend.models.Question;
@@ -11,6 +13,7 @@ import back.client_exp_backend.repository.QuestionRepository;
 import back.client_exp_backend.repository.SurveyRepository;
 import back.client_exp_backend.service.QuestionService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -24,6 +27,7 @@ public class QuestionServiceImpl implements QuestionService {
 
   private final QuestionRepository questionRepository;
   private final SurveyRepository surveyRepository;
+  private final ApplicationEventPublisher eventPublisher;
 
   @Override
   public List<QuestionDto> getAllQuestions() {
@@ -45,6 +49,7 @@ public class QuestionServiceImpl implements QuestionService {
   public QuestionDto createQuestion(QuestionDto questionDto) {
     Question question = mapDtoToEntity(questionDto);
     Question savedQuestion = questionRepository.save(question);
+    publishSurveyChanged(savedQuestion);
     return mapEntityToDto(savedQuestion);
   }
 
@@ -83,6 +88,7 @@ public class QuestionServiceImpl implements QuestionService {
     }
 
     Question updatedQuestion = questionRepository.save(existingQuestion);
+    publishSurveyChanged(updatedQuestion);
     return mapEntityToDto(updatedQuestion);
   }
 
@@ -92,6 +98,16 @@ public class QuestionServiceImpl implements QuestionService {
     Question question = questionRepository.findById(id)
         .orElseThrow(() -> new ResourceNotFoundException("Вопрос с ID " + id + " не найден"));
     questionRepository.delete(question);
+    if (question.getSurvey() != null) {
+      eventPublisher.publishEvent(new QuestionDeletedEvent(question.getSurvey().getId(), id));
+    }
+    publishSurveyChanged(question);
+  }
+
+  private void publishSurveyChanged(Question question) {
+    if (question.getSurvey() != null) {
+      eventPublisher.publishEvent(new SurveyDefinitionChangedEvent(question.getSurvey().getId(), false));
+    }
   }
 
   private Question mapDtoToEntity(QuestionDto dto) {
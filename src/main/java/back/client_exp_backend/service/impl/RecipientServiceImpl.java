@@ -0,0 +1,175 @@
+package back.client_exp_backend.service.impl;
+
+import back.client_exp_backend.dto.RecipientFilter;
+import back.client_exp_backend.dto.RecipientRow;
+import back.client_exp_backend.models.Segment;
+import back.client_exp_backend.repository.SegmentRepository;
+import back.client_exp_backend.service.RecipientService;
+import back.client_exp_backend.service.SegmentService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.stereotype.Service;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Получатели рассылок. Клиенты читаются порциями по distribution.chunk-size
+ * по ключу id (id > последнего прочитанного), и только id, name и email:
+ * память не зависит от размера аудитории, а между порциями не держится
+ * открытая транзакция, пока идет отправка писем. Сегменты отбираются по
+ * client_segments, поэтому перед рассылкой состав сегментов с условием
+ * записывается заново ({@link #prepareSegments})
+ */
+@Service
+@Slf4j
+public class RecipientServiceImpl implements RecipientService {
+
+  private static final int MAX_CLIENT_IDS = 10000;
+
+  private static final String SURVEY_SEGMENTS_SQL = "SELECT segment_id FROM survey_segments WHERE survey_id = ?";
+
+  private final JdbcTemplate jdbcTemplate;
+  private final SegmentRepository segmentRepository;
+  private final SegmentService segmentService;
+  private final int chunkSize;
+
+  public RecipientServiceImpl(JdbcTemplate jdbcTemplate,
+      SegmentRepository segmentRepository,
+      SegmentService segmentService,
+      @Value("${distribution.chunk-size:500}") int chunkSize) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.segmentRepository = segmentRepository;
+    this.segmentService = segmentService;
+    this.chunkSize = chunkSize;
+  }
+
+  @Override
+  public List<Long> getSurveySegmentIds(Long surveyId) {
+    return jdbcTemplate.queryForList(SURVEY_SEGMENTS_SQL, Long.class, surveyId);
+  }
+
+  /**
+   * Проверяет, что сегменты существуют, и записывает текущий состав сегментов
+   * с условием в client_segments (меняется только разница), чтобы подсчет и
+   * рассылка не читали устаревший состав. Вызывается один раз перед рассылкой
+   */
+  @Override
+  public void prepareSegments(List<Long> segmentIds) {
+    if (segmentIds == null || segmentIds.isEmpty()) {
+      return;
+    }
+    Long[] distinctIds = distinct(segmentIds);
+    List<Segment> segments = segmentRepository.findAllById(List.of(distinctIds));
+    if (segments.size() != distinctIds.length) {
+      throw new IllegalArgumentException("Не все сегменты найдены: " + List.of(distinctIds));
+    }
+    for (Segment segment : segments) {
+      if (segment.getCriteria() == null || segment.getCriteria().isBlank()) {
+        continue;
+      }
+      try {
+        segmentService.materialize(segment.getId());
+      } catch (IllegalStateException e) {
+        // Индекс атрибутов еще не построен: рассылка пойдет по записанному ранее составу
+        log.warn("Состав сегмента {} не обновлен перед рассылкой: {}", segment.getId(), e.getMessage());
+      }
+    }
+  }
+
+  @Override
+  public long countRecipients(RecipientFilter filter) {
+    List<Object> params = new ArrayList<>();
+    String sql = "SELECT count(*) FROM clients c WHERE TRUE" + conditions(filter, params);
+    Long count = jdbcTemplate.query(statement(sql, params), rs -> rs.next() ? rs.getLong(1) : 0L);
+    return count != null ? count : 0;
+  }
+
+  /**
+   * Передает получателей порциями в порядке id
+   *
+   * @return число получателей
+   */
+  @Override
+  public int forEachRecipientChunk(RecipientFilter filter, Consumer<List<RecipientRow>> chunkConsumer) {
+    List<Object> conditionParams = new ArrayList<>();
+    String sql = "SELECT c.id, c.name, c.email FROM clients c WHERE c.id > ?"
+        + conditions(filter, conditionParams) + " ORDER BY c.id LIMIT ?";
+
+    int total = 0;
+    long afterId = 0;
+    while (true) {
+      List<Object> params = new ArrayList<>(conditionParams.size() + 2);
+      params.add(afterId);
+      params.addAll(conditionParams);
+      params.add(chunkSize);
+
+      List<RecipientRow> chunk = jdbcTemplate.query(statement(sql, params),
+          (rs, rowNum) -> new RecipientRow(rs.getLong(1), rs.getString(2), rs.getString(3)));
+      if (chunk.isEmpty()) {
+        break;
+      }
+      chunkConsumer.accept(chunk);
+      total += chunk.size();
+      if (chunk.size() < chunkSize) {
+        break;
+      }
+      afterId = chunk.get(chunk.size() - 1).getId();
+    }
+    return total;
+  }
+
+  /**
+   * Условия отбора в виде "AND ..." и их параметры; списки ID передаются
+   * массивом, чтобы текст запроса не зависел от их длины
+   */
+  private String conditions(RecipientFilter filter, List<Object> params) {
+    StringBuilder sql = new StringBuilder();
+    if (filter.getSegmentIds() != null && !filter.getSegmentIds().isEmpty()) {
+      Long[] segmentIds = distinct(filter.getSegmentIds());
+      sql.append(" AND c.id IN (SELECT cs.client_id FROM client_segments cs WHERE cs.segment_id = ANY (?))");
+      params.add(segmentIds);
+    }
+    if (filter.getClientIds() != null && !filter.getClientIds().isEmpty()) {
+      Long[] clientIds = distinct(filter.getClientIds());
+      if (clientIds.length > MAX_CLIENT_IDS) {
+        throw new IllegalArgumentException("Список клиентов длиннее " + MAX_CLIENT_IDS
+            + ", используйте сегмент");
+      }
+      sql.append(" AND c.id = ANY (?)");
+      params.add(clientIds);
+    }
+    if (filter.getNotRespondedSurveyId() != null) {
+      sql.append(" AND NOT EXISTS (SELECT 1 FROM client_answers ca WHERE ca.survey_id = ? AND ca.client_id = c.id)");
+      params.add(filter.getNotRespondedSurveyId());
+    }
+    return sql.toString();
+  }
+
+  private static Long[] distinct(List<Long> ids) {
+    Set<Long> distinct = new LinkedHashSet<>(ids);
+    distinct.remove(null);
+    return distinct.toArray(new Long[0]);
+  }
+
+  private static PreparedStatementCreator statement(String sql, List<Object> params) {
+    return connection -> {
+      PreparedStatement ps = connection.prepareStatement(sql);
+      for (int i = 0; i < params.size(); i++) {
+        Object param = params.get(i);
+        if (param instanceof Long[] ids) {
+          ps.setArray(i + 1, connection.createArrayOf("bigint", ids));
+        } else {
+          ps.setObject(i + 1, param);
+        }
+      }
+      return ps;
+    };
+  }
+}
@@ -0,0 +1,327 @@
+package back.client_exp_backend.service.impl;
+
+import back.client_exp_backend.dto.TimeSeriesDto;
+import back.client_exp_backend.dto.TimeSeriesPointDto;
+import back.client_exp_backend.event.SurveyResponseSubmittedEvent;
+import back.client_exp_backend.exception.ResourceNotFoundException;
+import back.client_exp_backend.models.enums.RollupBucket;
+import back.client_exp_backend.repository.SurveyRepository;
+import back.client_exp_backend.service.ResponseRollupService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Почасовые и дневные агрегаты количества ответов для графиков. Отправки
+ * накапливаются в памяти после фиксации транзакции и периодически добавляются
+ * к почасовым строкам одной пачкой, поэтому параллельные отправки не
+ * упираются в блокировку строки опроса за текущий час. Ночное сворачивание
+ * переносит часы старше hourly-retention-days в дневную таблицу. Временной ряд
+ * строится только по агрегатам, без обращения к client_answers
+ */
+@Service
+@Slf4j
+public class ResponseRollupServiceImpl implements ResponseRollupService, SmartInitializingSingleton {
+
+  // Строка опроса целиком (количество отправок)
+  private static final long SURVEY_LEVEL = 0L;
+  private static final int MAX_POINTS = 2000;
+
+  private static final String UPSERT_HOURLY_SQL = "INSERT INTO response_rollups_hourly "
+      + "(survey_id, question_id, bucket_start, responses_count) VALUES (?, ?, ?, ?) "
+      + "ON CONFLICT (survey_id, question_id, bucket_start) DO UPDATE SET "
+      + "responses_count = response_rollups_hourly.responses_count + EXCLUDED.responses_count";
+
+  // Удаление и перенос выполняются одним запросом, поэтому часы не теряются и
+  // не учитываются дважды
+  private static final String COMPACT_SQL = "WITH moved AS ("
+      + "DELETE FROM response_rollups_hourly WHERE bucket_start < ? "
+      + "RETURNING survey_id, question_id, bucket_start, responses_count) "
+      + "INSERT INTO response_rollups_daily (survey_id, question_id, bucket_start, responses_count) "
+      + "SELECT survey_id, question_id, date_trunc('day', bucket_start), SUM(responses_count) FROM moved "
+      + "GROUP BY survey_id, question_id, date_trunc('day', bucket_start) "
+      + "ON CONFLICT (survey_id, question_id, bucket_start) DO UPDATE SET "
+      + "responses_count = response_rollups_daily.responses_count + EXCLUDED.responses_count";
+
+  // Ответы, сохраненные до первого интервала в агрегатах (или до запуска, если
+  // агрегатов еще нет): последние hourly-retention-days дней по часам, более
+  // ранние — по дням. Для опроса целиком считаются различные клиенты за интервал
+  private static final String BACKFILL_HOURLY_SQL = "INSERT INTO response_rollups_hourly "
+      + "(survey_id, question_id, bucket_start, responses_count) "
+      + "SELECT survey_id, question_id, date_trunc('hour', created_at), COUNT(*) FROM client_answers "
+      + "WHERE created_at >= ? AND created_at < ? GROUP BY survey_id, question_id, date_trunc('hour', created_at) "
+      + "UNION ALL "
+      + "SELECT survey_id, 0, date_trunc('hour', created_at), COUNT(DISTINCT client_id) FROM client_answers "
+      + "WHERE created_at >= ? AND created_at < ? GROUP BY survey_id, date_trunc('hour', created_at) "
+      + "ON CONFLICT (survey_id, question_id, bucket_start) DO UPDATE SET "
+      + "responses_count = response_rollups_hourly.responses_count + EXCLUDED.responses_count";
+
+  private static final String BACKFILL_DAILY_SQL = "INSERT INTO response_rollups_daily "
+      + "(survey_id, question_id, bucket_start, responses_count) "
+      + "SELECT survey_id, question_id, date_trunc('day', created_at), COUNT(*) FROM client_answers "
+      + "WHERE created_at < ? GROUP BY survey_id, question_id, date_trunc('day', created_at) "
+      + "UNION ALL "
+      + "SELECT survey_id, 0, date_trunc('day', created_at), COUNT(DISTINCT client_id) FROM client_answers "
+      + "WHERE created_at < ? GROUP BY survey_id, date_trunc('day', created_at) "
+      + "ON CONFLICT (survey_id, question_id, bucket_start) DO UPDATE SET "
+      + "responses_count = response_rollups_daily.responses_count + EXCLUDED.responses_count";
+
+  private static final String FIRST_BUCKET_SQL = "SELECT LEAST((SELECT MIN(bucket_start) FROM response_rollups_hourly), "
+      + "(SELECT MIN(bucket_start) FROM response_rollups_daily))";
+
+  private static final String SERIES_SQL = "SELECT date_trunc(?, r.bucket_start) AS bucket, SUM(r.responses_count) "
+      + "FROM (SELECT bucket_start, responses_count FROM response_rollups_daily "
+      + "WHERE survey_id = ? AND question_id = ? AND bucket_start >= ? AND bucket_start < ? "
+      + "UNION ALL "
+      + "SELECT bucket_start, responses_count FROM response_rollups_hourly "
+      + "WHERE survey_id = ? AND question_id = ? AND bucket_start >= ? AND bucket_start < ?) r "
+      + "GROUP BY bucket ORDER BY bucket";
+
+  private static final Comparator<BucketKey> KEY_ORDER = Comparator.comparingLong(BucketKey::surveyId)
+      .thenComparingLong(BucketKey::questionId)
+      .thenComparing(BucketKey::bucketStart);
+
+  private final JdbcTemplate jdbcTemplate;
+  private final SurveyRepository surveyRepository;
+  private final TransactionTemplate transactionTemplate;
+  private final TaskExecutor taskExecutor;
+
+  @Value("${analytics.rollups.hourly-retention-days:7}")
+  private int hourlyRetentionDays;
+
+  // Приращения почасовых строк, еще не записанные в БД
+  private volatile Map<BucketKey, LongAdder> pending = new ConcurrentHashMap<>();
+  // Отправки увеличивают pending под чтением, сброс подменяет его под записью:
+  // после подмены в старую карту никто не пишет
+  private final ReadWriteLock pendingLock = new ReentrantReadWriteLock();
+
+  public ResponseRollupServiceImpl(JdbcTemplate jdbcTemplate, SurveyRepository surveyRepository,
+      PlatformTransactionManager transactionManager,
+      @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME) TaskExecutor taskExecutor) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.surveyRepository = surveyRepository;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.taskExecutor = taskExecutor;
+  }
+
+  /**
+   * Заполняет агрегаты по ответам, сохраненным до их появления, в фоне.
+   * Отправки после запуска учитываются в памяти, поэтому не пересекаются с
+   * заполнением
+   */
+  @Override
+  public void afterSingletonsInstantiated() {
+    LocalDateTime startedAt = LocalDateTime.now();
+    taskExecutor.execute(() -> {
+      try {
+        backfill(startedAt);
+      } catch (Exception e) {
+        log.error("Не удалось заполнить почасовую и дневную статистику по сохраненным ответам", e);
+      }
+    });
+  }
+
+  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+  public void onSurveyResponseSubmitted(SurveyResponseSubmittedEvent event) {
+    LocalDateTime bucketStart = RollupBucket.HOUR.truncate(event.getSubmittedAt());
+    pendingLock.readLock().lock();
+    try {
+      Map<BucketKey, LongAdder> current = pending;
+      current.computeIfAbsent(new BucketKey(event.getSurveyId(), SURVEY_LEVEL, bucketStart), key -> new LongAdder())
+          .increment();
+      for (SurveyResponseSubmittedEvent.AnswerFact answer : event.getAnswers()) {
+        current.computeIfAbsent(new BucketKey(event.getSurveyId(), answer.getQuestionId(), bucketStart),
+            key -> new LongAdder()).increment();
+      }
+    } finally {
+      pendingLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Добавляет накопленные приращения к почасовым строкам одной пачкой. Строки
+   * обновляются в порядке ключа, чтобы сбросы нескольких экземпляров не
+   * блокировали друг друга крест-накрест
+   */
+  @Override
+  @Scheduled(fixedDelayString = "${analytics.rollups.flush-interval-ms:5000}")
+  public void flush() {
+    Map<BucketKey, LongAdder> flushed;
+    pendingLock.writeLock().lock();
+    try {
+      flushed = pending;
+      if (flushed.isEmpty()) {
+        return;
+      }
+      pending = new ConcurrentHashMap<>();
+    } finally {
+      pendingLock.writeLock().unlock();
+    }
+
+    List<Map.Entry<BucketKey, LongAdder>> entries = new ArrayList<>(flushed.entrySet());
+    entries.sort(Map.Entry.comparingByKey(KEY_ORDER));
+    List<Object[]> rows = new ArrayList<>(entries.size());
+    for (Map.Entry<BucketKey, LongAdder> entry : entries) {
+      BucketKey key = entry.getKey();
+      rows.add(new Object[] { key.surveyId(), key.questionId(), Timestamp.valueOf(key.bucketStart()),
+          entry.getValue().sum() });
+    }
+
+    try {
+      jdbcTemplate.batchUpdate(UPSERT_HOURLY_SQL, rows);
+    } catch (Exception e) {
+      // Возвращаем приращения, чтобы записать их при следующем сбросе
+      pendingLock.readLock().lock();
+      try {
+        Map<BucketKey, LongAdder> current = pending;
+        flushed.forEach((key, count) -> current.computeIfAbsent(key, k -> new LongAdder()).add(count.sum()));
+      } finally {
+        pendingLock.readLock().unlock();
+      }
+      log.error("Не удалось сохранить почасовую статистику ответов ({} строк)", rows.size(), e);
+    }
+  }
+
+  @PreDestroy
+  public void flushOnShutdown() {
+    flush();
+  }
+
+  @Override
+  @Transactional(readOnly = true)
+  public TimeSeriesDto getSeries(Long surveyId, Long questionId, LocalDateTime from, LocalDateTime to,
+      RollupBucket bucket) {
+    if (!surveyRepository.existsById(surveyId)) {
+      throw new ResourceNotFoundException("Опрос", "id", surveyId);
+    }
+    if (!from.isBefore(to)) {
+      throw new IllegalArgumentException("Начало периода должно быть раньше окончания");
+    }
+    if (bucket == RollupBucket.HOUR && from.isBefore(hourlyCutoff())) {
+      throw new IllegalArgumentException("Почасовая статистика хранится " + hourlyRetentionDays
+          + " дн., для более ранних периодов используйте bucket=DAY");
+    }
+
+    LocalDateTime start = bucket.truncate(from);
+    long expectedPoints = switch (bucket) {
+      case HOUR -> ChronoUnit.HOURS.between(start, to);
+      case DAY -> ChronoUnit.DAYS.between(start, to);
+      case WEEK -> ChronoUnit.WEEKS.between(start, to);
+      case MONTH -> ChronoUnit.MONTHS.between(start, to);
+    };
+    if (expectedPoints > MAX_POINTS) {
+      throw new IllegalArgumentException("Слишком много интервалов (" + expectedPoints
+          + "), максимум " + MAX_POINTS + ". Увеличьте размер интервала или сократите период");
+    }
+
+    long rowQuestionId = questionId != null ? questionId : SURVEY_LEVEL;
+    Timestamp fromTs = Timestamp.valueOf(start);
+    Timestamp toTs = Timestamp.valueOf(to);
+    Map<LocalDateTime, Long> counts = new HashMap<>();
+    jdbcTemplate.query(SERIES_SQL, rs -> {
+      counts.put(rs.getTimestamp(1).toLocalDateTime(), rs.getLong(2));
+    }, bucket.getSqlUnit(), surveyId, rowQuestionId, fromTs, toTs, surveyId, rowQuestionId, fromTs, toTs);
+
+    List<TimeSeriesPointDto> points = new ArrayList<>();
+    long total = 0;
+    for (LocalDateTime bucketStart = start; bucketStart.isBefore(to); bucketStart = bucket.next(bucketStart)) {
+      long count = counts.getOrDefault(bucketStart, 0L);
+      total += count;
+      points.add(new TimeSeriesPointDto(bucketStart, count));
+    }
+
+    return TimeSeriesDto.builder()
+        .surveyId(surveyId)
+        .questionId(questionId)
+        .bucket(bucket)
+        .from(start)
+        .to(to)
+        .total(total)
+        .points(points)
+        .build();
+  }
+
+  /**
+   * Сворачивает почасовые строки за дни старше hourly-retention-days в дневные
+   */
+  @Override
+  @Transactional
+  @Scheduled(cron = "${analytics.rollups.compaction-cron:0 15 3 * * *}")
+  public int compact() {
+    long started = System.currentTimeMillis();
+    LocalDateTime cutoff = hourlyCutoff();
+    int daily = jdbcTemplate.update(COMPACT_SQL, Timestamp.valueOf(cutoff));
+    log.info("Сворачивание почасовой статистики до {} завершено за {} мс: дневных строк {}",
+        cutoff, System.currentTimeMillis() - started, daily);
+    return daily;
+  }
+
+  @Override
+  @Transactional
+  public void deleteBySurveyId(Long surveyId) {
+    pending.keySet().removeIf(key -> key.surveyId() == surveyId);
+    jdbcTemplate.update("DELETE FROM response_rollups_hourly WHERE survey_id = ?", surveyId);
+    jdbcTemplate.update("DELETE FROM response_rollups_daily WHERE survey_id = ?", surveyId);
+  }
+
+  /**
+   * Добавляет в агрегаты ответы, сохраненные раньше первого интервала в них.
+   * Выполняется одним экземпляром приложения (рекомендательная блокировка) и
+   * после заполнения ничего не находит, поэтому безопасен при каждом запуске
+   */
+  private void backfill(LocalDateTime startedAt) {
+    transactionTemplate.executeWithoutResult(status -> {
+      Boolean locked = jdbcTemplate.queryForObject(
+          "SELECT pg_try_advisory_xact_lock(hashtext('response_rollups_backfill'))", Boolean.class);
+      if (!Boolean.TRUE.equals(locked)) {
+        return;
+      }
+
+      Timestamp firstBucket = jdbcTemplate.queryForObject(FIRST_BUCKET_SQL, Timestamp.class);
+      Timestamp until = firstBucket != null ? firstBucket : Timestamp.valueOf(startedAt);
+      Timestamp hourlyFrom = Timestamp.valueOf(hourlyCutoff());
+      Timestamp dailyUntil = hourlyFrom.before(until) ? hourlyFrom : until;
+
+      long started = System.currentTimeMillis();
+      int hourly = jdbcTemplate.update(BACKFILL_HOURLY_SQL, hourlyFrom, until, hourlyFrom, until);
+      int daily = jdbcTemplate.update(BACKFILL_DAILY_SQL, dailyUntil, dailyUntil);
+      if (hourly > 0 || daily > 0) {
+        log.info("Статистика по ответам до {} заполнена за {} мс: почасовых строк {}, дневных {}",
+            until, System.currentTimeMillis() - started, hourly, daily);
+      }
+    });
+  }
+
+  private LocalDateTime hourlyCutoff() {
+    return LocalDate.now().minusDays(hourlyRetentionDays).atStartOfDay();
+  }
+
+  private record BucketKey(long surveyId, long questionId, LocalDateTime bucketStart) {
+  }
+}
@@ -0,0 +1,321 @@
+package back.client_exp_backend.service.impl;
+
+import back.client_exp_backend.dto.AudienceBucketDto;
+import back.client_exp_backend.dto.AudienceHistogramDto;
+import back.client_exp_backend.dto.AudienceSizeDto;
+import back.client_exp_backend.dto.AudienceSizingRequest;
+import back.client_exp_backend.dto.SegmentAudienceDto;
+import back.client_exp_backend.dto.SegmentDto;
+import back.client_exp_backend.dto.SegmentMaterializationDto;
+import back.client_exp_backend.exception.ResourceNotFoundException;
+import back.client_exp_backend.models.Segment;
+import back.client_exp_backend.repository.SegmentRepository;
+import back.client_exp_backend.segment.ClientAttributeIndex;
+import back.client_exp_backend.segment.CriteriaExpression;
+import back.client_exp_backend.segment.CriteriaField;
+import back.client_exp_backend.segment.CriteriaPlan;
+import back.client_exp_backend.service.SegmentService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Сегменты клиентов. Условие сегмента компилируется в {@link CriteriaPlan} и
+ * вычисляется по битовым картам {@link ClientAttributeIndex}; запись состава
+ * в client_segments меняет только разницу с текущим составом
+ */
+@Service
+@Slf4j
+public class SegmentServiceImpl implements SegmentService {
+
+  private static final int SAMPLE_SIZE = 20;
+
+  private static final String MEMBERS_SQL = "SELECT client_id FROM client_segments WHERE segment_id = ?";
+  private static final String INSERT_SQL = "INSERT INTO client_segments (client_id, segment_id) VALUES (?, ?) "
+      + "ON CONFLICT DO NOTHING";
+  private static final String DELETE_SQL = "DELETE FROM client_segments WHERE segment_id = ? AND client_id = ANY (?)";
+
+  private final SegmentRepository segmentRepository;
+  private final ClientAttributeIndex clientAttributeIndex;
+  private final JdbcTemplate jdbcTemplate;
+  private final int batchSize;
+
+  public SegmentServiceImpl(SegmentRepository segmentRepository,
+      ClientAttributeIndex clientAttributeIndex,
+      JdbcTemplate jdbcTemplate,
+      @Value("${segments.materialize.batch-size:1000}") int batchSize) {
+    this.segmentRepository = segmentRepository;
+    this.clientAttributeIndex = clientAttributeIndex;
+    this.jdbcTemplate = jdbcTemplate;
+    this.batchSize = batchSize;
+  }
+
+  @Override
+  public List<SegmentDto> getAllSegments() {
+    return segmentRepository.findAll().stream()
+        .map(this::mapToDto)
+        .collect(Collectors.toList());
+  }
+
+  @Override
+  public SegmentDto getSegmentById(Long id) {
+    return mapToDto(findSegment(id));
+  }
+
+  @Override
+  @Transactional
+  public SegmentDto createSegment(SegmentDto segmentDto) {
+    Segment segment = new Segment();
+    apply(segment, segmentDto);
+    return mapToDto(segmentRepository.save(segment));
+  }
+
+  @Override
+  @Transactional
+  public SegmentDto updateSegment(Long id, SegmentDto segmentDto) {
+    Segment segment = findSegment(id);
+    apply(segment, segmentDto);
+    return mapToDto(segmentRepository.save(segment));
+  }
+
+  @Override
+  public SegmentAudienceDto previewAudience(String criteria) {
+    long started = System.currentTimeMillis();
+    CriteriaPlan plan = CriteriaPlan.compile(criteria);
+    BitSet clients = clientAttributeIndex.evaluate(plan);
+
+    List<Long> sample = new ArrayList<>(SAMPLE_SIZE);
+    for (int id = clients.nextSetBit(0); id >= 0 && sample.size() < SAMPLE_SIZE; id = clients.nextSetBit(id + 1)) {
+      sample.add((long) id);
+    }
+
+    return SegmentAudienceDto.builder()
+        .criteria(criteria)
+        .plan(plan.explain())
+        .size(clients.cardinality())
+        .sampleClientIds(sample)
+        .elapsedMs(System.currentTimeMillis() - started)
+        .build();
+  }
+
+  /**
+   * Записывает состав сегмента пакетами по segments.materialize.batch-size:
+   * добавляет недостающих клиентов и удаляет лишних. Пакеты идемпотентны,
+   * поэтому прерванную запись достаточно повторить
+   */
+  @Override
+  public SegmentMaterializationDto materialize(Long id) {
+    Segment segment = findSegment(id);
+    if (segment.getCriteria() == null || segment.getCriteria().isBlank()) {
+      throw new IllegalArgumentException("У сегмента " + id + " нет условия, состав ведется вручную");
+    }
+
+    long started = System.currentTimeMillis();
+    BitSet target = clientAttributeIndex.evaluate(CriteriaPlan.compile(segment.getCriteria()));
+
+    BitSet current = new BitSet();
+    jdbcTemplate.query(MEMBERS_SQL, rs -> {
+      long clientId = rs.getLong(1);
+      if (clientId <= Integer.MAX_VALUE) {
+        current.set((int) clientId);
+      }
+    }, id);
+
+    BitSet added = (BitSet) target.clone();
+    added.andNot(current);
+    BitSet removed = current;
+    removed.andNot(target);
+
+    for (long[] batch : batches(added)) {
+      jdbcTemplate.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+        @Override
+        public void setValues(PreparedStatement ps, int i) throws SQLException {
+          ps.setLong(1, batch[i]);
+          ps.setLong(2, id);
+        }
+
+        @Override
+        public int getBatchSize() {
+          return batch.length;
+        }
+      });
+    }
+    for (long[] batch : batches(removed)) {
+      jdbcTemplate.update(connection -> {
+        PreparedStatement ps = connection.prepareStatement(DELETE_SQL);
+        ps.setLong(1, id);
+        ps.setArray(2, connection.createArrayOf("bigint", box(batch)));
+        return ps;
+      });
+    }
+
+    SegmentMaterializationDto result = SegmentMaterializationDto.builder()
+        .segmentId(id)
+        .members(target.cardinality())
+        .added(added.cardinality())
+        .removed(removed.cardinality())
+        .elapsedMs(System.currentTimeMillis() - started)
+        .build();
+    log.info("Состав сегмента {} записан за {} мс: клиентов {}, добавлено {}, удалено {}",
+        id, result.getElapsedMs(), result.getMembers(), result.getAdded(), result.getRemoved());
+    return result;
+  }
+
+  /**
+   * Размер аудитории и распределения по полям, не участвующим в фильтре.
+   * Все числа — мощности пересечений битовых карт, таблица clients не читается
+   */
+  @Override
+  public AudienceSizeDto sizeAudience(AudienceSizingRequest request) {
+    long started = System.currentTimeMillis();
+    Set<CriteriaField> filtered = EnumSet.noneOf(CriteriaField.class);
+    List<CriteriaExpression> operands = new ArrayList<>();
+    filters(request.getInclude(), filtered, operands::add);
+    filters(request.getExclude(), filtered, in -> operands.add(new CriteriaExpression.Not(in)));
+
+    CriteriaPlan plan = CriteriaPlan.compile(new CriteriaExpression.And(operands));
+    BitSet clients = clientAttributeIndex.evaluate(plan);
+    long matched = clients.cardinality();
+    long totalClients = clientAttributeIndex.size();
+
+    List<AudienceHistogramDto> histograms = new ArrayList<>();
+    for (CriteriaField field : CriteriaField.values()) {
+      if (field.getValues() == null || filtered.contains(field)) {
+        continue;
+      }
+      long[] counts = clientAttributeIndex.histogram(clients, field);
+      List<AudienceBucketDto> buckets = new ArrayList<>(counts.length);
+      int i = 0;
+      for (String value : field.getValues()) {
+        buckets.add(bucket(value, field.label(value), counts[i++], matched));
+      }
+      buckets.add(bucket(null, "не указано", counts[i], matched));
+      histograms.add(AudienceHistogramDto.builder().field(field.getFieldName()).buckets(buckets).build());
+    }
+
+    return AudienceSizeDto.builder()
+        .plan(plan.explain())
+        .totalClients(totalClients)
+        .matched(matched)
+        .share(totalClients > 0 ? (double) matched / totalClients : 0)
+        .histograms(histograms)
+        .elapsedMs(System.currentTimeMillis() - started)
+        .build();
+  }
+
+  private void filters(Map<String, List<String>> filters, Set<CriteriaField> filtered,
+      Consumer<CriteriaExpression.ValueIn> operands) {
+    if (filters == null) {
+      return;
+    }
+    filters.forEach((name, values) -> {
+      CriteriaField field = CriteriaField.byName(name);
+      if (field == null || field.isDate()) {
+        throw new IllegalArgumentException("Неизвестное поле фильтра «" + name + "»");
+      }
+      if (values == null || values.isEmpty()) {
+        return;
+      }
+      Set<String> normalized = new LinkedHashSet<>();
+      for (String value : values) {
+        String stored = value != null ? field.normalize(value) : null;
+        if (stored == null) {
+          throw new IllegalArgumentException("Недопустимое значение «" + value + "» поля " + name
+              + ", допустимы: " + field.getValues());
+        }
+        normalized.add(stored);
+      }
+      filtered.add(field);
+      operands.accept(new CriteriaExpression.ValueIn(field, normalized));
+    });
+  }
+
+  private static AudienceBucketDto bucket(String value, String label, long count, long matched) {
+    return AudienceBucketDto.builder()
+        .value(value)
+        .label(label)
+        .count(count)
+        .share(matched > 0 ? (double) count / matched : 0)
+        .build();
+  }
+
+  private List<long[]> batches(BitSet ids) {
+    List<long[]> batches = new ArrayList<>();
+    long[] batch = new long[Math.min(batchSize, ids.cardinality())];
+    int size = 0;
+    for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+      batch[size++] = id;
+      if (size == batch.length) {
+        batches.add(batch);
+        batch = new long[batch.length];
+        size = 0;
+      }
+    }
+    if (size > 0) {
+      batches.add(Arrays.copyOf(batch, size));
+    }
+    return batches;
+  }
+
+  private static Long[] box(long[] values) {
+    Long[] boxed = new Long[values.length];
+    for (int i = 0; i < values.length; i++) {
+      boxed[i] = values[i];
+    }
+    return boxed;
+  }
+
+  private void apply(Segment segment, SegmentDto segmentDto) {
+    String criteria = segmentDto.getCriteria() != null && !segmentDto.getCriteria().isBlank()
+        ? segmentDto.getCriteria().trim()
+        : null;
+    if (criteria != null) {
+      // Ошибка разбора возвращается клиенту как 400 до сохранения
+      CriteriaPlan.compile(criteria);
+    }
+    segment.setName(segmentDto.getName());
+    segment.setDescription(segmentDto.getDescription());
+    segment.setCriteria(criteria);
+  }
+
+  private Segment findSegment(Long id) {
+    return segmentRepository.findById(id)
+        .orElseThrow(() -> new ResourceNotFoundException("Сегмент с ID " + id + " не найден"));
+  }
+
+  private SegmentDto mapToDto(Segment segment) {
+    Integer audienceSize = null;
+    if (segment.getCriteria() != null && !segment.getCriteria().isBlank() && clientAttributeIndex.isReady()) {
+      try {
+        audienceSize = clientAttributeIndex.evaluate(CriteriaPlan.compile(segment.getCriteria())).cardinality();
+      } catch (IllegalArgumentException e) {
+        // Условие в старом свободном формате не разбирается: размер аудитории неизвестен
+      }
+    }
+    return SegmentDto.builder()
+        .id(segment.getId())
+        .name(segment.getName())
+        .description(segment.getDescription())
+        .criteria(segment.getCriteria())
+        .audienceSize(audienceSize)
+        .createdAt(segment.getCreatedAt())
+        .updatedAt(segment.getUpdatedAt())
+        .build();
+  }
+}
@@ -0,0 +1,168 @@
+package back.client_exp_backend.service.impl;
+
+import back.client_exp_backend.dto.BulkSubmissionLineDto;
+import back.client_exp_backend.dto.SurveyResponseDto;
+import back.client_exp_backend.dto.SurveyResponseResultDto;
+import back.client_exp_backend.service.SurveyBulkSubmissionService;
+import back.client_exp_backend.service.SurveyResponseService;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.DatabindException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Пакетная загрузка ответов в формате NDJSON (например, с планшетов, собиравших
+ * ответы без сети). Поток разбирается по одному объекту, ответы сохраняются
+ * порциями в одной транзакции, а результат каждой строки сразу пишется в ответ
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SurveyBulkSubmissionServiceImpl implements SurveyBulkSubmissionService {
+
+  private static final byte NEWLINE = '\n';
+
+  private final SurveyResponseService surveyResponseService;
+  private final ObjectMapper objectMapper;
+  private final Validator validator;
+
+  @Value("${survey.bulk.chunk-size:100}")
+  private int chunkSize;
+
+  @Override
+  public long processNdjson(InputStream input, OutputStream output) throws IOException {
+    ObjectReader reader = objectMapper.readerFor(SurveyResponseDto.class);
+    OutputStream out = new BufferedOutputStream(output);
+    List<PendingLine> chunk = new ArrayList<>(chunkSize);
+    long lines = 0;
+    long failed = 0;
+
+    try (MappingIterator<SurveyResponseDto> iterator = reader.readValues(input)) {
+      while (true) {
+        try {
+          if (!iterator.hasNextValue()) {
+            break;
+          }
+          long lineNumber = iterator.getParser().currentTokenLocation().getLineNr();
+          lines++;
+          try {
+            SurveyResponseDto responseDto = iterator.nextValue();
+            chunk.add(new PendingLine(lineNumber, responseDto, validate(responseDto)));
+          } catch (DatabindException e) {
+            // Строка не соответствует формату ответа, остальные строки читаются дальше
+            chunk.add(new PendingLine(lineNumber, null, "Некорректные данные: " + e.getOriginalMessage()));
+          }
+        } catch (JsonParseException e) {
+          // После синтаксической ошибки позиция в потоке неизвестна, дальше не читаем
+          chunk.add(new PendingLine(e.getLocation() != null ? e.getLocation().getLineNr() : lines + 1, null,
+              "Некорректный JSON, обработка прервана: " + e.getOriginalMessage()));
+          break;
+        }
+
+        if (chunk.size() >= chunkSize) {
+          failed += writeChunk(chunk, out);
+        }
+      }
+
+      failed += writeChunk(chunk, out);
+    }
+
+    log.info("Пакетная загрузка ответов завершена: строк {}, с ошибками {}", lines, failed);
+    return lines;
+  }
+
+  /**
+   * Сохраняет корректные строки порции одной транзакцией и пишет результаты в
+   * порядке строк. Если транзакция порции откатилась, строки сохраняются по
+   * одной, чтобы ошибка в одной из них не помешала остальным
+   *
+   * @return количество строк с ошибками
+   */
+  private int writeChunk(List<PendingLine> chunk, OutputStream out) throws IOException {
+    if (chunk.isEmpty()) {
+      return 0;
+    }
+
+    List<PendingLine> valid = chunk.stream().filter(line -> line.error == null).toList();
+    List<SurveyResponseResultDto> results = null;
+    if (!valid.isEmpty()) {
+      try {
+        results = surveyResponseService.processSurveyResponses(
+            valid.stream().map(PendingLine::responseDto).toList());
+      } catch (Exception e) {
+        log.warn("Не удалось сохранить порцию из {} ответов, сохраняем по одному: {}", valid.size(), e.getMessage());
+      }
+    }
+
+    int failed = 0;
+    int resultIndex = 0;
+    for (PendingLine line : chunk) {
+      BulkSubmissionLineDto.BulkSubmissionLineDtoBuilder lineResult = BulkSubmissionLineDto.builder()
+          .line(line.lineNumber)
+          .surveyId(line.responseDto != null ? line.responseDto.getSurveyId() : null);
+
+      if (line.error != null) {
+        lineResult.success(false).error(line.error);
+        failed++;
+      } else if (results != null) {
+        lineResult.success(true).result(results.get(resultIndex++));
+      } else {
+        try {
+          lineResult.success(true).result(surveyResponseService.processSurveyResponse(line.responseDto));
+        } catch (Exception e) {
+          log.error("Ошибка при сохранении ответов из строки {}", line.lineNumber, e);
+          lineResult.success(false).error(e.getMessage());
+          failed++;
+        }
+      }
+
+      writeLine(out, lineResult.build());
+    }
+
+    chunk.clear();
+    out.flush();
+    return failed;
+  }
+
+  /**
+   * Те же проверки, что выполняются для одиночной отправки ответов
+   */
+  private String validate(SurveyResponseDto responseDto) {
+    if (responseDto == null) {
+      return "Пустая строка";
+    }
+
+    Set<ConstraintViolation<SurveyResponseDto>> violations = validator.validate(responseDto);
+    if (!violations.isEmpty()) {
+      return violations.stream()
+          .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+          .sorted()
+          .collect(Collectors.joining("; "));
+    }
+    return null;
+  }
+
+  private void writeLine(OutputStream out, BulkSubmissionLineDto line) throws IOException {
+    out.write(objectMapper.writeValueAsBytes(line));
+    out.write(NEWLINE);
+  }
+
+  private record PendingLine(long lineNumber, SurveyResponseDto responseDto, String error) {
+  }
+}
@@ -0,0 +1,334 @@
+package back.client_exp_backend.service.impl;
+
+import back.client_exp_backend.cache.CompiledSurveySchema;
+import back.client_exp_backend.cache.SurveySchemaCache;
+import back.client_exp_backend.dto.IngestionReceiptDto;
+import back.client_exp_backend.dto.IngestionStatsDto;
+import back.client_exp_backend.dto.SurveyAnswerDto;
+import back.client_exp_backend.dto.SurveyResponseDto;
+import back.client_exp_backend.dto.SurveyResponseResultDto;
+import back.client_exp_backend.exception.IngestionQueueFullException;
+import back.client_exp_backend.models.enums.IngestionStatus;
+import back.client_exp_backend.models.enums.SurveyStatus;
+import back.client_exp_backend.service.SurveyIngestionService;
+import back.client_exp_backend.service.SurveyResponseService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.task.ThreadPoolTaskExecutorBuilder;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Режим отложенной записи ответов на опросы: запрос только ставит ответы в
+ * ограниченную очередь, а фоновые обработчики сохраняют их пачками.
+ * Обработчики работают в пуле потоков, который запускается и останавливается
+ * вместе с контекстом после остановки веб-сервера
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SurveyIngestionServiceImpl implements SurveyIngestionService, SmartLifecycle {
+
+  private final SurveyResponseService surveyResponseService;
+  private final SurveySchemaCache surveySchemaCache;
+  private final ThreadPoolTaskExecutorBuilder executorBuilder;
+
+  @Value("${survey.ingestion.async:false}")
+  private boolean asyncEnabled;
+
+  @Value("${survey.ingestion.queue-capacity:10000}")
+  private int queueCapacity;
+
+  @Value("${survey.ingestion.workers:2}")
+  private int workerCount;
+
+  @Value("${survey.ingestion.batch-size:50}")
+  private int batchSize;
+
+  @Value("${survey.ingestion.receipt-ttl-minutes:60}")
+  private long receiptTtlMinutes;
+
+  @Value("${survey.ingestion.shutdown-timeout-seconds:30}")
+  private long shutdownTimeoutSeconds;
+
+  private BlockingQueue<PendingSubmission> queue;
+  private ThreadPoolTaskExecutor executor;
+  private final List<Future<?>> workers = new ArrayList<>();
+  private final Map<String, Receipt> receipts = new ConcurrentHashMap<>();
+
+  private volatile boolean accepting;
+
+  private final AtomicLong acceptedTotal = new AtomicLong();
+  private final AtomicLong rejectedTotal = new AtomicLong();
+  private final AtomicLong completedTotal = new AtomicLong();
+  private final AtomicLong failedTotal = new AtomicLong();
+  private final AtomicLong batchesTotal = new AtomicLong();
+  private final AtomicLong lastBatchDurationMs = new AtomicLong();
+
+  @Override
+  public void start() {
+    if (!asyncEnabled) {
+      return;
+    }
+
+    queue = new ArrayBlockingQueue<>(queueCapacity);
+    executor = executorBuilder
+        .corePoolSize(workerCount)
+        .maxPoolSize(workerCount)
+        .queueCapacity(0)
+        .threadNamePrefix("survey-ingest-")
+        .build();
+    executor.initialize();
+
+    accepting = true;
+    for (int i = 0; i < workerCount; i++) {
+      workers.add(executor.submit(this::drainLoop));
+    }
+    log.info("Запущена отложенная запись ответов: очередь {}, обработчиков {}, пачка {}",
+        queueCapacity, workerCount, batchSize);
+  }
+
+  /**
+   * Прекращает прием новых ответов и дожидается, пока обработчики сохранят все,
+   * что уже находится в очереди
+   */
+  @Override
+  public void stop() {
+    if (!isRunning()) {
+      return;
+    }
+
+    accepting = false;
+    log.info("Остановка отложенной записи, в очереди осталось {} ответов", queue.size());
+
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(shutdownTimeoutSeconds);
+    for (Future<?> worker : workers) {
+      try {
+        worker.get(Math.max(1, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      } catch (ExecutionException | TimeoutException e) {
+        log.warn("Обработчик очереди ответов не завершился: {}", e.toString());
+      }
+    }
+    executor.shutdown();
+
+    if (!queue.isEmpty()) {
+      log.error("Не удалось сохранить {} ответов до остановки приложения", queue.size());
+    }
+  }
+
+  @Override
+  public boolean isRunning() {
+    return executor != null && !executor.getThreadPoolExecutor().isShutdown();
+  }
+
+  /**
+   * Останавливается после веб-сервера (его фазы близки к Integer.MAX_VALUE),
+   * чтобы сохранить ответы, принятые последними запросами
+   */
+  @Override
+  public int getPhase() {
+    return 0;
+  }
+
+  @Override
+  public boolean isAsyncEnabled() {
+    return asyncEnabled;
+  }
+
+  @Override
+  public IngestionReceiptDto enqueue(SurveyResponseDto responseDto) {
+    if (!accepting) {
+      rejectedTotal.incrementAndGet();
+      throw new IngestionQueueFullException("Прием ответов временно приостановлен");
+    }
+
+    // Ошибки в опросе и вопросах возвращаются клиенту сразу, а не в квитанции
+    validate(responseDto);
+
+    Receipt receipt = new Receipt(UUID.randomUUID().toString(), responseDto.getSurveyId());
+    receipts.put(receipt.id, receipt);
+
+    if (!queue.offer(new PendingSubmission(receipt, responseDto))) {
+      receipts.remove(receipt.id);
+      rejectedTotal.incrementAndGet();
+      throw new IngestionQueueFullException("Очередь ответов переполнена, повторите попытку позже");
+    }
+
+    acceptedTotal.incrementAndGet();
+    return receipt.toDto();
+  }
+
+  /**
+   * Проверяет по кэшу схем, что опрос существует и активен, а все ответы
+   * относятся к его вопросам
+   */
+  private void validate(SurveyResponseDto responseDto) {
+    CompiledSurveySchema schema = surveySchemaCache.get(responseDto.getSurveyId());
+    // Ранний отказ до постановки в очередь; при обработке статус проверяется
+    // еще раз в processSurveyResponse
+    if (schema.getStatus() != SurveyStatus.ACTIVE) {
+      throw new IllegalArgumentException("Опрос с ID " + schema.getSurveyId() + " не принимает ответы");
+    }
+    for (SurveyAnswerDto answer : responseDto.getAnswers()) {
+      if (schema.indexOf(answer.getQuestionId()) < 0) {
+        throw new IllegalArgumentException(
+            "Вопрос с ID " + answer.getQuestionId() + " не относится к опросу " + schema.getSurveyId());
+      }
+    }
+  }
+
+  @Override
+  public Optional<IngestionReceiptDto> getReceipt(String receiptId) {
+    return Optional.ofNullable(receipts.get(receiptId)).map(Receipt::toDto);
+  }
+
+  @Override
+  public IngestionStatsDto getStats() {
+    return IngestionStatsDto.builder()
+        .asyncEnabled(asyncEnabled)
+        .accepting(accepting)
+        .queueDepth(queue != null ? queue.size() : 0)
+        .queueCapacity(asyncEnabled ? queueCapacity : 0)
+        .workers(workers.size())
+        .acceptedTotal(acceptedTotal.get())
+        .rejectedTotal(rejectedTotal.get())
+        .completedTotal(completedTotal.get())
+        .failedTotal(failedTotal.get())
+        .batchesTotal(batchesTotal.get())
+        .lastBatchDurationMs(lastBatchDurationMs.get())
+        .trackedReceipts(receipts.size())
+        .build();
+  }
+
+  /**
+   * Удаляет квитанции обработанных ответов, срок хранения которых истек
+   */
+  @Scheduled(fixedRate = 60000)
+  public void cleanupReceipts() {
+    if (receipts.isEmpty()) {
+      return;
+    }
+
+    LocalDateTime threshold = LocalDateTime.now().minusMinutes(receiptTtlMinutes);
+    receipts.values().removeIf(receipt -> receipt.completedAt != null && receipt.completedAt.isBefore(threshold));
+  }
+
+  private void drainLoop() {
+    List<PendingSubmission> batch = new ArrayList<>(batchSize);
+
+    while (accepting || !queue.isEmpty()) {
+      try {
+        PendingSubmission first = queue.poll(500, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+
+        batch.add(first);
+        queue.drainTo(batch, batchSize - 1);
+        processBatch(batch);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      } catch (Exception e) {
+        log.error("Ошибка обработчика очереди ответов", e);
+      } finally {
+        batch.clear();
+      }
+    }
+  }
+
+  private void processBatch(List<PendingSubmission> batch) {
+    long started = System.nanoTime();
+    batch.forEach(submission -> submission.receipt.status = IngestionStatus.PROCESSING);
+
+    try {
+      List<SurveyResponseResultDto> results = surveyResponseService.processSurveyResponses(
+          batch.stream().map(PendingSubmission::responseDto).toList());
+      for (int i = 0; i < batch.size(); i++) {
+        complete(batch.get(i).receipt, results.get(i));
+      }
+    } catch (Exception batchError) {
+      // Пачка откатилась целиком: сохраняем ответы по одному, чтобы
+      // некорректная отправка не помешала остальным
+      log.warn("Не удалось сохранить пачку из {} ответов, сохраняем по одному: {}",
+          batch.size(), batchError.getMessage());
+      for (PendingSubmission submission : batch) {
+        try {
+          complete(submission.receipt, surveyResponseService.processSurveyResponse(submission.responseDto));
+        } catch (Exception e) {
+          log.error("Ошибка при сохранении ответов на опрос {} (квитанция {})",
+              submission.responseDto.getSurveyId(), submission.receipt.id, e);
+          fail(submission.receipt, e);
+        }
+      }
+    }
+
+    batchesTotal.incrementAndGet();
+    lastBatchDurationMs.set(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+  }
+
+  private void complete(Receipt receipt, SurveyResponseResultDto result) {
+    receipt.answersCount = result.getAnswersCount();
+    receipt.completedAt = LocalDateTime.now();
+    receipt.status = IngestionStatus.COMPLETED;
+    completedTotal.incrementAndGet();
+  }
+
+  private void fail(Receipt receipt, Exception e) {
+    receipt.error = e.getMessage();
+    receipt.completedAt = LocalDateTime.now();
+    receipt.status = IngestionStatus.FAILED;
+    failedTotal.incrementAndGet();
+  }
+
+  private record PendingSubmission(Receipt receipt, SurveyResponseDto responseDto) {
+  }
+
+  private static class Receipt {
+    private final String id;
+    private final Long surveyId;
+    private final LocalDateTime acceptedAt = LocalDateTime.now();
+    private volatile IngestionStatus status = IngestionStatus.QUEUED;
+    private volatile LocalDateTime completedAt;
+    private volatile Integer answersCount;
+    private volatile String error;
+
+    private Receipt(String id, Long surveyId) {
+      this.id = id;
+      this.surveyId = surveyId;
+    }
+
+    private IngestionReceiptDto toDto() {
+      return IngestionReceiptDto.builder()
+          .receiptId(id)
+          .surveyId(surveyId)
+          .status(status)
+          .acceptedAt(acceptedAt)
+          .completedAt(completedAt)
+          .answersCount(answersCount)
+          .error(error)
+          .build();
+    }
+  }
+}
@@ -1,123 +1,170 @@
 package back.client_exp_backend.service.impl;
 
+import back.client_exp_backend.cache.ClientIdCache;
+import back.client_exp_backend.cache.CompiledSurveySchema;
+import back.client_exp_backend.cache.SubmissionDedupFilter;
+import back.client_exp_backend.cache.SurveySchemaCache;
+import back.client_exp_backend.dto.ClientAnswerRow;
+import back.client_exp_backend.dto.CursorPageDto;
 import back.client_exp_backend.dto.RespondentDto;
 import back.client_exp_backend.dto.SurveyAnswerDto;
 import back.client_exp_backend.dto.SurveyResponseDto;
 import back.client_exp_backend.dto.SurveyResponseResultDto;
-import back.client_exp_backend.exception.ResourceNotFoundException;
+import back.client_exp_backend.event.SurveyResponseSubmittedEvent;
 import back.client_exp_backend.models.*;
 import back.client_exp_backend.models.enums.QuestionType;
+import back.client_exp_backend.models.enums.SurveyStatus;
 import back.client_exp_backend.repository.AnswerOptionRepository;
 import back.client_exp_backend.repository.ClientAnswerRepository;
 import back.client_exp_backend.repository.ClientRepository;
 import back.client_exp_backend.repository.QuestionRepository;
 import back.client_exp_backend.repository.SurveyRepository;
+import back.client_exp_backend.repository.SurveyStatsRepository;
+import back.client_exp_backend.repository.SurveySubmissionRepository;
+import back.client_exp_backend.segment.ClientAttributeIndex;
 import back.client_exp_backend.service.SurveyResponseService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
-
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class SurveyResponseServiceImpl implements SurveyResponseService {
 
+  private static final int EXPORT_FLUSH_EVERY = 100;
+
   private final SurveyRepository surveyRepository;
   private final QuestionRepository questionRepository;
   private final ClientRepository clientRepository;
   private final ClientAnswerRepository clientAnswerRepository;
   private final AnswerOptionRepository answerOptionRepository;
+  private final SurveySchemaCache surveySchemaCache;
+  private final ClientIdCache clientIdCache;
+  private final ClientAttributeIndex clientAttributeIndex;
+  private final SurveySubmissionRepository surveySubmissionRepository;
+  private final SurveyStatsRepository surveyStatsRepository;
+  private final SubmissionDedupFilter submissionDedupFilter;
+  private final PlatformTransactionManager transactionManager;
+  private final ObjectMapper objectMapper;
+  private final ApplicationEventPublisher eventPublisher;
+
+  @Value("${survey.dedup.derived-key-window-minutes:10}")
+  private long derivedKeyWindowMinutes;
 
   @Override
   @Transactional
   public SurveyResponseResultDto processSurveyResponse(SurveyResponseDto responseDto) {
     log.info("Обработка ответов на опрос surveyId={}", responseDto.getSurveyId());
 
-    // Находим опрос
-    Survey survey = surveyRepository.findById(responseDto.getSurveyId())
-        .orElseThrow(() -> new ResourceNotFoundException("Опрос с ID " + responseDto.getSurveyId() + " не найден"));
-
-    // Находим или создаем клиента
-    Client client = findOrCreateClient(responseDto.getRespondent());
-
-    // Загружаем все вопросы опроса для быстрого доступа
-    List<Question> questions = questionRepository.findBySurveyOrderByOrderNumberAsc(survey);
-    Map<Long, Question> questionMap = new HashMap<>();
-    for (Question question : questions) {
-      questionMap.put(question.getId(), question);
-    }
-
-    // Загружаем все варианты ответов для быстрого доступа
-    Map<Long, Map<String, AnswerOption>> answerOptionsMap = new HashMap<>();
-    for (Question question : questions) {
-      Map<String, AnswerOption> optionsMap = new HashMap<>();
-      if (question.getAnswerOptions() != null) {
-        for (AnswerOption option : question.getAnswerOptions()) {
-          optionsMap.put(option.getText(), option);
+    // Структура опроса берется из кэша и не требует запросов к БД
+    CompiledSurveySchema schema = surveySchemaCache.get(responseDto.getSurveyId());
+    Survey survey = surveyRepository.getReferenceById(schema.getSurveyId());
+
+    // Повторную отправку (двойной клик, повтор по таймауту) возвращаем без
+    // записи. Фильтр Блума отсекает новые отправки без запроса к БД
+    LocalDateTime submittedAt = LocalDateTime.now();
+    List<String> idempotencyKeys = idempotencyKeysOf(responseDto, submittedAt);
+    String idempotencyKey = idempotencyKeys.get(0);
+    for (String key : idempotencyKeys) {
+      if (submissionDedupFilter.mightContain(schema.getSurveyId(), key)) {
+        Optional<SurveySubmission> existing = surveySubmissionRepository
+            .findBySurveyIdAndKey(schema.getSurveyId(), key);
+        if (existing.isPresent()) {
+          log.info("Повторная отправка ответов на опрос surveyId={}, возвращаем исходный результат",
+              schema.getSurveyId());
+          return replay(schema, existing.get());
         }
       }
-      answerOptionsMap.put(question.getId(), optionsMap);
     }
 
+    // Проверка общая для синхронной, очередной и пакетной отправки. Повтор
+    // уже принятой отправки выше возвращается и после закрытия опроса
+    if (schema.getStatus() != SurveyStatus.ACTIVE) {
+      throw new IllegalArgumentException("Опрос с ID " + schema.getSurveyId() + " не принимает ответы");
+    }
+
+    // Находим или создаем клиента
+    Client client = findOrCreateClient(responseDto.getRespondent());
+
     // Обрабатываем ответы
-    List<ClientAnswer> savedAnswers = new ArrayList<>();
+    List<ClientAnswer> answersToSave = new ArrayList<>();
     for (SurveyAnswerDto answerDto : responseDto.getAnswers()) {
       Long questionId = answerDto.getQuestionId();
 
       // Проверяем, что вопрос существует
-      if (!questionMap.containsKey(questionId)) {
+      int questionIndex = schema.indexOf(questionId);
+      if (questionIndex < 0) {
         log.warn("Вопрос с ID {} не найден, пропускаем ответ", questionId);
         continue;
       }
 
-      Question question = questionMap.get(questionId);
+      Question question = questionRepository.getReferenceById(questionId);
+      QuestionType questionType = schema.questionType(questionIndex);
 
       // Создаем объект ответа клиента
       ClientAnswer clientAnswer = null;
 
-      if (question.getType() == QuestionType.SINGLE_CHOICE) {
+      if (questionType == QuestionType.SINGLE_CHOICE) {
         // Для вопросов с одним вариантом ответа
         String answerText = answerDto.getTextAnswer();
         if (answerText != null && !answerText.isBlank()) {
-          Map<String, AnswerOption> options = answerOptionsMap.get(questionId);
-          AnswerOption selectedOption = options.get(answerText);
-
           clientAnswer = ClientAnswer.builder()
               .client(client)
               .survey(survey)
               .question(question)
-              .answerOption(selectedOption)
+              .answerOption(findOptionReference(schema, questionIndex, answerText))
+              .optionMask(schema.optionMask(questionIndex, List.of(answerText)))
               .textAnswer(answerText)
               .build();
         }
-      } else if (question.getType() == QuestionType.MULTIPLE_CHOICE) {
+      } else if (questionType == QuestionType.MULTIPLE_CHOICE) {
         // Для вопросов с множественным выбором
         List<String> answers = answerDto.getAnswerList();
         if (answers != null && !answers.isEmpty()) {
-          // Берем первый вариант для сохранения в БД, остальные можно добавить как
-          // дополнительные записи
-          String firstAnswer = answers.get(0);
-          Map<String, AnswerOption> options = answerOptionsMap.get(questionId);
-          AnswerOption selectedOption = options.get(firstAnswer);
-
+          // Выбранные варианты сохраняются битовой маской. Текст сохраняется только
+          // если среди выбранных есть значения, которых нет в вариантах ответа
+          Long optionMask = schema.optionMask(questionIndex, answers);
+          boolean allMapped = optionMask != null && Long.bitCount(optionMask) == answers.stream().distinct().count();
           clientAnswer = ClientAnswer.builder()
               .client(client)
               .survey(survey)
               .question(question)
-              .answerOption(selectedOption)
-              .textAnswer(String.join(", ", answers))
+              .answerOption(findOptionReference(schema, questionIndex, answers.get(0)))
+              .optionMask(optionMask)
+              .textAnswer(allMapped ? null : String.join(", ", answers))
               .build();
         }
-      } else if (question.getType() == QuestionType.TEXT) {
+      } else if (questionType == QuestionType.TEXT) {
         // Для текстовых вопросов
         String answerText = answerDto.getTextAnswer();
         if (answerText != null) {
@@ -128,7 +175,7 @@ public class SurveyResponseServiceImpl implements SurveyResponseService {
               .textAnswer(answerText)
               .build();
         }
-      } else if (question.getType() == QuestionType.RATING) {
+      } else if (questionType == QuestionType.RATING) {
         // Для вопросов с рейтингом
         Integer numericAnswer = answerDto.getNumericAnswer();
         if (numericAnswer != null) {
@@ -151,139 +198,328 @@ public class SurveyResponseServiceImpl implements SurveyResponseService {
       }
 
       if (clientAnswer != null) {
-        // Сохраняем ответ
-        ClientAnswer savedAnswer = clientAnswerRepository.save(clientAnswer);
-        savedAnswers.add(savedAnswer);
+        answersToSave.add(clientAnswer);
       }
     }
 
+    // Регистрируем отправку до записи ответов. Уникальный индекс по ключу
+    // гарантирует, что из параллельных повторов ответы сохранит только один
+    RespondentDto respondent = responseDto.getRespondent();
+    Optional<Long> claimed = surveySubmissionRepository.claim(schema.getSurveyId(), client.getId(),
+        idempotencyKey, answersToSave.size(), respondent.getName(), respondent.getEmail(), submittedAt);
+    if (claimed.isEmpty()) {
+      log.info("Ответы на опрос surveyId={} уже сохранены параллельным запросом", schema.getSurveyId());
+      return surveySubmissionRepository.findBySurveyIdAndKey(schema.getSurveyId(), idempotencyKey)
+          .map(submission -> replay(schema, submission))
+          .orElseThrow(() -> new IllegalStateException("Отправка с ключом " + idempotencyKey + " не найдена"));
+    }
+    submissionDedupFilter.putAfterCommit(schema.getSurveyId(), idempotencyKey);
+
+    // Сохраняем все ответы одной пачкой: идентификаторы берутся из пула
+    // последовательности, а вставки уходят в БД одним JDBC batch при flush.
+    // Счетчики опроса обновляются в той же транзакции
+    if (!answersToSave.isEmpty()) {
+      boolean newRespondent = !clientAnswerRepository.existsBySurvey_IdAndClient_Id(schema.getSurveyId(),
+          client.getId());
+      clientAnswerRepository.saveAll(answersToSave);
+      clientAnswerRepository.flush();
+      surveyStatsRepository.recordSubmission(schema.getSurveyId(), newRespondent ? 1 : 0, answersToSave.size(),
+          submittedAt);
+
+      // Аналитика в памяти обновится после фиксации транзакции
+      eventPublisher.publishEvent(new SurveyResponseSubmittedEvent(schema.getSurveyId(), client.getId(),
+          newRespondent, submittedAt, answersToSave.stream()
+              .map(answer -> new SurveyResponseSubmittedEvent.AnswerFact(answer.getQuestion().getId(),
+                  answer.getOptionMask(), answer.getNumericAnswer(), answer.getTextAnswer()))
+              .toList()));
+    }
+
     // Создаем результат
     return SurveyResponseResultDto.builder()
         .id(client.getId())
-        .surveyId(survey.getId())
-        .surveyTitle(survey.getTitle())
-        .respondentName(client.getName())
-        .respondentEmail(client.getEmail())
-        .answersCount(savedAnswers.size())
-        .submittedAt(LocalDateTime.now())
+        .surveyId(schema.getSurveyId())
+        .surveyTitle(schema.getSurveyTitle())
+        .respondentName(respondent.getName())
+        .respondentEmail(respondent.getEmail())
+        .answersCount(answersToSave.size())
+        .submittedAt(submittedAt)
         .message("Ответы успешно сохранены")
         .build();
   }
 
   /**
-   * Находит или создает клиента на основе данных респондента
+   * Восстанавливает результат исходной отправки для повторного запроса
    */
-  private Client findOrCreateClient(RespondentDto respondentDto) {
-    // Проверяем, существует ли клиент с таким email
-    Optional<Client> existingClient = clientRepository.findByEmail(respondentDto.getEmail());
+  private SurveyResponseResultDto replay(CompiledSurveySchema schema, SurveySubmission submission) {
+    return SurveyResponseResultDto.builder()
+        .id(submission.getClient().getId())
+        .surveyId(schema.getSurveyId())
+        .surveyTitle(schema.getSurveyTitle())
+        .respondentName(submission.getRespondentName())
+        .respondentEmail(submission.getRespondentEmail())
+        .answersCount(submission.getAnswersCount())
+        .submittedAt(submission.getSubmittedAt())
+        .message("Ответы уже были сохранены ранее")
+        .build();
+  }
 
-    if (existingClient.isPresent()) {
-      log.info("Найден существующий клиент: {}", respondentDto.getEmail());
-      Client client = existingClient.get();
+  /**
+   * Возвращает ключи идемпотентности отправки: SHA-256 от ключа клиента или, если
+   * он не передан, от опроса, email респондента, ответов, упорядоченных по
+   * вопросам, и номера временного окна. Вычисленный ключ действует одно-два
+   * окна, чтобы те же ответы можно было отправить снова позже: первым идет
+   * ключ текущего окна (под ним регистрируется отправка), вторым — предыдущего
+   */
+  private List<String> idempotencyKeysOf(SurveyResponseDto responseDto, LocalDateTime submittedAt) {
+    StringBuilder source = new StringBuilder();
+    source.append(responseDto.getSurveyId()).append('\n');
+
+    String clientKey = responseDto.getIdempotencyKey();
+    if (clientKey != null && !clientKey.isBlank()) {
+      source.append("key:").append(clientKey.trim());
+      return List.of(sha256(source));
+    }
 
-      // Обновляем имя клиента, если оно изменилось
-      if (!client.getName().equals(respondentDto.getName())) {
-        client.setName(respondentDto.getName());
-        client = clientRepository.save(client);
-      }
+    source.append(responseDto.getRespondent().getEmail().trim().toLowerCase(Locale.ROOT)).append('\n');
+    responseDto.getAnswers().stream()
+        .sorted(Comparator.comparing(SurveyAnswerDto::getQuestionId,
+            Comparator.nullsFirst(Comparator.naturalOrder())))
+        .forEach(answer -> source.append(answer.getQuestionId()).append('=')
+            .append(answer.getAnswer()).append('\n'));
+
+    long window = submittedAt.toEpochSecond(ZoneOffset.UTC) / 60 / derivedKeyWindowMinutes;
+    int length = source.length();
+    String current = sha256(source.append("window:").append(window));
+    source.setLength(length);
+    return List.of(current, sha256(source.append("window:").append(window - 1)));
+  }
 
-      return client;
-    } else {
-      log.info("Создание нового клиента: {}", respondentDto.getEmail());
+  private static String sha256(CharSequence source) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(source.toString().getBytes(StandardCharsets.UTF_8));
+      return HexFormat.of().formatHex(digest);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("Алгоритм SHA-256 недоступен", e);
+    }
+  }
 
-      // Создаем нового клиента
-      Client newClient = Client.builder()
-          .name(respondentDto.getName())
-          .email(respondentDto.getEmail())
-          .build();
+  /**
+   * Возвращает ссылку на выбранный вариант ответа без загрузки его из БД
+   */
+  private AnswerOption findOptionReference(CompiledSurveySchema schema, int questionIndex, String answerText) {
+    int ordinal = schema.optionOrdinal(questionIndex, answerText);
+    return ordinal >= 0 ? answerOptionRepository.getReferenceById(schema.optionId(questionIndex, ordinal)) : null;
+  }
+
+  /**
+   * Сохраняет несколько отправок в одной транзакции. Если хотя бы одна отправка
+   * не может быть сохранена, откатывается вся пачка
+   */
+  @Override
+  @Transactional
+  public List<SurveyResponseResultDto> processSurveyResponses(List<SurveyResponseDto> responseDtos) {
+    List<SurveyResponseResultDto> results = new ArrayList<>(responseDtos.size());
+    for (SurveyResponseDto responseDto : responseDtos) {
+      results.add(processSurveyResponse(responseDto));
+    }
+    return results;
+  }
+
+  /**
+   * Находит или создает клиента на основе данных респондента. Повторные
+   * респонденты с тем же именем берутся из кэша без обращения к БД, остальные
+   * создаются или обновляются одним upsert-запросом
+   */
+  private Client findOrCreateClient(RespondentDto respondentDto) {
+    String email = respondentDto.getEmail();
+    String name = respondentDto.getName();
 
-      return clientRepository.save(newClient);
+    ClientIdCache.CachedClient cached = clientIdCache.get(email);
+    if (cached != null && cached.name().equals(name)) {
+      return clientRepository.getReferenceById(cached.id());
     }
+
+    Long clientId = clientRepository.upsertByEmail(name, email);
+    log.debug("Клиент {} сохранен с ID {}", email, clientId);
+    clientIdCache.putAfterCommit(email, clientId, name);
+    // upsert идет в обход JPA, поэтому новый клиент добавляется в индекс атрибутов явно
+    clientAttributeIndex.addAfterCommit(clientId);
+
+    return clientRepository.getReferenceById(clientId);
   }
 
   @Override
   public List<SurveyResponseDto> getFormattedResponsesBySurveyId(Long surveyId) {
     log.info("Получение форматированных ответов на опрос с ID={}", surveyId);
 
-    // Находим опрос
-    Survey survey = surveyRepository.findById(surveyId)
-        .orElseThrow(() -> new ResourceNotFoundException("Опрос с ID " + surveyId + " не найден"));
+    CompiledSurveySchema schema = surveySchemaCache.get(surveyId);
+    List<SurveyResponseDto> formattedResponses = new ArrayList<>();
+    transactionTemplate(true).executeWithoutResult(status -> {
+      try (Stream<ClientAnswerRow> rows = clientAnswerRepository.streamRowsBySurveyId(surveyId)) {
+        groupByClient(surveyId, schema, rows.iterator(), formattedResponses::add);
+      }
+    });
+    return formattedResponses;
+  }
 
-    // Получаем список всех ответов на данный опрос
-    List<ClientAnswer> allAnswers = clientAnswerRepository.findBySurvey(survey);
+  /**
+   * Страница ответов на опрос по курсору: курсор — ID последнего клиента
+   * предыдущей страницы. Читаются только ответы клиентов текущей страницы
+   */
+  @Override
+  public CursorPageDto<SurveyResponseDto> getFormattedResponsesPage(Long surveyId, String cursor, int size) {
+    CompiledSurveySchema schema = surveySchemaCache.get(surveyId);
+    long afterClientId = parseClientCursor(cursor);
+
+    // Запрашиваем на одного клиента больше, чтобы узнать, есть ли следующая страница
+    List<Long> clientIds = clientAnswerRepository.findClientIdsBySurveyIdAfter(
+        surveyId, afterClientId, PageRequest.of(0, size + 1));
+    boolean hasMore = clientIds.size() > size;
+    if (hasMore) {
+      clientIds = clientIds.subList(0, size);
+    }
 
-    if (allAnswers.isEmpty()) {
-      return new ArrayList<>();
+    List<SurveyResponseDto> content = new ArrayList<>(clientIds.size());
+    if (!clientIds.isEmpty()) {
+      groupByClient(surveyId, schema,
+          clientAnswerRepository.findRowsBySurveyIdAndClientIds(surveyId, clientIds).iterator(), content::add);
     }
 
-    // Группируем ответы по клиентам
-    Map<Client, List<ClientAnswer>> answersByClient = allAnswers.stream()
-        .collect(Collectors.groupingBy(ClientAnswer::getClient));
+    return CursorPageDto.<SurveyResponseDto>builder()
+        .content(content)
+        .size(content.size())
+        .nextCursor(hasMore ? String.valueOf(clientIds.get(clientIds.size() - 1)) : null)
+        .hasMore(hasMore)
+        .build();
+  }
 
-    // Формируем список ответов в требуемом формате
-    List<SurveyResponseDto> formattedResponses = new ArrayList<>();
+  /**
+   * Пишет все ответы на опрос JSON-массивом прямо в выходной поток. Строки
+   * читаются курсором БД и сразу сериализуются, поэтому расход памяти не
+   * зависит от размера опроса
+   */
+  @Override
+  public void exportFormattedResponses(Long surveyId, OutputStream output) throws IOException {
+    CompiledSurveySchema schema = surveySchemaCache.get(surveyId);
+    ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    long[] written = new long[1];
+
+    try (JsonGenerator generator = objectMapper.createGenerator(output)) {
+      generator.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+      generator.writeStartArray();
+      transactionTemplate(true).executeWithoutResult(status -> {
+        try (Stream<ClientAnswerRow> rows = clientAnswerRepository.streamRowsBySurveyId(surveyId)) {
+          groupByClient(surveyId, schema, rows.iterator(), responseDto -> {
+            try {
+              writer.writeValue(generator, responseDto);
+              if (++written[0] % EXPORT_FLUSH_EVERY == 0) {
+                generator.flush();
+              }
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          });
+        }
+      });
+      generator.writeEndArray();
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
 
-    answersByClient.forEach((client, clientAnswers) -> {
-      // Создаем объект ответа на опрос
-      SurveyResponseDto responseDto = new SurveyResponseDto();
-      responseDto.setId(client.getId());
-      responseDto.setSurveyId(surveyId);
-
-      // Создаем и заполняем информацию о респонденте
-      RespondentDto respondentDto = new RespondentDto();
-      respondentDto.setName(client.getName());
-      respondentDto.setEmail(client.getEmail());
-      respondentDto.setConsent(true); // Предполагаем, что если клиент ответил, то согласие было дано
-      responseDto.setRespondent(respondentDto);
-
-      // Формируем список ответов
-      List<SurveyAnswerDto> answers = clientAnswers.stream()
-          .map(this::createSurveyAnswerFromClientAnswer)
-          .collect(Collectors.toList());
-
-      responseDto.setAnswers(answers);
-
-      // Устанавливаем даты создания и обновления
-      LocalDateTime createdAt = clientAnswers.stream()
-          .map(ClientAnswer::getCreatedAt)
-          .min(LocalDateTime::compareTo)
-          .orElse(LocalDateTime.now());
-
-      // Для даты обновления используем ту же дату создания, так как в модели
-      // ClientAnswer
-      // нет поля updatedAt
-      LocalDateTime updatedAt = createdAt;
-
-      responseDto.setCreatedAt(createdAt);
-      responseDto.setUpdatedAt(updatedAt);
-
-      formattedResponses.add(responseDto);
-    });
+    log.info("Выгружено {} ответов на опрос {}", written[0], surveyId);
+  }
 
-    return formattedResponses;
+  private TransactionTemplate transactionTemplate(boolean readOnly) {
+    TransactionTemplate template = new TransactionTemplate(transactionManager);
+    template.setReadOnly(readOnly);
+    return template;
+  }
+
+  private long parseClientCursor(String cursor) {
+    if (cursor == null || cursor.isBlank()) {
+      return 0L;
+    }
+    try {
+      return Long.parseLong(cursor);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Некорректный курсор: " + cursor);
+    }
   }
 
   /**
-   * Создает объект SurveyAnswerDto из объекта ClientAnswer
+   * Собирает строки ответов, упорядоченные по клиенту, в SurveyResponseDto и
+   * передает каждый готовый ответ в sink. В памяти держится только текущий клиент
+   */
+  private void groupByClient(Long surveyId, CompiledSurveySchema schema, Iterator<ClientAnswerRow> rows,
+      Consumer<SurveyResponseDto> sink) {
+    SurveyResponseDto current = null;
+
+    while (rows.hasNext()) {
+      ClientAnswerRow row = rows.next();
+
+      if (current == null || !current.getId().equals(row.getClientId())) {
+        if (current != null) {
+          sink.accept(current);
+        }
+
+        // Создаем и заполняем информацию о респонденте
+        RespondentDto respondentDto = new RespondentDto();
+        respondentDto.setName(row.getClientName());
+        respondentDto.setEmail(row.getClientEmail());
+        respondentDto.setConsent(true); // Предполагаем, что если клиент ответил, то согласие было дано
+
+        current = new SurveyResponseDto();
+        current.setId(row.getClientId());
+        current.setSurveyId(surveyId);
+        current.setRespondent(respondentDto);
+        current.setAnswers(new ArrayList<>());
+      }
+
+      current.getAnswers().add(createSurveyAnswerFromRow(row, schema));
+
+      // Для даты обновления используем дату создания, так как в модели
+      // ClientAnswer нет поля updatedAt
+      if (current.getCreatedAt() == null || row.getCreatedAt().isBefore(current.getCreatedAt())) {
+        current.setCreatedAt(row.getCreatedAt());
+        current.setUpdatedAt(row.getCreatedAt());
+      }
+    }
+
+    if (current != null) {
+      sink.accept(current);
+    }
+  }
+
+  /**
+   * Создает объект SurveyAnswerDto из строки ответа клиента
    * 
-   * @param clientAnswer ответ клиента из БД
+   * @param row    строка ответа клиента из БД
+   * @param schema скомпилированная схема опроса
    * @return объект SurveyAnswerDto с отформатированным ответом
    */
-  private SurveyAnswerDto createSurveyAnswerFromClientAnswer(ClientAnswer clientAnswer) {
+  private SurveyAnswerDto createSurveyAnswerFromRow(ClientAnswerRow row, CompiledSurveySchema schema) {
     SurveyAnswerDto answerDto = new SurveyAnswerDto();
-    answerDto.setQuestionId(clientAnswer.getQuestion().getId());
+    answerDto.setQuestionId(row.getQuestionId());
 
     // Определяем тип вопроса и форматируем ответ соответственно
-    QuestionType questionType = clientAnswer.getQuestion().getType();
+    int questionIndex = schema.indexOf(row.getQuestionId());
+    QuestionType questionType = questionIndex >= 0 ? schema.questionType(questionIndex) : null;
+
+    // Множественный выбор восстанавливаем из маски без разбора текста
+    if (questionType == QuestionType.MULTIPLE_CHOICE && row.getOptionMask() != null && row.getTextAnswer() == null) {
+      List<String> selected = schema.optionTexts(questionIndex, row.getOptionMask());
+      answerDto.setAnswer(selected.size() == 1 ? selected.get(0) : selected);
+      return answerDto;
+    }
 
     // Получаем текст ответа в зависимости от его типа
     String answerText = null;
-    if (clientAnswer.getTextAnswer() != null) {
-      answerText = clientAnswer.getTextAnswer();
-    } else if (clientAnswer.getNumericAnswer() != null) {
-      answerText = clientAnswer.getNumericAnswer().toString();
-    } else if (clientAnswer.getAnswerOption() != null) {
-      answerText = clientAnswer.getAnswerOption().getText();
+    if (row.getTextAnswer() != null) {
+      answerText = row.getTextAnswer();
+    } else if (row.getNumericAnswer() != null) {
+      answerText = row.getNumericAnswer().toString();
+    } else if (row.getOptionText() != null) {
+      answerText = row.getOptionText();
     }
 
     if (answerText == null) {
@@ -308,4 +544,4 @@ public class SurveyResponseServiceImpl implements SurveyResponseService {
 
     return answerDto;
   }
-}
\ No newline at end of file
+}
@@ -1,10 +1,16 @@
 package back.client_exp_backend.service.impl;
 
+import back.client_exp_backend.cache.CompiledSurveySchema;
+import back.client_exp_backend.dto.AnswerOptionDto;
 import back.client_exp_backend.dto.PagedResponseDto;
 import back.client_exp_backend.dto.QuestionDto;
 import back.client_exp_backend.dto.SurveyDto;
 import back.client_exp_backend.dto.SurveyStatusUpdateRequest;
+import back.client_exp_backend.dto.SurveySummaryDto;
 import back.client_exp_backend.dto.UserInfoDto;
+import back.client_exp_backend.event.AnswerOptionRemovedEvent;
+import back.client_exp_backend.event.QuestionDeletedEvent;
+import back.client_exp_backend.event.SurveyDefinitionChangedEvent;
 import back.client_exp_backend.exception.ResourceNotFoundException;
 import back.client_exp_backend.models.*;
 import back.client_exp_backend.models.enums.QuestionType;
@@ -13,24 +19,34 @@ import back.client_exp_backend.repository.AnswerOptionRepository;
 import back.client_exp_backend.repository.ClientAnswerRepository;
 import back.client_exp_backend.repository.QuestionRepository;
 import back.client_exp_backend.repository.SurveyRepository;
+import back.client_exp_backend.repository.SurveySpecifications;
+import back.client_exp_backend.repository.SurveyStatsRepository;
+import back.client_exp_backend.repository.SurveySubmissionRepository;
+import back.client_exp_backend.service.ResponseRollupService;
 import back.client_exp_backend.service.SurveyService;
 import back.client_exp_backend.service.UserService;
+import back.client_exp_backend.util.KeysetCursor;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Service
@@ -42,7 +58,11 @@ public class SurveyServiceImpl implements SurveyService {
   private final QuestionRepository questionRepository;
   private final AnswerOptionRepository answerOptionRepository;
   private final ClientAnswerRepository clientAnswerRepository;
+  private final SurveySubmissionRepository surveySubmissionRepository;
+  private final SurveyStatsRepository surveyStatsRepository;
+  private final ResponseRollupService responseRollupService;
   private final UserService userService;
+  private final ApplicationEventPublisher eventPublisher;
 
   @PersistenceContext
   private EntityManager entityManager;
@@ -146,6 +166,7 @@ public class SurveyServiceImpl implements SurveyService {
             .required(questionDto.getRequired())
             .orderNumber(orderNumber++)
             .category(questionDto.getCategory())
+            .metricType(questionDto.getMetricType())
             .answerOptions(new ArrayList<>())
             .build();
 
@@ -287,13 +308,14 @@ public class SurveyServiceImpl implements SurveyService {
         .required(question.isRequired())
         .orderNumber(question.getOrderNumber())
         .category(question.getCategory())
+        .metricType(question.getMetricType())
         .options(options)
         .build();
   }
 
   @Override
   public SurveyDto getSurveyById(Long id) {
-    Survey survey = surveyRepository.findById(id)
+    Survey survey = surveyRepository.findWithQuestionsById(id)
         .orElseThrow(() -> new ResourceNotFoundException("Опросник", "id", id));
     return mapToDto(survey);
   }
@@ -322,6 +344,87 @@ public class SurveyServiceImpl implements SurveyService {
         .build();
   }
 
+  /**
+   * Страница опросов по курсору (createdAt, id) от новых к старым. Запрос
+   * количества выполняется только при includeTotal
+   */
+  @Override
+  public PagedResponseDto<SurveyDto> getSurveysByCursor(String cursor, int size, SurveyStatus status,
+      Long createdById, boolean includeTotal) {
+    KeysetCursor position = KeysetCursor.decode(cursor);
+
+    boolean backward = position != null && position.backward();
+    Specification<Survey> filters = Specification.where(SurveySpecifications.hasStatus(status))
+        .and(SurveySpecifications.createdBy(createdById));
+    Specification<Survey> page = filters
+        .and(position != null ? SurveySpecifications.keyset(position.createdAt(), position.id(), backward) : null)
+        .and(SurveySpecifications.fetchCreatedBy());
+    Sort.Direction direction = backward ? Sort.Direction.ASC : Sort.Direction.DESC;
+
+    // Запрашиваем на один опрос больше, чтобы узнать, есть ли следующая страница
+    List<Survey> surveys = new ArrayList<>(surveyRepository.findBy(page, query -> query
+        .sortBy(Sort.by(direction, "createdAt", "id"))
+        .limit(size + 1)
+        .all()));
+    boolean hasMore = surveys.size() > size;
+    if (hasMore) {
+      surveys = surveys.subList(0, size);
+    }
+    if (backward) {
+      Collections.reverse(surveys);
+    }
+
+    String nextCursor = null;
+    String prevCursor = null;
+    if (!surveys.isEmpty()) {
+      Survey first = surveys.get(0);
+      Survey last = surveys.get(surveys.size() - 1);
+      // Вперед есть страница, если она не последняя, или если мы пришли назад
+      if (backward || hasMore) {
+        nextCursor = new KeysetCursor(last.getCreatedAt(), last.getId(), false).encode();
+      }
+      // Назад есть страница, если мы пришли вперед с курсором или дальше назад еще есть опросы
+      if (backward ? hasMore : position != null) {
+        prevCursor = new KeysetCursor(first.getCreatedAt(), first.getId(), true).encode();
+      }
+    }
+
+    long totalElements = -1;
+    int totalPages = -1;
+    if (includeTotal) {
+      totalElements = surveyRepository.count(filters);
+      totalPages = (int) ((totalElements + size - 1) / size);
+    }
+
+    return PagedResponseDto.<SurveyDto>builder()
+        .content(surveys.stream().map(this::mapToDto).collect(Collectors.toList()))
+        .totalElements(totalElements)
+        .totalPages(totalPages)
+        .size(surveys.size())
+        .number(0)
+        .nextCursor(nextCursor)
+        .prevCursor(prevCursor)
+        .build();
+  }
+
+  /**
+   * Список опросов для таблиц и карточек: без вопросов, одним запросом на
+   * страницу (и одним на общее количество)
+   */
+  @Override
+  public PagedResponseDto<SurveySummaryDto> getSurveySummaries(int page, int size, SurveyStatus status) {
+    Pageable pageable = PageRequest.of(page, size, Sort.by("createdAt").descending());
+    Page<SurveySummaryDto> summaries = surveyRepository.findSummaries(status, pageable);
+
+    return PagedResponseDto.<SurveySummaryDto>builder()
+        .content(summaries.getContent())
+        .totalElements(summaries.getTotalElements())
+        .totalPages(summaries.getTotalPages())
+        .size(summaries.getSize())
+        .number(summaries.getNumber())
+        .build();
+  }
+
   @Override
   @Transactional
   public SurveyDto updateSurvey(Long id, SurveyDto surveyDto, String userEmail) {
@@ -372,6 +475,7 @@ public class SurveyServiceImpl implements SurveyService {
     if (!questionsToDelete.isEmpty()) {
       for (Long questionId : questionsToDelete) {
         questionRepository.deleteById(questionId);
+        eventPublisher.publishEvent(new QuestionDeletedEvent(id, questionId));
       }
       entityManager.flush();
       log.debug("Удалены вопросы: {}", questionsToDelete);
@@ -395,10 +499,11 @@ public class SurveyServiceImpl implements SurveyService {
           question.setText(questionDto.getText());
           question.setType(convertStringToQuestionType(questionDto.getType()));
           question.setRequired(questionDto.getRequired());
+          question.setMetricType(questionDto.getMetricType());
           question.setOrderNumber(orderNumber++);
 
           // Обновляем варианты ответов для существующего вопроса
-          updateAnswerOptions(question, questionDto.getOptions());
+          updateAnswerOptions(question, questionDto.getOptions(), questionDto.getAnswerOptions());
         } else {
           // Создаем новый вопрос
           question = Question.builder()
@@ -407,6 +512,7 @@ public class SurveyServiceImpl implements SurveyService {
               .type(convertStringToQuestionType(questionDto.getType()))
               .required(questionDto.getRequired())
               .orderNumber(orderNumber++)
+              .metricType(questionDto.getMetricType())
               .answerOptions(new ArrayList<>())
               .build();
 
@@ -433,17 +539,30 @@ public class SurveyServiceImpl implements SurveyService {
     // Сохраняем обновленный опросник
     Survey updatedSurvey = surveyRepository.save(survey);
     log.debug("Опросник с ID: {} успешно обновлен", id);
+    eventPublisher.publishEvent(new SurveyDefinitionChangedEvent(id, false));
 
     return mapToDto(updatedSurvey);
   }
 
   /**
-   * Обновляет варианты ответов для существующего вопроса
+   * Обновляет варианты ответов для существующего вопроса. Вариант сохраняет
+   * свой ID (а значит, и бит в option_mask сохраненных ответов), если он
+   * передан в answerOptions по ID или в options с прежним текстом. Остальные
+   * варианты удаляются из масок и из вопроса, новые добавляются в конец
+   * порядка по ID, поэтому переупорядочивание и правка текста по ID не
+   * меняют смысл сохраненных масок
    */
-  private void updateAnswerOptions(Question question, List<String> newOptions) {
+  private void updateAnswerOptions(Question question, List<String> newOptions,
+      List<AnswerOptionDto> newAnswerOptions) {
+    List<AnswerOptionDto> requested = newAnswerOptions != null && !newAnswerOptions.isEmpty()
+        ? newAnswerOptions
+        : newOptions == null ? List.of()
+            : newOptions.stream().map(text -> AnswerOptionDto.builder().text(text).build()).toList();
+
     // Если нет новых вариантов, очищаем все существующие
-    if (newOptions == null || newOptions.isEmpty()) {
+    if (requested.isEmpty()) {
       if (question.getAnswerOptions() != null) {
+        removeOptionsFromMasks(question, question.getAnswerOptions(), question.getAnswerOptions());
         answerOptionRepository.deleteAll(question.getAnswerOptions());
         question.getAnswerOptions().clear();
       }
@@ -452,44 +571,63 @@ public class SurveyServiceImpl implements SurveyService {
 
     // Если у вопроса еще нет вариантов ответов, просто создаем новые
     if (question.getAnswerOptions() == null || question.getAnswerOptions().isEmpty()) {
-      createAnswerOptionsForQuestion(newOptions, question);
+      createAnswerOptionsForQuestion(requested.stream().map(AnswerOptionDto::getText).toList(), question);
       return;
     }
 
-    // Получаем существующие варианты ответов
     List<AnswerOption> existingOptions = new ArrayList<>(question.getAnswerOptions());
+    List<AnswerOption> unmatched = new ArrayList<>(existingOptions);
+    AnswerOption[] matched = new AnswerOption[requested.size()];
+
+    // Сначала сопоставляем по ID, затем оставшиеся — по тексту
+    for (int i = 0; i < requested.size(); i++) {
+      Long optionId = requested.get(i).getId();
+      if (optionId == null) {
+        continue;
+      }
+      AnswerOption option = unmatched.stream()
+          .filter(candidate -> candidate.getId().equals(optionId))
+          .findFirst()
+          .orElseThrow(() -> new ResourceNotFoundException("Вариант ответа", "id", optionId));
+      unmatched.remove(option);
+      matched[i] = option;
+    }
+    for (int i = 0; i < requested.size(); i++) {
+      if (matched[i] != null || requested.get(i).getId() != null) {
+        continue;
+      }
+      String optionText = requested.get(i).getText();
+      Optional<AnswerOption> sameText = unmatched.stream()
+          .filter(candidate -> Objects.equals(candidate.getText(), optionText))
+          .findFirst();
+      if (sameText.isPresent()) {
+        unmatched.remove(sameText.get());
+        matched[i] = sameText.get();
+      }
+    }
+
+    // Удаляем варианты, которых нет в запросе, до создания новых: новые
+    // получают большие ID и занимают биты после оставшихся
+    if (!unmatched.isEmpty()) {
+      removeOptionsFromMasks(question, existingOptions, unmatched);
+      answerOptionRepository.deleteAll(unmatched);
+    }
 
-    // Переиспользуем существующие варианты ответов, обновляя их текст
     int orderNumber = 1;
     List<AnswerOption> updatedOptions = new ArrayList<>();
-
-    // Обновляем существующие варианты ответов и создаем новые по необходимости
-    for (int i = 0; i < newOptions.size(); i++) {
-      String optionText = newOptions.get(i);
-
-      if (i < existingOptions.size()) {
-        // Обновляем существующий вариант
-        AnswerOption option = existingOptions.get(i);
-        option.setText(optionText);
+    for (int i = 0; i < requested.size(); i++) {
+      AnswerOption option = matched[i];
+      if (option != null) {
+        option.setText(requested.get(i).getText());
         option.setOrderNumber(orderNumber++);
-        updatedOptions.add(option);
       } else {
-        // Создаем новый вариант
-        AnswerOption option = AnswerOption.builder()
+        option = answerOptionRepository.save(AnswerOption.builder()
             .question(question)
-            .text(optionText)
+            .text(requested.get(i).getText())
             .orderNumber(orderNumber++)
-            .build();
-
-        option = answerOptionRepository.save(option);
-        updatedOptions.add(option);
+            .build());
       }
-    }
-
-    // Удаляем лишние варианты ответов
-    if (existingOptions.size() > newOptions.size()) {
-      List<AnswerOption> optionsToRemove = existingOptions.subList(newOptions.size(), existingOptions.size());
-      answerOptionRepository.deleteAll(optionsToRemove);
+      updatedOptions.add(option);
     }
 
     // Обновляем список вариантов в вопросе
@@ -497,6 +635,25 @@ public class SurveyServiceImpl implements SurveyService {
     question.getAnswerOptions().addAll(updatedOptions);
   }
 
+  /**
+   * Убирает удаляемые варианты ответа из масок сохраненных ответов. Биты
+   * обрабатываются от старших к младшим, чтобы сдвиг не менял номера еще не
+   * обработанных вариантов
+   */
+  private void removeOptionsFromMasks(Question question, List<AnswerOption> allOptions,
+      List<AnswerOption> optionsToRemove) {
+    List<Long> orderedIds = allOptions.stream().map(AnswerOption::getId).sorted().toList();
+    optionsToRemove.stream()
+        .map(option -> orderedIds.indexOf(option.getId()))
+        .filter(ordinal -> ordinal >= 0 && ordinal < CompiledSurveySchema.MAX_MASK_OPTIONS)
+        .sorted(Comparator.reverseOrder())
+        .forEach(ordinal -> {
+          clientAnswerRepository.removeOptionFromMasks(question.getId(), ordinal);
+          eventPublisher.publishEvent(new AnswerOptionRemovedEvent(question.getSurvey().getId(),
+              question.getId(), ordinal));
+        });
+  }
+
   @Override
   @Transactional
   public void deleteSurvey(Long id) {
@@ -513,12 +670,16 @@ public class SurveyServiceImpl implements SurveyService {
         clientAnswerRepository.deleteAll(clientAnswers);
         clientAnswerRepository.flush(); // Принудительно фиксируем изменения в БД
       }
+      surveySubmissionRepository.deleteBySurveyId(id);
+      surveyStatsRepository.deleteBySurveyId(id);
+      responseRollupService.deleteBySurveyId(id);
 
       // Непосредственное удаление опросника
       // Hibernate автоматически удалит зависимые сущности благодаря настройке cascade
       // = CascadeType.ALL
       surveyRepository.delete(survey);
       log.debug("Опросник с ID: {} успешно удален", id);
+      eventPublisher.publishEvent(new SurveyDefinitionChangedEvent(id, true));
     } catch (Exception e) {
       log.error("Ошибка при удалении опросника: {}", e.getMessage(), e);
       throw e;
@@ -538,6 +699,7 @@ public class SurveyServiceImpl implements SurveyService {
     survey.setStatus(newStatus);
     Survey updatedSurvey = surveyRepository.save(survey);
     log.debug("Статус опросника с ID: {} успешно обновлен", id);
+    eventPublisher.publishEvent(new SurveyDefinitionChangedEvent(id, false));
 
     return mapToDto(updatedSurvey);
   }
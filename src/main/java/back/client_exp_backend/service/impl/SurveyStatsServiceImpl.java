@@ -0,0 +1,110 @@
+package back.client_exp_backend.service.impl;
+
+import back.client_exp_backend.dto.SurveyResponsesSummaryDto;
+import back.client_exp_backend.models.SurveyStats;
+import back.client_exp_backend.repository.ClientAnswerRepository;
+import back.client_exp_backend.repository.SurveyStatsRepository;
+import back.client_exp_backend.service.SurveyStatsService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Сводка ответов на опрос по счетчикам survey_stats. Счетчики увеличиваются при
+ * сохранении ответов, а сверка при запуске и ночью заполняет счетчики опросов,
+ * ответы на которые сохранены до их появления, и исправляет возможные
+ * расхождения (например, два параллельных первых ответа одного клиента)
+ */
+@Service
+@Slf4j
+public class SurveyStatsServiceImpl implements SurveyStatsService, SmartInitializingSingleton {
+
+  private final SurveyStatsRepository surveyStatsRepository;
+  private final ClientAnswerRepository clientAnswerRepository;
+  private final TransactionTemplate transactionTemplate;
+  private final TaskExecutor taskExecutor;
+
+  public SurveyStatsServiceImpl(SurveyStatsRepository surveyStatsRepository,
+      ClientAnswerRepository clientAnswerRepository, PlatformTransactionManager transactionManager,
+      @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME) TaskExecutor taskExecutor) {
+    this.surveyStatsRepository = surveyStatsRepository;
+    this.clientAnswerRepository = clientAnswerRepository;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.taskExecutor = taskExecutor;
+  }
+
+  /**
+   * Сверяет счетчики в фоне сразу после запуска, не дожидаясь ночной сверки
+   */
+  @Override
+  public void afterSingletonsInstantiated() {
+    taskExecutor.execute(() -> {
+      try {
+        transactionTemplate.executeWithoutResult(status -> reconcile());
+      } catch (Exception e) {
+        log.error("Не удалось сверить счетчики опросов при запуске", e);
+      }
+    });
+  }
+
+  @Override
+  @Transactional(readOnly = true)
+  public SurveyResponsesSummaryDto getSummary(Long surveyId, String cursor, int size) {
+    SurveyStats stats = surveyStatsRepository.findById(surveyId)
+        .orElseGet(() -> SurveyStats.builder().surveyId(surveyId).build());
+
+    long afterClientId = parseCursor(cursor);
+    List<Long> respondentIds = clientAnswerRepository.findClientIdsBySurveyIdAfter(
+        surveyId, afterClientId, PageRequest.of(0, size + 1));
+    boolean hasMore = respondentIds.size() > size;
+    if (hasMore) {
+      respondentIds = respondentIds.subList(0, size);
+    }
+
+    return SurveyResponsesSummaryDto.builder()
+        .surveyId(surveyId)
+        .respondentsCount(stats.getRespondentsCount())
+        .totalAnswersCount(stats.getTotalAnswersCount())
+        .lastResponseAt(stats.getLastResponseAt())
+        .respondentIds(respondentIds)
+        .nextCursor(hasMore ? String.valueOf(respondentIds.get(respondentIds.size() - 1)) : null)
+        .hasMore(hasMore)
+        .build();
+  }
+
+  /**
+   * Пересчитывает счетчики всех опросов по client_answers, не теряя
+   * отправки, сохраненные во время пересчета
+   */
+  @Override
+  @Transactional
+  @Scheduled(cron = "${survey.stats.reconcile-cron:0 30 3 * * *}")
+  public void reconcile() {
+    long started = System.currentTimeMillis();
+    int updated = surveyStatsRepository.rebuildAll();
+    int inserted = surveyStatsRepository.insertMissing();
+    log.info("Сверка счетчиков опросов завершена за {} мс: обновлено {}, добавлено {}",
+        System.currentTimeMillis() - started, updated, inserted);
+  }
+
+  private long parseCursor(String cursor) {
+    if (cursor == null || cursor.isBlank()) {
+      return 0L;
+    }
+    try {
+      return Long.parseLong(cursor);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Некорректный курсор: " + cursor);
+    }
+  }
+}
@@ -0,0 +1,83 @@
+package back.client_exp_backend.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Count-Min Sketch с вещественными счетчиками (для весов с затуханием).
+ * Оценка частоты никогда не меньше истинной и превышает ее не более чем на
+ * e / width от суммы всех весов с вероятностью 1 - e^-depth. Используется
+ * консервативное обновление: увеличиваются только минимальные счетчики
+ */
+public final class CountMinSketch {
+
+  private final int width;
+  private final int depth;
+  private final double[] counters;
+
+  public CountMinSketch(int width, int depth) {
+    if (width <= 0 || depth <= 0) {
+      throw new IllegalArgumentException("Размеры sketch должны быть положительными");
+    }
+    this.width = width;
+    this.depth = depth;
+    this.counters = new double[width * depth];
+  }
+
+  /**
+   * Добавляет вес элементу с хешем hash
+   *
+   * @return оценка веса элемента после добавления
+   */
+  public double add(long hash, double weight) {
+    double estimate = estimate(hash) + weight;
+    long h2 = Hashing.mix64(hash);
+    for (int row = 0; row < depth; row++) {
+      int index = index(row, hash, h2);
+      if (counters[index] < estimate) {
+        counters[index] = estimate;
+      }
+    }
+    return estimate;
+  }
+
+  public double estimate(long hash) {
+    long h2 = Hashing.mix64(hash);
+    double min = Double.MAX_VALUE;
+    for (int row = 0; row < depth; row++) {
+      min = Math.min(min, counters[index(row, hash, h2)]);
+    }
+    return min;
+  }
+
+  /**
+   * Умножает все счетчики на factor (пересчет весов при затухании)
+   */
+  public void scale(double factor) {
+    for (int i = 0; i < counters.length; i++) {
+      counters[i] *= factor;
+    }
+  }
+
+  public void write(DataOutput out) throws IOException {
+    out.writeInt(width);
+    out.writeInt(depth);
+    for (double counter : counters) {
+      out.writeDouble(counter);
+    }
+  }
+
+  public static CountMinSketch read(DataInput in) throws IOException {
+    CountMinSketch sketch = new CountMinSketch(in.readInt(), in.readInt());
+    for (int i = 0; i < sketch.counters.length; i++) {
+      sketch.counters[i] = in.readDouble();
+    }
+    return sketch;
+  }
+
+  // Строки sketch адресуются двумя хешами: h1 + row * h2 (Kirsch–Mitzenmacher)
+  private int index(int row, long h1, long h2) {
+    return row * width + (int) Math.floorMod(h1 + row * h2, (long) width);
+  }
+}
@@ -0,0 +1,34 @@
+package back.client_exp_backend.util;
+
+/**
+ * Быстрые некриптографические 64-битные хеши для вероятностных структур
+ */
+public final class Hashing {
+
+  private Hashing() {
+  }
+
+  /**
+   * Финализатор MurmurHash3: равномерно перемешивает биты 64-битного значения
+   */
+  public static long mix64(long value) {
+    value ^= value >>> 33;
+    value *= 0xff51afd7ed558ccdL;
+    value ^= value >>> 33;
+    value *= 0xc4ceb9fe1a85ec53L;
+    value ^= value >>> 33;
+    return value;
+  }
+
+  /**
+   * FNV-1a по байтам с финальным перемешиванием
+   */
+  public static long hash64(byte[] bytes) {
+    long hash = 0xcbf29ce484222325L;
+    for (byte b : bytes) {
+      hash ^= b & 0xff;
+      hash *= 0x100000001b3L;
+    }
+    return mix64(hash);
+  }
+}
@@ -0,0 +1,122 @@
+package back.client_exp_backend.util;
+
+/**
+ * HyperLogLog: приблизительное число различных элементов по 2^precision
+ * регистрам. Относительная стандартная ошибка 1.04 / sqrt(2^precision), для
+ * precision = 14 — около 0.8%. Два sketch с одинаковой точностью объединяются
+ * поэлементным максимумом, поэтому оценку объединения множеств можно получить
+ * без исходных данных
+ */
+public final class HyperLogLog {
+
+  public static final int DEFAULT_PRECISION = 14;
+
+  private static final int MIN_PRECISION = 4;
+  private static final int MAX_PRECISION = 18;
+
+  private final int precision;
+  private final byte[] registers;
+
+  public HyperLogLog() {
+    this(DEFAULT_PRECISION);
+  }
+
+  public HyperLogLog(int precision) {
+    if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+      throw new IllegalArgumentException("Точность HyperLogLog должна быть от " + MIN_PRECISION + " до " + MAX_PRECISION);
+    }
+    this.precision = precision;
+    this.registers = new byte[1 << precision];
+  }
+
+  private HyperLogLog(int precision, byte[] registers) {
+    this.precision = precision;
+    this.registers = registers;
+  }
+
+  /**
+   * Учитывает элемент по его 64-битному хешу
+   *
+   * @return true, если состояние sketch изменилось
+   */
+  public boolean add(long hash) {
+    int index = (int) (hash >>> (64 - precision));
+    // Сторожевой бит ограничивает длину серии нулей, если оставшиеся биты нулевые
+    long rest = (hash << precision) | (1L << (precision - 1));
+    byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+    if (registers[index] < rank) {
+      registers[index] = rank;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Добавляет в этот sketch элементы другого
+   */
+  public void merge(HyperLogLog other) {
+    if (other.precision != precision) {
+      throw new IllegalArgumentException("Нельзя объединить HyperLogLog с разной точностью");
+    }
+    for (int i = 0; i < registers.length; i++) {
+      if (registers[i] < other.registers[i]) {
+        registers[i] = other.registers[i];
+      }
+    }
+  }
+
+  /**
+   * Оценка числа различных элементов. При малом заполнении используется
+   * линейный подсчет по пустым регистрам
+   */
+  public long estimate() {
+    int m = registers.length;
+    double sum = 0;
+    int zeros = 0;
+    for (byte register : registers) {
+      sum += 1.0 / (1L << register);
+      if (register == 0) {
+        zeros++;
+      }
+    }
+
+    double alpha = 0.7213 / (1 + 1.079 / m);
+    double raw = alpha * m * m / sum;
+    if (raw <= 2.5 * m && zeros > 0) {
+      return Math.round(m * Math.log((double) m / zeros));
+    }
+    return Math.round(raw);
+  }
+
+  public double relativeStandardError() {
+    return 1.04 / Math.sqrt(registers.length);
+  }
+
+  public int getPrecision() {
+    return precision;
+  }
+
+  public HyperLogLog copy() {
+    return new HyperLogLog(precision, registers.clone());
+  }
+
+  /**
+   * Первый байт — точность, далее регистры
+   */
+  public byte[] toBytes() {
+    byte[] bytes = new byte[registers.length + 1];
+    bytes[0] = (byte) precision;
+    System.arraycopy(registers, 0, bytes, 1, registers.length);
+    return bytes;
+  }
+
+  public static HyperLogLog fromBytes(byte[] bytes) {
+    int precision = bytes[0];
+    if (precision < MIN_PRECISION || precision > MAX_PRECISION || bytes.length != (1 << precision) + 1) {
+      throw new IllegalArgumentException("Некорректное состояние HyperLogLog");
+    }
+    byte[] registers = new byte[1 << precision];
+    System.arraycopy(bytes, 1, registers, 0, registers.length);
+    return new HyperLogLog(precision, registers);
+  }
+}
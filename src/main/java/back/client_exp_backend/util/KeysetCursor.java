@@ -0,0 +1,44 @@
+package back.client_exp_backend.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Курсор постраничной выборки по ключу (createdAt, id). Кроме позиции хранит
+ * направление: backward = true — страница перед позицией. В запросах
+ * передается непрозрачной строкой base64url
+ */
+public record KeysetCursor(LocalDateTime createdAt, long id, boolean backward) {
+
+  private static final char FORWARD = 'n';
+  private static final char BACKWARD = 'p';
+
+  public String encode() {
+    String raw = (backward ? BACKWARD : FORWARD) + "|" + createdAt + "|" + id;
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * @return курсор или null для пустой строки (первая страница)
+   */
+  public static KeysetCursor decode(String cursor) {
+    if (cursor == null || cursor.isBlank()) {
+      return null;
+    }
+    try {
+      String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+      String[] parts = raw.split("\\|");
+      if (parts.length != 3 || parts[0].length() != 1
+          || (parts[0].charAt(0) != FORWARD && parts[0].charAt(0) != BACKWARD)) {
+        throw new IllegalArgumentException("Некорректный курсор: " + cursor);
+      }
+      return new KeysetCursor(LocalDateTime.parse(parts[1]), Long.parseLong(parts[2]),
+          parts[0].charAt(0) == BACKWARD);
+    } catch (DateTimeParseException | IllegalArgumentException e) {
+      // NumberFormatException тоже является IllegalArgumentException
+      throw new IllegalArgumentException("Некорректный курсор: " + cursor);
+    }
+  }
+}
@@ -0,0 +1,101 @@
+package back.client_exp_backend.util;
+
+/**
+ * Статистические функции для проверки значимости без внешних библиотек
+ */
+public final class Statistics {
+
+  private static final double EPSILON = 1e-14;
+  private static final int MAX_ITERATIONS = 1000;
+  private static final double TINY = 1e-300;
+
+  private static final double[] LANCZOS = {
+      0.99999999999980993, 676.5203681218851, -1259.1392167224028, 771.32342877765313,
+      -176.61502916214059, 12.507343278686905, -0.13857109526572012, 9.9843695780195716e-6,
+      1.5056327351493116e-7 };
+
+  private Statistics() {
+  }
+
+  /**
+   * Натуральный логарифм гамма-функции (приближение Ланцоша, x > 0)
+   */
+  public static double lnGamma(double x) {
+    if (x < 0.5) {
+      // Формула отражения
+      return Math.log(Math.PI / Math.abs(Math.sin(Math.PI * x))) - lnGamma(1 - x);
+    }
+    x -= 1;
+    double sum = LANCZOS[0];
+    for (int i = 1; i < LANCZOS.length; i++) {
+      sum += LANCZOS[i] / (x + i);
+    }
+    double t = x + LANCZOS.length - 1.5;
+    return 0.5 * Math.log(2 * Math.PI) + (x + 0.5) * Math.log(t) - t + Math.log(sum);
+  }
+
+  /**
+   * Вероятность получить значение хи-квадрат не меньше chiSquare при
+   * degreesOfFreedom степенях свободы (p-value критерия)
+   */
+  public static double chiSquarePValue(double chiSquare, int degreesOfFreedom) {
+    if (degreesOfFreedom <= 0 || chiSquare <= 0) {
+      return 1.0;
+    }
+    return regularizedGammaQ(degreesOfFreedom / 2.0, chiSquare / 2.0);
+  }
+
+  /**
+   * Верхняя регуляризованная неполная гамма-функция Q(a, x) = 1 - P(a, x).
+   * При x < a + 1 считается ряд для P, иначе — цепная дробь для Q
+   */
+  public static double regularizedGammaQ(double a, double x) {
+    if (x <= 0) {
+      return 1.0;
+    }
+    if (x < a + 1) {
+      return 1.0 - gammaSeries(a, x);
+    }
+    return gammaContinuedFraction(a, x);
+  }
+
+  private static double gammaSeries(double a, double x) {
+    double term = 1.0 / a;
+    double sum = term;
+    for (int n = 1; n < MAX_ITERATIONS; n++) {
+      term *= x / (a + n);
+      sum += term;
+      if (Math.abs(term) < Math.abs(sum) * EPSILON) {
+        break;
+      }
+    }
+    return sum * Math.exp(-x + a * Math.log(x) - lnGamma(a));
+  }
+
+  // Метод Ленца для цепной дроби
+  private static double gammaContinuedFraction(double a, double x) {
+    double b = x + 1 - a;
+    double c = 1 / TINY;
+    double d = 1 / b;
+    double h = d;
+    for (int i = 1; i < MAX_ITERATIONS; i++) {
+      double an = -i * (i - a);
+      b += 2;
+      d = an * d + b;
+      if (Math.abs(d) < TINY) {
+        d = TINY;
+      }
+      c = b + an / c;
+      if (Math.abs(c) < TINY) {
+        c = TINY;
+      }
+      d = 1 / d;
+      double delta = d * c;
+      h *= delta;
+      if (Math.abs(delta - 1) < EPSILON) {
+        break;
+      }
+    }
+    return Math.exp(-x + a * Math.log(x) - lnGamma(a)) * h;
+  }
+}
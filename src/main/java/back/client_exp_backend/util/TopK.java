@@ -0,0 +1,98 @@
+package back.client_exp_backend.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Приблизительный топ-K элементов по весу: куча с минимумом наверху и индекс
+ * по ключу. Новый элемент вытесняет минимальный, если его оценка больше.
+ * Оценки поставляет внешний источник (например, {@link CountMinSketch})
+ */
+public final class TopK {
+
+  private final int capacity;
+  private final Map<String, Entry> entries = new HashMap<>();
+  private final PriorityQueue<Entry> heap = new PriorityQueue<>(Comparator.comparingDouble(Entry::weight));
+
+  public TopK(int capacity) {
+    this.capacity = capacity;
+  }
+
+  /**
+   * Учитывает новую оценку веса элемента
+   */
+  public void offer(String key, double weight) {
+    Entry existing = entries.get(key);
+    if (existing != null) {
+      heap.remove(existing);
+      Entry updated = new Entry(key, weight);
+      entries.put(key, updated);
+      heap.add(updated);
+      return;
+    }
+
+    if (entries.size() < capacity) {
+      Entry entry = new Entry(key, weight);
+      entries.put(key, entry);
+      heap.add(entry);
+    } else if (heap.peek() != null && heap.peek().weight() < weight) {
+      entries.remove(heap.poll().key());
+      Entry entry = new Entry(key, weight);
+      entries.put(key, entry);
+      heap.add(entry);
+    }
+  }
+
+  /**
+   * Умножает все веса на factor; порядок в куче при этом не меняется
+   */
+  public void scale(double factor) {
+    List<Entry> scaled = new ArrayList<>(heap.size());
+    for (Entry entry : heap) {
+      scaled.add(new Entry(entry.key(), entry.weight() * factor));
+    }
+    heap.clear();
+    entries.clear();
+    for (Entry entry : scaled) {
+      heap.add(entry);
+      entries.put(entry.key(), entry);
+    }
+  }
+
+  /**
+   * До limit элементов с наибольшим весом, по убыванию веса
+   */
+  public List<Entry> top(int limit) {
+    List<Entry> sorted = new ArrayList<>(heap);
+    sorted.sort(Comparator.comparingDouble(Entry::weight).reversed());
+    return sorted.size() > limit ? new ArrayList<>(sorted.subList(0, limit)) : sorted;
+  }
+
+  public void write(DataOutput out) throws IOException {
+    out.writeInt(capacity);
+    out.writeInt(heap.size());
+    for (Entry entry : heap) {
+      out.writeUTF(entry.key());
+      out.writeDouble(entry.weight());
+    }
+  }
+
+  public static TopK read(DataInput in) throws IOException {
+    TopK topK = new TopK(in.readInt());
+    int size = in.readInt();
+    for (int i = 0; i < size; i++) {
+      topK.offer(in.readUTF(), in.readDouble());
+    }
+    return topK;
+  }
+
+  public record Entry(String key, double weight) {
+  }
+}
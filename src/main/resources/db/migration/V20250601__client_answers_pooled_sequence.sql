@@ -0,0 +1,4 @@
+-- Переводим генерацию ID ответов клиентов на пул из последовательности:
+-- шаг последовательности должен совпадать с allocationSize в ClientAnswer.
+-- Скрипт идемпотентен и выполняется при каждом запуске (spring.sql.init)
+ALTER SEQUENCE client_answers_id_seq INCREMENT BY 50;
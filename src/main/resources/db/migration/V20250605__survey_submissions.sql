@@ -0,0 +1,17 @@
+-- Отправки ответов на опросы. Повторы отсекает уникальный индекс по ключу
+-- идемпотентности в пределах опроса: на него опирается
+-- INSERT ... ON CONFLICT (survey_id, idempotency_key) при регистрации отправки.
+-- Скрипт идемпотентен и выполняется при каждом запуске (spring.sql.init)
+CREATE TABLE IF NOT EXISTS survey_submissions (
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+  survey_id BIGINT NOT NULL REFERENCES surveys(id),
+  client_id BIGINT NOT NULL REFERENCES clients(id),
+  idempotency_key VARCHAR(64) NOT NULL,
+  answers_count INTEGER NOT NULL,
+  respondent_name VARCHAR(255) NOT NULL,
+  respondent_email VARCHAR(255) NOT NULL,
+  submitted_at TIMESTAMP NOT NULL
+);
+
+CREATE UNIQUE INDEX IF NOT EXISTS uk_survey_submissions_survey_key
+  ON survey_submissions (survey_id, idempotency_key);
@@ -0,0 +1,45 @@
+-- Выбранные варианты ответа храним битовой маской: бит i соответствует
+-- варианту с порядковым номером i среди вариантов вопроса в порядке id.
+-- Скрипт идемпотентный и выполняется при каждом запуске (spring.sql.init):
+-- заполняются только ответы, у которых маски еще нет
+ALTER TABLE client_answers ADD COLUMN IF NOT EXISTS option_mask BIGINT;
+
+-- Заполняем маски для уже сохраненных ответов на вопросы с выбором.
+-- Множественный выбор раньше хранился строкой "вариант1, вариант2". Текст
+-- варианта сам может содержать ", ", поэтому строка не разбивается на части:
+-- вариант ищется в ней целиком между разделителями, а текст ответа удаляется,
+-- только если найденные варианты с разделителями покрывают его полностью
+WITH ordinals AS (
+  SELECT id, question_id, text,
+         ROW_NUMBER() OVER (PARTITION BY question_id ORDER BY id) - 1 AS ordinal
+  FROM answer_options
+),
+masks AS (
+  SELECT ca.id,
+         bit_or(CAST(1 AS BIGINT) << o.ordinal) AS mask,
+         SUM(length(o.text)) + 2 * (COUNT(*) - 1) AS matched_length,
+         q.type
+  FROM client_answers ca
+  JOIN questions q ON q.id = ca.question_id AND q.type IN ('SINGLE_CHOICE', 'MULTIPLE_CHOICE')
+  JOIN ordinals o ON o.question_id = ca.question_id
+   AND (o.id = ca.answer_option_id
+        OR o.text = ca.text_answer
+        OR (q.type = 'MULTIPLE_CHOICE'
+            AND position(', ' || o.text || ', ' IN ', ' || ca.text_answer || ', ') > 0))
+  WHERE ca.option_mask IS NULL
+    AND o.ordinal < 63
+    AND (SELECT COUNT(*) FROM answer_options ao WHERE ao.question_id = ca.question_id) <= 63
+  GROUP BY ca.id, q.type
+)
+UPDATE client_answers ca
+SET option_mask = masks.mask,
+    -- Текст множественного выбора больше не нужен, если все значения нашлись среди вариантов
+    text_answer = CASE WHEN masks.type = 'MULTIPLE_CHOICE' AND masks.matched_length = length(ca.text_answer)
+                       THEN NULL ELSE ca.text_answer END
+FROM masks
+WHERE ca.id = masks.id;
+
+-- Распределение по вариантам считается только по этому индексу
+CREATE INDEX IF NOT EXISTS idx_client_answers_question_option_mask
+  ON client_answers (question_id, option_mask)
+  WHERE option_mask IS NOT NULL;
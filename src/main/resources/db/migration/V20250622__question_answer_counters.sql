@@ -0,0 +1,13 @@
+-- Снимки счетчиков распределения ответов по вопросам. Для вопросов с выбором
+-- value_counts индексируется порядковым номером варианта, для RATING —
+-- значением оценки. Скрипт идемпотентен и выполняется при каждом запуске
+-- (spring.sql.init)
+CREATE TABLE IF NOT EXISTS question_answer_counters (
+  question_id BIGINT PRIMARY KEY,
+  survey_id BIGINT NOT NULL,
+  total_count BIGINT NOT NULL,
+  value_counts BIGINT[] NOT NULL,
+  snapshot_at TIMESTAMP NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_question_answer_counters_survey ON question_answer_counters (survey_id);
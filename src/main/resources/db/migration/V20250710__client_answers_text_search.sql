@@ -0,0 +1,11 @@
+-- Полнотекстовый поиск по текстовым ответам. Колонка вычисляется самой БД
+-- при вставке и изменении text_answer, поэтому приложение ее не заполняет
+-- Скрипт идемпотентный и выполняется при каждом запуске (spring.sql.init);
+-- при первом запуске добавление колонки перезаписывает таблицу целиком
+ALTER TABLE client_answers
+  ADD COLUMN IF NOT EXISTS text_search tsvector
+  GENERATED ALWAYS AS (to_tsvector('russian', coalesce(text_answer, ''))) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_client_answers_text_search
+  ON client_answers USING GIN (text_search)
+  WHERE text_answer IS NOT NULL;
@@ -0,0 +1,3 @@
+-- Состав сегмента читается и обновляется по segment_id (запись состава
+-- сегмента по условию); уникальность нужна для INSERT ... ON CONFLICT
+CREATE UNIQUE INDEX IF NOT EXISTS idx_client_segments_segment_client ON client_segments (segment_id, client_id);
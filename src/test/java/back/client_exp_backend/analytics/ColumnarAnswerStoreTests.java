@@ -0,0 +1,141 @@
+package back.client_exp_backend.analytics;
+
+import back.client_exp_backend.cache.SurveySchemaCache;
+import back.client_exp_backend.event.SurveyDefinitionChangedEvent;
+import back.client_exp_backend.event.SurveyResponseSubmittedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static back.client_exp_backend.analytics.SurveyColumnsTests.MULTIPLE;
+import static back.client_exp_backend.analytics.SurveyColumnsTests.RATING;
+import static back.client_exp_backend.analytics.SurveyColumnsTests.SINGLE;
+import static back.client_exp_backend.analytics.SurveyColumnsTests.TEXT;
+import static back.client_exp_backend.analytics.SurveyColumnsTests.clients;
+import static back.client_exp_backend.analytics.SurveyColumnsTests.options;
+import static back.client_exp_backend.analytics.SurveyColumnsTests.rating;
+import static back.client_exp_backend.analytics.SurveyColumnsTests.text;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ColumnarAnswerStoreTests {
+
+  private static final long SURVEY_ID = 1L;
+
+  private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+  private final SurveySchemaCache surveySchemaCache = mock(SurveySchemaCache.class);
+  private final List<Row> rows = new ArrayList<>();
+  private ColumnarAnswerStore store;
+
+  @BeforeEach
+  void setUp() {
+    when(surveySchemaCache.get(SURVEY_ID)).thenReturn(SurveyColumnsTests.schema());
+    doAnswer(invocation -> {
+      RowCallbackHandler handler = invocation.getArgument(1);
+      for (Row row : rows) {
+        handler.processRow(row.resultSet());
+      }
+      return null;
+    }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), eq(SURVEY_ID));
+
+    rows.add(row(1, SINGLE, 0b001L, null, null));
+    rows.add(row(1, RATING, null, 2, null));
+    rows.add(row(1, TEXT, null, null, "быстро"));
+    rows.add(row(2, SINGLE, 0b010L, null, null));
+    rows.add(row(2, MULTIPLE, 0b0110L, null, null));
+    rows.add(row(2, RATING, null, 5, null));
+    store = new ColumnarAnswerStore(jdbcTemplate, surveySchemaCache, 256, Integer.MAX_VALUE);
+  }
+
+  @Test
+  void loadedAnswersAreFiltered() {
+    assertEquals(List.of(1L), select(List.of(options(0, 0b001))));
+    assertEquals(List.of(2L), select(List.of(rating(3, null))));
+    assertEquals(List.of(1L), select(List.of(text("быстро"))));
+    assertEquals(List.of(2L), select(List.of(options(1, 0))));
+  }
+
+  @Test
+  void surveyIsLoadedOnceForRepeatedReads() {
+    select(List.of());
+    select(List.of(options(0, 0)));
+
+    verify(jdbcTemplate, times(1)).query(anyString(), any(RowCallbackHandler.class), eq(SURVEY_ID));
+  }
+
+  @Test
+  void submissionsAfterLoadAreAppended() {
+    select(List.of());
+
+    store.onSurveyResponseSubmitted(submission(3, new SurveyResponseSubmittedEvent.AnswerFact(SINGLE, 0b001L, null, null),
+        new SurveyResponseSubmittedEvent.AnswerFact(RATING, null, 4, null)));
+
+    assertEquals(List.of(1L, 3L), select(List.of(options(0, 0b001))));
+    assertEquals(List.of(3L), select(List.of(options(0, 0b001), rating(3, 4))));
+  }
+
+  @Test
+  void submissionsToUnloadedSurveyDoNotTriggerLoad() {
+    store.onSurveyResponseSubmitted(submission(3, new SurveyResponseSubmittedEvent.AnswerFact(SINGLE, 0b001L, null, null)));
+
+    verify(jdbcTemplate, never()).query(anyString(), any(RowCallbackHandler.class), eq(SURVEY_ID));
+    // Отправка уже в client_answers, поэтому попадет в столбцы при загрузке
+    rows.add(row(3, SINGLE, 0b001L, null, null));
+    assertEquals(List.of(1L, 3L), select(List.of(options(0, 0b001))));
+  }
+
+  @Test
+  void definitionChangeReloadsSurvey() {
+    select(List.of());
+    rows.add(row(3, SINGLE, 0b100L, null, null));
+
+    store.onSurveyDefinitionChanged(new SurveyDefinitionChangedEvent(SURVEY_ID, false));
+
+    assertEquals(List.of(3L), select(List.of(options(0, 0b100))));
+    verify(jdbcTemplate, times(2)).query(anyString(), any(RowCallbackHandler.class), eq(SURVEY_ID));
+  }
+
+  private List<Long> select(List<ColumnPredicate> predicates) {
+    return store.read(SURVEY_ID, columns -> clients(columns, columns.select(predicates)));
+  }
+
+  private static SurveyResponseSubmittedEvent submission(long clientId, SurveyResponseSubmittedEvent.AnswerFact... answers) {
+    return new SurveyResponseSubmittedEvent(SURVEY_ID, clientId, true, LocalDateTime.now(), List.of(answers));
+  }
+
+  private static Row row(long clientId, long questionId, Long optionMask, Integer numericAnswer, String textAnswer) {
+    return new Row(clientId, questionId, optionMask, numericAnswer, textAnswer);
+  }
+
+  /**
+   * Строка client_answers; ResultSet создается заново при каждой загрузке
+   */
+  private record Row(long clientId, long questionId, Long optionMask, Integer numericAnswer, String textAnswer) {
+    private ResultSet resultSet() throws SQLException {
+      ResultSet rs = mock(ResultSet.class);
+      when(rs.getLong(1)).thenReturn(clientId);
+      when(rs.getLong(2)).thenReturn(questionId);
+      when(rs.getLong(3)).thenReturn(optionMask != null ? optionMask : 0L);
+      when(rs.getInt(4)).thenReturn(numericAnswer != null ? numericAnswer : 0);
+      // wasNull вызывается после option_mask и после numeric_answer
+      when(rs.wasNull()).thenReturn(optionMask == null, numericAnswer == null);
+      when(rs.getString(5)).thenReturn(textAnswer);
+      return rs;
+    }
+  }
+}
@@ -0,0 +1,84 @@
+package back.client_exp_backend.analytics;
+
+import back.client_exp_backend.analytics.MetricEngine.MetricAggregate;
+import back.client_exp_backend.analytics.MetricEngine.MetricWindow;
+import back.client_exp_backend.models.enums.MetricType;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MetricEngineTests {
+
+  private static final long TODAY = 20_000;
+
+  @Test
+  void npsSplitsPromotersPassivesAndDetractors() {
+    MetricAggregate aggregate = new MetricAggregate(MetricType.NPS);
+    for (int score : new int[] { 10, 9, 8, 7, 6, 0 }) {
+      aggregate.record(TODAY, score, 1);
+    }
+    aggregate.record(TODAY, 9, 4);
+
+    MetricWindow total = aggregate.total();
+    assertEquals(10, total.count());
+    assertEquals(76, total.sum());
+    assertEquals(6, total.promoters());
+    assertEquals(2, total.detractors());
+    assertEquals(2, total.passives());
+    // Для NPS верхние оценки — это промоутеры
+    assertEquals(6, total.topBox());
+  }
+
+  @Test
+  void csatAndCesCountTopBoxOnly() {
+    MetricAggregate csat = new MetricAggregate(MetricType.CSAT);
+    for (int score = 1; score <= 5; score++) {
+      csat.record(TODAY, score, 1);
+    }
+    MetricAggregate ces = new MetricAggregate(MetricType.CES);
+    for (int score = 1; score <= 7; score++) {
+      ces.record(TODAY, score, 1);
+    }
+
+    assertEquals(new MetricWindow(5, 15, 2, 0, 0), csat.total());
+    assertEquals(new MetricWindow(7, 28, 3, 0, 0), ces.total());
+  }
+
+  @Test
+  void windowIncludesOnlyRequestedDays() {
+    MetricAggregate aggregate = new MetricAggregate(MetricType.CSAT);
+    aggregate.record(TODAY, 5, 1);
+    aggregate.record(TODAY - 6, 4, 1);
+    aggregate.record(TODAY - 7, 3, 1);
+    aggregate.record(TODAY - 29, 2, 1);
+    aggregate.record(TODAY - 89, 1, 1);
+
+    assertEquals(new MetricWindow(2, 9, 2, 0, 0), aggregate.window(TODAY, 7));
+    assertEquals(4, aggregate.window(TODAY, 30).count());
+    // Окно длиннее буфера ограничивается WINDOW_DAYS
+    assertEquals(5, aggregate.window(TODAY, 365).count());
+    // Дни после запрошенной даты в окно не попадают
+    assertEquals(2, aggregate.window(TODAY - 7, 30).count());
+  }
+
+  @Test
+  void newerDayReusesSlotOfDayOutsideWindow() {
+    MetricAggregate aggregate = new MetricAggregate(MetricType.NPS);
+    aggregate.record(TODAY - MetricEngine.WINDOW_DAYS, 10, 3);
+    aggregate.record(TODAY, 0, 1);
+
+    assertEquals(new MetricWindow(1, 0, 0, 0, 1), aggregate.window(TODAY, MetricEngine.WINDOW_DAYS));
+    assertEquals(new MetricWindow(4, 30, 3, 3, 1), aggregate.total());
+  }
+
+  @Test
+  void olderDayDoesNotOverwriteNewerSlot() {
+    MetricAggregate aggregate = new MetricAggregate(MetricType.NPS);
+    aggregate.record(TODAY, 0, 1);
+    // Поздно пришедший ответ старше окна учитывается только в итоге
+    aggregate.record(TODAY - MetricEngine.WINDOW_DAYS, 10, 3);
+
+    assertEquals(new MetricWindow(1, 0, 0, 0, 1), aggregate.window(TODAY, MetricEngine.WINDOW_DAYS));
+    assertEquals(4, aggregate.total().count());
+  }
+}
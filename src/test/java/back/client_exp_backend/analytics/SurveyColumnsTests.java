@@ -0,0 +1,186 @@
+package back.client_exp_backend.analytics;
+
+import back.client_exp_backend.cache.CompiledSurveySchema;
+import back.client_exp_backend.models.AnswerOption;
+import back.client_exp_backend.models.Question;
+import back.client_exp_backend.models.enums.QuestionType;
+import back.client_exp_backend.models.enums.SurveyStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SurveyColumnsTests {
+
+  static final long SINGLE = 10;
+  static final long MULTIPLE = 20;
+  static final long RATING = 30;
+  static final long TEXT = 40;
+
+  @Test
+  void noPredicatesSelectAllRows() {
+    SurveyColumns columns = sample(Integer.MAX_VALUE);
+
+    assertEquals(List.of(1L, 2L, 3L, 4L), clients(columns, columns.select(List.of())));
+  }
+
+  @Test
+  void singleChoiceMatchesAnyOfOptionsAndSkipsUnanswered() {
+    SurveyColumns columns = sample(Integer.MAX_VALUE);
+
+    assertEquals(List.of(1L, 3L), clients(columns, columns.select(List.of(options(0, 0b001)))));
+    assertEquals(List.of(1L, 2L, 3L), clients(columns, columns.select(List.of(options(0, 0b011)))));
+    // 0 — любой выбранный вариант, клиент 4 на вопрос не отвечал
+    assertEquals(List.of(1L, 2L, 3L), clients(columns, columns.select(List.of(options(0, 0)))));
+  }
+
+  @Test
+  void multipleChoiceMatchesIntersectingMask() {
+    SurveyColumns columns = sample(Integer.MAX_VALUE);
+
+    assertEquals(List.of(1L, 4L), clients(columns, columns.select(List.of(options(1, 0b0100)))));
+    assertEquals(List.of(2L), clients(columns, columns.select(List.of(options(1, 0b1000)))));
+  }
+
+  @Test
+  void ratingMatchesInclusiveRangeWithOpenBounds() {
+    SurveyColumns columns = sample(Integer.MAX_VALUE);
+
+    assertEquals(List.of(2L, 4L), clients(columns, columns.select(List.of(rating(4, 5)))));
+    assertEquals(List.of(1L, 2L), clients(columns, columns.select(List.of(rating(null, 4)))));
+    assertEquals(List.of(2L, 4L), clients(columns, columns.select(List.of(rating(4, null)))));
+  }
+
+  @Test
+  void textMatchesExactValue() {
+    SurveyColumns columns = sample(Integer.MAX_VALUE);
+
+    assertEquals(List.of(1L, 3L), clients(columns, columns.select(List.of(text("быстро")))));
+    assertEquals(List.of(), clients(columns, columns.select(List.of(text("не встречалось")))));
+    assertEquals(List.of(1L, 2L, 3L), clients(columns, columns.select(List.of(text(null)))));
+  }
+
+  @Test
+  void predicatesAreCombinedWithAnd() {
+    SurveyColumns columns = sample(Integer.MAX_VALUE);
+
+    long[] selection = columns.select(List.of(options(0, 0b001), text("быстро"), rating(1, 3)));
+
+    assertEquals(List.of(1L), clients(columns, selection));
+  }
+
+  @Test
+  void countReturnsValueCountsAndAnsweredTotal() {
+    SurveyColumns columns = sample(Integer.MAX_VALUE);
+    long[] all = columns.select(List.of());
+
+    assertArrayEquals(new long[] { 2, 1, 0, 3 }, columns.count(0, all));
+    assertArrayEquals(new long[] { 1, 2, 2, 1, 4 }, columns.count(1, all));
+    assertArrayEquals(new long[] { 0, 0, 0, 1, 1, 1, 3 }, columns.count(2, all));
+  }
+
+  @Test
+  void countOnlyIncludesSelectedRows() {
+    SurveyColumns columns = sample(Integer.MAX_VALUE);
+    long[] fast = columns.select(List.of(text("быстро")));
+
+    assertArrayEquals(new long[] { 2, 0, 0, 2 }, columns.count(0, fast));
+    assertArrayEquals(new long[] { 2, 0, 2 }, columns.count(3, fast));
+  }
+
+  @Test
+  void repeatedAnswerReplacesPrevious() {
+    SurveyColumns columns = sample(Integer.MAX_VALUE);
+    columns.put(1, SINGLE, 0b100L, null, null);
+
+    assertEquals(List.of(3L), clients(columns, columns.select(List.of(options(0, 0b001)))));
+    assertEquals(4, columns.rowCount());
+  }
+
+  @Test
+  void parallelSelectionAndCountsMatchSequential() {
+    SurveyColumns sequential = new SurveyColumns(schema(), Integer.MAX_VALUE);
+    SurveyColumns parallel = new SurveyColumns(schema(), 1);
+    for (long client = 1; client <= 50_000; client++) {
+      long option = 1L << (client % 3);
+      int score = (int) (client % 5) + 1;
+      for (SurveyColumns columns : List.of(sequential, parallel)) {
+        columns.put(client, SINGLE, option, null, null);
+        columns.put(client, RATING, null, score, null);
+      }
+    }
+
+    List<ColumnPredicate> predicates = List.of(options(0, 0b011), rating(2, 4));
+    long[] expected = sequential.select(predicates);
+    long[] actual = parallel.select(predicates);
+
+    assertArrayEquals(expected, actual);
+    assertArrayEquals(sequential.count(2, expected), parallel.count(2, actual));
+  }
+
+  /**
+   * Четыре респондента:
+   * 1 — вариант 0, варианты {0, 2}, оценка 3, «быстро»;
+   * 2 — вариант 1, варианты {1, 3}, оценка 4, «медленно»;
+   * 3 — вариант 0, варианты {1}, без оценки, «быстро»;
+   * 4 — без выбора, варианты {2}, оценка 5, без текста
+   */
+  static SurveyColumns sample(int parallelThreshold) {
+    SurveyColumns columns = new SurveyColumns(schema(), parallelThreshold);
+    columns.put(1, SINGLE, 0b001L, null, null);
+    columns.put(1, MULTIPLE, 0b0101L, null, null);
+    columns.put(1, RATING, null, 3, null);
+    columns.put(1, TEXT, null, null, "быстро");
+    columns.put(2, SINGLE, 0b010L, null, null);
+    columns.put(2, MULTIPLE, 0b1010L, null, null);
+    columns.put(2, RATING, null, 4, null);
+    columns.put(2, TEXT, null, null, "медленно");
+    columns.put(3, SINGLE, 0b001L, null, null);
+    columns.put(3, MULTIPLE, 0b0010L, null, null);
+    columns.put(3, TEXT, null, null, "быстро");
+    columns.put(4, MULTIPLE, 0b0100L, null, null);
+    columns.put(4, RATING, null, 5, null);
+    return columns;
+  }
+
+  static CompiledSurveySchema schema() {
+    return CompiledSurveySchema.compile(1L, "Опрос", SurveyStatus.ACTIVE, List.of(
+        question(SINGLE, QuestionType.SINGLE_CHOICE, 3),
+        question(MULTIPLE, QuestionType.MULTIPLE_CHOICE, 4),
+        question(RATING, QuestionType.RATING, 0),
+        question(TEXT, QuestionType.TEXT, 0)));
+  }
+
+  static List<Long> clients(SurveyColumns columns, long[] selection) {
+    List<Long> clients = new ArrayList<>();
+    for (int row = 0; row < columns.rowCount(); row++) {
+      if ((selection[row >>> 6] & (1L << row)) != 0) {
+        clients.add(columns.clientId(row));
+      }
+    }
+    return clients;
+  }
+
+  static ColumnPredicate options(int questionIndex, long options) {
+    return new ColumnPredicate(questionIndex, options, null, null, null);
+  }
+
+  static ColumnPredicate rating(Integer min, Integer max) {
+    return new ColumnPredicate(2, 0, min, max, null);
+  }
+
+  static ColumnPredicate text(String text) {
+    return new ColumnPredicate(3, 0, null, null, text);
+  }
+
+  private static Question question(long id, QuestionType type, int options) {
+    List<AnswerOption> answerOptions = new ArrayList<>();
+    for (int i = 0; i < options; i++) {
+      answerOptions.add(AnswerOption.builder().id(id * 10 + i).text("Вариант " + i).build());
+    }
+    return Question.builder().id(id).type(type).text("Вопрос " + id).answerOptions(answerOptions).build();
+  }
+}
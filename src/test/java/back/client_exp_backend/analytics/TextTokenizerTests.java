@@ -0,0 +1,72 @@
+package back.client_exp_backend.analytics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TextTokenizerTests {
+
+  @Test
+  void lowercasesAndReplacesYo() {
+    Tokens tokens = tokenize("Всё ЕЩЁ Ждём Курьера");
+
+    assertEquals(List.of("ждем", "курьера"), tokens.unigrams);
+    assertEquals(List.of("ждем курьера"), tokens.bigrams);
+  }
+
+  @Test
+  void stopWordsAndNumbersBreakPairs() {
+    Tokens tokens = tokenize("доставка и оплата заказа 123 пришла");
+
+    assertEquals(List.of("доставка", "оплата", "заказа", "пришла"), tokens.unigrams);
+    assertEquals(List.of("оплата заказа"), tokens.bigrams);
+  }
+
+  @Test
+  void singleLettersAreSkippedWithoutBreakingPairs() {
+    Tokens tokens = tokenize("быстрая ж доставка");
+
+    assertEquals(List.of("быстрая", "доставка"), tokens.unigrams);
+    assertEquals(List.of("быстрая доставка"), tokens.bigrams);
+  }
+
+  @Test
+  void negationIsOnlyPairPrefix() {
+    Tokens tokens = tokenize("Приложение не работает");
+
+    assertEquals(List.of("приложение", "работает"), tokens.unigrams);
+    assertEquals(List.of("не работает"), tokens.bigrams);
+  }
+
+  @Test
+  void negationAtEndOrRepeatedProducesNothingExtra() {
+    Tokens tokens = tokenize("понравилось не не понравилось не");
+
+    assertEquals(List.of("понравилось", "понравилось"), tokens.unigrams);
+    assertEquals(List.of("не понравилось"), tokens.bigrams);
+  }
+
+  @Test
+  void blankTextProducesNoTokens() {
+    Tokens tokens = tokenize("  ");
+    Tokens nullTokens = tokenize(null);
+
+    assertTrue(tokens.unigrams.isEmpty() && tokens.bigrams.isEmpty());
+    assertTrue(nullTokens.unigrams.isEmpty() && nullTokens.bigrams.isEmpty());
+  }
+
+  private static Tokens tokenize(String text) {
+    Tokens tokens = new Tokens();
+    TextTokenizer.tokenize(text, tokens.unigrams::add, tokens.bigrams::add);
+    return tokens;
+  }
+
+  private static final class Tokens {
+    private final List<String> unigrams = new ArrayList<>();
+    private final List<String> bigrams = new ArrayList<>();
+  }
+}
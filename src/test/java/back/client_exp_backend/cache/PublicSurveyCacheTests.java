@@ -0,0 +1,41 @@
+package back.client_exp_backend.cache;
+
+import back.client_exp_backend.cache.PublicSurveyCache.CachedSurvey;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PublicSurveyCacheTests {
+
+  private static final CachedSurvey SURVEY = new CachedSurvey(new byte[0], new byte[0], "\"v1\"");
+
+  @Test
+  void gzippedRepresentationHasItsOwnEtag() {
+    assertEquals("\"v1\"", SURVEY.etag(false));
+    assertEquals("\"v1-gz\"", SURVEY.etag(true));
+  }
+
+  @Test
+  void matchesEtagOfSelectedRepresentationOnly() {
+    assertTrue(SURVEY.matches("\"v1\"", false));
+    assertFalse(SURVEY.matches("\"v1\"", true));
+    assertTrue(SURVEY.matches("\"v1-gz\"", true));
+    assertFalse(SURVEY.matches("\"v1-gz\"", false));
+  }
+
+  @Test
+  void matchesListWeakTagsAndWildcard() {
+    assertTrue(SURVEY.matches("\"v0\", W/\"v1-gz\"", true));
+    assertTrue(SURVEY.matches("W/\"v1\"", false));
+    assertTrue(SURVEY.matches("*", true));
+    assertFalse(SURVEY.matches("\"v0\", \"v2\"", false));
+  }
+
+  @Test
+  void missingHeaderDoesNotMatch() {
+    assertFalse(SURVEY.matches(null, false));
+    assertFalse(SURVEY.matches("", true));
+  }
+}
@@ -0,0 +1,42 @@
+package back.client_exp_backend.controller;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PublicSurveyControllerTests {
+
+  @Test
+  void acceptsListedGzip() {
+    assertTrue(PublicSurveyController.acceptsGzip("gzip"));
+    assertTrue(PublicSurveyController.acceptsGzip("deflate, GZIP;q=0.5, br"));
+    assertTrue(PublicSurveyController.acceptsGzip("x-gzip"));
+  }
+
+  @Test
+  void rejectsMissingOrOtherEncodings() {
+    assertFalse(PublicSurveyController.acceptsGzip(null));
+    assertFalse(PublicSurveyController.acceptsGzip(" "));
+    assertFalse(PublicSurveyController.acceptsGzip("deflate, br"));
+    assertFalse(PublicSurveyController.acceptsGzip("identity"));
+  }
+
+  @Test
+  void zeroQualityRefusesGzip() {
+    assertFalse(PublicSurveyController.acceptsGzip("gzip;q=0"));
+    assertFalse(PublicSurveyController.acceptsGzip("gzip; q=0.0, br"));
+    // Некорректное значение q считается нулевым
+    assertFalse(PublicSurveyController.acceptsGzip("gzip;q=abc"));
+  }
+
+  @Test
+  void wildcardAppliesOnlyWhenGzipIsNotListed() {
+    assertTrue(PublicSurveyController.acceptsGzip("*"));
+    assertTrue(PublicSurveyController.acceptsGzip("br, *;q=0.1"));
+    assertFalse(PublicSurveyController.acceptsGzip("*;q=0"));
+    // Явный gzip важнее *
+    assertFalse(PublicSurveyController.acceptsGzip("gzip;q=0, *"));
+    assertTrue(PublicSurveyController.acceptsGzip("gzip, *;q=0"));
+  }
+}
@@ -0,0 +1,91 @@
+package back.client_exp_backend.segment;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CriteriaParserTests {
+
+  private static final CriteriaExpression FEMALE = in(CriteriaField.GENDER, "FEMALE");
+  private static final CriteriaExpression MOSCOW = in(CriteriaField.REGION, "Москва");
+  private static final CriteriaExpression YOUNG = in(CriteriaField.AGE_GROUP, "FROM_18_TO_25");
+
+  @Test
+  void andBindsTighterThanOr() {
+    CriteriaExpression expression = CriteriaParser.parse("gender = FEMALE OR region = 'Москва' AND ageGroup = FROM_18_TO_25");
+
+    assertEquals(new CriteriaExpression.Or(List.of(FEMALE, new CriteriaExpression.And(List.of(MOSCOW, YOUNG)))),
+        expression);
+  }
+
+  @Test
+  void parenthesesOverridePrecedence() {
+    CriteriaExpression expression = CriteriaParser.parse("(gender = FEMALE OR region = 'Москва') AND ageGroup = FROM_18_TO_25");
+
+    assertEquals(new CriteriaExpression.And(List.of(new CriteriaExpression.Or(List.of(FEMALE, MOSCOW)), YOUNG)),
+        expression);
+  }
+
+  @Test
+  void notAppliesToNextUnaryOperand() {
+    assertEquals(new CriteriaExpression.And(List.of(new CriteriaExpression.Not(FEMALE), MOSCOW)),
+        CriteriaParser.parse("NOT gender = FEMALE AND region = 'Москва'"));
+    assertEquals(new CriteriaExpression.Not(new CriteriaExpression.Or(List.of(FEMALE, MOSCOW))),
+        CriteriaParser.parse("not (gender = FEMALE or region = 'Москва')"));
+    assertEquals(new CriteriaExpression.Not(new CriteriaExpression.Not(FEMALE)),
+        CriteriaParser.parse("NOT NOT gender = FEMALE"));
+  }
+
+  @Test
+  void notEqualsAndNotInAreNegatedValueIn() {
+    assertEquals(new CriteriaExpression.Not(FEMALE), CriteriaParser.parse("gender != FEMALE"));
+    assertEquals(new CriteriaExpression.Not(new CriteriaExpression.ValueIn(CriteriaField.AGE_GROUP,
+            Set.of("FROM_18_TO_25", "FROM_26_TO_35"))),
+        CriteriaParser.parse("ageGroup NOT IN (FROM_18_TO_25, FROM_26_TO_35)"));
+  }
+
+  @Test
+  void inNormalizesEnumValuesAndKeepsRegionAsIs() {
+    assertEquals(new CriteriaExpression.ValueIn(CriteriaField.GENDER, Set.of("MALE", "FEMALE")),
+        CriteriaParser.parse("GENDER in (male, 'Female', MALE)"));
+    assertEquals(in(CriteriaField.REGION, "Д'Артаньян"), CriteriaParser.parse("region = 'Д''Артаньян'"));
+  }
+
+  @Test
+  void dateComparisonsAcceptAllOperators() {
+    LocalDate date = LocalDate.of(2024, 1, 1);
+    for (String operator : List.of("<", "<=", ">", ">=", "=", "!=")) {
+      assertEquals(new CriteriaExpression.DateCompare(CriteriaField.CLIENT_SINCE, operator, date),
+          CriteriaParser.parse("clientSince " + operator + " 2024-01-01"));
+    }
+  }
+
+  @Test
+  void invalidCriteriaReportPosition() {
+    assertError("Неизвестное поле «city» (позиция 1)", "city = 'Москва'");
+    assertError("Недопустимое значение «OTHER» поля gender", "gender = OTHER");
+    assertError("Ожидалась дата в формате ГГГГ-ММ-ДД (позиция 15)", "clientSince > 2024-13-01");
+    assertError("Поле clientSince сравнивается только с датой (позиция 1)", "clientSince IN (2024-01-01)");
+    assertError("Поле gender сравнивается только через =, != или IN (позиция 8)", "gender > MALE");
+    assertError("После NOT ожидалось IN (позиция 12)", "gender NOT = MALE");
+    assertError("Ожидалось «)» (конец условия)", "(gender = MALE");
+    assertError("Лишний текст после условия (позиция 15)", "gender = MALE region = 'Москва'");
+    assertError("Незакрытая кавычка (позиция 10)", "region = 'Москва");
+    assertError("Условие сегмента не задано", " ");
+  }
+
+  private static void assertError(String expected, String criteria) {
+    IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> CriteriaParser.parse(criteria));
+    assertTrue(error.getMessage().startsWith(expected), error.getMessage());
+  }
+
+  private static CriteriaExpression in(CriteriaField field, String value) {
+    return new CriteriaExpression.ValueIn(field, Set.of(value));
+  }
+}
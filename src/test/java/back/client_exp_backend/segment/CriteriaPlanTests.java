@@ -0,0 +1,104 @@
+package back.client_exp_backend.segment;
+
+import back.client_exp_backend.models.Client;
+import back.client_exp_backend.models.enums.AgeGroup;
+import back.client_exp_backend.models.enums.Gender;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.time.LocalDate;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.mock;
+
+class CriteriaPlanTests {
+
+  private ClientAttributeIndex index;
+
+  /**
+   * 1 — FEMALE, 18-25, Москва, с 2023-05-01;
+   * 2 — MALE, 26-35, Казань, с 2024-02-01;
+   * 3 — FEMALE, без возраста и региона, без даты;
+   * 4 — без пола, 18-25, Москва, с 2024-06-01;
+   * 5 — MALE, без возраста, Казань, без даты
+   */
+  @BeforeEach
+  void setUp() {
+    JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    doNothing().when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+    index = new ClientAttributeIndex(jdbcTemplate);
+    index.rebuild();
+
+    put(1, Gender.FEMALE, AgeGroup.FROM_18_TO_25, "Москва", LocalDate.of(2023, 5, 1));
+    put(2, Gender.MALE, AgeGroup.FROM_26_TO_35, "Казань", LocalDate.of(2024, 2, 1));
+    put(3, Gender.FEMALE, null, null, null);
+    put(4, null, AgeGroup.FROM_18_TO_25, "Москва", LocalDate.of(2024, 6, 1));
+    put(5, Gender.MALE, null, "Казань", null);
+  }
+
+  @Test
+  void equalsAndInSelectMatchingClients() {
+    assertEquals(List.of(1, 3), clients("gender = FEMALE"));
+    assertEquals(List.of(1, 2, 4), clients("ageGroup IN (FROM_18_TO_25, FROM_26_TO_35)"));
+  }
+
+  @Test
+  void andBindsTighterThanOr() {
+    assertEquals(List.of(1, 2, 5), clients("region = 'Казань' OR gender = FEMALE AND ageGroup = FROM_18_TO_25"));
+    assertEquals(List.of(1), clients("(region = 'Казань' OR gender = FEMALE) AND NOT ageGroup = FROM_26_TO_35"));
+  }
+
+  @Test
+  void notEqualsSkipsClientsWithoutValue() {
+    // Как в SQL: gender != FEMALE не выбирает клиента 4 без пола
+    assertEquals(List.of(2, 5), clients("gender != FEMALE"));
+    assertEquals(List.of(2, 5), clients("NOT gender = FEMALE"));
+    assertEquals(List.of(2), clients("ageGroup NOT IN (FROM_18_TO_25, UNDER_18)"));
+  }
+
+  @Test
+  void deMorganKeepsNullSemantics() {
+    // NOT (gender = FEMALE OR region = 'Москва') = gender != FEMALE AND region != 'Москва'
+    assertEquals(List.of(2, 5), clients("NOT (gender = FEMALE OR region = 'Москва')"));
+    // NOT (gender = MALE AND region = 'Казань') = gender != MALE OR region != 'Казань'
+    assertEquals(List.of(1, 3, 4), clients("NOT (gender = MALE AND region = 'Казань')"));
+    assertEquals(List.of(1, 3), clients("NOT NOT gender = FEMALE"));
+  }
+
+  @Test
+  void dateComparisonsSkipClientsWithoutDate() {
+    assertEquals(List.of(2, 4), clients("clientSince >= 2024-01-01"));
+    assertEquals(List.of(1), clients("clientSince < 2024-01-01"));
+    assertEquals(List.of(1, 4), clients("clientSince != 2024-02-01"));
+    assertEquals(List.of(1), clients("NOT clientSince >= 2024-01-01"));
+    assertEquals(List.of(2), clients("clientSince = 2024-02-01"));
+  }
+
+  @Test
+  void explainShowsNegationAsKnownValuesMinusMatches() {
+    assertEquals("AND(gender IS NOT NULL) ANDNOT OR(gender IN [FEMALE])",
+        CriteriaPlan.compile("gender != FEMALE").explain());
+  }
+
+  private List<Integer> clients(String criteria) {
+    BitSet clients = index.evaluate(CriteriaPlan.compile(criteria));
+    return clients.stream().boxed().toList();
+  }
+
+  private void put(long id, Gender gender, AgeGroup ageGroup, String region, LocalDate clientSince) {
+    index.putAfterCommit(Client.builder()
+        .id(id)
+        .gender(gender)
+        .ageGroup(ageGroup)
+        .region(region)
+        .clientSince(clientSince)
+        .build());
+  }
+}
@@ -0,0 +1,211 @@
+package back.client_exp_backend.service.impl;
+
+import back.client_exp_backend.models.Client;
+import back.client_exp_backend.models.ClientAnswer;
+import back.client_exp_backend.models.Question;
+import back.client_exp_backend.models.Survey;
+import back.client_exp_backend.models.User;
+import back.client_exp_backend.models.enums.QuestionType;
+import back.client_exp_backend.models.enums.SurveyStatus;
+import back.client_exp_backend.models.enums.UserRole;
+import back.client_exp_backend.repository.ClientAnswerRepository;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Сравнение скорости вставки ответов клиентов: прежняя схема с IDENTITY
+ * (отдельный INSERT с возвратом ключа на каждую строку), построчный save
+ * с flush из пула последовательности и пакетная вставка одним flush на отправку.
+ * Запуск: mvn test -Dtest=ClientAnswerInsertBenchmarkTests -Dbenchmark=true
+ */
+@SpringBootTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@Slf4j
+class ClientAnswerInsertBenchmarkTests {
+
+  private static final int QUESTIONS_PER_SURVEY = 40;
+  private static final int SUBMISSIONS = 200;
+
+  // Копия client_answers с IDENTITY-ключом, как до перехода на пул; удаляется
+  // вместе с откатом транзакции замера
+  private static final String CREATE_IDENTITY_TABLE_SQL = """
+      CREATE TEMP TABLE identity_client_answers (
+        id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+        client_id BIGINT NOT NULL REFERENCES clients(id),
+        survey_id BIGINT NOT NULL REFERENCES surveys(id),
+        question_id BIGINT NOT NULL REFERENCES questions(id),
+        answer_option_id BIGINT REFERENCES answer_options(id),
+        text_answer TEXT,
+        numeric_answer INTEGER,
+        option_mask BIGINT,
+        created_at TIMESTAMP NOT NULL
+      ) ON COMMIT DROP
+      """;
+
+  private static final String INSERT_IDENTITY_SQL = """
+      INSERT INTO identity_client_answers (client_id, survey_id, question_id, text_answer, created_at)
+      VALUES (?, ?, ?, ?, ?)
+      """;
+
+  @Autowired
+  private ClientAnswerRepository clientAnswerRepository;
+
+  @Autowired
+  private EntityManager entityManager;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  private TransactionTemplate transactionTemplate;
+
+  @Test
+  void compareIdentityRowByRowAndBatchedInserts() {
+    double identity = measure("IDENTITY", () -> jdbcTemplate.execute(CREATE_IDENTITY_TABLE_SQL),
+        answers -> answers.forEach(this::insertWithIdentity));
+
+    double rowByRow = measure("последовательность, построчно", () -> { }, answers -> answers.forEach(answer -> {
+      clientAnswerRepository.save(answer);
+      clientAnswerRepository.flush();
+    }));
+
+    double batched = measure("последовательность, пакетно", () -> { }, answers -> {
+      clientAnswerRepository.saveAll(answers);
+      clientAnswerRepository.flush();
+    });
+
+    log.info("Ускорение пакетной вставки: {}x относительно IDENTITY, {}x относительно построчной",
+        String.format("%.2f", batched / identity), String.format("%.2f", batched / rowByRow));
+  }
+
+  /**
+   * Так Hibernate вставляет строку с IDENTITY: отдельный запрос и чтение
+   * сгенерированного ключа, без группировки в JDBC batch
+   */
+  private void insertWithIdentity(ClientAnswer answer) {
+    KeyHolder keyHolder = new GeneratedKeyHolder();
+    jdbcTemplate.update(connection -> {
+      PreparedStatement statement = connection.prepareStatement(INSERT_IDENTITY_SQL, new String[]{"id"});
+      statement.setLong(1, answer.getClient().getId());
+      statement.setLong(2, answer.getSurvey().getId());
+      statement.setLong(3, answer.getQuestion().getId());
+      statement.setString(4, answer.getTextAnswer());
+      statement.setTimestamp(5, Timestamp.valueOf(LocalDateTime.now()));
+      return statement;
+    }, keyHolder);
+    answer.setId(keyHolder.getKey().longValue());
+  }
+
+  /**
+   * Выполняет SUBMISSIONS отправок по QUESTIONS_PER_SURVEY ответов в одной
+   * транзакции, которая затем откатывается, и возвращает число строк в секунду
+   */
+  private double measure(String label, Runnable prepare, Consumer<List<ClientAnswer>> writer) {
+    double[] rowsPerSecond = new double[1];
+
+    transactionTemplate.executeWithoutResult(status -> {
+      Fixture fixture = createFixture();
+      prepare.run();
+
+      long started = System.nanoTime();
+      for (int i = 0; i < SUBMISSIONS; i++) {
+        writer.accept(buildSubmission(fixture));
+        entityManager.clear();
+        fixture = fixture.reattach(entityManager);
+      }
+      long elapsed = System.nanoTime() - started;
+
+      rowsPerSecond[0] = (double) SUBMISSIONS * QUESTIONS_PER_SURVEY / (elapsed / 1_000_000_000.0);
+      log.info("{}: {} строк/с", label, Math.round(rowsPerSecond[0]));
+      status.setRollbackOnly();
+    });
+
+    return rowsPerSecond[0];
+  }
+
+  private Fixture createFixture() {
+    String suffix = UUID.randomUUID().toString();
+
+    User user = User.builder()
+        .username("benchmark")
+        .email("benchmark-" + suffix + "@example.com")
+        .passwordHash("-")
+        .role(UserRole.MANAGER)
+        .build();
+    entityManager.persist(user);
+
+    Survey survey = Survey.builder()
+        .title("Benchmark")
+        .status(SurveyStatus.ACTIVE)
+        .createdBy(user)
+        .build();
+    entityManager.persist(survey);
+
+    List<Question> questions = new ArrayList<>();
+    for (int i = 0; i < QUESTIONS_PER_SURVEY; i++) {
+      Question question = Question.builder()
+          .survey(survey)
+          .text("Вопрос " + i)
+          .type(QuestionType.TEXT)
+          .required(false)
+          .orderNumber(i + 1)
+          .build();
+      entityManager.persist(question);
+      questions.add(question);
+    }
+
+    Client client = Client.builder()
+        .name("Benchmark")
+        .email("client-" + suffix + "@example.com")
+        .build();
+    entityManager.persist(client);
+    entityManager.flush();
+
+    return new Fixture(survey.getId(), client.getId(), questions.stream().map(Question::getId).toList())
+        .reattach(entityManager);
+  }
+
+  private List<ClientAnswer> buildSubmission(Fixture fixture) {
+    List<ClientAnswer> answers = new ArrayList<>(QUESTIONS_PER_SURVEY);
+    for (Question question : fixture.questions()) {
+      answers.add(ClientAnswer.builder()
+          .client(fixture.client())
+          .survey(fixture.survey())
+          .question(question)
+          .textAnswer("Ответ")
+          .build());
+    }
+    return answers;
+  }
+
+  private record Fixture(Long surveyId, Long clientId, List<Long> questionIds,
+      Survey survey, Client client, List<Question> questions) {
+
+    Fixture(Long surveyId, Long clientId, List<Long> questionIds) {
+      this(surveyId, clientId, questionIds, null, null, List.of());
+    }
+
+    Fixture reattach(EntityManager entityManager) {
+      return new Fixture(surveyId, clientId, questionIds,
+          entityManager.getReference(Survey.class, surveyId),
+          entityManager.getReference(Client.class, clientId),
+          questionIds.stream().map(id -> entityManager.getReference(Question.class, id)).toList());
+    }
+  }
+}
@@ -0,0 +1,49 @@
+package back.client_exp_backend.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BloomFilterTests {
+
+  @Test
+  void addedKeysAreAlwaysFound() {
+    BloomFilter filter = new BloomFilter(10_000, 0.01);
+    IntStream.range(0, 10_000).forEach(i -> filter.put("key-" + i));
+
+    IntStream.range(0, 10_000).forEach(i -> assertTrue(filter.mightContain("key-" + i)));
+  }
+
+  @Test
+  void emptyFilterContainsNothing() {
+    BloomFilter filter = new BloomFilter(100, 0.01);
+
+    assertFalse(filter.mightContain("key"));
+    assertFalse(filter.mightContain(""));
+  }
+
+  @Test
+  void falsePositiveRateStaysNearTarget() {
+    BloomFilter filter = new BloomFilter(10_000, 0.01);
+    IntStream.range(0, 10_000).forEach(i -> filter.put("key-" + i));
+
+    long falsePositives = IntStream.range(0, 100_000)
+        .filter(i -> filter.mightContain("other-" + i))
+        .count();
+
+    // Ожидается около 1%; запас на разброс хэшей
+    assertTrue(falsePositives < 2_000, "ложных срабатываний: " + falsePositives);
+  }
+
+  @Test
+  void nonPositiveExpectedInsertionsAreClamped() {
+    BloomFilter filter = new BloomFilter(0, 0.01);
+    filter.put("key");
+
+    assertTrue(filter.expectedInsertions() >= 1);
+    assertTrue(filter.mightContain("key"));
+  }
+}
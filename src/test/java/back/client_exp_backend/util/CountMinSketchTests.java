@@ -0,0 +1,96 @@
+package back.client_exp_backend.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CountMinSketchTests {
+
+  @Test
+  void estimateIsNeverBelowTrueCountAndStaysWithinBound() {
+    CountMinSketch sketch = new CountMinSketch(1024, 4);
+    int items = 5_000;
+    for (int i = 0; i < items; i++) {
+      // Элемент i встречается (i % 10 + 1) раз
+      for (int j = 0; j <= i % 10; j++) {
+        sketch.add(hash("term-" + i), 1);
+      }
+    }
+
+    double total = 0;
+    for (int i = 0; i < items; i++) {
+      total += i % 10 + 1;
+    }
+    double bound = Math.E / 1024 * total;
+    int overBound = 0;
+    for (int i = 0; i < items; i++) {
+      double estimate = sketch.estimate(hash("term-" + i));
+      double actual = i % 10 + 1;
+      assertTrue(estimate >= actual, "оценка " + estimate + " меньше " + actual);
+      if (estimate - actual > bound) {
+        overBound++;
+      }
+    }
+    // Граница нарушается с вероятностью не больше e^-4 (около 2%)
+    assertTrue(overBound < items * 0.02, "оценок вне границы: " + overBound);
+  }
+
+  @Test
+  void addReturnsEstimateAfterAdding() {
+    CountMinSketch sketch = new CountMinSketch(64, 3);
+
+    assertEquals(1.5, sketch.add(hash("доставка"), 1.5), 1e-9);
+    assertEquals(4.0, sketch.add(hash("доставка"), 2.5), 1e-9);
+    assertEquals(4.0, sketch.estimate(hash("доставка")), 1e-9);
+  }
+
+  @Test
+  void decayedWeightsLetRecentTermOvertakeOldOne() {
+    CountMinSketch sketch = new CountMinSketch(256, 4);
+    TopK top = new TopK(10);
+    for (int i = 0; i < 100; i++) {
+      top.offer("старое", sketch.add(hash("старое"), 1));
+    }
+
+    // Прошло три периода полураспада
+    sketch.scale(0.125);
+    top.scale(0.125);
+    for (int i = 0; i < 20; i++) {
+      top.offer("новое", sketch.add(hash("новое"), 1));
+    }
+
+    assertEquals(12.5, sketch.estimate(hash("старое")), 1e-9);
+    List<TopK.Entry> entries = top.top(2);
+    assertEquals("новое", entries.get(0).key());
+    assertEquals(20.0, entries.get(0).weight(), 1e-9);
+    assertEquals("старое", entries.get(1).key());
+    assertEquals(12.5, entries.get(1).weight(), 1e-9);
+  }
+
+  @Test
+  void stateSurvivesSerialization() throws IOException {
+    CountMinSketch sketch = new CountMinSketch(128, 4);
+    sketch.add(hash("оплата"), 3);
+    sketch.add(hash("курьер"), 7);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    sketch.write(new DataOutputStream(bytes));
+    CountMinSketch restored = CountMinSketch.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+    assertEquals(sketch.estimate(hash("оплата")), restored.estimate(hash("оплата")));
+    assertEquals(sketch.estimate(hash("курьер")), restored.estimate(hash("курьер")));
+  }
+
+  private static long hash(String term) {
+    return Hashing.hash64(term.getBytes(StandardCharsets.UTF_8));
+  }
+}
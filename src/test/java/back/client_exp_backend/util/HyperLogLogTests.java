@@ -0,0 +1,99 @@
+package back.client_exp_backend.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HyperLogLogTests {
+
+  @Test
+  void emptySketchEstimatesZero() {
+    assertEquals(0, new HyperLogLog().estimate());
+  }
+
+  @Test
+  void smallCardinalitiesAreNearlyExact() {
+    // Линейный подсчет по пустым регистрам при малом заполнении
+    for (int n : new int[] { 1, 10, 100, 1_000 }) {
+      HyperLogLog sketch = new HyperLogLog(14);
+      for (long i = 0; i < n; i++) {
+        sketch.add(Hashing.mix64(i));
+      }
+      assertTrue(Math.abs(sketch.estimate() - n) <= Math.max(1, n * 0.01),
+          "n = " + n + ", оценка " + sketch.estimate());
+    }
+  }
+
+  @Test
+  void repeatedElementsDoNotChangeState() {
+    HyperLogLog sketch = new HyperLogLog(12);
+    assertTrue(sketch.add(Hashing.mix64(42)));
+    assertFalse(sketch.add(Hashing.mix64(42)));
+
+    assertEquals(1, sketch.estimate());
+  }
+
+  @Test
+  void largeCardinalityStaysWithinThreeStandardErrors() {
+    HyperLogLog sketch = new HyperLogLog(14);
+    int n = 500_000;
+    for (long i = 0; i < n; i++) {
+      sketch.add(Hashing.mix64(i));
+    }
+
+    double error = Math.abs(sketch.estimate() - n) / (double) n;
+    assertTrue(error < 3 * sketch.relativeStandardError(), "относительная ошибка " + error);
+  }
+
+  @Test
+  void mergeEstimatesUnionOfOverlappingSets() {
+    HyperLogLog first = new HyperLogLog(14);
+    HyperLogLog second = new HyperLogLog(14);
+    // [0, 200000) и [100000, 300000): объединение — 300000
+    for (long i = 0; i < 200_000; i++) {
+      first.add(Hashing.mix64(i));
+      second.add(Hashing.mix64(i + 100_000));
+    }
+
+    first.merge(second);
+
+    double error = Math.abs(first.estimate() - 300_000) / 300_000.0;
+    assertTrue(error < 3 * first.relativeStandardError(), "относительная ошибка " + error);
+  }
+
+  @Test
+  void mergeIsIdempotent() {
+    HyperLogLog sketch = new HyperLogLog(12);
+    for (long i = 0; i < 10_000; i++) {
+      sketch.add(Hashing.mix64(i));
+    }
+    long estimate = sketch.estimate();
+
+    sketch.merge(sketch.copy());
+
+    assertEquals(estimate, sketch.estimate());
+  }
+
+  @Test
+  void mergeRejectsDifferentPrecision() {
+    assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(12).merge(new HyperLogLog(14)));
+  }
+
+  @Test
+  void bytesRoundTrip() {
+    HyperLogLog sketch = new HyperLogLog(10);
+    for (long i = 0; i < 1_000; i++) {
+      sketch.add(Hashing.mix64(i));
+    }
+
+    HyperLogLog restored = HyperLogLog.fromBytes(sketch.toBytes());
+
+    assertArrayEquals(sketch.toBytes(), restored.toBytes());
+    assertEquals(sketch.estimate(), restored.estimate());
+    assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromBytes(new byte[] { 10, 0, 0 }));
+  }
+}
@@ -0,0 +1,51 @@
+package back.client_exp_backend.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class KeysetCursorTests {
+
+  @Test
+  void roundTripKeepsPositionAndDirection() {
+    KeysetCursor forward = new KeysetCursor(LocalDateTime.of(2025, 7, 1, 10, 15, 30, 123_456_000), 42, false);
+    KeysetCursor backward = new KeysetCursor(LocalDateTime.of(2025, 7, 1, 10, 15), Long.MAX_VALUE, true);
+
+    assertEquals(forward, KeysetCursor.decode(forward.encode()));
+    assertEquals(backward, KeysetCursor.decode(backward.encode()));
+  }
+
+  @Test
+  void encodedCursorIsUrlSafe() {
+    String encoded = new KeysetCursor(LocalDateTime.of(2025, 7, 1, 10, 15), 7, true).encode();
+
+    assertFalse(encoded.contains("+") || encoded.contains("/") || encoded.contains("="));
+  }
+
+  @Test
+  void emptyCursorMeansFirstPage() {
+    assertNull(KeysetCursor.decode(null));
+    assertNull(KeysetCursor.decode(" "));
+  }
+
+  @Test
+  void invalidCursorIsRejected() {
+    for (String raw : new String[] { "n|2025-07-01T10:15", "x|2025-07-01T10:15|1", "nn|2025-07-01T10:15|1",
+        "n|вчера|1", "n|2025-07-01T10:15|abc", "n|2025-07-01T10:15|1|2" }) {
+      assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode(encode(raw)), raw);
+    }
+    // Строка не в base64url
+    assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode("не курсор"));
+  }
+
+  private static String encode(String raw) {
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+  }
+}
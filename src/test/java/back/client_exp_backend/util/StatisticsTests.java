@@ -0,0 +1,60 @@
+package back.client_exp_backend.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StatisticsTests {
+
+  @Test
+  void lnGammaMatchesFactorials() {
+    assertEquals(0.0, Statistics.lnGamma(1), 1e-12);
+    assertEquals(0.0, Statistics.lnGamma(2), 1e-12);
+    assertEquals(Math.log(24), Statistics.lnGamma(5), 1e-12);
+    assertEquals(Math.log(362_880), Statistics.lnGamma(10), 1e-11);
+    assertEquals(359.1342053695754, Statistics.lnGamma(100), 1e-9);
+  }
+
+  @Test
+  void lnGammaMatchesKnownNonIntegerValues() {
+    // Г(1/2) = sqrt(pi)
+    assertEquals(0.5 * Math.log(Math.PI), Statistics.lnGamma(0.5), 1e-12);
+    // Г(3/2) = sqrt(pi) / 2
+    assertEquals(0.5 * Math.log(Math.PI) - Math.log(2), Statistics.lnGamma(1.5), 1e-12);
+    // Формула отражения
+    assertEquals(2.252712651734206, Statistics.lnGamma(0.1), 1e-10);
+  }
+
+  @Test
+  void chiSquarePValueMatchesCriticalValues() {
+    assertEquals(0.05, Statistics.chiSquarePValue(3.841458820694124, 1), 1e-9);
+    assertEquals(0.01, Statistics.chiSquarePValue(6.634896601021214, 1), 1e-9);
+    assertEquals(0.05, Statistics.chiSquarePValue(5.991464547107979, 2), 1e-9);
+    assertEquals(0.05, Statistics.chiSquarePValue(18.307038053275146, 10), 1e-9);
+    assertEquals(0.001, Statistics.chiSquarePValue(29.588298445074403, 10), 1e-9);
+  }
+
+  @Test
+  void chiSquarePValueWithTwoDegreesIsExponential() {
+    // При двух степенях свободы Q = exp(-x / 2): проверяет и ряд, и цепную дробь
+    for (double chiSquare : new double[] { 0.1, 1, 2.5, 10, 40 }) {
+      double expected = Math.exp(-chiSquare / 2);
+      assertEquals(expected, Statistics.chiSquarePValue(chiSquare, 2), expected * 1e-9);
+    }
+  }
+
+  @Test
+  void chiSquarePValueKeepsPrecisionInFarTail() {
+    // P(|Z| > 10) для стандартного нормального
+    double expected = 1.5239706124395e-23;
+    assertEquals(expected, Statistics.chiSquarePValue(100, 1), expected * 1e-6);
+  }
+
+  @Test
+  void degenerateArgumentsGiveOne() {
+    assertEquals(1.0, Statistics.chiSquarePValue(0, 3));
+    assertEquals(1.0, Statistics.chiSquarePValue(-1, 3));
+    assertEquals(1.0, Statistics.chiSquarePValue(5, 0));
+    assertEquals(1.0, Statistics.regularizedGammaQ(2, 0));
+  }
+}
@@ -0,0 +1,79 @@
+package back.client_exp_backend.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TopKTests {
+
+  @Test
+  void keepsHeaviestEntriesInDescendingOrder() {
+    TopK top = new TopK(3);
+    top.offer("a", 1);
+    top.offer("b", 5);
+    top.offer("c", 3);
+    top.offer("d", 4);
+    top.offer("e", 0.5);
+
+    assertEquals(List.of("b", "d", "c"), keys(top.top(10)));
+  }
+
+  @Test
+  void updatedEstimateReplacesPreviousOne() {
+    TopK top = new TopK(2);
+    top.offer("a", 1);
+    top.offer("b", 2);
+    top.offer("a", 10);
+
+    List<TopK.Entry> entries = top.top(2);
+    assertEquals(List.of("a", "b"), keys(entries));
+    assertEquals(10.0, entries.get(0).weight());
+  }
+
+  @Test
+  void limitTruncatesResult() {
+    TopK top = new TopK(5);
+    for (int i = 1; i <= 5; i++) {
+      top.offer("k" + i, i);
+    }
+
+    assertEquals(List.of("k5", "k4"), keys(top.top(2)));
+  }
+
+  @Test
+  void scaleMultipliesWeightsAndKeepsOrder() {
+    TopK top = new TopK(3);
+    top.offer("a", 8);
+    top.offer("b", 4);
+    top.scale(0.5);
+
+    List<TopK.Entry> entries = top.top(3);
+    assertEquals(List.of("a", "b"), keys(entries));
+    assertEquals(4.0, entries.get(0).weight());
+    assertEquals(2.0, entries.get(1).weight());
+  }
+
+  @Test
+  void stateSurvivesSerialization() throws IOException {
+    TopK top = new TopK(3);
+    top.offer("доставка", 3);
+    top.offer("оплата", 7);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    top.write(new DataOutputStream(bytes));
+    TopK restored = TopK.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+    assertEquals(top.top(3), restored.top(3));
+  }
+
+  private static List<String> keys(List<TopK.Entry> entries) {
+    return entries.stream().map(TopK.Entry::key).toList();
+  }
+}